@@ -1,19 +1,21 @@
 package uk.ac.ebi.pride.jmztab;
 
 import org.apache.commons.cli.*;
+import uk.ac.ebi.pride.jmztab.utils.errors.AggregateErrorSink;
 import uk.ac.ebi.pride.jmztab.utils.errors.MZTabErrorList;
 import uk.ac.ebi.pride.jmztab.utils.errors.MZTabErrorType;
 import uk.ac.ebi.pride.jmztab.utils.errors.MZTabErrorTypeMap;
+import uk.ac.ebi.pride.jmztab.utils.errors.StreamErrorSink;
+import uk.ac.ebi.pride.jmztab.model.MZTabConstants;
 import uk.ac.ebi.pride.jmztab.model.MZTabFile;
 import uk.ac.ebi.pride.jmztab.utils.*;
 import uk.ac.ebi.pride.jmztab.utils.convert.ConvertFile;
+import uk.ac.ebi.pride.jmztab.utils.metrics.PhaseProfiler;
 
-import java.io.BufferedOutputStream;
-import java.io.File;
-import java.io.FileOutputStream;
-import java.io.OutputStream;
+import java.io.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * User: qingwei
@@ -52,19 +54,24 @@ public class MZTabCommandLine {
 
         String checkOpt = "check";
         String inFileOpt = "inFile";
-        Option checkOption = OptionBuilder.withArgName(inFileOpt)
-                .hasArgs(2)
+        String aggregateOpt = "aggregate";
+        Option checkOption = OptionBuilder.withArgName(inFileOpt + ", " + aggregateOpt)
+                .hasArgs()
                 .withValueSeparator()
-                .withDescription("Choose a file from input directory. This parameter should not be null!")
+                .withDescription("Choose a file from input directory. This parameter should not be null! " +
+                                 "aggregate=true validate the whole file, and print error counts per code " +
+                                 "and column with the first exemplar errors.")
                 .create(checkOpt);
         options.addOption(checkOption);
 
         String convertOpt = "convert";
         String formatOpt = "format";
-        Option convertOption = OptionBuilder.withArgName(inFileOpt + ", " + formatOpt)
+        String mappingOpt = "mapping";
+        Option convertOption = OptionBuilder.withArgName(inFileOpt + ", " + formatOpt + ", " + mappingOpt)
                 .hasArgs()
                 .withValueSeparator()
-                .withDescription("Converts the given format file to an mztab file.")
+                .withDescription("Converts the given format file to an mztab file. Format can be PRIDE, mzIndenML, " +
+                                 "mzQuantML or delimited. Delimited text file need provide a column mapping file.")
                 .create(convertOpt);
         options.addOption(convertOption);
 
@@ -78,6 +85,32 @@ public class MZTabCommandLine {
                 .create(mergeOpt);
         options.addOption(mergeOption);
 
+        String batchOpt = "batch";
+        String filterOpt = "filter";
+        String threadsOpt = "threads";
+        String detailOpt = "detail";
+        Option batchOption = OptionBuilder.withArgName(filterOpt + ", " + threadsOpt + ", " + detailOpt)
+                .hasOptionalArgs()
+                .withValueSeparator()
+                .withDescription("Check all files in input directory which name match the filter (eg. *.mztab) " +
+                                 "concurrently, and print a summary report. threads default use the number " +
+                                 "of processors, detail=true print error messages of every file.")
+                .create(batchOpt);
+        options.addOption(batchOption);
+
+        String serverOpt = "server";
+        Option serverOption = OptionBuilder.withArgName("port")
+                .hasOptionalArg()
+                .withDescription("Start a local validation service, which accept validate/convert/merge jobs " +
+                                 "by http POST requests which carry the token written into mztab.server.token_file. " +
+                                 "If not set port, use mztab.server.port in mztab.properties.")
+                .create(serverOpt);
+        options.addOption(serverOption);
+
+        String profileOpt = "profile";
+        options.addOption(profileOpt, false, "Print wall time, CPU time and allocated bytes of every phase " +
+                                             "(metadata, headers, data sections, cross check and output), " +
+                                             "and peak heap and GC time after check/convert/merge.");
 
         // Parse command line
         CommandLine line = parser.parse(options, args);
@@ -94,6 +127,9 @@ public class MZTabCommandLine {
             } else {
                 System.out.println(type);
             }
+        } else if (line.hasOption(serverOpt)) {
+            String port = line.getOptionValue(serverOpt);
+            new MZTabServer(port == null ? MZTabProperties.SERVER_PORT : Integer.parseInt(port)).start();
         } else {
             File inDir = null;
             if (line.hasOption(inDirOpt)) {
@@ -120,93 +156,223 @@ public class MZTabCommandLine {
                 outFile = new File(outDir, line.getOptionValue(outOpt));
             }
             OutputStream out = outFile == null ? System.out : new BufferedOutputStream(new FileOutputStream(outFile));
+            if (outFile != null && outFile.getName().endsWith(".gz")) {
+                // multi-member output can not be fully read by java 6 GZIPInputStream, only enabled by property.
+                out = MZTabProperties.GZIP_PARALLEL ? new ParallelGZIPOutputStream(out) : new GZIPOutputStream(out);
+            }
 
-            if (line.hasOption(checkOpt)) {
-                String[] values = line.getOptionValues(checkOpt);
-                if (values.length != 2) {
-                    throw new IllegalArgumentException("Not setting input file!");
-                }
-                File inFile = new File(inDir, values[1].trim());
-                System.out.println("Begin check mztab file: " + inFile.getAbsolutePath());
-                new MZTabFileParser(inFile, out);
-            } else if (line.hasOption(convertOpt)) {
-                String[] values = line.getOptionValues(convertOpt);
-                File inFile = null;
-                String format = null;
-                for (int i = 0; i < values.length; i++) {
-                    String type = values[i++].trim();
-                    String value = values[i].trim();
-                    if (type.equals(inFileOpt)) {
-                        inFile = new File(inDir, value.trim());
-                    } else if (type.equals(formatOpt)) {
-                        format = value.trim();
+            boolean profile = line.hasOption(profileOpt);
+            if (profile) {
+                PhaseProfiler.enable();
+            }
+
+            // closed by convert, before check the output file.
+            boolean outClosed = false;
+            try {
+                if (line.hasOption(checkOpt)) {
+                    String[] values = line.getOptionValues(checkOpt);
+                    File inFile = null;
+                    boolean aggregate = false;
+                    for (int i = 0; i < values.length - 1; i++) {
+                        String type = values[i++].trim();
+                        String value = values[i].trim();
+                        if (type.equals(inFileOpt)) {
+                            inFile = new File(inDir, value);
+                        } else if (type.equals(aggregateOpt)) {
+                            aggregate = value.equals("true");
+                        }
+                    }
+                    if (inFile == null) {
+                        throw new IllegalArgumentException("Not setting input file!");
+                    }
+                    System.out.println("Begin check mztab file: " + inFile.getAbsolutePath());
+                    if (aggregate) {
+                        AggregateErrorSink sink = new AggregateErrorSink(MZTabProperties.ERROR_EXEMPLAR_COUNT, MZTabProperties.LEVEL);
+                        MZTabFileParser tabParser = new MZTabFileParser(inFile, new MZTabFileParser.Options()
+                                .setErrorList(new MZTabErrorList(sink, 0)).setBuffered(false));
+                        if (tabParser.getFatalError() != null) {
+                            out.write(MZTabProperties.MZTabExceptionMessage.getBytes());
+                        }
+                        sink.print(out);
+                    } else {
+                        // print errors as soon as they are found, records are not kept in memory.
+                        MZTabFileParser tabParser = new MZTabFileParser(inFile, new MZTabFileParser.Options()
+                                .setErrorList(new MZTabErrorList(new StreamErrorSink(out))).setBuffered(false));
+                        if (tabParser.getFatalError() != null) {
+                            // errors have been printed during validate, the fatal one is the last.
+                            out.write(MZTabProperties.MZTabExceptionMessage.getBytes());
+                        } else if (tabParser.isErrorOverflow()) {
+                            out.write(MZTabProperties.MZTabErrorOverflowExceptionMessage.getBytes());
+                        } else if (tabParser.getErrorList().isEmpty()) {
+                            out.write(("not errors in " + inFile + " file!" + MZTabConstants.NEW_LINE).getBytes());
+                        }
+                    }
+                } else if (line.hasOption(batchOpt)) {
+                    String[] values = line.getOptionValues(batchOpt);
+                    String filter = null;
+                    int threads = MZTabProperties.BATCH_THREADS;
+                    boolean detail = false;
+                    for (int i = 0; values != null && i < values.length - 1; i++) {
+                        String type = values[i++].trim();
+                        String value = values[i].trim();
+                        if (type.equals(filterOpt)) {
+                            filter = value;
+                        } else if (type.equals(threadsOpt)) {
+                            threads = Integer.parseInt(value);
+                        } else if (type.equals(detailOpt)) {
+                            detail = value.equals("true");
+                        }
                     }
-                }
-                if (inFile == null) {
-                    throw new IllegalArgumentException("Not setting input file!");
-                }
-                if (format == null) {
-                    format = ConvertFile.PRIDE;
-                }
 
-                System.out.println("Begin convert " + inFile.getAbsolutePath() + " which format is " + format + " to mztab file.");
-                MZTabFileConverter converter = new MZTabFileConverter(inFile, format);
-                MZTabFile tabFile = converter.getMZTabFile();
-                MZTabErrorList errorList = new MZTabErrorList();
-                MZTabFileChecker checker = new MZTabFileChecker(errorList);
-                checker.check(tabFile, MZTabProperties.LEVEL);
-                if (errorList.isEmpty()) {
-                    System.out.println("Begin print mztab file.");
-                    tabFile.printMZTab(out);
-                } else {
-                    System.out.println("There exists some errors in mztab file.");
-                    errorList.print(out);
-                }
-            } else if (line.hasOption(mergeOpt)) {
-                String[] values = line.getOptionValues(mergeOpt);
-                List<File> inFileList = new ArrayList<File>();
-                boolean combine = false;
-                for (int i = 0; i < values.length; i++) {
-                    String type = values[i++].trim();
-                    String value = values[i].trim();
-                    if (type.equals(inFileListOpt)) {
-                        String[] fileNames = value.split(",");
-                        for (String fileName : fileNames) {
-                            inFileList.add(new File(inDir, fileName));
+                    List<File> inFileList = MZTabBatchValidator.listFiles(inDir, filter);
+                    MZTabBatchValidator validator = new MZTabBatchValidator(threads, MZTabProperties.LEVEL);
+                    System.out.println("Begin check " + inFileList.size() + " files in " + inDir.getAbsolutePath() +
+                                       " with " + validator.getThreads() + " threads.");
+                    validator.check(inFileList, detail, out);
+                } else if (line.hasOption(convertOpt)) {
+                    String[] values = line.getOptionValues(convertOpt);
+                    File inFile = null;
+                    File mappingFile = null;
+                    String format = null;
+                    for (int i = 0; i < values.length; i++) {
+                        String type = values[i++].trim();
+                        String value = values[i].trim();
+                        if (type.equals(inFileOpt)) {
+                            inFile = new File(inDir, value.trim());
+                        } else if (type.equals(formatOpt)) {
+                            format = value.trim();
+                        } else if (type.equals(mappingOpt)) {
+                            mappingFile = new File(inDir, value.trim());
                         }
-                    } else if (type.equals(combineOpt)) {
-                        combine = value.equals("true");
                     }
-                }
+                    if (inFile == null) {
+                        throw new IllegalArgumentException("Not setting input file!");
+                    }
+                    if (format == null) {
+                        format = ConvertFile.PRIDE;
+                    }
 
-                MZTabFileParser mzParser;
-                MZTabFileMerger merger = new MZTabFileMerger();
-                System.out.println("Begin merge multiple mztab files into one.");
-                for (File inFile : inFileList) {
-                    System.out.println("Begin load mztab file " + inFile.getAbsolutePath());
-                    mzParser = new MZTabFileParser(inFile, out);
-                    merger.addTabFile(mzParser.getMZTabFile());
+                    System.out.println("Begin convert " + inFile.getAbsolutePath() + " which format is " + format + " to mztab file.");
+                    MZTabFileConverter converter;
+                    if (format.equalsIgnoreCase(ConvertFile.DELIMITED)) {
+                        if (mappingFile == null) {
+                            throw new IllegalArgumentException("Not setting column mapping file!");
+                        }
+                        converter = new MZTabFileConverter(inFile, mappingFile);
+                    } else {
+                        converter = new MZTabFileConverter(inFile, format);
+                    }
+                    PhaseProfiler.phase("convert");
+                    // records are printed during convert, mzIdentML and mzQuantML file not be loaded into memory.
+                    if (outFile != null) {
+                        convert(converter, out);
+                        // finish the file before check it.
+                        outClosed = true;
+                        out.close();
+                        checkConverted(outFile);
+                    } else {
+                        // screen can not be read back, convert into a temporary file, check and then print it.
+                        File tmpFile = File.createTempFile("mztab", ".txt");
+                        try {
+                            OutputStream tmpOut = new BufferedOutputStream(new FileOutputStream(tmpFile));
+                            try {
+                                convert(converter, tmpOut);
+                            } finally {
+                                tmpOut.close();
+                            }
+                            checkConverted(tmpFile);
+                            copy(tmpFile, out);
+                        } finally {
+                            tmpFile.delete();
+                        }
+                    }
+                } else if (line.hasOption(mergeOpt)) {
+                    String[] values = line.getOptionValues(mergeOpt);
+                    List<File> inFileList = new ArrayList<File>();
+                    boolean combine = false;
+                    for (int i = 0; i < values.length; i++) {
+                        String type = values[i++].trim();
+                        String value = values[i].trim();
+                        if (type.equals(inFileListOpt)) {
+                            String[] fileNames = value.split(",");
+                            for (String fileName : fileNames) {
+                                inFileList.add(new File(inDir, fileName));
+                            }
+                        } else if (type.equals(combineOpt)) {
+                            combine = value.equals("true");
+                        }
+                    }
+
+                    MZTabFileParser mzParser;
+                    MZTabFileMerger merger = new MZTabFileMerger();
+                    System.out.println("Begin merge multiple mztab files into one.");
+                    for (File inFile : inFileList) {
+                        System.out.println("Begin load mztab file " + inFile.getAbsolutePath());
+                        mzParser = new MZTabFileParser(inFile, out);
+                        merger.addTabFile(mzParser.getMZTabFile());
+                    }
+
+                    merger.setCombine(combine);
+                    System.out.println("Begin merge mztab files.");
+                    MZTabFile tabFile = merger.merge();
+                    MZTabErrorList errorList = new MZTabErrorList();
+                    System.out.println("Begin check merged mztab file.");
+                    MZTabFileChecker checker = new MZTabFileChecker(errorList);
+                    checker.check(tabFile, MZTabProperties.LEVEL);
+                    if (errorList.isEmpty()) {
+                        System.out.println("Begin print merged mztab file.");
+                        MZTabFileWriter.getDefault(out).write(tabFile);
+                    } else {
+                        System.out.println("There exists some errors in merged mztab files.");
+                        errorList.print(out);
+                    }
                 }
 
-                merger.setCombine(combine);
-                System.out.println("Begin merge mztab files.");
-                MZTabFile tabFile = merger.merge();
-                MZTabErrorList errorList = new MZTabErrorList();
-                System.out.println("Begin check merged mztab file.");
-                MZTabFileChecker checker = new MZTabFileChecker(errorList);
-                checker.check(tabFile, MZTabProperties.LEVEL);
-                if (errorList.isEmpty()) {
-                    System.out.println("Begin print merged mztab file.");
-                    tabFile.printMZTab(out);
-                } else {
-                    System.out.println("There exists some errors in merged mztab files.");
-                    errorList.print(out);
+                System.out.println("Finish!");
+                System.out.println();
+                if (profile) {
+                    if (! outClosed) {
+                        out.flush();
+                    }
+                    PhaseProfiler.end();
+                    PhaseProfiler.print(System.out);
+                    System.out.println();
+                }
+            } finally {
+                if (! outClosed) {
+                    out.close();
                 }
             }
+        }
+    }
 
-            System.out.println("Finish!");
-            System.out.println();
-            out.close();
+    private static void convert(MZTabFileConverter converter, OutputStream out) throws IOException {
+        converter.printMZTab(out);
+        if (! converter.getErrorList().isEmpty()) {
+            System.out.println("There exists some errors in source file.");
+            converter.getErrorList().print(System.out);
+        }
+    }
+
+    private static void checkConverted(File tabFile) throws IOException {
+        System.out.println("Begin check mztab file: " + tabFile.getAbsolutePath());
+        MZTabErrorList errorList = new MZTabErrorList(new StreamErrorSink(System.out));
+        new MZTabFileParser(tabFile, new MZTabFileParser.Options().setErrorList(errorList).setBuffered(false));
+        if (! errorList.isEmpty()) {
+            System.out.println("There exists some errors in mztab file.");
+        }
+    }
+
+    private static void copy(File file, OutputStream out) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[64 * 1024];
+            int len;
+            while ((len = in.read(buffer)) != -1) {
+                out.write(buffer, 0, len);
+            }
+        } finally {
+            in.close();
         }
     }
 }
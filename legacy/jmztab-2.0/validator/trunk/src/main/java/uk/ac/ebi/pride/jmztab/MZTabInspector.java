@@ -1,11 +1,16 @@
 package uk.ac.ebi.pride.jmztab;
 
 import uk.ac.ebi.pride.jmztab.gui.MZTabConsolePane;
+import uk.ac.ebi.pride.jmztab.gui.MZTabProgressPane;
+import uk.ac.ebi.pride.jmztab.gui.MZTabTableModel;
 import uk.ac.ebi.pride.jmztab.model.MZTabFile;
+import uk.ac.ebi.pride.jmztab.model.Section;
+import uk.ac.ebi.pride.jmztab.utils.CancellationToken;
 import uk.ac.ebi.pride.jmztab.utils.MZTabFileChecker;
 import uk.ac.ebi.pride.jmztab.utils.MZTabFileConverter;
 import uk.ac.ebi.pride.jmztab.utils.MZTabFileMerger;
 import uk.ac.ebi.pride.jmztab.utils.MZTabFileParser;
+import uk.ac.ebi.pride.jmztab.utils.MZTabLineIndex;
 import uk.ac.ebi.pride.jmztab.utils.errors.MZTabErrorList;
 import uk.ac.ebi.pride.jmztab.utils.errors.MZTabErrorType;
 
@@ -14,7 +19,10 @@ import javax.swing.border.CompoundBorder;
 import javax.swing.border.EmptyBorder;
 import javax.swing.border.TitledBorder;
 import javax.swing.filechooser.FileNameExtensionFilter;
+import javax.swing.table.DefaultTableModel;
 import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.io.File;
@@ -22,6 +30,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.CancellationException;
 
 /**
  * User: Qingwei
@@ -59,6 +68,7 @@ public class MZTabInspector extends JFrame {
         mainPane.addTab("Validate", getValidatePane());
         mainPane.addTab("Convert", getConvertPane());
         mainPane.addTab("Merge", getMergePane());
+        mainPane.addTab("Browse", getBrowsePane());
     }
 
     private JPanel getValidatePane() {
@@ -85,6 +95,9 @@ public class MZTabInspector extends JFrame {
         actionPane.add(btnValidate);
         controlPane.add(actionPane);
 
+        final MZTabProgressPane progressPane = new MZTabProgressPane();
+        controlPane.add(progressPane);
+
         btnValidate.addMouseListener(new MouseAdapter() {
             @Override
             public void mousePressed(MouseEvent e) {
@@ -114,13 +127,24 @@ public class MZTabInspector extends JFrame {
                         MZTabErrorType.Level level = levelLabel.equals("Error") ? MZTabErrorType.Level.Error : MZTabErrorType.Level.Warn;
 
                         File file = new File(fileName);
+                        CancellationToken token = progressPane.start();
                         try {
                             System.out.println("Begin check " + file.getAbsolutePath());
-                            new MZTabFileParser(file, System.out, level);
+                            MZTabErrorList errorList = new MZTabErrorList();
+                            new MZTabFileParser(file, new MZTabFileParser.Options().setErrorList(errorList)
+                                    .setLevel(level).setProgressListener(progressPane).setCancellationToken(token));
+                            errorList.print(System.out, level);
+                            if (errorList.isEmpty()) {
+                                System.out.println("not errors in " + file + " file!");
+                            }
                             System.out.println("Finish!");
                             System.out.println();
+                        } catch (CancellationException ce) {
+                            System.out.println("Cancelled!");
                         } catch (IOException ioe) {
                             ioe.printStackTrace();
+                        } finally {
+                            progressPane.finish();
                         }
 
                         btnValidate.setEnabled(true);
@@ -387,6 +411,9 @@ public class MZTabInspector extends JFrame {
         actionPane.add(btnMerge);
         tarPane.add(actionPane);
 
+        final MZTabProgressPane progressPane = new MZTabProgressPane();
+        tarPane.add(progressPane);
+
         mergePane.add(srcPane, BorderLayout.NORTH);
         mergePane.add(tarPane, BorderLayout.CENTER);
 
@@ -444,7 +471,18 @@ public class MZTabInspector extends JFrame {
                         MZTabFileMerger merger = new MZTabFileMerger();
                         merger.addAllTabFiles(tabFileList);
                         merger.setCombine(combine);
-                        MZTabFile mergedMZTabFile = merger.merge();
+                        merger.setProgressListener(progressPane);
+                        merger.setCancellationToken(progressPane.start());
+                        MZTabFile mergedMZTabFile;
+                        try {
+                            mergedMZTabFile = merger.merge();
+                        } catch (CancellationException ce) {
+                            System.out.println("Cancelled!");
+                            btnMerge.setEnabled(true);
+                            return null;
+                        } finally {
+                            progressPane.finish();
+                        }
                         System.out.println("Begin check new mztab file");
                         MZTabErrorList errorList = new MZTabErrorList();
                         MZTabFileChecker checker = new MZTabFileChecker(errorList);
@@ -478,6 +516,131 @@ public class MZTabInspector extends JFrame {
         return mergePane;
     }
 
+    private MZTabLineIndex browseIndex;
+
+    private JPanel getBrowsePane() {
+        JPanel controlPane = new JPanel(new FlowLayout());
+
+        final JTextField fileNameField = new JTextField();
+        JPanel fileChoosePane = getFileChoosePane(
+                "Choose MZTabFile: ", fileNameField,
+                new FileNameExtensionFilter("mzTab File (*.mztab, *.txt)", "mztab", "txt"), false);
+        controlPane.add(fileChoosePane);
+
+        final ButtonGroup sectionGroup = new ButtonGroup();
+        sectionGroup.add(new JRadioButton("Protein", true));
+        sectionGroup.add(new JRadioButton("Peptide"));
+        sectionGroup.add(new JRadioButton("Small Molecule"));
+        controlPane.add(getParamsPane("Section", sectionGroup));
+
+        JPanel actionPane = getTitledPane("Action");
+        final JButton btnOpen = new JButton("Open");
+        actionPane.add(btnOpen);
+        controlPane.add(actionPane);
+
+        final MZTabProgressPane progressPane = new MZTabProgressPane();
+        controlPane.add(progressPane);
+
+        final JTable table = new JTable();
+        table.setAutoResizeMode(JTable.AUTO_RESIZE_OFF);
+        final JLabel statusLabel = new JLabel(" ");
+
+        JPanel browsePane = new JPanel(new BorderLayout());
+        browsePane.add(controlPane, BorderLayout.NORTH);
+        browsePane.add(new JScrollPane(table), BorderLayout.CENTER);
+        browsePane.add(statusLabel, BorderLayout.SOUTH);
+
+        // switch the table model to the selected section, called on event dispatch thread.
+        final ActionListener showSection = new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if (browseIndex == null) {
+                    return;
+                }
+
+                Section section = Section.Protein;
+                Enumeration<AbstractButton> elements = sectionGroup.getElements();
+                AbstractButton element;
+                while (elements.hasMoreElements()) {
+                    element = elements.nextElement();
+                    if (element.isSelected()) {
+                        if (element.getText().equals("Peptide")) {
+                            section = Section.Peptide;
+                        } else if (element.getText().equals("Small Molecule")) {
+                            section = Section.Small_Molecule;
+                        }
+                        break;
+                    }
+                }
+
+                if (table.getModel() instanceof MZTabTableModel) {
+                    ((MZTabTableModel) table.getModel()).close();
+                }
+                table.setModel(new MZTabTableModel(browseIndex, section));
+                statusLabel.setText(browseIndex.getTabFile().getName() + ": " +
+                        browseIndex.getRowCount(section) + " " + section.getName() + " rows");
+            }
+        };
+        Enumeration<AbstractButton> elements = sectionGroup.getElements();
+        while (elements.hasMoreElements()) {
+            elements.nextElement().addActionListener(showSection);
+        }
+
+        btnOpen.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                final String fileName = fileNameField.getText();
+                if (fileName == null || fileName.trim().length() == 0) {
+                    JOptionPane.showMessageDialog(MZTabInspector.this, "Please choose a MZTabFile!");
+                    return;
+                }
+                btnOpen.setEnabled(false);
+
+                SwingWorker worker = new SwingWorker<MZTabLineIndex, Void>() {
+                    @Override
+                    protected MZTabLineIndex doInBackground() throws Exception {
+                        CancellationToken token = progressPane.start();
+                        try {
+                            return new MZTabLineIndex(new File(fileName), progressPane, token);
+                        } finally {
+                            progressPane.finish();
+                        }
+                    }
+
+                    @Override
+                    protected void done() {
+                        btnOpen.setEnabled(true);
+                        MZTabLineIndex index;
+                        try {
+                            index = get();
+                        } catch (Exception ex) {
+                            System.out.println("Can not open " + fileName + ": " + ex.getCause());
+                            return;
+                        }
+
+                        if (table.getModel() instanceof MZTabTableModel) {
+                            ((MZTabTableModel) table.getModel()).close();
+                            table.setModel(new DefaultTableModel());
+                        }
+                        if (browseIndex != null) {
+                            try {
+                                browseIndex.close();
+                            } catch (IOException ioe) {
+                                ioe.printStackTrace();
+                            }
+                        }
+                        browseIndex = index;
+                        showSection.actionPerformed(null);
+                    }
+                };
+
+                worker.execute();
+            }
+        });
+
+        return browsePane;
+    }
+
     private JPanel getTitledPane(String title) {
         JPanel panel = new JPanel();
 
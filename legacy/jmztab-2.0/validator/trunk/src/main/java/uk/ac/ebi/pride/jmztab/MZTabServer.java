@@ -0,0 +1,721 @@
+package uk.ac.ebi.pride.jmztab;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.log4j.Logger;
+import uk.ac.ebi.pride.jmztab.model.MZTabFile;
+import uk.ac.ebi.pride.jmztab.model.Section;
+import uk.ac.ebi.pride.jmztab.utils.*;
+import uk.ac.ebi.pride.jmztab.utils.convert.ConvertFile;
+import uk.ac.ebi.pride.jmztab.utils.errors.MZTabErrorList;
+import uk.ac.ebi.pride.jmztab.utils.errors.MZTabErrorType;
+import uk.ac.ebi.pride.jmztab.utils.errors.MZTabErrorTypeMap;
+import uk.ac.ebi.pride.jmztab.utils.metrics.JMXMetricsListener;
+import uk.ac.ebi.pride.jmztab.utils.metrics.MZTabMetrics;
+
+import javax.management.JMException;
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URLDecoder;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static uk.ac.ebi.pride.jmztab.model.MZTabConstants.NEW_LINE;
+import static uk.ac.ebi.pride.jmztab.utils.MZTabProperties.*;
+
+/**
+ * A long-running local validation service. The properties, error types and parsers are loaded once,
+ * and validate/convert/merge jobs are submitted through HTTP on loopback address, for example:
+ *
+ * <pre>
+ * POST http://localhost:8765/validate?inFile=/data/a.mztab&level=Warn
+ * POST http://localhost:8765/convert?inFile=/data/a.xml&format=PRIDE&outFile=a.mztab
+ * POST http://localhost:8765/merge?inFiles=/data/a.mztab,/data/b.mztab&combine=true&outFile=c.mztab
+ * GET  http://localhost:8765/status?id=1
+ * GET  http://localhost:8765/result?id=1
+ * POST http://localhost:8765/cancel?id=1
+ * POST http://localhost:8765/shutdown
+ * </pre>
+ *
+ * Parameters can be set in query string, or in form body of POST request. Requests which change the
+ * state of service only accept POST method. Every start generate a random token, which written into
+ * mztab.server.token_file, and every request should carry it in X-MZTab-Token header (or token parameter),
+ * for example: curl -X POST -H "X-MZTab-Token: $(cat mztab-server.token)" "http://localhost:8765/shutdown".
+ * Requests which Host or Origin header is not loopback address are rejected with 403 status, to protect
+ * the service from web pages opened in local browser. The outFile of convert/merge job should be in
+ * mztab.server.out_dir directory, relative outFile is resolved against it.
+ *
+ * Submit request return the job id immediately. Jobs run on a bounded thread pool, if the waiting queue
+ * is full, the request is rejected with 503 status. Status request report the progress and estimated
+ * remaining time of running job, and cancel request stop the job at its next check point. All responses
+ * are plain text. Shutdown request cancel the waiting jobs, and wait at most mztab.server.stop_timeout seconds
+ * for running jobs, after that the running jobs are cancelled too.
+ *
+ * User: Qingwei
+ * Date: 08/05/13
+ */
+public class MZTabServer {
+    private static Logger logger = Logger.getLogger(MZTabServer.class);
+
+    public enum Status {
+        Queued,
+        Running,
+        Finished,
+        Failed,
+        Cancelled
+    }
+
+    /**
+     * A validate/convert/merge job. The messages printed by job are kept in memory, and can be
+     * queried by result request.
+     */
+    private abstract class Job implements Runnable, ProgressListener {
+        private int id;
+        private String type;
+        private volatile Status status = Status.Queued;
+        private long submitTime = System.currentTimeMillis();
+        private volatile long startTime;
+        private volatile long endTime;
+        private volatile String message;
+
+        protected CancellationToken token = new CancellationToken();
+        private volatile long consumed = -1;
+        private volatile long total = -1;
+        private volatile Section section;
+        private volatile long rows;
+
+        protected ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        protected Job(String type) {
+            this.id = jobId.incrementAndGet();
+            this.type = type;
+        }
+
+        protected abstract String execute() throws Exception;
+
+        @Override
+        public void run() {
+            startTime = System.currentTimeMillis();
+            if (token.isCancelled()) {
+                status = Status.Cancelled;
+                endTime = startTime;
+                return;
+            }
+
+            status = Status.Running;
+            try {
+                message = execute();
+                status = Status.Finished;
+            } catch (CancellationException e) {
+                status = Status.Cancelled;
+            } catch (Exception e) {
+                logger.error("Job " + id + " failed.", e);
+                message = e.getClass().getSimpleName() + ": " + e.getMessage();
+                status = Status.Failed;
+            }
+            endTime = System.currentTimeMillis();
+        }
+
+        private String getResult() {
+            return out.toString();
+        }
+
+        @Override
+        public void progress(long consumed, long total, Section section, long rows) {
+            this.consumed = consumed;
+            this.total = total;
+            this.section = section;
+            this.rows = rows;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+
+            sb.append("id=").append(id).append(NEW_LINE);
+            sb.append("type=").append(type).append(NEW_LINE);
+            sb.append("status=").append(status).append(NEW_LINE);
+            if (startTime > 0) {
+                sb.append("wait(ms)=").append(startTime - submitTime).append(NEW_LINE);
+            }
+            if (endTime > 0) {
+                sb.append("time(ms)=").append(endTime - startTime).append(NEW_LINE);
+            } else if (status == Status.Running && consumed >= 0) {
+                sb.append("progress=").append(consumed);
+                if (total > 0) {
+                    sb.append("/").append(total);
+                }
+                sb.append(NEW_LINE);
+                if (section != null) {
+                    sb.append("section=").append(section.getName()).append(NEW_LINE);
+                }
+                sb.append("rows=").append(rows).append(NEW_LINE);
+                if (total > 0 && consumed > 0 && consumed < total) {
+                    long elapsed = System.currentTimeMillis() - startTime;
+                    sb.append("eta(ms)=").append(elapsed * (total - consumed) / consumed).append(NEW_LINE);
+                }
+            }
+            if (message != null) {
+                sb.append("message=").append(message).append(NEW_LINE);
+            }
+
+            return sb.toString();
+        }
+    }
+
+    private class ValidateJob extends Job {
+        private File inFile;
+        private MZTabErrorType.Level level;
+
+        private ValidateJob(File inFile, MZTabErrorType.Level level) {
+            super("validate");
+            this.inFile = inFile;
+            this.level = level;
+        }
+
+        @Override
+        protected String execute() throws Exception {
+            MZTabErrorList errorList = new MZTabErrorList();
+            new MZTabFileParser(inFile, new MZTabFileParser.Options().setErrorList(errorList).setLevel(level)
+                    .setBuffered(false).setProgressListener(this).setCancellationToken(token));
+            errorList.print(out, level);
+            return (errorList.isEmpty(level) ? "valid" : "invalid") + ", " + errorList.size() + " errors/warns";
+        }
+    }
+
+    private class ConvertJob extends Job {
+        private File inFile;
+        private String format;
+        private File mappingFile;
+        private File outFile;
+
+        private ConvertJob(File inFile, String format, File mappingFile, File outFile) {
+            super("convert");
+            this.inFile = inFile;
+            this.format = format;
+            this.mappingFile = mappingFile;
+            this.outFile = outFile;
+        }
+
+        @Override
+        protected String execute() throws Exception {
+            MZTabFileConverter converter;
+            if (format.equalsIgnoreCase(ConvertFile.DELIMITED)) {
+                converter = new MZTabFileConverter(inFile, mappingFile);
+            } else {
+                converter = new MZTabFileConverter(inFile, format);
+            }
+            converter.setProgressListener(this);
+            converter.setCancellationToken(token);
+
+            // records are printed during convert, and the output is validated by streaming.
+            OutputStream tabOut = new BufferedOutputStream(new FileOutputStream(outFile));
+            try {
+                converter.printMZTab(tabOut);
+            } finally {
+                tabOut.close();
+            }
+            if (! converter.getErrorList().isEmpty()) {
+                converter.getErrorList().print(out);
+                return "invalid source, " + converter.getErrorList().size() + " errors/warns, print into "
+                        + outFile.getAbsolutePath();
+            }
+
+            MZTabErrorList errorList = new MZTabErrorList();
+            new MZTabFileParser(outFile, new MZTabFileParser.Options().setErrorList(errorList).setBuffered(false)
+                    .setProgressListener(this).setCancellationToken(token));
+            if (! errorList.isEmpty()) {
+                errorList.print(out);
+                return "invalid, " + errorList.size() + " errors/warns, print into " + outFile.getAbsolutePath();
+            }
+            return "print into " + outFile.getAbsolutePath();
+        }
+    }
+
+    private class MergeJob extends Job {
+        private List<File> inFileList;
+        private boolean combine;
+        private File outFile;
+
+        private MergeJob(List<File> inFileList, boolean combine, File outFile) {
+            super("merge");
+            this.inFileList = inFileList;
+            this.combine = combine;
+            this.outFile = outFile;
+        }
+
+        @Override
+        protected String execute() throws Exception {
+            MZTabFileMerger merger = new MZTabFileMerger();
+            MZTabFileParser parser;
+            for (File inFile : inFileList) {
+                token.check();
+                parser = new MZTabFileParser(inFile, out);
+                if (parser.getMZTabFile() == null) {
+                    return "invalid input file " + inFile;
+                }
+                merger.addTabFile(parser.getMZTabFile());
+            }
+            merger.setCombine(combine);
+            merger.setProgressListener(this);
+            merger.setCancellationToken(token);
+
+            return checkAndPrint(merger.merge(), outFile, out);
+        }
+    }
+
+    /**
+     * Check mzTab file, if no errors, print it into outFile; otherwise print error messages.
+     */
+    private String checkAndPrint(MZTabFile tabFile, File outFile, OutputStream messageOut) throws IOException {
+        MZTabErrorList errorList = new MZTabErrorList();
+        MZTabFileChecker checker = new MZTabFileChecker(errorList);
+        checker.check(tabFile, LEVEL);
+        if (! errorList.isEmpty()) {
+            errorList.print(messageOut);
+            return "invalid, " + errorList.size() + " errors/warns";
+        }
+
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(outFile));
+        try {
+            MZTabFileWriter.getDefault(out).write(tabFile);
+        } finally {
+            out.close();
+        }
+        return "print into " + outFile.getAbsolutePath();
+    }
+
+    public final static String TOKEN_HEADER = "X-MZTab-Token";
+
+    private int port;
+    private File outDir;
+    private String accessToken;
+    private HttpServer server;
+    private ThreadPoolExecutor executor;
+    private AtomicInteger jobId = new AtomicInteger();
+    private Map<Integer, Job> jobMap = Collections.synchronizedMap(new LRUCache<Integer, Job>(SERVER_MAX_JOBS));
+    private JMXMetricsListener metricsListener;
+
+    public MZTabServer(int port) {
+        this.port = port;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * @return the token generated by {@link #start()}, every request should carry it.
+     */
+    public String getToken() {
+        return accessToken;
+    }
+
+    /**
+     * Generate a new random token, and write it into token file which only readable by owner.
+     */
+    private void createToken() throws IOException {
+        byte[] bytes = new byte[16];
+        new SecureRandom().nextBytes(bytes);
+        StringBuilder sb = new StringBuilder();
+        for (byte b : bytes) {
+            sb.append(String.format("%02x", b));
+        }
+        accessToken = sb.toString();
+
+        if (SERVER_TOKEN_FILE == null || SERVER_TOKEN_FILE.trim().length() == 0) {
+            return;
+        }
+        File tokenFile = new File(SERVER_TOKEN_FILE.trim());
+        tokenFile.delete();
+        OutputStream out = new FileOutputStream(tokenFile);
+        try {
+            tokenFile.setReadable(false, false);
+            tokenFile.setWritable(false, false);
+            tokenFile.setReadable(true, true);
+            tokenFile.setWritable(true, true);
+            out.write(accessToken.getBytes());
+        } finally {
+            out.close();
+        }
+        logger.info("mzTab server token written into " + tokenFile.getAbsolutePath());
+    }
+
+    /**
+     * Load properties and error types, and start listening.
+     */
+    public void start() throws IOException {
+        // warm up static definitions before accept jobs.
+        new MZTabErrorTypeMap();
+
+        outDir = new File(SERVER_OUT_DIR == null || SERVER_OUT_DIR.trim().length() == 0 ? "." : SERVER_OUT_DIR.trim())
+                .getCanonicalFile();
+        if (! outDir.isDirectory()) {
+            throw new IllegalStateException("Server output directory " + outDir + " not exists!");
+        }
+        createToken();
+
+        if (METRICS_JMX) {
+            metricsListener = new JMXMetricsListener();
+            try {
+                metricsListener.register();
+            } catch (JMException e) {
+                throw new IllegalStateException("Can not register metrics MBeans: " + e.getMessage(), e);
+            }
+            MZTabMetrics.addListener(metricsListener);
+        }
+
+        int threads = SERVER_THREADS < 1 ? Runtime.getRuntime().availableProcessors() : SERVER_THREADS;
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(SERVER_QUEUE_SIZE));
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getByName(null), port), 0);
+        server.createContext("/validate", new SubmitHandler() {
+            @Override
+            protected Job createJob(Map<String, String> params) {
+                MZTabErrorType.Level level = params.containsKey("level") ?
+                        MZTabErrorType.findLevel(params.get("level")) : LEVEL;
+                return new ValidateJob(getFile(params, "inFile"), level == null ? LEVEL : level);
+            }
+        });
+        server.createContext("/convert", new SubmitHandler() {
+            @Override
+            protected Job createJob(Map<String, String> params) {
+                String format = params.containsKey("format") ? params.get("format") : ConvertFile.PRIDE;
+                File mappingFile = params.containsKey("mapping") ? getFile(params, "mapping") : null;
+                return new ConvertJob(getFile(params, "inFile"), format, mappingFile, getOutFile(params, "outFile"));
+            }
+        });
+        server.createContext("/merge", new SubmitHandler() {
+            @Override
+            protected Job createJob(Map<String, String> params) {
+                String inFiles = params.get("inFiles");
+                if (inFiles == null) {
+                    throw new IllegalArgumentException("Not setting inFiles!");
+                }
+                List<File> inFileList = new ArrayList<File>();
+                for (String fileName : inFiles.split(",")) {
+                    inFileList.add(new File(fileName.trim()));
+                }
+                return new MergeJob(inFileList, "true".equals(params.get("combine")), getOutFile(params, "outFile"));
+            }
+        });
+        server.createContext("/status", new QueryHandler(false) {
+            @Override
+            protected String query(Job job) {
+                return job.toString();
+            }
+        });
+        server.createContext("/result", new QueryHandler(false) {
+            @Override
+            protected String query(Job job) {
+                return job.toString() + NEW_LINE + job.getResult();
+            }
+        });
+        server.createContext("/cancel", new QueryHandler(true) {
+            @Override
+            protected String query(Job job) {
+                job.token.cancel();
+                // remove the job from waiting queue, if not started yet.
+                if (executor.remove(job)) {
+                    job.run();
+                }
+                return job.toString();
+            }
+        });
+        server.createContext("/shutdown", new SecureHandler(true) {
+            @Override
+            protected void handle(HttpExchange exchange, Map<String, String> params) throws IOException {
+                send(exchange, 200, "shutdown" + NEW_LINE);
+                new Thread() {
+                    @Override
+                    public void run() {
+                        MZTabServer.this.stop();
+                    }
+                }.start();
+            }
+        });
+        server.setExecutor(Executors.newSingleThreadExecutor());
+        server.start();
+
+        logger.info("mzTab server listening on localhost:" + port + " with " + threads + " job threads.");
+    }
+
+    /**
+     * Stop accept requests, cancel waiting jobs, and wait at most mztab.server.stop_timeout seconds for running
+     * jobs to finish. The jobs which still running after that are cancelled at their next check point.
+     */
+    public void stop() {
+        server.stop(0);
+        executor.shutdown();
+
+        // waiting jobs never start, mark them cancelled in the status map.
+        List<Runnable> queueList = new ArrayList<Runnable>();
+        executor.getQueue().drainTo(queueList);
+        for (Runnable runnable : queueList) {
+            Job job = (Job) runnable;
+            job.token.cancel();
+            job.run();
+        }
+        if (! queueList.isEmpty()) {
+            logger.info(queueList.size() + " waiting jobs cancelled.");
+        }
+
+        try {
+            if (! executor.awaitTermination(SERVER_STOP_TIMEOUT, TimeUnit.SECONDS)) {
+                logger.warn("Running jobs not finished in " + SERVER_STOP_TIMEOUT + " seconds, cancel them.");
+                synchronized (jobMap) {
+                    for (Job job : jobMap.values()) {
+                        job.token.cancel();
+                    }
+                }
+                executor.shutdownNow();
+                executor.awaitTermination(SERVER_STOP_TIMEOUT, TimeUnit.SECONDS);
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        ((ExecutorService) server.getExecutor()).shutdown();
+
+        if (metricsListener != null) {
+            MZTabMetrics.removeListener(metricsListener);
+            try {
+                metricsListener.unregister();
+            } catch (JMException e) {
+                logger.warn("Can not unregister metrics MBeans.", e);
+            }
+            metricsListener = null;
+        }
+
+        if (SERVER_TOKEN_FILE != null && SERVER_TOKEN_FILE.trim().length() > 0) {
+            new File(SERVER_TOKEN_FILE.trim()).delete();
+        }
+
+        logger.info("mzTab server stopped.");
+    }
+
+    private static Map<String, String> parseQuery(String query) throws UnsupportedEncodingException {
+        Map<String, String> params = new HashMap<String, String>();
+        parseQuery(query, params);
+        return params;
+    }
+
+    private static void parseQuery(String query, Map<String, String> params) throws UnsupportedEncodingException {
+        if (query == null || query.length() == 0) {
+            return;
+        }
+
+        int index;
+        for (String pair : query.split("&")) {
+            index = pair.indexOf('=');
+            if (index == -1) {
+                params.put(URLDecoder.decode(pair, "UTF-8"), "");
+            } else {
+                params.put(URLDecoder.decode(pair.substring(0, index), "UTF-8"),
+                        URLDecoder.decode(pair.substring(index + 1), "UTF-8"));
+            }
+        }
+    }
+
+    /**
+     * Parse query string, and the form body of POST request.
+     */
+    private static Map<String, String> parseParams(HttpExchange exchange) throws IOException {
+        Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+        if (! "POST".equals(exchange.getRequestMethod())) {
+            return params;
+        }
+
+        InputStream in = exchange.getRequestBody();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int len;
+        while ((len = in.read(buffer)) != -1) {
+            body.write(buffer, 0, len);
+        }
+        in.close();
+        parseQuery(body.toString("UTF-8").trim(), params);
+
+        return params;
+    }
+
+    /**
+     * @return true if host is loopback host name or address, port is ignored.
+     */
+    private static boolean isLocalHost(String host) {
+        if (host == null) {
+            return false;
+        }
+        host = host.trim().toLowerCase();
+        if (host.startsWith("[")) {
+            int index = host.indexOf(']');
+            host = index == -1 ? host : host.substring(0, index + 1);
+        } else if (host.indexOf(':') != -1) {
+            host = host.substring(0, host.indexOf(':'));
+        }
+
+        return host.equals("localhost") || host.equals("127.0.0.1") || host.equals("[::1]");
+    }
+
+    private static boolean isLocalOrigin(String origin) {
+        try {
+            URI uri = new URI(origin.trim());
+            return uri.getScheme() != null && uri.getHost() != null && isLocalHost(uri.getHost());
+        } catch (URISyntaxException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Resolve output file against server output directory, and reject the file which not in it.
+     */
+    private File getOutFile(Map<String, String> params, String name) {
+        File file = getFile(params, name);
+        if (! file.isAbsolute()) {
+            file = new File(outDir, file.getPath());
+        }
+
+        try {
+            file = file.getCanonicalFile();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid " + name + " " + file + ": " + e.getMessage());
+        }
+        String prefix = outDir.getPath().endsWith(File.separator) ? outDir.getPath() : outDir.getPath() + File.separator;
+        if (! file.getPath().startsWith(prefix)) {
+            throw new IllegalArgumentException(name + " should be in server output directory " + outDir + "!");
+        }
+
+        return file;
+    }
+
+    private static File getFile(Map<String, String> params, String name) {
+        String fileName = params.get(name);
+        if (fileName == null || fileName.trim().length() == 0) {
+            throw new IllegalArgumentException("Not setting " + name + "!");
+        }
+
+        return new File(fileName.trim());
+    }
+
+    private static void send(HttpExchange exchange, int code, String text) throws IOException {
+        byte[] bytes = text.getBytes();
+        exchange.getResponseHeaders().set("Content-Type", "text/plain");
+        exchange.sendResponseHeaders(code, bytes.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(bytes);
+        out.close();
+    }
+
+    /**
+     * Check the Host/Origin header, request method and token before handle the request.
+     */
+    private abstract class SecureHandler implements HttpHandler {
+        private boolean postOnly;
+
+        /**
+         * @param postOnly if true, only accept POST request, which used to change the state of service.
+         */
+        protected SecureHandler(boolean postOnly) {
+            this.postOnly = postOnly;
+        }
+
+        protected abstract void handle(HttpExchange exchange, Map<String, String> params) throws IOException;
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            String origin = exchange.getRequestHeaders().getFirst("Origin");
+            if (! isLocalHost(exchange.getRequestHeaders().getFirst("Host")) ||
+                    (origin != null && ! isLocalOrigin(origin))) {
+                send(exchange, 403, "Only accept local request." + NEW_LINE);
+                return;
+            }
+
+            String method = exchange.getRequestMethod();
+            if (postOnly ? ! "POST".equals(method) : ! ("GET".equals(method) || "POST".equals(method))) {
+                exchange.getResponseHeaders().set("Allow", postOnly ? "POST" : "GET, POST");
+                send(exchange, 405, "Method " + method + " not allowed." + NEW_LINE);
+                return;
+            }
+
+            Map<String, String> params = parseParams(exchange);
+            String requestToken = exchange.getRequestHeaders().getFirst(TOKEN_HEADER);
+            if (requestToken == null) {
+                requestToken = params.get("token");
+            }
+            if (requestToken == null || ! MessageDigest.isEqual(accessToken.getBytes(), requestToken.trim().getBytes())) {
+                send(exchange, 403, "Invalid token." + NEW_LINE);
+                return;
+            }
+
+            handle(exchange, params);
+        }
+    }
+
+    private abstract class SubmitHandler extends SecureHandler {
+        protected SubmitHandler() {
+            super(true);
+        }
+
+        protected abstract Job createJob(Map<String, String> params);
+
+        @Override
+        protected void handle(HttpExchange exchange, Map<String, String> params) throws IOException {
+            Job job;
+            try {
+                job = createJob(params);
+            } catch (IllegalArgumentException e) {
+                send(exchange, 400, e.getMessage() + NEW_LINE);
+                return;
+            }
+
+            try {
+                jobMap.put(job.id, job);
+                executor.execute(job);
+            } catch (RejectedExecutionException e) {
+                jobMap.remove(job.id);
+                send(exchange, 503, "Too many jobs waiting, please try later." + NEW_LINE);
+                return;
+            }
+
+            send(exchange, 200, "id=" + job.id + NEW_LINE);
+        }
+    }
+
+    private abstract class QueryHandler extends SecureHandler {
+        protected QueryHandler(boolean postOnly) {
+            super(postOnly);
+        }
+
+        protected abstract String query(Job job);
+
+        @Override
+        protected void handle(HttpExchange exchange, Map<String, String> params) throws IOException {
+            Job job;
+            try {
+                job = jobMap.get(Integer.parseInt(params.get("id")));
+            } catch (NumberFormatException e) {
+                send(exchange, 400, "Invalid job id " + params.get("id") + NEW_LINE);
+                return;
+            }
+
+            if (job == null) {
+                send(exchange, 404, "Not found job " + params.get("id") + NEW_LINE);
+            } else {
+                send(exchange, 200, query(job));
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : SERVER_PORT;
+        new MZTabServer(port).start();
+    }
+}
@@ -1,69 +1,198 @@
 package uk.ac.ebi.pride.jmztab.gui;
 
 import javax.swing.*;
+import javax.swing.text.BadLocationException;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.io.*;
 
+import static uk.ac.ebi.pride.jmztab.utils.MZTabProperties.CONSOLE_CAPACITY;
+import static uk.ac.ebi.pride.jmztab.utils.MZTabProperties.CONSOLE_FRAME_RATE;
+import static uk.ac.ebi.pride.jmztab.utils.MZTabProperties.CONSOLE_SPILL_FILE;
+
 /**
+ * Console which display System.out and System.err. Printed lines are kept in a bounded ring buffer, and a
+ * swing timer move them into text area at a fixed frame rate, thus the printing threads never touch the
+ * event dispatch thread. Only the last mztab.console.capacity lines are displayed, the older lines are
+ * dropped. If spill file is set, the full log is written into the file too, and flushed every frame.
+ *
  * User: Qingwei
  * Date: 23/03/13
  */
 public class MZTabConsolePane extends JScrollPane {
     private JTextArea text;
+    private int capacity;
 
-    private class Console implements Runnable {
-        JTextArea displayPane;
-        BufferedReader reader;
+    // ring buffer of the lines which not displayed yet.
+    private final String[] ring;
+    private int head = 0;
+    private int count = 0;
+    // true if text area should be replaced, after clear or ring buffer overflow.
+    private boolean cleared = false;
 
-        private Console(JTextArea displayPane, PipedOutputStream pos) {
-            this.displayPane = displayPane;
-            try {
-                PipedInputStream pis = new PipedInputStream(pos);
-                reader = new BufferedReader(new InputStreamReader(pis));
-            } catch (IOException e) {
-                e.printStackTrace();
+    private OutputStream spillOut;
+
+    /**
+     * Split the printed bytes into lines, and put them into ring buffer.
+     */
+    private class ConsoleOutputStream extends OutputStream {
+        private ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+        @Override
+        public synchronized void write(int b) throws IOException {
+            if (b == '\n') {
+                addLine(line.toString());
+                line.reset();
+            } else if (b != '\r') {
+                line.write(b);
             }
+            spill(b);
         }
 
-        public void run() {
-            try {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    displayPane.append(line + "\n");
-                    displayPane.setCaretPosition(displayPane.getDocument().getLength());
+        @Override
+        public synchronized void write(byte[] b, int off, int len) throws IOException {
+            int start = off;
+            for (int i = off; i < off + len; i++) {
+                if (b[i] == '\n') {
+                    line.write(b, start, i - start);
+                    addLine(trimReturn(line.toString()));
+                    line.reset();
+                    start = i + 1;
                 }
-            } catch (IOException e) {
-                e.printStackTrace();
             }
+            line.write(b, start, off + len - start);
+            spill(b, off, len);
+        }
+
+        private String trimReturn(String s) {
+            return s.endsWith("\r") ? s.substring(0, s.length() - 1) : s;
         }
     }
 
     public MZTabConsolePane() {
         this.text = new JTextArea();
         text.setEditable(false);
+        this.capacity = CONSOLE_CAPACITY;
+        this.ring = new String[capacity];
 
         setViewportView(text);
-        redirectOut(text);
-        redirectErr(text);
+        if (CONSOLE_SPILL_FILE != null && CONSOLE_SPILL_FILE.trim().length() != 0) {
+            try {
+                setSpillFile(new File(CONSOLE_SPILL_FILE.trim()));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        PrintStream console = new PrintStream(new ConsoleOutputStream(), true);
+        System.setOut(console);
+        System.setErr(console);
+
+        Timer timer = new Timer(1000 / Math.max(1, CONSOLE_FRAME_RATE), new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                refresh();
+            }
+        });
+        timer.start();
     }
 
-    public void clearContent() {
-        this.text.setText("");
+    /**
+     * Write the full log into file, besides display in the console. If file is null, stop spill.
+     */
+    public void setSpillFile(File file) throws IOException {
+        OutputStream out = file == null ? null : new BufferedOutputStream(new FileOutputStream(file, true));
+        OutputStream old;
+        synchronized (ring) {
+            old = spillOut;
+            spillOut = out;
+        }
+        if (old != null) {
+            old.close();
+        }
     }
 
-    private void redirectOut(JTextArea text) {
-        PipedOutputStream pos = new PipedOutputStream();
-        System.setOut(new PrintStream(pos, true));
+    public void clearContent() {
+        synchronized (ring) {
+            head = 0;
+            count = 0;
+            cleared = true;
+        }
+    }
 
-        Console console = new Console(text, pos);
-        new Thread(console).start();
+    private void addLine(String line) {
+        synchronized (ring) {
+            ring[(head + count) % capacity] = line;
+            if (count < capacity) {
+                count++;
+            } else {
+                // drop the oldest line, all lines in text area are out of date too.
+                head = (head + 1) % capacity;
+                cleared = true;
+            }
+        }
     }
 
-    private void redirectErr(JTextArea text) {
-        PipedOutputStream pos = new PipedOutputStream();
-        System.setErr(new PrintStream(pos, true));
+    private void spill(int b) throws IOException {
+        synchronized (ring) {
+            if (spillOut != null) {
+                spillOut.write(b);
+            }
+        }
+    }
 
-        Console console = new Console(text, pos);
-        new Thread(console).start();
+    private void spill(byte[] b, int off, int len) throws IOException {
+        synchronized (ring) {
+            if (spillOut != null) {
+                spillOut.write(b, off, len);
+            }
+        }
     }
 
+    /**
+     * Called on the event dispatch thread, move the pending lines into text area, and remove the oldest
+     * lines which exceed capacity.
+     */
+    private void refresh() {
+        StringBuilder sb = new StringBuilder();
+        boolean clear;
+        synchronized (ring) {
+            if (spillOut != null) {
+                try {
+                    spillOut.flush();
+                } catch (IOException e) {
+                    spillOut = null;
+                }
+            }
+
+            clear = cleared;
+            cleared = false;
+            if (count == 0 && ! clear) {
+                return;
+            }
+            for (int i = 0; i < count; i++) {
+                sb.append(ring[(head + i) % capacity]).append("\n");
+                ring[(head + i) % capacity] = null;
+            }
+            head = 0;
+            count = 0;
+        }
+
+        if (clear) {
+            text.setText(sb.toString());
+        } else {
+            text.append(sb.toString());
+        }
+
+        // the last line of text area is empty, after the line terminator.
+        int excess = text.getLineCount() - 1 - capacity;
+        if (excess > 0) {
+            try {
+                text.replaceRange(null, 0, text.getLineStartOffset(excess));
+            } catch (BadLocationException e) {
+                text.setText("");
+            }
+        }
+        text.setCaretPosition(text.getDocument().getLength());
+    }
 }
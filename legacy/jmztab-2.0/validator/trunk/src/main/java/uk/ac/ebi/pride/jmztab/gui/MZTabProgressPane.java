@@ -0,0 +1,121 @@
+package uk.ac.ebi.pride.jmztab.gui;
+
+import uk.ac.ebi.pride.jmztab.model.Section;
+import uk.ac.ebi.pride.jmztab.utils.CancellationToken;
+import uk.ac.ebi.pride.jmztab.utils.ProgressListener;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+
+/**
+ * Progress bar with a cancel button. Call {@link #start()} before a task begin, pass this pane as
+ * {@link ProgressListener} and the returned token into parser/converter/merger, and call {@link #finish()}
+ * at the end. Progress is reported on the working thread and passed to the event dispatch thread.
+ *
+ * User: Qingwei
+ * Date: 19/05/13
+ */
+public class MZTabProgressPane extends JPanel implements ProgressListener {
+    private JProgressBar progressBar;
+    private JButton btnCancel;
+
+    private volatile CancellationToken token;
+    private long startTime;
+
+    public MZTabProgressPane() {
+        setLayout(new FlowLayout());
+
+        progressBar = new JProgressBar(0, 100);
+        progressBar.setStringPainted(true);
+        progressBar.setString("");
+        progressBar.setPreferredSize(new Dimension(400, 20));
+        add(progressBar);
+
+        btnCancel = new JButton("Cancel");
+        btnCancel.setEnabled(false);
+        add(btnCancel);
+
+        btnCancel.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                CancellationToken current = token;
+                if (current != null) {
+                    current.cancel();
+                    btnCancel.setEnabled(false);
+                }
+            }
+        });
+    }
+
+    /**
+     * Reset progress bar and enable cancel button.
+     *
+     * @return the token of new task.
+     */
+    public CancellationToken start() {
+        token = new CancellationToken();
+        startTime = System.currentTimeMillis();
+        SwingUtilities.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                progressBar.setValue(0);
+                progressBar.setString("");
+                btnCancel.setEnabled(true);
+            }
+        });
+        return token;
+    }
+
+    public void finish() {
+        final boolean cancelled = token != null && token.isCancelled();
+        token = null;
+        SwingUtilities.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                progressBar.setIndeterminate(false);
+                if (cancelled) {
+                    progressBar.setString("Cancelled");
+                } else {
+                    progressBar.setValue(100);
+                    progressBar.setString("Finish");
+                }
+                btnCancel.setEnabled(false);
+            }
+        });
+    }
+
+    @Override
+    public void progress(long consumed, long total, Section section, long rows) {
+        StringBuilder sb = new StringBuilder();
+        final int percent;
+        if (total > 0 && consumed >= 0) {
+            percent = (int) Math.min(100, consumed * 100 / total);
+            sb.append(percent).append("%");
+        } else {
+            percent = -1;
+        }
+        if (section != null) {
+            sb.append("  ").append(section.getName());
+        }
+        sb.append("  ").append(rows).append(" rows");
+        if (percent > 0 && percent < 100) {
+            long elapsed = System.currentTimeMillis() - startTime;
+            long remain = elapsed * (total - consumed) / consumed;
+            sb.append("  ETA ").append(remain / 1000).append("s");
+        }
+
+        final String text = sb.toString();
+        SwingUtilities.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                progressBar.setIndeterminate(percent < 0);
+                if (percent >= 0) {
+                    progressBar.setValue(percent);
+                }
+                progressBar.setString(text);
+            }
+        });
+    }
+}
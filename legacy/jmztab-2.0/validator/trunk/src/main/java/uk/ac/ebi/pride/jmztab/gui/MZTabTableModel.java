@@ -0,0 +1,175 @@
+package uk.ac.ebi.pride.jmztab.gui;
+
+import uk.ac.ebi.pride.jmztab.model.Section;
+import uk.ac.ebi.pride.jmztab.utils.LRUCache;
+import uk.ac.ebi.pride.jmztab.utils.MZTabLineIndex;
+import uk.ac.ebi.pride.jmztab.utils.parser.RecordFilter;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import static uk.ac.ebi.pride.jmztab.utils.MZTabProperties.BROWSE_CACHE_BLOCKS;
+import static uk.ac.ebi.pride.jmztab.utils.MZTabProperties.BROWSE_PREFETCH_BLOCKS;
+
+/**
+ * Lazy table model of protein/peptide/small_molecule section, backed by {@link MZTabLineIndex}. Only the
+ * blocks of rows which table asked for are read and split, on a background thread. Until the block is
+ * loaded, its cells are empty, and after that the rows are repainted. The neighbour blocks are prefetched,
+ * and the last mztab.browse.cache_blocks blocks are kept in a LRU cache.
+ *
+ * If a block failed to read, a failure marker is cached for it, and its cells keep empty. The block is not
+ * read again until the marker is evicted from the cache.
+ *
+ * The cache and the loading set are only accessed on the event dispatch thread.
+ *
+ * User: Qingwei
+ * Date: 21/05/13
+ */
+public class MZTabTableModel extends AbstractTableModel {
+    // cached for the block which failed to read.
+    private final static String[][] FAILED = new String[0][];
+
+    private MZTabLineIndex index;
+    private Section section;
+    private String[] columnNames;
+    private int rowCount;
+
+    private LRUCache<Integer, String[][]> cache = new LRUCache<Integer, String[][]>(BROWSE_CACHE_BLOCKS);
+    private Set<Integer> loadingSet = new HashSet<Integer>();
+    // the last block asked by table, load task skip the block which has been scrolled away.
+    private volatile int currentBlock = 0;
+
+    private ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "mzTab table loader");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /**
+     * @param section Protein, Peptide or Small_Molecule.
+     */
+    public MZTabTableModel(MZTabLineIndex index, Section section) {
+        this.index = index;
+        this.section = section;
+        this.rowCount = index.getRowCount(section);
+
+        String header = index.getHeader(section);
+        if (header == null) {
+            columnNames = new String[0];
+        } else {
+            // skip the line prefix.
+            String[] items = RecordFilter.split(header);
+            columnNames = new String[items.length - 1];
+            System.arraycopy(items, 1, columnNames, 0, columnNames.length);
+        }
+    }
+
+    public Section getSection() {
+        return section;
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columnNames.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columnNames[column];
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        int block = rowIndex / MZTabLineIndex.BLOCK_SIZE;
+        String[][] rows = cache.get(block);
+        if (columnIndex == 0) {
+            currentBlock = block;
+            for (int i = 1; i <= BROWSE_PREFETCH_BLOCKS; i++) {
+                prefetch(block + i);
+                prefetch(block - i);
+            }
+        }
+
+        if (rows == null) {
+            load(block);
+            return null;
+        }
+        if (rows == FAILED) {
+            return null;
+        }
+
+        String[] items = rows[rowIndex % MZTabLineIndex.BLOCK_SIZE];
+        // skip the line prefix.
+        return columnIndex + 1 < items.length ? items[columnIndex + 1] : null;
+    }
+
+    private void prefetch(int block) {
+        if (block >= 0 && block < index.getBlockCount(section) && ! cache.containsKey(block)) {
+            load(block);
+        }
+    }
+
+    private void load(final int block) {
+        if (! loadingSet.add(block)) {
+            return;
+        }
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                String[][] rows = null;
+                boolean failed = false;
+                if (Math.abs(block - currentBlock) <= BROWSE_CACHE_BLOCKS / 2) {
+                    try {
+                        List<String> lineList = index.readBlock(section, block);
+                        rows = new String[lineList.size()][];
+                        for (int i = 0; i < rows.length; i++) {
+                            rows[i] = RecordFilter.split(lineList.get(i));
+                        }
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                        failed = true;
+                    }
+                }
+
+                final String[][] loadedRows = rows;
+                final boolean loadFailed = failed;
+                SwingUtilities.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        loadingSet.remove(block);
+                        if (loadFailed) {
+                            cache.put(block, FAILED);
+                        } else if (loadedRows != null) {
+                            cache.put(block, loadedRows);
+                            int first = block * MZTabLineIndex.BLOCK_SIZE;
+                            fireTableRowsUpdated(first, first + loadedRows.length - 1);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Stop loading, the index is not closed, and can be shared by the models of other sections.
+     */
+    public void close() {
+        executor.shutdownNow();
+    }
+}
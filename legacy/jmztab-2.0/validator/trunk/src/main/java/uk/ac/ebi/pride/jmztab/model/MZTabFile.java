@@ -1,10 +1,13 @@
 package uk.ac.ebi.pride.jmztab.model;
 
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.*;
 
 import static uk.ac.ebi.pride.jmztab.model.MZTabConstants.NEW_LINE;
+import static uk.ac.ebi.pride.jmztab.model.MZTabConstants.TAB;
 
 /**
  * User: qingwei
@@ -25,12 +28,127 @@ public class MZTabFile {
     private SortedMap<Integer, Peptide> peptides = new TreeMap<Integer, Peptide>();
     private SortedMap<Integer, SmallMolecule> smallMolecules = new TreeMap<Integer, SmallMolecule>();
 
+    /**
+     * Secondary indexes used by lookup methods, which built at the first lookup.
+     * @see RecordIndex
+     */
+    private RecordIndex<Protein> proteinAccessionIndex = new RecordIndex<Protein>(proteins) {
+        @Override
+        protected String getKey(Protein record) {
+            return record.getAccession();
+        }
+    };
+    private RecordIndex<Protein> proteinUnitIndex = new RecordIndex<Protein>(proteins) {
+        @Override
+        protected String getKey(Protein record) {
+            return record.getUnitId();
+        }
+    };
+    private RecordIndex<Protein> proteinAccessionUnitIndex = new RecordIndex<Protein>(proteins) {
+        @Override
+        protected String getKey(Protein record) {
+            return record.getAccession() + TAB + record.getUnitId();
+        }
+    };
+    private RecordIndex<Peptide> peptideAccessionIndex = new RecordIndex<Peptide>(peptides) {
+        @Override
+        protected String getKey(Peptide record) {
+            return record.getAccession();
+        }
+    };
+    private RecordIndex<Peptide> peptideUnitIndex = new RecordIndex<Peptide>(peptides) {
+        @Override
+        protected String getKey(Peptide record) {
+            return record.getUnitId();
+        }
+    };
+    private RecordIndex<Peptide> peptideAccessionUnitIndex = new RecordIndex<Peptide>(peptides) {
+        @Override
+        protected String getKey(Peptide record) {
+            return record.getAccession() + TAB + record.getUnitId();
+        }
+    };
+    private RecordIndex<Peptide> peptideSequenceIndex = new RecordIndex<Peptide>(peptides) {
+        @Override
+        protected String getKey(Peptide record) {
+            return record.getSequence();
+        }
+    };
+    private RecordIndex<SmallMolecule> smallMoleculeUnitIndex = new RecordIndex<SmallMolecule>(smallMolecules) {
+        @Override
+        protected String getKey(SmallMolecule record) {
+            return record.getUnitId();
+        }
+    };
+    private RecordIndex<SmallMolecule> smallMoleculeIdentifierIndex = new RecordIndex<SmallMolecule>(smallMolecules) {
+        @Override
+        protected String getKey(SmallMolecule record) {
+            return record.getIdentifier() == null ? null : record.getIdentifier().toString();
+        }
+    };
+
     public MZTabFile() {
         this(new Metadata());
     }
 
+    /**
+     * Records fire key change after they have been added, the indexes are out of date.
+     */
+    private PropertyChangeListener keyListener = new PropertyChangeListener() {
+        @Override
+        public void propertyChange(PropertyChangeEvent evt) {
+            clearIndexes();
+        }
+    };
+
     public MZTabFile(Metadata metadata) {
         this.metadata = metadata;
+
+        // records unit_id changed by metadata, the indexes are out of date.
+        this.metadata.addPropertyChangeListener(OperationCenter.UNIT_ID, new PropertyChangeListener() {
+            @Override
+            public void propertyChange(PropertyChangeEvent evt) {
+                clearIndexes();
+            }
+        });
+    }
+
+    /**
+     * Drop all secondary indexes, they will be rebuilt at next lookup. The key setters of added records
+     * call this method automatically, only call it after modify the identifier list of small molecule
+     * in place, for example through {@link SmallMolecule#getIdentifier()}.
+     */
+    public void clearIndexes() {
+        proteinAccessionIndex.clear();
+        proteinUnitIndex.clear();
+        proteinAccessionUnitIndex.clear();
+        peptideAccessionIndex.clear();
+        peptideUnitIndex.clear();
+        peptideAccessionUnitIndex.clear();
+        peptideSequenceIndex.clear();
+        smallMoleculeUnitIndex.clear();
+        smallMoleculeIdentifierIndex.clear();
+    }
+
+    private void indexProtein(Integer lineNumber, Protein protein) {
+        protein.addKeyListener(keyListener);
+        proteinAccessionIndex.add(lineNumber, protein);
+        proteinUnitIndex.add(lineNumber, protein);
+        proteinAccessionUnitIndex.add(lineNumber, protein);
+    }
+
+    private void indexPeptide(Integer lineNumber, Peptide peptide) {
+        peptide.addKeyListener(keyListener);
+        peptideAccessionIndex.add(lineNumber, peptide);
+        peptideUnitIndex.add(lineNumber, peptide);
+        peptideAccessionUnitIndex.add(lineNumber, peptide);
+        peptideSequenceIndex.add(lineNumber, peptide);
+    }
+
+    private void indexSmallMolecule(Integer lineNumber, SmallMolecule smallMolecule) {
+        smallMolecule.addKeyListener(keyListener);
+        smallMoleculeUnitIndex.add(lineNumber, smallMolecule);
+        smallMoleculeIdentifierIndex.add(lineNumber, smallMolecule);
     }
 
     public Collection<Comment> getComments() {
@@ -100,6 +218,7 @@ public class MZTabFile {
         this.proteins.put(lineNumber, protein);
         this.metadata.addPropertyChangeListener(OperationCenter.UNIT_ID, protein);
         this.proteinColumnFactory.addPropertyChangeListener(OperationCenter.POSITION, protein);
+        indexProtein(lineNumber, protein);
     }
 
     public void addProtein(Integer lineNumber, Protein protein) {
@@ -114,6 +233,7 @@ public class MZTabFile {
         this.proteins.put(lineNumber, protein);
         this.metadata.addPropertyChangeListener(OperationCenter.UNIT_ID, protein);
         this.proteinColumnFactory.addPropertyChangeListener(OperationCenter.POSITION, protein);
+        indexProtein(lineNumber, protein);
     }
 
     public void addPeptide(Peptide peptide) {
@@ -121,10 +241,11 @@ public class MZTabFile {
             throw new NullPointerException("Peptide record is null!");
         }
 
-        Integer position = this.peptides.isEmpty() ? 1 : this.peptides.lastKey() + 1;
-        this.peptides.put(position, peptide);
+        Integer lineNumber = this.peptides.isEmpty() ? 1 : this.peptides.lastKey() + 1;
+        this.peptides.put(lineNumber, peptide);
         this.metadata.addPropertyChangeListener(OperationCenter.UNIT_ID, peptide);
         this.peptideColumnFactory.addPropertyChangeListener(OperationCenter.POSITION, peptide);
+        indexPeptide(lineNumber, peptide);
     }
 
     public void addPeptide(Integer lineNumber, Peptide peptide) {
@@ -139,6 +260,7 @@ public class MZTabFile {
         this.peptides.put(lineNumber, peptide);
         this.metadata.addPropertyChangeListener(OperationCenter.UNIT_ID, peptide);
         this.peptideColumnFactory.addPropertyChangeListener(OperationCenter.POSITION, peptide);
+        indexPeptide(lineNumber, peptide);
     }
 
     public void addSmallMolecule(SmallMolecule smallMolecule) {
@@ -146,10 +268,11 @@ public class MZTabFile {
             throw new NullPointerException("Small Molecule record is null!");
         }
 
-        Integer position = this.smallMolecules.isEmpty() ? 1 : this.smallMolecules.lastKey() + 1;
-        this.smallMolecules.put(position, smallMolecule);
+        Integer lineNumber = this.smallMolecules.isEmpty() ? 1 : this.smallMolecules.lastKey() + 1;
+        this.smallMolecules.put(lineNumber, smallMolecule);
         metadata.addPropertyChangeListener(OperationCenter.UNIT_ID, smallMolecule);
         this.smallMoleculeColumnFactory.addPropertyChangeListener(OperationCenter.POSITION, smallMolecule);
+        indexSmallMolecule(lineNumber, smallMolecule);
     }
 
     public void addSmallMolecule(Integer lineNumber, SmallMolecule smallMolecule) {
@@ -164,6 +287,7 @@ public class MZTabFile {
         this.smallMolecules.put(lineNumber, smallMolecule);
         this.metadata.addPropertyChangeListener(OperationCenter.UNIT_ID, smallMolecule);
         this.smallMoleculeColumnFactory.addPropertyChangeListener(OperationCenter.POSITION, smallMolecule);
+        indexSmallMolecule(lineNumber, smallMolecule);
     }
 
     public void addComment(Integer lineNumber, Comment comment) {
@@ -266,15 +390,7 @@ public class MZTabFile {
      * @return A collection of proteins identified by the given accession.
      */
     public Collection<Protein> getProtein(String accession) {
-        Collection<Protein> result = new ArrayList<Protein>();
-
-        for (Protein record : proteins.values()) {
-            if (record.getAccession().equals(accession)) {
-                result.add(record);
-            }
-        }
-
-        return Collections.unmodifiableCollection(result);
+        return Collections.unmodifiableCollection(new ArrayList<Protein>(proteinAccessionIndex.get(accession)));
     }
 
     /**
@@ -286,13 +402,8 @@ public class MZTabFile {
      * @return A Protein object or null in case the protein does not exist.
      */
     public Protein getProtein(String accession, String unitId) {
-        for (Protein record : proteins.values()) {
-            if (record.getAccession().equals(accession) && record.getUnitId().equals(unitId)) {
-                return record;
-            }
-        }
-
-        return null;
+        List<Protein> result = proteinAccessionUnitIndex.get(accession + TAB + unitId);
+        return result.isEmpty() ? null : result.get(0);
     }
 
     /**
@@ -304,15 +415,7 @@ public class MZTabFile {
      * the unit does not exist.
      */
     public Collection<Protein> getProteins(String unitId) {
-        Collection<Protein> result = new ArrayList<Protein>();
-
-        for (Protein record : proteins.values()) {
-            if (record.getUnitId().equals(unitId)) {
-                result.add(record);
-            }
-        }
-
-        return Collections.unmodifiableCollection(result);
+        return Collections.unmodifiableCollection(new ArrayList<Protein>(proteinUnitIndex.get(unitId)));
     }
 
     /**
@@ -348,15 +451,7 @@ public class MZTabFile {
      * in the peptide table.
      */
     public Collection<Peptide> getProteinPeptides(String accession, String unitId) {
-        Collection<Peptide> result = new ArrayList<Peptide>();
-
-        for (Peptide record : peptides.values()) {
-            if (record.getAccession().equals(accession) && record.getUnitId().equals(unitId)) {
-                result.add(record);
-            }
-        }
-
-        return Collections.unmodifiableCollection(result);
+        return Collections.unmodifiableCollection(new ArrayList<Peptide>(peptideAccessionUnitIndex.get(accession + TAB + unitId)));
     }
 
     /**
@@ -368,15 +463,7 @@ public class MZTabFile {
      * referenced in the peptide table.
      */
     public Collection<Peptide> getProteinPeptides(String accession) {
-        Collection<Peptide> result = new ArrayList<Peptide>();
-
-        for (Peptide record : peptides.values()) {
-            if (record.getAccession().equals(accession)) {
-                result.add(record);
-            }
-        }
-
-        return Collections.unmodifiableCollection(result);
+        return Collections.unmodifiableCollection(new ArrayList<Peptide>(peptideAccessionIndex.get(accession)));
     }
 
     /**
@@ -387,15 +474,7 @@ public class MZTabFile {
      * contain any peptides.
      */
     public Collection<Peptide> getPeptides(String unitId) {
-        Collection<Peptide> result = new ArrayList<Peptide>();
-
-        for (Peptide record : peptides.values()) {
-            if (record.getUnitId().equals(unitId)) {
-                result.add(record);
-            }
-        }
-
-        return Collections.unmodifiableCollection(result);
+        return Collections.unmodifiableCollection(new ArrayList<Peptide>(peptideUnitIndex.get(unitId)));
     }
 
     /**
@@ -419,15 +498,7 @@ public class MZTabFile {
      * present in the peptide table.
      */
     public Collection<Peptide> getPeptidesBySequence(String sequence) {
-        Collection<Peptide> result = new ArrayList<Peptide>();
-
-        for (Peptide record : peptides.values()) {
-            if (record.getSequence().equals(sequence)) {
-                result.add(record);
-            }
-        }
-
-        return Collections.unmodifiableCollection(result);
+        return Collections.unmodifiableCollection(new ArrayList<Peptide>(peptideSequenceIndex.get(sequence)));
     }
 
     /**
@@ -451,15 +522,7 @@ public class MZTabFile {
      * small molecules identified for the passed unit.
      */
     public Collection<SmallMolecule> getSmallMolecules(String unitId) {
-        Collection<SmallMolecule> result = new ArrayList<SmallMolecule>();
-
-        for (SmallMolecule record : smallMolecules.values()) {
-            if (record.getUnitId().equals(unitId)) {
-                result.add(record);
-            }
-        }
-
-        return Collections.unmodifiableCollection(result);
+        return Collections.unmodifiableCollection(new ArrayList<SmallMolecule>(smallMoleculeUnitIndex.get(unitId)));
     }
 
     /**
@@ -583,15 +646,7 @@ public class MZTabFile {
      * not used in the SmallMolecule section.
      */
     public Collection<SmallMolecule> getSmallMoleculesByIdentifier(String identifier) {
-        Collection<SmallMolecule> result = new ArrayList<SmallMolecule>();
-
-        for (SmallMolecule record : smallMolecules.values()) {
-            if (record.getIdentifier().toString().equals(identifier)) {
-                result.add(record);
-            }
-        }
-
-        return Collections.unmodifiableCollection(result);
+        return Collections.unmodifiableCollection(new ArrayList<SmallMolecule>(smallMoleculeIdentifierIndex.get(identifier)));
     }
 
     public void printMZTab(OutputStream out) throws IOException {
@@ -1,7 +1,9 @@
 package uk.ac.ebi.pride.jmztab.model;
 
+import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.TreeMap;
@@ -25,6 +27,12 @@ public abstract class MZTabRecord implements PropertyChangeListener {
 
     private TreeMap<Integer, Object> record = new TreeMap<Integer, Object>();
 
+    /**
+     * Notified when key value changed, for example the secondary indexes of {@link MZTabFile}. Null if
+     * the record not added into any file.
+     */
+    private List<PropertyChangeListener> keyListeners;
+
     public MZTabRecord(MZTabColumnFactory factory) {
         if (factory == null) {
             throw new NullPointerException("Not create MZTabColumn by using MZTabColumnFactory yet.");
@@ -52,16 +60,45 @@ public abstract class MZTabRecord implements PropertyChangeListener {
     }
 
     public boolean addValue(int position, Object value) {
-        if (value == null) {
-            record.put(position, value);
-            return true;
+        if (value != null && ! isMatch(position, value.getClass())) {
+            return false;
         }
 
-        if (isMatch(position, value.getClass())) {
-            record.put(position, value);
-            return true;
-        } else {
-            return false;
+        Object oldValue = record.put(position, value);
+        if (keyListeners != null && isKey(position) && (oldValue == null ? value != null : ! oldValue.equals(value))) {
+            fireKeyChange(oldValue, value);
+        }
+        return true;
+    }
+
+    /**
+     * @return whether the column value is a lookup key of record, which is indexed by {@link MZTabFile}.
+     */
+    protected boolean isKey(int position) {
+        return false;
+    }
+
+    void addKeyListener(PropertyChangeListener listener) {
+        if (keyListeners == null) {
+            // most records only belong to one file.
+            keyListeners = new ArrayList<PropertyChangeListener>(1);
+        }
+        if (! keyListeners.contains(listener)) {
+            keyListeners.add(listener);
+        }
+    }
+
+    /**
+     * Notify key listeners, used when key value modified in place, for example add an identifier.
+     */
+    protected void fireKeyChange(Object oldValue, Object newValue) {
+        if (keyListeners == null) {
+            return;
+        }
+
+        PropertyChangeEvent evt = new PropertyChangeEvent(this, OperationCenter.KEY, oldValue, newValue);
+        for (PropertyChangeListener listener : keyListeners) {
+            listener.propertyChange(evt);
         }
     }
 
@@ -22,6 +22,9 @@ public class OperationCenter {
     // column position change
     public static final String POSITION = "position";
 
+    // record key value change, for example accession, unit_id, sequence or identifier.
+    public static final String KEY = "key";
+
     private PropertyChangeSupport changeSupport;
 
     public void addPropertyChangeListener(String propertyName, PropertyChangeListener listener) {
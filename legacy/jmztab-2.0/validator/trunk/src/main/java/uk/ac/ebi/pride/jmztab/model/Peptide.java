@@ -21,6 +21,14 @@ public class Peptide extends MZTabRecord {
         super(factory);
     }
 
+    /**
+     * sequence, accession and unit_id.
+     */
+    @Override
+    protected boolean isKey(int position) {
+        return position >= 1 && position <= 3;
+    }
+
     @Override
     public void propertyChange(PropertyChangeEvent evt) {
         if (evt.getPropertyName().equals(OperationCenter.UNIT_ID)) {
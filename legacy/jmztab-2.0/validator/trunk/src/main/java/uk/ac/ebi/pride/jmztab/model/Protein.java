@@ -33,6 +33,14 @@ public class Protein extends MZTabRecord {
         super(factory);
     }
 
+    /**
+     * accession and unit_id.
+     */
+    @Override
+    protected boolean isKey(int position) {
+        return position == 1 || position == 2;
+    }
+
     public String getAccession() {
         return getString(1);
     }
@@ -0,0 +1,83 @@
+package uk.ac.ebi.pride.jmztab.model;
+
+import java.util.*;
+
+/**
+ * Secondary hash index on a data table: key --> records, the records keep the line number order.
+ * The index is built at the first lookup, after that records which append to the end of table are
+ * added into index incrementally. If a record inserted before the last indexed line, the index is dropped
+ * and rebuilt on next lookup. {@link MZTabFile} listens the key changes of its records (reference
+ * {@link OperationCenter#KEY}), and drops its indexes when a key value of an added record modified.
+ *
+ * User: Qingwei
+ * Date: 13/05/13
+ */
+abstract class RecordIndex<T extends MZTabRecord> {
+    private SortedMap<Integer, T> records;
+
+    private Map<String, List<T>> index;
+    private Integer lastLineNumber;
+
+    RecordIndex(SortedMap<Integer, T> records) {
+        this.records = records;
+    }
+
+    /**
+     * @return the index key of the record. Composite key should join its values by
+     * {@link MZTabConstants#TAB}, which never exists in a cell value.
+     */
+    protected abstract String getKey(T record);
+
+    private void build() {
+        index = new HashMap<String, List<T>>();
+        for (T record : records.values()) {
+            put(record);
+        }
+        lastLineNumber = records.isEmpty() ? null : records.lastKey();
+    }
+
+    private void put(T record) {
+        String key = getKey(record);
+        List<T> list = index.get(key);
+        if (list == null) {
+            // most keys only map to one record.
+            list = new ArrayList<T>(1);
+            index.put(key, list);
+        }
+        list.add(record);
+    }
+
+    /**
+     * @return records which have the key, ordered by line number. Empty list if not found.
+     */
+    List<T> get(String key) {
+        if (index == null) {
+            build();
+        }
+
+        List<T> list = index.get(key);
+        return list == null ? Collections.<T>emptyList() : Collections.unmodifiableList(list);
+    }
+
+    /**
+     * Called after record has been put into the table.
+     */
+    void add(Integer lineNumber, T record) {
+        if (index == null) {
+            return;
+        }
+
+        if (lastLineNumber == null || lineNumber > lastLineNumber) {
+            put(record);
+            lastLineNumber = lineNumber;
+        } else {
+            // keep line number order.
+            clear();
+        }
+    }
+
+    void clear() {
+        index = null;
+        lastLineNumber = null;
+    }
+}
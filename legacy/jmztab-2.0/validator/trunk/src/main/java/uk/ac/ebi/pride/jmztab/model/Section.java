@@ -63,6 +63,23 @@ public enum Section {
         return this == Protein || this == Peptide || this == Small_Molecule;
     }
 
+    /**
+     * @return the data section of header section, for example: Protein_Header --> Protein. Other sections
+     * return itself.
+     */
+    public static Section toDataSection(Section section) {
+        switch (section) {
+            case Protein_Header:
+                return Protein;
+            case Peptide_Header:
+                return Peptide;
+            case Small_Molecule_Header:
+                return Small_Molecule;
+            default:
+                return section;
+        }
+    }
+
     public static Section findSection(String name) {
         if (name == null) {
             return null;
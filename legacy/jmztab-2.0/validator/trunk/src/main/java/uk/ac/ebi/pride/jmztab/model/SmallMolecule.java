@@ -33,6 +33,14 @@ public class SmallMolecule extends MZTabRecord {
         super(factory);
     }
 
+    /**
+     * identifier and unit_id.
+     */
+    @Override
+    protected boolean isKey(int position) {
+        return position == 1 || position == 2;
+    }
+
     @SuppressWarnings("unchecked")
     public SplitList<String> getIdentifier() {
         return getSplitList(1);
@@ -48,7 +56,12 @@ public class SmallMolecule extends MZTabRecord {
             identifierList = new SplitList<String>(BAR);
             setIdentifier(identifierList);
         }
-        return identifierList.add(identifier);
+        if (! identifierList.add(identifier)) {
+            return false;
+        }
+        // the identifier list is modified in place.
+        fireKeyChange(null, identifierList);
+        return true;
     }
 
     public void setIdentifier(SplitList<String> identifier) {
@@ -0,0 +1,32 @@
+package uk.ac.ebi.pride.jmztab.utils;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Cooperative cancellation of parse, convert and merge. Another thread call {@link #cancel()}, and the
+ * working thread stop at the next check point, every mztab.progress.interval lines/records, by throwing
+ * {@link CancellationException}.
+ *
+ * User: Qingwei
+ * Date: 19/05/13
+ */
+public class CancellationToken {
+    private volatile boolean cancelled = false;
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @throws CancellationException if cancelled.
+     */
+    public void check() {
+        if (cancelled) {
+            throw new CancellationException("Operation has been cancelled.");
+        }
+    }
+}
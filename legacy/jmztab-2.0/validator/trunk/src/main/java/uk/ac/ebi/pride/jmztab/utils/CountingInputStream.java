@@ -0,0 +1,54 @@
+package uk.ac.ebi.pride.jmztab.utils;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Count the bytes read from the underlying stream, used to report progress. The count can be read
+ * from other threads.
+ *
+ * User: Qingwei
+ * Date: 19/05/13
+ */
+public class CountingInputStream extends FilterInputStream {
+    private volatile long count = 0;
+
+    public CountingInputStream(InputStream in) {
+        super(in);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b != -1) {
+            count++;
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int size = super.read(b, off, len);
+        if (size > 0) {
+            count += size;
+        }
+        return size;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long size = super.skip(n);
+        count += size;
+        return size;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+}
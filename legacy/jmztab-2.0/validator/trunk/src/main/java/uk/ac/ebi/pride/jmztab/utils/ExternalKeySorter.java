@@ -0,0 +1,282 @@
+package uk.ac.ebi.pride.jmztab.utils;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Sort (key, line number) entries which can not be kept in memory. Entries are buffered until run size
+ * reached, and then sorted and written into a temporary run file. {@link #open()} merge all sorted runs,
+ * and return entries ordered by key hash codes (reference {@link HashKeySet}) and line number.
+ *
+ * Key parts are stored in run files too, thus the caller can compare the keys exactly after merge.
+ *
+ * User: Qingwei
+ * Date: 11/05/13
+ */
+public class ExternalKeySorter {
+    /**
+     * One (key, line number) entry. The parts maybe null, which means only hash codes of key are known.
+     */
+    public static class Entry implements Comparable<Entry> {
+        private long primary;
+        private long secondary;
+        private int lineNumber;
+        private String[] parts;
+
+        private Entry(long primary, long secondary, int lineNumber, String[] parts) {
+            this.primary = primary;
+            this.secondary = secondary;
+            this.lineNumber = lineNumber;
+            this.parts = parts;
+        }
+
+        public int getLineNumber() {
+            return lineNumber;
+        }
+
+        public String[] getParts() {
+            return parts;
+        }
+
+        public String getPart(int index) {
+            return parts == null ? null : parts[index];
+        }
+
+        /**
+         * @return true if both entries have the same hash codes.
+         */
+        public boolean sameHash(Entry o) {
+            return o != null && primary == o.primary && secondary == o.secondary;
+        }
+
+        /**
+         * @return true if both entries have the same key. If the key parts of one entry not known,
+         * compare the hash codes only.
+         */
+        public boolean sameKey(Entry o) {
+            if (! sameHash(o)) {
+                return false;
+            }
+            return parts == null || o.parts == null || Arrays.equals(parts, o.parts);
+        }
+
+        /**
+         * Compare the hash codes only.
+         */
+        public int compareHash(Entry o) {
+            if (primary != o.primary) {
+                return primary < o.primary ? -1 : 1;
+            }
+            if (secondary != o.secondary) {
+                return secondary < o.secondary ? -1 : 1;
+            }
+            return 0;
+        }
+
+        @Override
+        public int compareTo(Entry o) {
+            int result = compareHash(o);
+            if (result != 0) {
+                return result;
+            }
+            if (lineNumber != o.lineNumber) {
+                return lineNumber < o.lineNumber ? -1 : 1;
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * Read the merged entries in order.
+     */
+    public class Reader {
+        private PriorityQueue<RunCursor> queue = new PriorityQueue<RunCursor>();
+
+        private Reader() throws IOException {
+            for (File runFile : runFiles) {
+                RunCursor cursor = new RunCursor(runFile);
+                if (cursor.next()) {
+                    queue.add(cursor);
+                } else {
+                    cursor.close();
+                }
+            }
+        }
+
+        /**
+         * @return next entry, or null if all entries have been read.
+         */
+        public Entry next() throws IOException {
+            RunCursor cursor = queue.poll();
+            if (cursor == null) {
+                return null;
+            }
+
+            Entry entry = cursor.current;
+            if (cursor.next()) {
+                queue.add(cursor);
+            } else {
+                cursor.close();
+            }
+            return entry;
+        }
+
+        public void close() throws IOException {
+            for (RunCursor cursor : queue) {
+                cursor.close();
+            }
+            queue.clear();
+        }
+    }
+
+    private class RunCursor implements Comparable<RunCursor> {
+        private DataInputStream in;
+        private int remain;
+        private Entry current;
+
+        private RunCursor(File runFile) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(runFile), 64 * 1024));
+            remain = in.readInt();
+        }
+
+        private boolean next() throws IOException {
+            if (remain == 0) {
+                current = null;
+                return false;
+            }
+
+            remain--;
+            current = readEntry(in);
+            return true;
+        }
+
+        private void close() throws IOException {
+            in.close();
+        }
+
+        @Override
+        public int compareTo(RunCursor o) {
+            return current.compareTo(o.current);
+        }
+    }
+
+    private int partCount;
+    private int runSize;
+    private List<Entry> buffer;
+    private List<File> runFiles = new ArrayList<File>();
+    private long size = 0;
+
+    /**
+     * @param partCount the number of parts of every key.
+     * @param runSize the max number of entries buffered in memory.
+     */
+    public ExternalKeySorter(int partCount, int runSize) {
+        if (runSize < 1) {
+            throw new IllegalArgumentException("Run size should great than 0!");
+        }
+
+        this.partCount = partCount;
+        this.runSize = runSize;
+        this.buffer = new ArrayList<Entry>(Math.min(runSize, 1024 * 1024));
+    }
+
+    public void add(int lineNumber, String... parts) throws IOException {
+        if (parts.length != partCount) {
+            throw new IllegalArgumentException("Key should have " + partCount + " parts!");
+        }
+
+        add(new Entry(HashKeySet.primaryHash(parts), HashKeySet.secondaryHash(parts), lineNumber, parts));
+    }
+
+    /**
+     * Add a key which only hash codes known.
+     */
+    void add(long primary, long secondary, int lineNumber) throws IOException {
+        add(new Entry(primary, secondary, lineNumber, null));
+    }
+
+    private void add(Entry entry) throws IOException {
+        buffer.add(entry);
+        size++;
+        if (buffer.size() >= runSize) {
+            spill();
+        }
+    }
+
+    private void spill() throws IOException {
+        if (buffer.isEmpty()) {
+            return;
+        }
+
+        Collections.sort(buffer);
+        // not use deleteOnExit, which keep every file name until JVM exit. Owner should call delete().
+        File runFile = File.createTempFile("mztab", ".run");
+        runFiles.add(runFile);
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(runFile), 64 * 1024));
+        try {
+            out.writeInt(buffer.size());
+            for (Entry entry : buffer) {
+                writeEntry(out, entry);
+            }
+        } finally {
+            out.close();
+        }
+        buffer.clear();
+    }
+
+    private void writeEntry(DataOutputStream out, Entry entry) throws IOException {
+        out.writeLong(entry.primary);
+        out.writeLong(entry.secondary);
+        out.writeInt(entry.lineNumber);
+        out.writeBoolean(entry.parts != null);
+        if (entry.parts != null) {
+            for (String part : entry.parts) {
+                out.writeBoolean(part != null);
+                if (part != null) {
+                    out.writeUTF(part);
+                }
+            }
+        }
+    }
+
+    private Entry readEntry(DataInputStream in) throws IOException {
+        long primary = in.readLong();
+        long secondary = in.readLong();
+        int lineNumber = in.readInt();
+        String[] parts = null;
+        if (in.readBoolean()) {
+            parts = new String[partCount];
+            for (int i = 0; i < partCount; i++) {
+                parts[i] = in.readBoolean() ? in.readUTF() : null;
+            }
+        }
+        return new Entry(primary, secondary, lineNumber, parts);
+    }
+
+    /**
+     * @return the number of entries added.
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Flush the buffered entries, and open a reader to merge all runs. No more entries can be added after open.
+     */
+    public Reader open() throws IOException {
+        spill();
+        return new Reader();
+    }
+
+    /**
+     * Delete all temporary run files.
+     */
+    public void delete() {
+        buffer.clear();
+        for (File runFile : runFiles) {
+            runFile.delete();
+        }
+        runFiles.clear();
+    }
+}
@@ -0,0 +1,197 @@
+package uk.ac.ebi.pride.jmztab.utils;
+
+import java.io.IOException;
+
+/**
+ * A compact set of string keys, which only keep the 64-bit hash code of every key in a primitive
+ * open-addressing table (linear probing), instead of String objects. A key can be composed by multiple
+ * parts, for example unit_id and accession, which are hashed without concatenate a new String.
+ *
+ * The table slot is located by the primary 64-bit hash. If two different keys have the same primary hash,
+ * they are distinguished by a second, independent 64-bit hash which stored in a parallel array. Thus one
+ * key cost 16 bytes, and a false match need collision of both hash functions.
+ *
+ * User: Qingwei
+ * Date: 10/05/13
+ */
+public class HashKeySet {
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final long GOLDEN = 0x9e3779b97f4a7c15L;
+
+    // separate the parts of key, to make sure ("ab", "c") is different from ("a", "bc").
+    private static final char SEPARATOR = '\u0000';
+
+    private long[] primaryKeys;
+    private long[] secondaryKeys;
+    private int size = 0;
+    private int threshold;
+
+    public HashKeySet() {
+        this(1024);
+    }
+
+    public HashKeySet(int expectedSize) {
+        int capacity = 16;
+        while (capacity < expectedSize * 2 && capacity < (1 << 30)) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        primaryKeys = new long[capacity];
+        secondaryKeys = new long[capacity];
+        threshold = capacity / 2;
+    }
+
+    /**
+     * FNV-1a hash on the UTF-16 chars of key parts.
+     */
+    static long primaryHash(String... parts) {
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < parts.length; i++) {
+            if (i > 0) {
+                hash = (hash ^ SEPARATOR) * FNV_PRIME;
+            }
+            String part = parts[i] == null ? "" : parts[i];
+            for (int j = 0; j < part.length(); j++) {
+                hash = (hash ^ part.charAt(j)) * FNV_PRIME;
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Multiplicative hash on the UTF-16 chars of key parts, mixed by MurmurHash3 64-bit finalizer.
+     */
+    static long secondaryHash(String... parts) {
+        long hash = GOLDEN;
+        for (int i = 0; i < parts.length; i++) {
+            if (i > 0) {
+                hash = (hash + SEPARATOR + 1) * GOLDEN;
+            }
+            String part = parts[i] == null ? "" : parts[i];
+            for (int j = 0; j < part.length(); j++) {
+                hash = (hash + part.charAt(j) + 1) * GOLDEN;
+                hash ^= hash >>> 29;
+            }
+        }
+
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private int indexOf(long primary) {
+        // spread the high bits, the table capacity is power of 2.
+        return (int) (primary ^ (primary >>> 32)) & (primaryKeys.length - 1);
+    }
+
+    /**
+     * @return true if the key not exists in set before.
+     */
+    public boolean add(String... parts) {
+        return add(primaryHash(parts), secondaryHash(parts));
+    }
+
+    /**
+     * Add a key by its hash codes, the codes should be generated by {@link #primaryHash(String...)} and
+     * {@link #secondaryHash(String...)}.
+     * @return true if the key not exists in set before.
+     */
+    boolean add(long primary, long secondary) {
+        if (primary == 0 && secondary == 0) {
+            // (0, 0) used as empty slot marker.
+            secondary = 1;
+        }
+
+        int mask = primaryKeys.length - 1;
+        int index = indexOf(primary);
+        while (primaryKeys[index] != 0 || secondaryKeys[index] != 0) {
+            if (primaryKeys[index] == primary && secondaryKeys[index] == secondary) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+
+        primaryKeys[index] = primary;
+        secondaryKeys[index] = secondary;
+        if (++size > threshold) {
+            rehash();
+        }
+        return true;
+    }
+
+    public boolean contains(String... parts) {
+        return contains(primaryHash(parts), secondaryHash(parts));
+    }
+
+    boolean contains(long primary, long secondary) {
+        if (primary == 0 && secondary == 0) {
+            secondary = 1;
+        }
+
+        int mask = primaryKeys.length - 1;
+        int index = indexOf(primary);
+        while (primaryKeys[index] != 0 || secondaryKeys[index] != 0) {
+            if (primaryKeys[index] == primary && secondaryKeys[index] == secondary) {
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    private void rehash() {
+        long[] oldPrimaryKeys = primaryKeys;
+        long[] oldSecondaryKeys = secondaryKeys;
+        if (oldPrimaryKeys.length >= (1 << 30)) {
+            throw new IllegalStateException("HashKeySet is full, size is " + size);
+        }
+
+        allocate(oldPrimaryKeys.length * 2);
+        int mask = primaryKeys.length - 1;
+        int index;
+        for (int i = 0; i < oldPrimaryKeys.length; i++) {
+            if (oldPrimaryKeys[i] != 0 || oldSecondaryKeys[i] != 0) {
+                index = indexOf(oldPrimaryKeys[i]);
+                while (primaryKeys[index] != 0 || secondaryKeys[index] != 0) {
+                    index = (index + 1) & mask;
+                }
+                primaryKeys[index] = oldPrimaryKeys[i];
+                secondaryKeys[index] = oldSecondaryKeys[i];
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the approximate heap bytes used by hash tables.
+     */
+    public long getMemorySize() {
+        return (long) primaryKeys.length * 16;
+    }
+
+    /**
+     * Copy all keys into sorter with the given line number, only hash codes are copied.
+     */
+    void copyTo(ExternalKeySorter sorter, int lineNumber) throws IOException {
+        for (int i = 0; i < primaryKeys.length; i++) {
+            if (primaryKeys[i] != 0 || secondaryKeys[i] != 0) {
+                sorter.add(primaryKeys[i], secondaryKeys[i], lineNumber);
+            }
+        }
+    }
+
+    public void clear() {
+        allocate(16);
+        size = 0;
+    }
+}
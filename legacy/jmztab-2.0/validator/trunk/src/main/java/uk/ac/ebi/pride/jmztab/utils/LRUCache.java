@@ -0,0 +1,35 @@
+package uk.ac.ebi.pride.jmztab.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded map which evict the least recently accessed entry once the size
+ * great than capacity. Used to cache the lookup objects during stream process.
+ *
+ * Notice: this class is not thread safe.
+ *
+ * User: Qingwei
+ * Date: 02/05/13
+ */
+public class LRUCache<K, V> extends LinkedHashMap<K, V> {
+    private int capacity;
+
+    public LRUCache(int capacity) {
+        super(16, 0.75f, true);
+
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Cache capacity should great than 0!");
+        }
+        this.capacity = capacity;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+        return size() > capacity;
+    }
+}
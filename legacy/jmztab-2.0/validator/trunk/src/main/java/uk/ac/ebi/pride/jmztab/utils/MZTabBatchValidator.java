@@ -0,0 +1,292 @@
+package uk.ac.ebi.pride.jmztab.utils;
+
+import uk.ac.ebi.pride.jmztab.utils.errors.MZTabError;
+import uk.ac.ebi.pride.jmztab.utils.errors.MZTabErrorList;
+import uk.ac.ebi.pride.jmztab.utils.errors.MZTabErrorType;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.regex.Pattern;
+
+import static uk.ac.ebi.pride.jmztab.model.MZTabConstants.NEW_LINE;
+import static uk.ac.ebi.pride.jmztab.model.MZTabConstants.TAB;
+import static uk.ac.ebi.pride.jmztab.utils.MZTabProperties.BATCH_THREADS;
+import static uk.ac.ebi.pride.jmztab.utils.MZTabProperties.LEVEL;
+
+/**
+ * Validate multiple mzTab files concurrently in one JVM. Every file is checked by its own
+ * {@link MZTabFileParser} (and {@link MZTabErrorList}) on a fixed size thread pool, after that a
+ * consolidated report is printed, which include per-file status, error counts per
+ * {@link MZTabErrorType} code and timing.
+ *
+ * User: Qingwei
+ * Date: 07/05/13
+ */
+public class MZTabBatchValidator {
+    public enum Status {
+        Pass,          // not errors and warns.
+        Warn,          // only warns.
+        Error,         // exists errors.
+        Overflow,      // errors overflow, not all errors reported.
+        Failed         // can not read file, or unexpected exception.
+    }
+
+    /**
+     * Validate result of one mzTab file.
+     */
+    public static class Result {
+        private File file;
+        private Status status;
+        private MZTabErrorList errorList;
+        private long time;
+        private String message;
+
+        private Result(File file) {
+            this.file = file;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public MZTabErrorList getErrorList() {
+            return errorList;
+        }
+
+        /**
+         * @return validate time, in milliseconds.
+         */
+        public long getTime() {
+            return time;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        /**
+         * @return error code --> count.
+         */
+        public SortedMap<Integer, Integer> getCodeCounts() {
+            SortedMap<Integer, Integer> countMap = new TreeMap<Integer, Integer>();
+            if (errorList == null) {
+                return countMap;
+            }
+
+            Integer code;
+            Integer count;
+            for (int i = 0; i < errorList.size(); i++) {
+                code = errorList.getError(i).getType().getCode();
+                count = countMap.get(code);
+                countMap.put(code, count == null ? 1 : count + 1);
+            }
+
+            return countMap;
+        }
+    }
+
+    private MZTabErrorType.Level level;
+    private int threads;
+
+    public MZTabBatchValidator() {
+        this(BATCH_THREADS, LEVEL);
+    }
+
+    /**
+     * @param threads max number of files validated at the same time. If less than 1, use the number of
+     *                available processors.
+     */
+    public MZTabBatchValidator(int threads, MZTabErrorType.Level level) {
+        this.threads = threads < 1 ? Runtime.getRuntime().availableProcessors() : threads;
+        this.level = level == null ? LEVEL : level;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * List the files in directory which name match the glob filter, for example: *.mztab, PXD*.txt
+     * The glob support '*' (any characters) and '?' (one character). If filter is null, return all files.
+     */
+    public static List<File> listFiles(File dir, String filter) {
+        if (dir == null || ! dir.isDirectory()) {
+            throw new IllegalArgumentException("Invalid input directory " + dir);
+        }
+
+        final Pattern pattern = filter == null ? null : Pattern.compile(globToRegex(filter.trim()));
+        File[] files = dir.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return file.isFile() && (pattern == null || pattern.matcher(file.getName()).matches());
+            }
+        });
+
+        List<File> fileList = new ArrayList<File>(Arrays.asList(files));
+        Collections.sort(fileList);
+        return fileList;
+    }
+
+    private static String globToRegex(String glob) {
+        StringBuilder sb = new StringBuilder();
+
+        char c;
+        for (int i = 0; i < glob.length(); i++) {
+            c = glob.charAt(i);
+            if (c == '*') {
+                sb.append(".*");
+            } else if (c == '?') {
+                sb.append('.');
+            } else {
+                sb.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+
+        return sb.toString();
+    }
+
+    private Result validate(File file) {
+        Result result = new Result(file);
+
+        long start = System.currentTimeMillis();
+        try {
+            // messages are reported by batch report, and the records are not kept in memory.
+            MZTabFileParser parser = new MZTabFileParser(file, new MZTabFileParser.Options().setLevel(level)
+                    .setBuffered(false));
+            MZTabErrorList errorList = parser.getErrorList();
+            result.errorList = errorList;
+
+            if (parser.isErrorOverflow()) {
+                result.status = Status.Overflow;
+            } else if (! errorList.isEmpty(MZTabErrorType.Level.Error)) {
+                result.status = Status.Error;
+            } else if (! errorList.isEmpty(MZTabErrorType.Level.Warn)) {
+                result.status = Status.Warn;
+            } else {
+                result.status = Status.Pass;
+            }
+        } catch (Exception e) {
+            result.status = Status.Failed;
+            result.message = e.getClass().getSimpleName() + ": " + e.getMessage();
+        }
+        result.time = System.currentTimeMillis() - start;
+
+        return result;
+    }
+
+    /**
+     * Validate files on the thread pool, the results keep the same order with files.
+     */
+    public List<Result> validate(List<File> fileList) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, fileList.size())));
+        List<Future<Result>> futureList = new ArrayList<Future<Result>>();
+        try {
+            for (final File file : fileList) {
+                futureList.add(executor.submit(new Callable<Result>() {
+                    @Override
+                    public Result call() throws Exception {
+                        return validate(file);
+                    }
+                }));
+            }
+
+            List<Result> resultList = new ArrayList<Result>();
+            for (Future<Result> future : futureList) {
+                try {
+                    resultList.add(future.get());
+                } catch (ExecutionException e) {
+                    // validate(File) catch all exceptions, should not happen.
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+            return resultList;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Print consolidated report:
+     * per-file status, error/warn counts and time, followed by error messages if printDetail is true.
+     * At the end, print the total count of each error code, and the total time.
+     */
+    public void printReport(List<Result> resultList, long totalTime, boolean printDetail, OutputStream out) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        sb.append("file").append(TAB).append("status").append(TAB).append("errors").append(TAB)
+                .append("warns").append(TAB).append("time(ms)").append(TAB).append("codes").append(NEW_LINE);
+        out.write(sb.toString().getBytes());
+
+        SortedMap<Integer, Integer> totalCountMap = new TreeMap<Integer, Integer>();
+        Map<Status, Integer> statusCountMap = new EnumMap<Status, Integer>(Status.class);
+        long validateTime = 0;
+        for (Result result : resultList) {
+            int errorCount = 0;
+            int warnCount = 0;
+            MZTabErrorList errorList = result.getErrorList();
+            if (errorList != null) {
+                MZTabError error;
+                for (int i = 0; i < errorList.size(); i++) {
+                    error = errorList.getError(i);
+                    if (error.getType().getLevel() == MZTabErrorType.Level.Error) {
+                        errorCount++;
+                    } else {
+                        warnCount++;
+                    }
+                }
+            }
+
+            SortedMap<Integer, Integer> countMap = result.getCodeCounts();
+            for (Map.Entry<Integer, Integer> entry : countMap.entrySet()) {
+                Integer total = totalCountMap.get(entry.getKey());
+                totalCountMap.put(entry.getKey(), total == null ? entry.getValue() : total + entry.getValue());
+            }
+            Integer statusCount = statusCountMap.get(result.getStatus());
+            statusCountMap.put(result.getStatus(), statusCount == null ? 1 : statusCount + 1);
+            validateTime += result.getTime();
+
+            sb = new StringBuilder();
+            sb.append(result.getFile().getPath()).append(TAB).append(result.getStatus()).append(TAB)
+                    .append(errorCount).append(TAB).append(warnCount).append(TAB)
+                    .append(result.getTime()).append(TAB).append(countMap);
+            if (result.getMessage() != null) {
+                sb.append(TAB).append(result.getMessage());
+            }
+            sb.append(NEW_LINE);
+            out.write(sb.toString().getBytes());
+
+            if (printDetail && errorList != null) {
+                errorList.print(out, level);
+            }
+        }
+
+        sb = new StringBuilder();
+        sb.append(NEW_LINE);
+        sb.append("Validated ").append(resultList.size()).append(" files with ").append(threads).append(" threads: ")
+                .append(statusCountMap).append(NEW_LINE);
+        sb.append("Error counts per code: ").append(totalCountMap).append(NEW_LINE);
+        sb.append("Total time: ").append(totalTime).append(" ms, sum of file validate time: ")
+                .append(validateTime).append(" ms").append(NEW_LINE);
+        out.write(sb.toString().getBytes());
+        out.flush();
+    }
+
+    /**
+     * Validate files, and print the report into output stream.
+     * @return the validate results, the order is same with fileList.
+     */
+    public List<Result> check(List<File> fileList, boolean printDetail, OutputStream out) throws IOException, InterruptedException {
+        long start = System.currentTimeMillis();
+        List<Result> resultList = validate(fileList);
+        printReport(resultList, System.currentTimeMillis() - start, printDetail, out);
+
+        return resultList;
+    }
+}
@@ -4,62 +4,336 @@ import uk.ac.ebi.pride.jmztab.utils.errors.LogicalErrorType;
 import uk.ac.ebi.pride.jmztab.utils.errors.MZTabError;
 import uk.ac.ebi.pride.jmztab.utils.errors.MZTabErrorList;
 import uk.ac.ebi.pride.jmztab.utils.errors.MZTabErrorType;
+import uk.ac.ebi.pride.jmztab.utils.metrics.PhaseProfiler;
 import uk.ac.ebi.pride.jmztab.model.MZTabColumnFactory;
 import uk.ac.ebi.pride.jmztab.model.MZTabFile;
 import uk.ac.ebi.pride.jmztab.model.Peptide;
 import uk.ac.ebi.pride.jmztab.model.Protein;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.SortedMap;
 
+import static uk.ac.ebi.pride.jmztab.utils.MZTabProperties.CHECK_MEMORY_BUDGET;
+import static uk.ac.ebi.pride.jmztab.utils.MZTabProperties.CHECK_RUN_SIZE;
+
 /**
+ * Cross check among protein and peptide records. The checker can run incrementally during streaming
+ * validate: call {@link #checkProtein(int, String, String, String)} for every protein line, and then
+ * {@link #checkPeptide(int, String, String)} for every peptide line, at the end call {@link #finish()}.
+ * mzTab line order make sure all proteins have been checked before the first peptide.
+ *
+ * The checker not hold records, only keep the hash keys of unitId + accession and accession in
+ * {@link HashKeySet}. Once these keys use more memory than mztab.check.memory_budget, the checker
+ * spill (key, line number) entries into temporary run files by {@link ExternalKeySorter}, and report
+ * duplicate and missing accessions in {@link #finish()}. In this case, errors are reported in key order,
+ * not in line order.
+ *
+ * The errors found during scan are kept by checker, and added into error list in {@link #finish()}, thus the
+ * cross check errors not use up the mztab.max_error_count budget before all lines are validated. If the
+ * error list never overflow, errors are added immediately.
+ *
  * User: Qingwei
  * Date: 22/03/13
  */
 public class MZTabFileChecker {
     private MZTabErrorList errorList;
+    private MZTabErrorType.Level level = MZTabProperties.LEVEL;
+    private long memoryBudget = CHECK_MEMORY_BUDGET;
+    private int runSize = CHECK_RUN_SIZE;
+
+    private HashKeySet unitAccessionSet = new HashKeySet();
+    private HashKeySet accessionSet = new HashKeySet();
+
+    // not null after spill.
+    private ExternalKeySorter unitAccessionSorter;
+    private ExternalKeySorter accessionSorter;
+    private ExternalKeySorter peptideSorter;
+    private String proteinHeader;
+    private String peptideHeader;
+
+    private long warnCount = 0;
+    private long errorCount = 0;
+
+    // errors found during scan, added into errorList in finish().
+    private List<MZTabError> pendingList = new ArrayList<MZTabError>();
+    private boolean finishing = false;
 
     public MZTabFileChecker(MZTabErrorList errorList) {
         this.errorList = errorList == null ? new MZTabErrorList() : errorList;
     }
 
-    public boolean check(MZTabFile mzTabFile, MZTabErrorType.Level level) {
-        Set<String> unitAccessionSet = new HashSet<String>();
-        Set<String> accessionSet = new HashSet<String>();
-
-        // Stage 1: check unitId + accession should be unique in Protein section.
-        // This is Error level error.
-        Protein protein;
-        SortedMap<Integer, Protein> proteins = mzTabFile.getProteinsWithLineNumber();
-        MZTabColumnFactory proteinColumnFactory = mzTabFile.getProteinColumnFactory();
-        String accession;
-        String unitId;
-        for (Integer lineNumber : proteins.keySet()) {
-            protein = proteins.get(lineNumber);
-            accession = protein.getAccession();
-            unitId = protein.getUnitId();
-            if (! unitAccessionSet.add(unitId + accession)) {
-                this.errorList.add(new MZTabError(LogicalErrorType.DuplicationAccession, lineNumber, proteinColumnFactory.getColumn(1).getHeader(), accession, unitId));
+    public MZTabFileChecker(MZTabErrorList errorList, MZTabErrorType.Level level) {
+        this(errorList);
+        this.level = level == null ? MZTabProperties.LEVEL : level;
+    }
+
+    /**
+     * @param memoryBudget max bytes used by in memory hash keys, 0 means never spill to disk.
+     */
+    public void setMemoryBudget(long memoryBudget) {
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * @param runSize the number of entries sorted in memory per run, after spill to disk.
+     */
+    public void setRunSize(int runSize) {
+        this.runSize = runSize;
+    }
+
+    /**
+     * @return the number of errors reported by this checker, which level great or equal than the given level.
+     */
+    public long getCount(MZTabErrorType.Level level) {
+        return level == MZTabErrorType.Level.Warn ? warnCount + errorCount : errorCount;
+    }
+
+    private void report(MZTabError error) {
+        if (error.getType().getLevel() == MZTabErrorType.Level.Error) {
+            errorCount++;
+        } else {
+            warnCount++;
+        }
+
+        int maxErrorCount = errorList.getMaxErrorCount();
+        if (finishing || maxErrorCount < 1) {
+            errorList.add(error);
+        } else if (pendingList.size() < maxErrorCount) {
+            // the errors over max count can not be reported, error list overflow in finish().
+            pendingList.add(error);
+        }
+    }
+
+    public boolean isSpilled() {
+        return unitAccessionSorter != null;
+    }
+
+    /**
+     * Stage 1: check unitId + accession should be unique in Protein section.
+     * This is Error level error.
+     *
+     * @param header the accession column header.
+     */
+    public void checkProtein(int lineNumber, String header, String unitId, String accession) {
+        if (isSpilled()) {
+            proteinHeader = header;
+            try {
+                unitAccessionSorter.add(lineNumber, unitId, accession);
+                if (level != MZTabErrorType.Level.Error) {
+                    accessionSorter.add(lineNumber, accession);
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("Can not write accession run file: " + e.getMessage(), e);
             }
+            return;
+        }
+
+        if (! unitAccessionSet.add(unitId, accession)) {
+            report(new MZTabError(LogicalErrorType.DuplicationAccession, lineNumber, header, accession, unitId));
+        }
+
+        if (level != MZTabErrorType.Level.Error) {
             accessionSet.add(accession);
         }
 
-        // If level is error, ignore stage 2 check.
+        if (memoryBudget > 0 && unitAccessionSet.getMemorySize() + accessionSet.getMemorySize() > memoryBudget) {
+            spill();
+        }
+    }
+
+    /**
+     * Move the in memory keys into sorters. These keys come from the lines before, thus use line number 0
+     * to keep them in front of the later lines with same key.
+     */
+    private void spill() {
+        unitAccessionSorter = new ExternalKeySorter(2, runSize);
+        accessionSorter = new ExternalKeySorter(1, runSize);
+        peptideSorter = new ExternalKeySorter(1, runSize);
+        try {
+            unitAccessionSet.copyTo(unitAccessionSorter, 0);
+            accessionSet.copyTo(accessionSorter, 0);
+        } catch (IOException e) {
+            throw new IllegalStateException("Can not write accession run file: " + e.getMessage(), e);
+        }
+        unitAccessionSet.clear();
+        accessionSet.clear();
+    }
+
+    /**
+     * Stage 2: check accession of Peptide section, which may be display in the protein section.
+     * This is Warn level message. If level is error, ignore stage 2 check.
+     *
+     * @param header the accession column header.
+     */
+    public void checkPeptide(int lineNumber, String header, String accession) {
         if (level == MZTabErrorType.Level.Error) {
-            return errorList.isEmpty(level);
-        }
-
-        // Stage 2: check accession of Peptide section, which may be display in the protein section.
-        // This is Warn level message.
-        SortedMap<Integer, Peptide> peptides = mzTabFile.getPeptidesWithLineNumber();
-        MZTabColumnFactory peptideColumnFactory = mzTabFile.getPeptideColumnFactory();
-        Peptide peptide;
-        for (Integer lineNumber : peptides.keySet()) {
-            peptide = peptides.get(lineNumber);
-            if (! accessionSet.contains(peptide.getAccession())) {
-                errorList.add(new MZTabError(LogicalErrorType.PeptideAccession, lineNumber, peptideColumnFactory.getColumn(2).getHeader(), peptide.getAccession()));
+            return;
+        }
+
+        if (isSpilled()) {
+            peptideHeader = header;
+            try {
+                peptideSorter.add(lineNumber, accession);
+            } catch (IOException e) {
+                throw new IllegalStateException("Can not write peptide run file: " + e.getMessage(), e);
             }
+            return;
+        }
+
+        if (! accessionSet.contains(accession)) {
+            report(new MZTabError(LogicalErrorType.PeptideAccession, lineNumber, header, accession));
+        }
+    }
+
+    /**
+     * Add the errors found during scan into error list, report the errors which found by merge sorted runs,
+     * and release the keys and temporary files.
+     */
+    public void finish() throws IOException {
+        finishing = true;
+        try {
+            for (MZTabError error : pendingList) {
+                errorList.add(error);
+            }
+            pendingList.clear();
+
+            if (isSpilled()) {
+                reportDuplicateAccessions();
+                if (level != MZTabErrorType.Level.Error) {
+                    reportPeptideAccessions();
+                }
+            }
+        } finally {
+            clear();
+        }
+    }
+
+    private void reportDuplicateAccessions() throws IOException {
+        // the distinct keys which have the same hash codes with current entry.
+        List<ExternalKeySorter.Entry> group = new ArrayList<ExternalKeySorter.Entry>();
+
+        ExternalKeySorter.Reader reader = unitAccessionSorter.open();
+        try {
+            ExternalKeySorter.Entry entry;
+            while ((entry = reader.next()) != null) {
+                if (group.isEmpty() || ! group.get(0).sameHash(entry)) {
+                    group.clear();
+                    group.add(entry);
+                } else if (contains(group, entry)) {
+                    report(new MZTabError(LogicalErrorType.DuplicationAccession, entry.getLineNumber(),
+                            proteinHeader, entry.getPart(1), entry.getPart(0)));
+                } else {
+                    group.add(entry);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    private void reportPeptideAccessions() throws IOException {
+        List<ExternalKeySorter.Entry> group = new ArrayList<ExternalKeySorter.Entry>();
+
+        ExternalKeySorter.Reader accessionReader = accessionSorter.open();
+        ExternalKeySorter.Reader peptideReader = peptideSorter.open();
+        try {
+            ExternalKeySorter.Entry accession = accessionReader.next();
+            ExternalKeySorter.Entry peptide;
+            while ((peptide = peptideReader.next()) != null) {
+                if (! group.isEmpty() && ! group.get(0).sameHash(peptide)) {
+                    group.clear();
+                }
+                // collect the protein accessions which have same hash codes with peptide accession.
+                while (accession != null && accession.compareHash(peptide) < 0) {
+                    accession = accessionReader.next();
+                }
+                while (accession != null && accession.sameHash(peptide)) {
+                    group.add(accession);
+                    accession = accessionReader.next();
+                }
+
+                if (! contains(group, peptide)) {
+                    report(new MZTabError(LogicalErrorType.PeptideAccession, peptide.getLineNumber(),
+                            peptideHeader, peptide.getPart(0)));
+                }
+            }
+        } finally {
+            accessionReader.close();
+            peptideReader.close();
+        }
+    }
+
+    private boolean contains(List<ExternalKeySorter.Entry> group, ExternalKeySorter.Entry entry) {
+        for (ExternalKeySorter.Entry e : group) {
+            if (e.sameKey(entry)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Release the hash keys and temporary run files.
+     */
+    public void clear() {
+        unitAccessionSet.clear();
+        accessionSet.clear();
+        pendingList.clear();
+        finishing = false;
+
+        if (isSpilled()) {
+            unitAccessionSorter.delete();
+            accessionSorter.delete();
+            peptideSorter.delete();
+            unitAccessionSorter = null;
+            accessionSorter = null;
+            peptideSorter = null;
+        }
+    }
+
+    /**
+     * Release the hash keys and delete the temporary run files. Call it in finally block, if the check
+     * may be aborted before {@link #finish()}, for example by error overflow or cancellation.
+     */
+    public void close() {
+        clear();
+    }
+
+    /**
+     * Check a fully materialized mzTab file.
+     */
+    public boolean check(MZTabFile mzTabFile, MZTabErrorType.Level level) {
+        PhaseProfiler.phase("cross_check");
+        this.level = level;
+        clear();
+
+        try {
+            Protein protein;
+            SortedMap<Integer, Protein> proteins = mzTabFile.getProteinsWithLineNumber();
+            MZTabColumnFactory proteinColumnFactory = mzTabFile.getProteinColumnFactory();
+            for (Integer lineNumber : proteins.keySet()) {
+                protein = proteins.get(lineNumber);
+                checkProtein(lineNumber, proteinColumnFactory.getColumn(1).getHeader(), protein.getUnitId(), protein.getAccession());
+            }
+
+            if (level != MZTabErrorType.Level.Error) {
+                SortedMap<Integer, Peptide> peptides = mzTabFile.getPeptidesWithLineNumber();
+                MZTabColumnFactory peptideColumnFactory = mzTabFile.getPeptideColumnFactory();
+                Peptide peptide;
+                for (Integer lineNumber : peptides.keySet()) {
+                    peptide = peptides.get(lineNumber);
+                    checkPeptide(lineNumber, peptideColumnFactory.getColumn(2).getHeader(), peptide.getAccession());
+                }
+            }
+
+            finish();
+        } catch (IOException e) {
+            throw new IllegalStateException("Can not merge accession run files: " + e.getMessage(), e);
+        } finally {
+            close();
+            PhaseProfiler.end();
         }
 
         return errorList.isEmpty(level);
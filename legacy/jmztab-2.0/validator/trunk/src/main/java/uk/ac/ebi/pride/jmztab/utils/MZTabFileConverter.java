@@ -1,11 +1,16 @@
 package uk.ac.ebi.pride.jmztab.utils;
 
 import uk.ac.ebi.pride.jmztab.model.MZTabFile;
+import uk.ac.ebi.pride.jmztab.utils.convert.ConvertDelimitedFile;
 import uk.ac.ebi.pride.jmztab.utils.convert.ConvertFile;
 import uk.ac.ebi.pride.jmztab.utils.convert.ConvertMzIndentMLFile;
+import uk.ac.ebi.pride.jmztab.utils.convert.ConvertMzQuantMLFile;
 import uk.ac.ebi.pride.jmztab.utils.convert.ConvertPrideXMLFile;
+import uk.ac.ebi.pride.jmztab.utils.errors.MZTabErrorList;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
 
 /**
  * User: qingwei
@@ -23,10 +28,46 @@ public class MZTabFileConverter {
             convertFile = new ConvertPrideXMLFile(inFile);
         } else if (format.equalsIgnoreCase(ConvertFile.mzIdentML)) {
             convertFile = new ConvertMzIndentMLFile(inFile);
+        } else if (format.equalsIgnoreCase(ConvertFile.mzQuantML)) {
+            convertFile = new ConvertMzQuantMLFile(inFile);
         }
     }
 
+    /**
+     * Convert delimited text (TSV/CSV) file, the columns mapping defined in mapping file.
+     * @see ConvertDelimitedFile
+     */
+    public MZTabFileConverter(File inFile, File mappingFile) {
+        convertFile = new ConvertDelimitedFile(inFile, mappingFile);
+    }
+
+    /**
+     * Notice: PRIDE XML file is converted in constructor, thus not report progress and can not be cancelled.
+     */
+    public void setProgressListener(ProgressListener progressListener) {
+        convertFile.setProgressListener(progressListener);
+    }
+
+    public void setCancellationToken(CancellationToken cancellationToken) {
+        convertFile.setCancellationToken(cancellationToken);
+    }
+
+    /**
+     * @return the errors found in source values, the records which have Error level errors are not converted.
+     */
+    public MZTabErrorList getErrorList() {
+        return convertFile.getErrorList();
+    }
+
     public MZTabFile getMZTabFile() {
         return convertFile.getMZTabFile();
     }
+
+    /**
+     * Print the converted mzTab file directly, some converter (eg. mzIdentML) print records one by one
+     * without building the whole {@link MZTabFile} in memory.
+     */
+    public void printMZTab(OutputStream out) throws IOException {
+        convertFile.printMZTab(out);
+    }
 }
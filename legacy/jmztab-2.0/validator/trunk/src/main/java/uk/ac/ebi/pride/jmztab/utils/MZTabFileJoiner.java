@@ -0,0 +1,211 @@
+package uk.ac.ebi.pride.jmztab.utils;
+
+import uk.ac.ebi.pride.jmztab.model.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static uk.ac.ebi.pride.jmztab.model.MZTabConstants.TAB;
+
+/**
+ * Hash join proteins to their peptides by (accession, unit_id), and group small molecules by unit.
+ * Every join only scan the protein and peptide tables once, thus whole file join cost is linear.
+ *
+ * Two styles are supported:
+ * - {@link #join()} partition records by unit_id, and build one accession hash table per unit. Units are
+ * joined on a thread pool if threads great than 1. Return protein --> peptides groups of every unit.
+ * - {@link #join(JoinHandler)} build one (accession, unit_id) hash table on proteins, and then stream
+ * peptides in line order, every matched (protein, peptide) pair is passed into handler, without keep
+ * the join result in memory.
+ *
+ * Notice: records should not be modified during join.
+ *
+ * User: Qingwei
+ * Date: 14/05/13
+ */
+public class MZTabFileJoiner {
+    /**
+     * Receive (protein, peptide) join pairs, in peptide line order.
+     */
+    public interface JoinHandler {
+        /**
+         * @param protein the protein which has same accession and unit_id with peptide, null if the peptide
+         *                not found in protein table and handler accept unmatched peptides.
+         */
+        public void join(Protein protein, Peptide peptide);
+    }
+
+    /**
+     * Join result of one unit.
+     */
+    public static class UnitJoin {
+        private String unitId;
+        private List<Protein> proteins = new ArrayList<Protein>();
+        private List<Peptide> peptides = new ArrayList<Peptide>();
+        private List<SmallMolecule> smallMolecules = new ArrayList<SmallMolecule>();
+
+        private Map<Protein, List<Peptide>> proteinPeptides;
+        private List<Peptide> unmatchedPeptides = new ArrayList<Peptide>();
+
+        private UnitJoin(String unitId) {
+            this.unitId = unitId;
+        }
+
+        public String getUnitId() {
+            return unitId;
+        }
+
+        /**
+         * @return protein --> peptides, proteins in line order. Proteins without peptides map to empty list.
+         */
+        public Map<Protein, List<Peptide>> getProteinPeptides() {
+            return Collections.unmodifiableMap(proteinPeptides);
+        }
+
+        /**
+         * @return the peptides which accession not found in the proteins of this unit.
+         */
+        public List<Peptide> getUnmatchedPeptides() {
+            return Collections.unmodifiableList(unmatchedPeptides);
+        }
+
+        public List<SmallMolecule> getSmallMolecules() {
+            return Collections.unmodifiableList(smallMolecules);
+        }
+
+        private void join() {
+            proteinPeptides = new LinkedHashMap<Protein, List<Peptide>>(proteins.size() * 2);
+            Map<String, List<Peptide>> accessionMap = new HashMap<String, List<Peptide>>(proteins.size() * 2);
+            for (Protein protein : proteins) {
+                if (accessionMap.containsKey(protein.getAccession())) {
+                    // duplicate accession in one unit, peptides are joined to the first one.
+                    proteinPeptides.put(protein, new ArrayList<Peptide>());
+                    continue;
+                }
+                List<Peptide> list = new ArrayList<Peptide>();
+                accessionMap.put(protein.getAccession(), list);
+                proteinPeptides.put(protein, list);
+            }
+
+            List<Peptide> list;
+            for (Peptide peptide : peptides) {
+                list = accessionMap.get(peptide.getAccession());
+                if (list == null) {
+                    unmatchedPeptides.add(peptide);
+                } else {
+                    list.add(peptide);
+                }
+            }
+
+            // release partition.
+            proteins = null;
+            peptides = null;
+        }
+    }
+
+    private MZTabFile tabFile;
+    private int threads;
+
+    public MZTabFileJoiner(MZTabFile tabFile) {
+        this(tabFile, 1);
+    }
+
+    /**
+     * @param threads the number of units joined at the same time. If less than 1, use the number of
+     *                available processors.
+     */
+    public MZTabFileJoiner(MZTabFile tabFile, int threads) {
+        if (tabFile == null) {
+            throw new NullPointerException("MZTabFile can not set null!");
+        }
+
+        this.tabFile = tabFile;
+        this.threads = threads < 1 ? Runtime.getRuntime().availableProcessors() : threads;
+    }
+
+    private UnitJoin getUnitJoin(Map<String, UnitJoin> unitMap, String unitId) {
+        UnitJoin unitJoin = unitMap.get(unitId);
+        if (unitJoin == null) {
+            unitJoin = new UnitJoin(unitId);
+            unitMap.put(unitId, unitJoin);
+        }
+        return unitJoin;
+    }
+
+    /**
+     * Partition records by unit_id, and join proteins and peptides per unit.
+     *
+     * @return unit_id --> join result, units in the order of first appearance.
+     */
+    public Map<String, UnitJoin> join() throws InterruptedException {
+        Map<String, UnitJoin> unitMap = new LinkedHashMap<String, UnitJoin>();
+        for (Protein protein : tabFile.getProteins()) {
+            getUnitJoin(unitMap, protein.getUnitId()).proteins.add(protein);
+        }
+        for (Peptide peptide : tabFile.getPeptides()) {
+            getUnitJoin(unitMap, peptide.getUnitId()).peptides.add(peptide);
+        }
+        for (SmallMolecule smallMolecule : tabFile.getSmallMolecules()) {
+            getUnitJoin(unitMap, smallMolecule.getUnitId()).smallMolecules.add(smallMolecule);
+        }
+
+        if (threads == 1 || unitMap.size() < 2) {
+            for (UnitJoin unitJoin : unitMap.values()) {
+                unitJoin.join();
+            }
+            return unitMap;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, unitMap.size()));
+        try {
+            List<Future<?>> futureList = new ArrayList<Future<?>>();
+            for (final UnitJoin unitJoin : unitMap.values()) {
+                futureList.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        unitJoin.join();
+                    }
+                }));
+            }
+            for (Future<?> future : futureList) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Join unit failed: " + e.getCause().getMessage(), e.getCause());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        return unitMap;
+    }
+
+    /**
+     * Stream (protein, peptide) join pairs in peptide line order. Only the protein hash table kept in memory.
+     *
+     * @param includeUnmatched if true, peptides not found in protein table are passed to handler with null protein.
+     */
+    public void join(JoinHandler handler, boolean includeUnmatched) {
+        Map<String, Protein> proteinMap = new HashMap<String, Protein>(tabFile.getProteins().size() * 2);
+        String key;
+        for (Protein protein : tabFile.getProteins()) {
+            key = protein.getAccession() + TAB + protein.getUnitId();
+            if (! proteinMap.containsKey(key)) {
+                proteinMap.put(key, protein);
+            }
+        }
+
+        Protein protein;
+        for (Peptide peptide : tabFile.getPeptides()) {
+            protein = proteinMap.get(peptide.getAccession() + TAB + peptide.getUnitId());
+            if (protein != null || includeUnmatched) {
+                handler.join(protein, peptide);
+            }
+        }
+    }
+
+    public void join(JoinHandler handler) {
+        join(handler, false);
+    }
+}
@@ -1,6 +1,9 @@
 package uk.ac.ebi.pride.jmztab.utils;
 
 import uk.ac.ebi.pride.jmztab.model.*;
+import uk.ac.ebi.pride.jmztab.utils.metrics.MZTabFlightRecorder;
+import uk.ac.ebi.pride.jmztab.utils.metrics.MZTabMetrics;
+import uk.ac.ebi.pride.jmztab.utils.metrics.PhaseProfiler;
 
 import java.util.*;
 
@@ -16,8 +19,26 @@ public class MZTabFileMerger {
      */
     private boolean combine = false;
 
+    private ProgressListener progressListener;
+    private CancellationToken cancellationToken;
+
     public MZTabFileMerger() {}
 
+    /**
+     * Receive the number of files merged, and the number of records in merged file, after every file merged.
+     */
+    public void setProgressListener(ProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * Checked before every file merged, {@link #merge()} throw {@link java.util.concurrent.CancellationException}
+     * if cancelled.
+     */
+    public void setCancellationToken(CancellationToken cancellationToken) {
+        this.cancellationToken = cancellationToken;
+    }
+
     public void addAllTabFiles(Collection<MZTabFile> tabFileList) {
         mzTabFileList.addAll(tabFileList);
     }
@@ -284,8 +305,33 @@ public class MZTabFileMerger {
             return mainTabFile;
         }
 
-        for (MZTabFile tabFile : mzTabFileList) {
-            mainTabFile = mergeFile(tabFile, mainTabFile);
+        PhaseProfiler.phase("merge");
+        try {
+            long start = System.nanoTime();
+            int total = mzTabFileList.size() + 1;
+            int merged = 1;
+            for (MZTabFile tabFile : mzTabFileList) {
+                if (cancellationToken != null) {
+                    cancellationToken.check();
+                }
+                Object event = MZTabFlightRecorder.begin(MZTabFlightRecorder.Type.MergeStep);
+                mainTabFile = mergeFile(tabFile, mainTabFile);
+                MZTabFlightRecorder.commit(event, merged, (long) (mainTabFile.getProteins().size()
+                        + mainTabFile.getPeptides().size() + mainTabFile.getSmallMolecules().size()));
+                merged++;
+                if (progressListener != null) {
+                    progressListener.progress(merged, total, null, mainTabFile.getProteins().size()
+                            + mainTabFile.getPeptides().size() + mainTabFile.getSmallMolecules().size());
+                }
+            }
+
+            if (MZTabMetrics.isEnabled()) {
+                MZTabMetrics.filesMerged(mzTabFileList.size() + 1, System.nanoTime() - start);
+                MZTabMetrics.recordsHeld(mainTabFile.getProteins().size() + mainTabFile.getPeptides().size()
+                        + mainTabFile.getSmallMolecules().size());
+            }
+        } finally {
+            PhaseProfiler.end();
         }
 
         return mainTabFile;
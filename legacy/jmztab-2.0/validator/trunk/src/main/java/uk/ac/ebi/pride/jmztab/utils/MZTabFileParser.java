@@ -2,11 +2,15 @@ package uk.ac.ebi.pride.jmztab.utils;
 
 import uk.ac.ebi.pride.jmztab.utils.errors.*;
 import uk.ac.ebi.pride.jmztab.model.*;
+import uk.ac.ebi.pride.jmztab.utils.metrics.MZTabFlightRecorder;
+import uk.ac.ebi.pride.jmztab.utils.metrics.MZTabMetrics;
+import uk.ac.ebi.pride.jmztab.utils.metrics.PhaseProfiler;
 import uk.ac.ebi.pride.jmztab.utils.parser.*;
 
 import java.io.*;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
 import java.util.zip.GZIPInputStream;
 
 import static uk.ac.ebi.pride.jmztab.model.MZTabConstants.NEW_LINE;
@@ -18,10 +22,96 @@ import static uk.ac.ebi.pride.jmztab.utils.MZTabProperties.*;
  * Date: 21/02/13
  */
 public class MZTabFileParser {
+    /**
+     * Optional settings of parser, every setter return this options. Not set options use the default value.
+     */
+    public static class Options {
+        private MZTabErrorList errorList;
+        private MZTabErrorType.Level level = LEVEL;
+        private boolean buffered = BUFFERED;
+        private RecordFilter filter;
+        private ColumnProjection projection;
+        private ProgressListener progressListener;
+        private CancellationToken cancellationToken;
+
+        /**
+         * @param errorList caller created error list, for example, a list which never overflow:
+         *                  new MZTabErrorList(new AggregateErrorSink(), 0). If the list forward errors into a
+         *                  sink, the fatal {@link MZTabException} error is reported into sink too, after that the
+         *                  sink be flushed. Default is a new {@link MZTabErrorList}.
+         */
+        public Options setErrorList(MZTabErrorList errorList) {
+            this.errorList = errorList;
+            return this;
+        }
+
+        /**
+         * @param level report level, default is mztab.level in mztab.properties.
+         */
+        public Options setLevel(MZTabErrorType.Level level) {
+            this.level = level;
+            return this;
+        }
+
+        /**
+         * @param buffered if false, comment and protein/peptide/small_molecule records are validated but not kept
+         *                 in memory, {@link MZTabFileParser#getMZTabFile()} only contain metadata and header
+         *                 lines. Default is mztab.buffered in mztab.properties.
+         */
+        public Options setBuffered(boolean buffered) {
+            this.buffered = buffered;
+            return this;
+        }
+
+        /**
+         * @param filter the protein/peptide/small_molecule data lines which rejected by filter are not validated and
+         *               not loaded, only their accession and unit_id are used in the cross check. If null, accept all.
+         */
+        public Options setFilter(RecordFilter filter) {
+            this.filter = filter;
+            return this;
+        }
+
+        /**
+         * @param projection only the projected columns of protein/peptide/small_molecule records are loaded. If null,
+         *                   load all columns.
+         */
+        public Options setProjection(ColumnProjection projection) {
+            this.projection = projection;
+            return this;
+        }
+
+        /**
+         * @param progressListener if not null, receive bytes consumed, current section and rows parsed every
+         *                         mztab.progress.interval lines.
+         */
+        public Options setProgressListener(ProgressListener progressListener) {
+            this.progressListener = progressListener;
+            return this;
+        }
+
+        /**
+         * @param cancellationToken if not null, checked every mztab.progress.interval lines.
+         */
+        public Options setCancellationToken(CancellationToken cancellationToken) {
+            this.cancellationToken = cancellationToken;
+            return this;
+        }
+    }
+
     private MZTabFile mzTabFile;
     private File tabFile;
 
-    private MZTabErrorList errorList = new MZTabErrorList();
+    private MZTabErrorList errorList;
+    private boolean errorOverflow = false;
+    private MZTabError fatalError;
+    private boolean buffered = BUFFERED;
+    private RecordFilter filter;
+    private ColumnProjection projection;
+
+    private ProgressListener progressListener;
+    private CancellationToken cancellationToken;
+    private CountingInputStream counter;
 
     private void init(File tabFile) {
         if (tabFile == null || ! tabFile.exists()) {
@@ -37,13 +127,16 @@ public class MZTabFileParser {
 
     public MZTabFileParser(File tabFile, OutputStream out, MZTabErrorType.Level level) throws IOException {
         init(tabFile);
+        errorList = new MZTabErrorList();
 
         try {
             check(level);
         } catch (MZTabException e) {
+            fatalError = e.getError();
             out.write(MZTabExceptionMessage.getBytes());
             errorList.add(e.getError());
         } catch (MZTabErrorOverflowException e) {
+            errorOverflow = true;
             out.write(MZTabErrorOverflowExceptionMessage.getBytes());
         }
 
@@ -53,28 +146,109 @@ public class MZTabFileParser {
         }
     }
 
+    /**
+     * Parse with the settings of options, for example, validate without keep records, and print errors as soon
+     * as they are found:
+     * <pre>
+     * new MZTabFileParser(tabFile, new MZTabFileParser.Options()
+     *         .setErrorList(new MZTabErrorList(new StreamErrorSink(out)))
+     *         .setBuffered(false));
+     * </pre>
+     *
+     * @throws CancellationException if cancellation token cancelled during parse.
+     */
+    public MZTabFileParser(File tabFile, Options options) throws IOException {
+        init(tabFile);
+        this.errorList = options.errorList == null ? new MZTabErrorList() : options.errorList;
+        this.buffered = options.buffered;
+        this.filter = options.filter;
+        this.projection = options.projection;
+        this.progressListener = options.progressListener;
+        this.cancellationToken = options.cancellationToken;
+
+        try {
+            check(options.level == null ? LEVEL : options.level);
+        } catch (MZTabException e) {
+            fatalError = e.getError();
+            this.errorList.add(e.getError());
+        } catch (MZTabErrorOverflowException e) {
+            // stop validate, all errors have been reported.
+            errorOverflow = true;
+        }
+
+        if (this.errorList.getSink() != null) {
+            this.errorList.getSink().flush();
+        }
+    }
+
     public MZTabErrorList getErrorList() {
         return errorList;
     }
 
+    /**
+     * @return true if validate stopped because the error list overflow, that means more errors exist than
+     * the list could keep. A list which is just full is not overflow.
+     */
+    public boolean isErrorOverflow() {
+        return errorOverflow;
+    }
+
+    /**
+     * @return the metadata or protein/peptide/small_molecule header error which stopped validate, the data table
+     * is not checked. Null if the whole file is checked.
+     */
+    public MZTabError getFatalError() {
+        return fatalError;
+    }
+
     private Section getSection(String line) {
-        String[] items = line.split("\\s*" + TAB + "\\s*");
-        String section = items[0].trim();
+        int index = line.indexOf(TAB);
+        String section = index == -1 ? line.trim() : line.substring(0, index).trim();
         return Section.findSection(section);
     }
 
+    /**
+     * @return null if filter accept the data line, otherwise return the tokenized line.
+     */
+    private String[] reject(Section section, String line) {
+        if (filter == null || ! filter.isFiltered(section)) {
+            return null;
+        }
+
+        String[] items = RecordFilter.split(line);
+        return filter.accept(section, items) ? null : items;
+    }
+
+    private String getItem(String[] items, int position) {
+        return position < items.length ? MZTabUtils.parseString(items[position]) : null;
+    }
+
     private BufferedReader readFile(File tabFile) throws IOException {
         BufferedReader reader;
 
+        counter = new CountingInputStream(new FileInputStream(tabFile));
         if (tabFile.getName().endsWith(".gz")) {
-            reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(tabFile)), ENCODE));
+            reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(counter), ENCODE));
         } else {
-            reader = new BufferedReader(new InputStreamReader(new FileInputStream(tabFile), ENCODE));
+            reader = new BufferedReader(new InputStreamReader(counter, ENCODE));
         }
 
         return reader;
     }
 
+    /**
+     * Check cancellation, and report progress.
+     */
+    private void progress(BufferedReader reader, Section section, long rowCount) throws IOException {
+        if (cancellationToken != null && cancellationToken.isCancelled()) {
+            reader.close();
+            throw new CancellationException("Parse " + tabFile + " has been cancelled.");
+        }
+        if (progressListener != null) {
+            progressListener.progress(counter.getCount(), tabFile.length(), section, rowCount);
+        }
+    }
+
     /**
      * Query {@link MZTabErrorList} to check exist errors or not.
      * @throws IOException
@@ -83,7 +257,20 @@ public class MZTabFileParser {
      */
     private void check(MZTabErrorType.Level level) throws IOException, MZTabException, MZTabErrorOverflowException {
         BufferedReader reader = readFile(tabFile);
+        // cross check protein and peptide accessions during streaming, without hold records.
+        MZTabFileChecker checker = new MZTabFileChecker(errorList, level);
+        try {
+            check(level, reader, checker);
+        } finally {
+            // end the phase and delete the checker run files, even if validate aborted by errors or cancellation.
+            PhaseProfiler.end();
+            checker.close();
+            reader.close();
+        }
+    }
 
+    private void check(MZTabErrorType.Level level, BufferedReader reader, MZTabFileChecker checker)
+            throws IOException, MZTabException, MZTabErrorOverflowException {
         COMLineParser comParser = new COMLineParser();
         MTDLineParser mtdParser = new MTDLineParser();
         PRHLineParser prhParser = null;
@@ -99,21 +286,58 @@ public class MZTabFileParser {
         SortedMap<Integer, Peptide> peptideMap = new TreeMap<Integer, Peptide>();
         SortedMap<Integer, SmallMolecule> smallMoleculeMap = new TreeMap<Integer, SmallMolecule>();
 
+        Protein protein;
+        Peptide peptide;
+        String[] rejectedItems;
+
+        // publish line metrics, only if some listener registered.
+        boolean metrics = MZTabMetrics.isEnabled();
+        long lineStart = 0;
+        // bytes read from file, report the delta of every line. The reader buffers ahead, thus the delta of one
+        // line is lumpy, but the sum is the file size (the compressed size for .gz file).
+        long consumed = 0;
+        long count;
+
+        // flight recorder events, enabled state is refreshed at every section begin.
+        boolean slowLines = false;
+        long slowLineNanos = JFR_SLOW_LINE_MS * 1000000;
+        Object sectionEvent = null;
+        long sectionLines = 0;
+        long sectionRowStart = 0;
+        long lineNanos;
+
         MZTabError error;
         String line;
         int highWaterMark = 1;
         int lineNumber = 0;
-        Section section;
+        long rowCount = 0;
+        Section section = null;
+        // profile phase, comment lines are counted into the phase which they are located in.
+        Section phaseSection = null;
         while ((line = reader.readLine()) != null) {
             lineNumber++;
+            if (lineNumber % PROGRESS_INTERVAL == 0) {
+                progress(reader, section, rowCount);
+            }
 
             if (line.trim().isEmpty()) {
                 continue;
             }
 
+            if (metrics || slowLines) {
+                lineStart = System.nanoTime();
+            }
+
             if (line.startsWith(Section.Comment.getPrefix())) {
                 comParser.check(lineNumber, line);
-                commentMap.put(lineNumber, comParser.getComment());
+                if (buffered) {
+                    commentMap.put(lineNumber, comParser.getComment());
+                }
+                if (metrics) {
+                    count = counter.getCount();
+                    MZTabMetrics.lineParsed(Section.Comment, count - consumed, System.nanoTime() - lineStart);
+                    consumed = count;
+                }
                 continue;
             }
 
@@ -128,6 +352,19 @@ public class MZTabFileParser {
             }
 
             highWaterMark = section.getLevel();
+            if (section != phaseSection) {
+                if (phaseSection != null) {
+                    MZTabFlightRecorder.commit(sectionEvent, phaseSection.getName(), sectionLines, rowCount - sectionRowStart);
+                }
+                sectionEvent = MZTabFlightRecorder.begin(MZTabFlightRecorder.Type.Section);
+                sectionLines = 0;
+                sectionRowStart = rowCount;
+                slowLines = MZTabFlightRecorder.isEnabled(MZTabFlightRecorder.Type.SlowLine);
+
+                PhaseProfiler.phase(section.getName());
+                phaseSection = section;
+            }
+            sectionLines++;
 
             switch (highWaterMark) {
                 case 1:
@@ -144,6 +381,9 @@ public class MZTabFileParser {
                     // protein header section
                     prhParser = new PRHLineParser(mtdParser.getMetadata());
                     prhParser.check(lineNumber, line);
+                    if (filter != null) {
+                        filter.bind(Section.Protein, prhParser.getFactory());
+                    }
 
                     // tell system to continue check protein data line.
                     highWaterMark = 3;
@@ -157,9 +397,25 @@ public class MZTabFileParser {
 
                     if (prtParser == null) {
                         prtParser = new PRTLineParser(prhParser.getFactory(), mtdParser.getMetadata(), errorList);
+                        if (projection != null) {
+                            prtParser.setProjection(projection.bind(Section.Protein, prhParser.getFactory()), projection.isTrusted());
+                        }
+                    }
+                    rowCount++;
+                    rejectedItems = reject(Section.Protein, line);
+                    if (rejectedItems != null) {
+                        checker.checkProtein(lineNumber, prhParser.getFactory().getColumn(1).getHeader(),
+                                getItem(rejectedItems, 2), getItem(rejectedItems, 1));
+                        break;
                     }
+
                     prtParser.check(lineNumber, line);
-                    proteinMap.put(lineNumber, prtParser.getRecord(line));
+                    protein = prtParser.getRecord(line);
+                    checker.checkProtein(lineNumber, prhParser.getFactory().getColumn(1).getHeader(),
+                            protein.getUnitId(), protein.getAccession());
+                    if (buffered) {
+                        proteinMap.put(lineNumber, protein);
+                    }
 
                     break;
                 case 4:
@@ -172,6 +428,9 @@ public class MZTabFileParser {
                     // peptide header section
                     pehParser = new PEHLineParser(mtdParser.getMetadata());
                     pehParser.check(lineNumber, line);
+                    if (filter != null) {
+                        filter.bind(Section.Peptide, pehParser.getFactory());
+                    }
 
                     // tell system to continue check peptide data line.
                     highWaterMark = 5;
@@ -185,9 +444,23 @@ public class MZTabFileParser {
 
                     if (pepParser == null) {
                         pepParser = new PEPLineParser(pehParser.getFactory(), mtdParser.getMetadata(), errorList);
+                        if (projection != null) {
+                            pepParser.setProjection(projection.bind(Section.Peptide, pehParser.getFactory()), projection.isTrusted());
+                        }
                     }
+                    rowCount++;
+                    rejectedItems = reject(Section.Peptide, line);
+                    if (rejectedItems != null) {
+                        checker.checkPeptide(lineNumber, pehParser.getFactory().getColumn(2).getHeader(), getItem(rejectedItems, 2));
+                        break;
+                    }
+
                     pepParser.check(lineNumber, line);
-                    peptideMap.put(lineNumber, pepParser.getRecord(line));
+                    peptide = pepParser.getRecord(line);
+                    checker.checkPeptide(lineNumber, pehParser.getFactory().getColumn(2).getHeader(), peptide.getAccession());
+                    if (buffered) {
+                        peptideMap.put(lineNumber, peptide);
+                    }
 
                     break;
                 case 6:
@@ -200,6 +473,9 @@ public class MZTabFileParser {
                     // small molecule header section
                     smhParser = new SMHLineParser(mtdParser.getMetadata());
                     smhParser.check(lineNumber, line);
+                    if (filter != null) {
+                        filter.bind(Section.Small_Molecule, smhParser.getFactory());
+                    }
 
                     // tell system to continue check small molecule data line.
                     highWaterMark = 7;
@@ -213,19 +489,50 @@ public class MZTabFileParser {
 
                     if (smlParser == null) {
                         smlParser = new SMLLineParser(smhParser.getFactory(), mtdParser.getMetadata(), errorList);
+                        if (projection != null) {
+                            smlParser.setProjection(projection.bind(Section.Small_Molecule, smhParser.getFactory()), projection.isTrusted());
+                        }
+                    }
+                    rowCount++;
+                    if (reject(Section.Small_Molecule, line) != null) {
+                        break;
                     }
+
                     smlParser.check(lineNumber, line);
-                    smallMoleculeMap.put(lineNumber, smlParser.getRecord(line));
+                    if (buffered) {
+                        smallMoleculeMap.put(lineNumber, smlParser.getRecord(line));
+                    }
 
                     break;
             }
+
+            if (metrics || slowLines) {
+                lineNanos = System.nanoTime() - lineStart;
+                if (metrics) {
+                    count = counter.getCount();
+                    MZTabMetrics.lineParsed(section, count - consumed, lineNanos);
+                    consumed = count;
+                }
+                if (slowLines && lineNanos > slowLineNanos) {
+                    MZTabFlightRecorder.emit(MZTabFlightRecorder.Type.SlowLine, section.getName(), lineNumber,
+                            line.length(), lineNanos);
+                }
+            }
+        }
+        if (phaseSection != null) {
+            MZTabFlightRecorder.commit(sectionEvent, phaseSection.getName(), sectionLines, rowCount - sectionRowStart);
         }
 
-        if (reader != null) {
-            reader.close();
+        progress(reader, section, rowCount);
+        PhaseProfiler.phase("cross_check");
+        checker.finish();
+        PhaseProfiler.phase("build_model");
+        if (metrics) {
+            MZTabMetrics.recordsHeld(commentMap.size() + proteinMap.size() + peptideMap.size() + smallMoleculeMap.size());
         }
 
-        if (errorList.isEmpty(level)) {
+        // cross check errors not block create mzTab file.
+        if (errorList.getCount(level) == checker.getCount(level)) {
             mzTabFile = new MZTabFile(mtdParser.getMetadata());
             for (Integer id : commentMap.keySet()) {
                 mzTabFile.addComment(id, commentMap.get(id));
@@ -263,11 +570,7 @@ public class MZTabFileParser {
                     mzTabFile.addSmallMolecule(id, smallMoleculeMap.get(id));
                 }
             }
-
-            MZTabFileChecker checker = new MZTabFileChecker(errorList);
-            checker.check(mzTabFile, level);
         }
-
     }
 
     public MZTabFile getMZTabFile() {
@@ -0,0 +1,281 @@
+package uk.ac.ebi.pride.jmztab.utils;
+
+import uk.ac.ebi.pride.jmztab.model.MZTabColumnFactory;
+import uk.ac.ebi.pride.jmztab.model.MZTabFile;
+import uk.ac.ebi.pride.jmztab.model.MZTabRecord;
+import uk.ac.ebi.pride.jmztab.model.Metadata;
+import uk.ac.ebi.pride.jmztab.model.Section;
+import uk.ac.ebi.pride.jmztab.utils.metrics.MZTabFlightRecorder;
+import uk.ac.ebi.pride.jmztab.utils.metrics.MZTabMetrics;
+import uk.ac.ebi.pride.jmztab.utils.metrics.PhaseProfiler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static uk.ac.ebi.pride.jmztab.model.MZTabConstants.NEW_LINE;
+import static uk.ac.ebi.pride.jmztab.utils.MZTabProperties.PRINT_BATCH_SIZE;
+import static uk.ac.ebi.pride.jmztab.utils.MZTabProperties.PRINT_THREADS;
+
+/**
+ * Write mzTab file section by section, without buffer the data table records in memory.
+ * The output layout is same with {@link uk.ac.ebi.pride.jmztab.model.MZTabFile#printMZTab(OutputStream)}:
+ * metadata, and then protein/peptide/small_molecule header line followed by its records. Every table
+ * section end with an empty line.
+ *
+ * Caller should print metadata first, and print header line before the records of that section.
+ * Notice: the output stream will not be closed by writer.
+ *
+ * {@link #writeRecords(Collection)} format records batch by batch on a thread pool, every batch is formatted
+ * into its own byte buffer, and buffers are written into output strictly in record order. Thus the output is
+ * byte identical with sequential print. Reference mztab.print.threads and mztab.print.batch_size.
+ *
+ * User: Qingwei
+ * Date: 02/05/13
+ */
+public class MZTabFileWriter {
+    private OutputStream out;
+
+    private MZTabColumnFactory currentFactory;
+    private long recordCount = 0;
+
+    private int threads;
+    private int batchSize;
+
+    /**
+     * Format records on the current thread.
+     */
+    public MZTabFileWriter(OutputStream out) {
+        this(out, 1, PRINT_BATCH_SIZE);
+    }
+
+    /**
+     * @param threads the number of threads which format records. If less than 1, use the number of
+     *                available processors.
+     * @param batchSize the number of records formatted by one task.
+     */
+    public MZTabFileWriter(OutputStream out, int threads, int batchSize) {
+        if (out == null) {
+            throw new NullPointerException("Output stream can not set null!");
+        }
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size should great than 0!");
+        }
+
+        this.out = out;
+        this.threads = threads < 1 ? Runtime.getRuntime().availableProcessors() : threads;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Writer which use mztab.print.threads and mztab.print.batch_size.
+     */
+    public static MZTabFileWriter getDefault(OutputStream out) {
+        return new MZTabFileWriter(out, PRINT_THREADS, PRINT_BATCH_SIZE);
+    }
+
+    /**
+     * Print the whole mzTab file, the output is same with {@link MZTabFile#printMZTab(OutputStream)}.
+     */
+    public void write(MZTabFile tabFile) throws IOException {
+        PhaseProfiler.phase("output");
+        try {
+            tabFile.fillNull();
+
+            writeMetadata(tabFile.getMetadata());
+            if (tabFile.getProteinColumnFactory() != null) {
+                writeHeader(tabFile.getProteinColumnFactory());
+                writeRecords(tabFile.getProteins());
+            }
+            if (tabFile.getPeptideColumnFactory() != null) {
+                writeHeader(tabFile.getPeptideColumnFactory());
+                writeRecords(tabFile.getPeptides());
+            }
+            if (tabFile.getSmallMoleculeColumnFactory() != null) {
+                writeHeader(tabFile.getSmallMoleculeColumnFactory());
+                writeRecords(tabFile.getSmallMolecules());
+            }
+            finish();
+        } finally {
+            PhaseProfiler.end();
+        }
+    }
+
+    public void writeMetadata(Metadata metadata) throws IOException {
+        out.write(metadata.toString().getBytes());
+        out.write(NEW_LINE.getBytes());
+    }
+
+    /**
+     * Print protein/peptide/small_molecule header line, and close previous table section.
+     */
+    public void writeHeader(MZTabColumnFactory factory) throws IOException {
+        if (factory == null) {
+            return;
+        }
+
+        endSection();
+        out.write(factory.toString().getBytes());
+        out.write(NEW_LINE.getBytes());
+        currentFactory = factory;
+    }
+
+    public void writeRecord(MZTabRecord record) throws IOException {
+        writeRecord(record.toString());
+    }
+
+    /**
+     * Print a record line which has been formatted by caller, for example:
+     * PEP  value1  value2  value3  ...
+     */
+    public void writeRecord(String record) throws IOException {
+        if (currentFactory == null) {
+            throw new IllegalStateException("Header line should be print before record!");
+        }
+
+        if (MZTabMetrics.isEnabled()) {
+            long start = System.nanoTime();
+            long bytes = printRecord(record);
+            MZTabMetrics.recordsWritten(Section.toDataSection(currentFactory.getSection()), 1, bytes, System.nanoTime() - start);
+        } else {
+            printRecord(record);
+        }
+    }
+
+    /**
+     * @return the number of bytes written.
+     */
+    private long printRecord(String record) throws IOException {
+        byte[] bytes = record.getBytes();
+        byte[] newLine = NEW_LINE.getBytes();
+        out.write(bytes);
+        out.write(newLine);
+        recordCount++;
+        return bytes.length + newLine.length;
+    }
+
+    /**
+     * Print records in the iteration order of collection. Records should not be modified during print.
+     */
+    public void writeRecords(Collection<? extends MZTabRecord> records) throws IOException {
+        if (currentFactory == null) {
+            throw new IllegalStateException("Header line should be print before record!");
+        }
+
+        Object event = MZTabFlightRecorder.begin(MZTabFlightRecorder.Type.WriteRecords);
+        long start = System.nanoTime();
+        long bytes = 0;
+        if (threads == 1 || records.size() <= batchSize) {
+            for (MZTabRecord record : records) {
+                bytes += printRecord(record.toString());
+            }
+        } else {
+            bytes = writeBatches(records);
+            recordCount += records.size();
+        }
+
+        if (MZTabMetrics.isEnabled()) {
+            MZTabMetrics.recordsWritten(Section.toDataSection(currentFactory.getSection()), records.size(), bytes, System.nanoTime() - start);
+        }
+        if (event != null) {
+            MZTabFlightRecorder.commit(event, Section.toDataSection(currentFactory.getSection()).getName(),
+                    (long) records.size(), bytes);
+        }
+    }
+
+    /**
+     * @return the number of bytes written.
+     */
+    private long writeBatches(Collection<? extends MZTabRecord> records) throws IOException {
+        long bytes = 0;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        // formatted batches wait to be written, in record order. Limit the number of buffers kept in memory.
+        LinkedList<Future<byte[]>> pendingList = new LinkedList<Future<byte[]>>();
+        try {
+            List<MZTabRecord> batch = new ArrayList<MZTabRecord>(batchSize);
+            for (MZTabRecord record : records) {
+                batch.add(record);
+                if (batch.size() == batchSize) {
+                    pendingList.add(executor.submit(new BatchFormatter(batch)));
+                    batch = new ArrayList<MZTabRecord>(batchSize);
+                    if (pendingList.size() >= threads * 2) {
+                        bytes += writeBatch(pendingList.removeFirst());
+                    }
+                }
+            }
+            if (! batch.isEmpty()) {
+                pendingList.add(executor.submit(new BatchFormatter(batch)));
+            }
+            while (! pendingList.isEmpty()) {
+                bytes += writeBatch(pendingList.removeFirst());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        return bytes;
+    }
+
+    private int writeBatch(Future<byte[]> future) throws IOException {
+        try {
+            byte[] bytes = future.get();
+            out.write(bytes);
+            return bytes.length;
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("Print records interrupted!");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Format records failed: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * Format a batch of record lines into byte buffer, same bytes with {@link #writeRecord(MZTabRecord)}.
+     */
+    private static class BatchFormatter implements Callable<byte[]> {
+        private List<MZTabRecord> batch;
+
+        private BatchFormatter(List<MZTabRecord> batch) {
+            this.batch = batch;
+        }
+
+        @Override
+        public byte[] call() throws Exception {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(batch.size() * 256);
+            byte[] newLine = NEW_LINE.getBytes();
+            for (MZTabRecord record : batch) {
+                buffer.write(record.toString().getBytes());
+                buffer.write(newLine);
+            }
+            return buffer.toByteArray();
+        }
+    }
+
+    /**
+     * @return the number of records which have been printed.
+     */
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    private void endSection() throws IOException {
+        if (currentFactory != null) {
+            out.write(NEW_LINE.getBytes());
+            currentFactory = null;
+        }
+    }
+
+    /**
+     * Close the last table section, and flush output stream.
+     */
+    public void finish() throws IOException {
+        endSection();
+        out.flush();
+    }
+}
@@ -0,0 +1,254 @@
+package uk.ac.ebi.pride.jmztab.utils;
+
+import uk.ac.ebi.pride.jmztab.model.Section;
+
+import java.io.*;
+import java.util.*;
+
+import static uk.ac.ebi.pride.jmztab.model.MZTabConstants.TAB;
+import static uk.ac.ebi.pride.jmztab.utils.MZTabProperties.ENCODE;
+import static uk.ac.ebi.pride.jmztab.utils.MZTabProperties.PROGRESS_INTERVAL;
+
+/**
+ * Sparse line offset index of the protein/peptide/small_molecule data lines, build by one pass over the
+ * raw bytes of mzTab file without parsing. For every data section, the header line and the file offset of
+ * every {@link #BLOCK_SIZE}th row are kept, thus a 10M rows table only cost about 1.25M bytes. Rows are read
+ * block by block through random access, comment lines between rows are skipped. Same with
+ * {@link BufferedReader}, line is terminated by "\n", "\r" or "\r\n".
+ *
+ * Notice: lines are not validated, and gzip compressed file is not supported because it can not be seek.
+ *
+ * User: Qingwei
+ * Date: 21/05/13
+ */
+public class MZTabLineIndex {
+    public final static int BLOCK_SIZE = 64;
+
+    private File tabFile;
+    private RandomAccessFile raf;
+
+    private Map<Section, String> headerMap = new EnumMap<Section, String>(Section.class);
+    private Map<Section, Integer> rowCountMap = new EnumMap<Section, Integer>(Section.class);
+    private Map<Section, long[]> blockMap = new EnumMap<Section, long[]>(Section.class);
+
+    public MZTabLineIndex(File tabFile) throws IOException {
+        this(tabFile, null, null);
+    }
+
+    /**
+     * @param progressListener if not null, receive bytes scanned and rows indexed.
+     * @param cancellationToken if not null, checked every mztab.progress.interval lines.
+     * @throws java.util.concurrent.CancellationException if token cancelled during index.
+     */
+    public MZTabLineIndex(File tabFile, ProgressListener progressListener, CancellationToken cancellationToken) throws IOException {
+        if (tabFile.getName().endsWith(".gz")) {
+            throw new IllegalArgumentException("Can not index compressed file " + tabFile);
+        }
+
+        this.tabFile = tabFile;
+        build(progressListener, cancellationToken);
+        this.raf = new RandomAccessFile(tabFile, "r");
+    }
+
+    private Section getDataSection(byte[] line, int length) {
+        if (length < 3 || (length > 3 && line[3] != TAB)) {
+            return null;
+        }
+
+        String prefix = new String(line, 0, 3);
+        if (prefix.equals(Section.Protein.getPrefix())) {
+            return Section.Protein;
+        } else if (prefix.equals(Section.Peptide.getPrefix())) {
+            return Section.Peptide;
+        } else if (prefix.equals(Section.Small_Molecule.getPrefix())) {
+            return Section.Small_Molecule;
+        } else if (prefix.equals(Section.Protein_Header.getPrefix())) {
+            return Section.Protein_Header;
+        } else if (prefix.equals(Section.Peptide_Header.getPrefix())) {
+            return Section.Peptide_Header;
+        } else if (prefix.equals(Section.Small_Molecule_Header.getPrefix())) {
+            return Section.Small_Molecule_Header;
+        }
+        return null;
+    }
+
+    private void build(ProgressListener progressListener, CancellationToken cancellationToken) throws IOException {
+        Map<Section, long[]> offsetMap = new EnumMap<Section, long[]>(Section.class);
+
+        InputStream in = new FileInputStream(tabFile);
+        try {
+            byte[] buffer = new byte[64 * 1024];
+            // only the first 4 bytes of line are kept, except header line.
+            byte[] line = new byte[1024];
+            int length = 0;
+            boolean header = false;
+            long offset = 0;
+            long lineStart = 0;
+            long lineCount = 0;
+            long rows = 0;
+            Section section = null;
+            int size;
+            byte b;
+            while ((size = in.read(buffer)) != -1) {
+                for (int i = 0; i < size; i++, offset++) {
+                    b = buffer[i];
+                    if (b != '\n' && b != '\r') {
+                        if (length < 4 || header) {
+                            if (length == line.length) {
+                                line = Arrays.copyOf(line, line.length * 2);
+                            }
+                            line[length++] = b;
+                            if (length == 4) {
+                                section = getDataSection(line, length);
+                                header = section != null && section.isHeader();
+                            }
+                        }
+                        continue;
+                    }
+
+                    section = endLine(offsetMap, line, length, lineStart);
+                    if (section != null && ! section.isHeader()) {
+                        rows++;
+                    }
+                    lineStart = offset + 1;
+                    length = 0;
+                    header = false;
+
+                    lineCount++;
+                    if (lineCount % PROGRESS_INTERVAL == 0) {
+                        if (cancellationToken != null) {
+                            cancellationToken.check();
+                        }
+                        if (progressListener != null) {
+                            progressListener.progress(offset, tabFile.length(), section, rows);
+                        }
+                    }
+                }
+            }
+            // last line without line terminator.
+            if (length > 0) {
+                section = endLine(offsetMap, line, length, lineStart);
+                if (section != null && ! section.isHeader()) {
+                    rows++;
+                }
+            }
+            if (progressListener != null) {
+                progressListener.progress(offset, tabFile.length(), null, rows);
+            }
+        } finally {
+            in.close();
+        }
+
+        for (Map.Entry<Section, long[]> entry : offsetMap.entrySet()) {
+            int blocks = (rowCountMap.get(entry.getKey()) + BLOCK_SIZE - 1) / BLOCK_SIZE;
+            blockMap.put(entry.getKey(), Arrays.copyOf(entry.getValue(), blocks));
+        }
+    }
+
+    /**
+     * Keep header line, or record the offset of the first row of block.
+     *
+     * @return the section of line, null if not header or data line.
+     */
+    private Section endLine(Map<Section, long[]> offsetMap, byte[] line, int length, long lineStart) throws IOException {
+        Section section = getDataSection(line, length);
+        if (section == null) {
+            return null;
+        }
+
+        if (section.isHeader()) {
+            headerMap.put(Section.toDataSection(section), new String(line, 0, length, ENCODE));
+            return section;
+        }
+
+        int count = rowCountMap.containsKey(section) ? rowCountMap.get(section) : 0;
+        if (count % BLOCK_SIZE == 0) {
+            long[] offsets = offsetMap.get(section);
+            if (offsets == null) {
+                offsets = new long[16];
+                offsetMap.put(section, offsets);
+            } else if (count / BLOCK_SIZE == offsets.length) {
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+                offsetMap.put(section, offsets);
+            }
+            offsets[count / BLOCK_SIZE] = lineStart;
+        }
+        rowCountMap.put(section, count + 1);
+        return section;
+    }
+
+    public File getTabFile() {
+        return tabFile;
+    }
+
+    /**
+     * @param section Protein, Peptide or Small_Molecule.
+     * @return header line of section, null if not exists.
+     */
+    public String getHeader(Section section) {
+        return headerMap.get(section);
+    }
+
+    public int getRowCount(Section section) {
+        Integer count = rowCountMap.get(section);
+        return count == null ? 0 : count;
+    }
+
+    public int getBlockCount(Section section) {
+        long[] offsets = blockMap.get(section);
+        return offsets == null ? 0 : offsets.length;
+    }
+
+    /**
+     * Read the rows [block * BLOCK_SIZE, (block + 1) * BLOCK_SIZE) of section.
+     *
+     * @return raw data lines, line terminators removed.
+     */
+    public synchronized List<String> readBlock(Section section, int block) throws IOException {
+        long[] offsets = blockMap.get(section);
+        if (offsets == null || block < 0 || block >= offsets.length) {
+            throw new IndexOutOfBoundsException("Block " + block + " not exists in " + section);
+        }
+
+        int count = Math.min(BLOCK_SIZE, getRowCount(section) - block * BLOCK_SIZE);
+        List<String> lineList = new ArrayList<String>(count);
+        String prefix = section.getPrefix() + TAB;
+
+        raf.seek(offsets[block]);
+        byte[] buffer = new byte[64 * 1024];
+        ByteArrayOutputStream line = new ByteArrayOutputStream(1024);
+        int size;
+        int start;
+        String s;
+        while (lineList.size() < count && (size = raf.read(buffer)) != -1) {
+            start = 0;
+            for (int i = 0; i < size && lineList.size() < count; i++) {
+                if (buffer[i] == '\n' || buffer[i] == '\r') {
+                    line.write(buffer, start, i - start);
+                    start = i + 1;
+                    s = line.toString(ENCODE);
+                    line.reset();
+                    if (s.startsWith(prefix)) {
+                        lineList.add(s);
+                    }
+                }
+            }
+            if (lineList.size() < count) {
+                line.write(buffer, start, size - start);
+            }
+        }
+        // last line without line terminator.
+        if (lineList.size() < count && line.size() > 0) {
+            s = line.toString(ENCODE);
+            if (s.startsWith(prefix)) {
+                lineList.add(s);
+            }
+        }
+
+        return lineList;
+    }
+
+    public synchronized void close() throws IOException {
+        raf.close();
+    }
+}
@@ -58,9 +58,54 @@ public class MZTabProperties {
     public final static String Version = getProperty("mztab.version");
     public final static String ENCODE = getProperty("mztab.encode");
     public final static int MAX_ERROR_COUNT = Integer.parseInt(getProperty("mztab.max_error_count"));
+    public final static int ERROR_EXEMPLAR_COUNT = Integer.parseInt(getProperty("mztab.error.exemplar_count"));
+    public final static long CHECK_MEMORY_BUDGET = Long.parseLong(getProperty("mztab.check.memory_budget"));
+    public final static int CHECK_RUN_SIZE = Integer.parseInt(getProperty("mztab.check.run_size"));
     public final static LogicalErrorType.Level LEVEL = LogicalErrorType.findLevel(getProperty("mztab.level"));
     public final static boolean CVPARAM_CHECK = Boolean.parseBoolean(getProperty("mztab.cvparam_webservice"));
 
     public final static boolean BUFFERED = Boolean.parseBoolean(getProperty("mztab.buffered"));
 
+    public final static int CONVERT_CACHE_SIZE = Integer.parseInt(getProperty("mztab.convert.cache_size"));
+    public final static int CONVERT_THREADS = Integer.parseInt(getProperty("mztab.convert.threads"));
+    public final static int CONVERT_CHUNK_SIZE = Integer.parseInt(getProperty("mztab.convert.chunk_size"));
+
+    public final static int PRINT_THREADS = Integer.parseInt(getProperty("mztab.print.threads"));
+    public final static int PRINT_BATCH_SIZE = Integer.parseInt(getProperty("mztab.print.batch_size"));
+
+    public final static boolean GZIP_PARALLEL = Boolean.parseBoolean(getProperty("mztab.gzip.parallel"));
+    public final static int GZIP_THREADS = Integer.parseInt(getProperty("mztab.gzip.threads"));
+    public final static int GZIP_BLOCK_SIZE = Integer.parseInt(getProperty("mztab.gzip.block_size"));
+    public final static boolean GZIP_BGZF = Boolean.parseBoolean(getProperty("mztab.gzip.bgzf"));
+
+    public final static int PROGRESS_INTERVAL = Integer.parseInt(getProperty("mztab.progress.interval"));
+
+    public final static int BATCH_THREADS = Integer.parseInt(getProperty("mztab.batch.threads"));
+
+    public final static int SERVER_PORT = Integer.parseInt(getProperty("mztab.server.port"));
+    public final static int SERVER_THREADS = Integer.parseInt(getProperty("mztab.server.threads"));
+    public final static int SERVER_QUEUE_SIZE = Integer.parseInt(getProperty("mztab.server.queue_size"));
+    public final static int SERVER_MAX_JOBS = Integer.parseInt(getProperty("mztab.server.max_jobs"));
+    public final static String SERVER_OUT_DIR = getProperty("mztab.server.out_dir");
+    public final static String SERVER_TOKEN_FILE = getProperty("mztab.server.token_file");
+    public final static long SERVER_STOP_TIMEOUT = Long.parseLong(getProperty("mztab.server.stop_timeout"));
+
+    public final static boolean METRICS_JMX = Boolean.parseBoolean(getProperty("mztab.metrics.jmx"));
+    public final static long JFR_SLOW_LINE_MS = Long.parseLong(getProperty("mztab.jfr.slow_line_ms"));
+
+    public final static int CONSOLE_CAPACITY = Integer.parseInt(getProperty("mztab.console.capacity"));
+    public final static int CONSOLE_FRAME_RATE = Integer.parseInt(getProperty("mztab.console.frame_rate"));
+    public final static String CONSOLE_SPILL_FILE = getProperty("mztab.console.spill_file");
+
+    public final static int BROWSE_CACHE_BLOCKS = Integer.parseInt(getProperty("mztab.browse.cache_blocks"));
+    public final static int BROWSE_PREFETCH_BLOCKS = Integer.parseInt(getProperty("mztab.browse.prefetch_blocks"));
+
+    public final static int DB_BATCH_SIZE = Integer.parseInt(getProperty("mztab.db.batch_size"));
+    public final static int DB_THREADS = Integer.parseInt(getProperty("mztab.db.threads"));
+    public final static String DB_TEXT_TYPE = getProperty("mztab.db.text_type");
+    public final static int DB_FETCH_SIZE = Integer.parseInt(getProperty("mztab.db.fetch_size"));
+
+    public final static int SPECTRUM_CACHE_SIZE = Integer.parseInt(getProperty("mztab.spectrum.cache_size"));
+    public final static int SPECTRUM_BATCH_SIZE = Integer.parseInt(getProperty("mztab.spectrum.batch_size"));
+
 }
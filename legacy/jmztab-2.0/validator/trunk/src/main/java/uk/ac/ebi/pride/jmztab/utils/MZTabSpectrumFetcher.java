@@ -0,0 +1,354 @@
+package uk.ac.ebi.pride.jmztab.utils;
+
+import psidev.psi.tools.xxindex.StandardXpathAccess;
+import psidev.psi.tools.xxindex.XpathAccess;
+import psidev.psi.tools.xxindex.index.IndexElement;
+import uk.ac.ebi.pride.jmztab.model.MZTabFile;
+import uk.ac.ebi.pride.jmztab.model.MsFile;
+import uk.ac.ebi.pride.jmztab.utils.errors.MZTabException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static uk.ac.ebi.pride.jmztab.utils.MZTabProperties.SPECTRUM_BATCH_SIZE;
+import static uk.ac.ebi.pride.jmztab.utils.MZTabProperties.SPECTRUM_CACHE_SIZE;
+
+/**
+ * Fetch the spectra referenced by spectra_ref from the local mzML, mzXML or mzData files, which
+ * {@link MsFile#getLocation()} point to. The references are grouped by ms file and sorted by native id in
+ * {@link SpectraRefIndex}, and fetched file by file, batch by batch. In one batch, spectra are read in file
+ * offset order, thus the ms file is read forward instead of random seek in row order.
+ *
+ * For every ms file, the fetcher build a xxindex of spectrum elements, and a native id to element map by
+ * reading the start tags of spectrum elements. The native id is "id" attribute in mzML, "scan=" + "num"
+ * attribute in mzXML, and "spectrum=" + "id" attribute in mzData. Besides, "index=N" reference the N-th
+ * (0 based) spectrum element. The indexes and the opened files are kept in a LRU cache of
+ * mztab.spectrum.cache_size files, and reused during the next fetch of the same file.
+ *
+ * Only "file:" location is supported, gzip compressed ms file is not supported. If the location is not a local
+ * file, or the native id not found, the spectrum is null.
+ *
+ * Notice: this class is not thread safe.
+ *
+ * User: Qingwei
+ * Date: 22/05/13
+ */
+public class MZTabSpectrumFetcher {
+    /**
+     * Receive the fetched spectra.
+     */
+    public interface Handler {
+        /**
+         * @param reference the native id of spectrum.
+         * @param spectrum the xml snippet of spectrum element, null if not found.
+         * @param entries the spectra_ref entries which reference this spectrum.
+         */
+        void fetched(MsFile msFile, String reference, String spectrum, List<SpectraRefIndex.Entry> entries) throws IOException;
+    }
+
+    private final static String[] SPECTRUM_XPATHS = {
+            "/mzML/run/spectrumList/spectrum",
+            "/indexedmzML/mzML/run/spectrumList/spectrum",
+            "/mzXML/msRun/scan",
+            "/mzXML/msRun/scan/scan",
+            "/mzData/spectrumList/spectrum"
+    };
+
+    private final static String INDEX_PREFIX = "index=";
+
+    private final static Pattern ID_PATTERN = Pattern.compile("\\sid\\s*=\\s*[\"']([^\"']*)[\"']");
+    private final static Pattern NUM_PATTERN = Pattern.compile("\\snum\\s*=\\s*[\"']([^\"']*)[\"']");
+
+    /**
+     * The xxindex of one ms file, and the opened file which spectra read from.
+     */
+    private static class SpectrumFile {
+        private RandomAccessFile raf;
+        private List<IndexElement> elementList = new ArrayList<IndexElement>();
+        private Map<String, IndexElement> elementMap = new HashMap<String, IndexElement>();
+
+        private SpectrumFile(File file) throws IOException {
+            XpathAccess access = new StandardXpathAccess(file, new HashSet<String>(Arrays.asList(SPECTRUM_XPATHS)));
+
+            raf = new RandomAccessFile(file, "r");
+            try {
+                List<IndexElement> elements;
+                for (String xpath : SPECTRUM_XPATHS) {
+                    elements = access.getIndex().getElements(xpath);
+                    if (elements == null || elements.isEmpty()) {
+                        continue;
+                    }
+
+                    elementList.addAll(elements);
+                    for (IndexElement element : elements) {
+                        String id = parseNativeId(xpath, readStartTag(element));
+                        if (id != null && ! elementMap.containsKey(id)) {
+                            elementMap.put(id, element);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                raf.close();
+                throw e;
+            }
+
+            // mzXML nested scans are indexed by other xpath, keep all elements in file order.
+            Collections.sort(elementList, new Comparator<IndexElement>() {
+                @Override
+                public int compare(IndexElement o1, IndexElement o2) {
+                    return o1.getStart() < o2.getStart() ? -1 : (o1.getStart() == o2.getStart() ? 0 : 1);
+                }
+            });
+        }
+
+        private String parseNativeId(String xpath, String startTag) {
+            Matcher matcher;
+            if (xpath.startsWith("/mzXML")) {
+                matcher = NUM_PATTERN.matcher(startTag);
+                return matcher.find() ? "scan=" + matcher.group(1) : null;
+            }
+
+            matcher = ID_PATTERN.matcher(startTag);
+            if (! matcher.find()) {
+                return null;
+            }
+            return xpath.startsWith("/mzData") ? "spectrum=" + matcher.group(1) : matcher.group(1);
+        }
+
+        private String readStartTag(IndexElement element) throws IOException {
+            StringBuilder sb = new StringBuilder();
+            byte[] buffer = new byte[512];
+            long position = element.getStart();
+            int size;
+            int end;
+            while (position < element.getStop()) {
+                size = (int) Math.min(buffer.length, element.getStop() - position);
+                raf.seek(position);
+                raf.readFully(buffer, 0, size);
+                sb.append(new String(buffer, 0, size, "UTF-8"));
+                end = sb.indexOf(">");
+                if (end >= 0) {
+                    return sb.substring(0, end + 1);
+                }
+                position += size;
+            }
+            return sb.toString();
+        }
+
+        private IndexElement getElement(String reference) {
+            IndexElement element = elementMap.get(reference);
+            if (element == null && reference.startsWith(INDEX_PREFIX)) {
+                try {
+                    int index = Integer.parseInt(reference.substring(INDEX_PREFIX.length()));
+                    if (index >= 0 && index < elementList.size()) {
+                        element = elementList.get(index);
+                    }
+                } catch (NumberFormatException e) {
+                    // not a valid index reference.
+                }
+            }
+            return element;
+        }
+
+        private String read(IndexElement element) throws IOException {
+            byte[] bytes = new byte[(int) (element.getStop() - element.getStart())];
+            raf.seek(element.getStart());
+            raf.readFully(bytes);
+            return new String(bytes, "UTF-8");
+        }
+
+        private void close() throws IOException {
+            raf.close();
+        }
+    }
+
+    /**
+     * The distinct native id of a batch, with its element and entries.
+     */
+    private static class Fetch {
+        private String reference;
+        private IndexElement element;
+        private List<SpectraRefIndex.Entry> entries;
+
+        private Fetch(String reference, IndexElement element, List<SpectraRefIndex.Entry> entries) {
+            this.reference = reference;
+            this.element = element;
+            this.entries = entries;
+        }
+    }
+
+    private int batchSize;
+    private LRUCache<File, SpectrumFile> cache;
+
+    /**
+     * Use mztab.spectrum.cache_size and mztab.spectrum.batch_size.
+     */
+    public MZTabSpectrumFetcher() {
+        this(SPECTRUM_CACHE_SIZE, SPECTRUM_BATCH_SIZE);
+    }
+
+    /**
+     * @param cacheSize the max number of ms files which index and opened file kept in cache.
+     * @param batchSize the max number of distinct native ids fetched in one batch.
+     */
+    public MZTabSpectrumFetcher(int cacheSize, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size should great than 0!");
+        }
+
+        this.batchSize = batchSize;
+        this.cache = new LRUCache<File, SpectrumFile>(cacheSize) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<File, SpectrumFile> eldest) {
+                boolean remove = super.removeEldestEntry(eldest);
+                if (remove) {
+                    closeQuietly(eldest.getValue());
+                }
+                return remove;
+            }
+        };
+    }
+
+    private void closeQuietly(SpectrumFile spectrumFile) {
+        try {
+            spectrumFile.close();
+        } catch (IOException e) {
+            // ignore, the file only opened for read.
+        }
+    }
+
+    /**
+     * @return the local file of ms file location, null if location not set or not a "file:" URL.
+     */
+    public static File getLocalFile(MsFile msFile) {
+        URL location = msFile.getLocation();
+        if (location == null || ! "file".equalsIgnoreCase(location.getProtocol())) {
+            return null;
+        }
+
+        try {
+            return new File(location.toURI());
+        } catch (URISyntaxException e) {
+            return new File(location.getPath());
+        } catch (IllegalArgumentException e) {
+            return new File(location.getPath());
+        }
+    }
+
+    /**
+     * @return the cached index of ms file, or build a new one. Null if ms file not found on local disk.
+     */
+    private SpectrumFile getSpectrumFile(MsFile msFile) throws IOException {
+        File file = getLocalFile(msFile);
+        if (file == null || ! file.isFile()) {
+            return null;
+        }
+
+        file = file.getCanonicalFile();
+        SpectrumFile spectrumFile = cache.get(file);
+        if (spectrumFile == null) {
+            spectrumFile = new SpectrumFile(file);
+            cache.put(file, spectrumFile);
+        }
+        return spectrumFile;
+    }
+
+    /**
+     * Fetch a single spectrum.
+     *
+     * @return the xml snippet of spectrum element, null if not found.
+     */
+    public String getSpectrum(MsFile msFile, String reference) throws IOException {
+        SpectrumFile spectrumFile = getSpectrumFile(msFile);
+        if (spectrumFile == null) {
+            return null;
+        }
+
+        IndexElement element = spectrumFile.getElement(reference);
+        return element == null ? null : spectrumFile.read(element);
+    }
+
+    /**
+     * Fetch all spectra referenced by the index, and call handler once per distinct native id of every ms file.
+     *
+     * @return the number of spectra found.
+     */
+    public long fetch(SpectraRefIndex index, Handler handler) throws IOException {
+        long count = 0;
+        for (MsFile msFile : index.getMsFiles()) {
+            SpectrumFile spectrumFile = getSpectrumFile(msFile);
+            for (List<SpectraRefIndex.Entry> batch : index.getBatches(msFile, batchSize)) {
+                count += fetchBatch(msFile, spectrumFile, batch, handler);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Fetch the spectra referenced by peptides and small molecules of the mzTab file.
+     */
+    public long fetch(MZTabFile tabFile, Handler handler) throws IOException {
+        return fetch(new SpectraRefIndex(tabFile), handler);
+    }
+
+    /**
+     * Build the spectra_ref index by one streaming pass of mzTab file, and fetch the referenced spectra.
+     */
+    public long fetch(File tabFile, Handler handler) throws IOException, MZTabException {
+        return fetch(new SpectraRefIndex(tabFile), handler);
+    }
+
+    private int fetchBatch(MsFile msFile, SpectrumFile spectrumFile, List<SpectraRefIndex.Entry> batch,
+                           Handler handler) throws IOException {
+        // group entries by native id, entries of the same native id are adjacent.
+        List<Fetch> fetchList = new ArrayList<Fetch>();
+        String reference;
+        int start = 0;
+        for (int i = 1; i <= batch.size(); i++) {
+            reference = batch.get(start).getReference();
+            if (i < batch.size() && batch.get(i).getReference().equals(reference)) {
+                continue;
+            }
+            fetchList.add(new Fetch(reference,
+                    spectrumFile == null ? null : spectrumFile.getElement(reference), batch.subList(start, i)));
+            start = i;
+        }
+
+        // not found first, and then in file offset order.
+        Collections.sort(fetchList, new Comparator<Fetch>() {
+            @Override
+            public int compare(Fetch o1, Fetch o2) {
+                long start1 = o1.element == null ? -1 : o1.element.getStart();
+                long start2 = o2.element == null ? -1 : o2.element.getStart();
+                return start1 < start2 ? -1 : (start1 == start2 ? 0 : 1);
+            }
+        });
+
+        int count = 0;
+        for (Fetch fetch : fetchList) {
+            if (fetch.element == null) {
+                handler.fetched(msFile, fetch.reference, null, fetch.entries);
+            } else {
+                handler.fetched(msFile, fetch.reference, spectrumFile.read(fetch.element), fetch.entries);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Close the cached files, and release the indexes.
+     */
+    public void close() {
+        for (SpectrumFile spectrumFile : cache.values()) {
+            closeQuietly(spectrumFile);
+        }
+        cache.clear();
+    }
+}
@@ -0,0 +1,275 @@
+package uk.ac.ebi.pride.jmztab.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.LinkedList;
+import java.util.concurrent.*;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import static uk.ac.ebi.pride.jmztab.utils.MZTabProperties.GZIP_BGZF;
+import static uk.ac.ebi.pride.jmztab.utils.MZTabProperties.GZIP_BLOCK_SIZE;
+import static uk.ac.ebi.pride.jmztab.utils.MZTabProperties.GZIP_THREADS;
+
+/**
+ * Multi-member gzip output stream. Data is cut into fixed size blocks, every block is compressed into a
+ * complete gzip member (RFC 1952) on a thread pool, and the members are written in order. Concatenated
+ * members are a valid gzip file, which can be read by gunzip and {@link java.util.zip.GZIPInputStream}
+ * (since java 7, the java 6 GZIPInputStream only read the first member). Thus the command line only use
+ * this stream if mztab.gzip.parallel is true.
+ *
+ * In BGZF layout (reference SAM/BAM specification), every member carry its compressed size in the "BC"
+ * extra field, block size is limited to 65280 bytes, and the stream end with an empty EOF member. Thus
+ * the reader can seek to a member boundary and decompress a single block.
+ *
+ * Compress threads are daemon threads, thus a stream which not closed because of error does not block the
+ * JVM exit.
+ *
+ * Notice: {@link #flush()} close the current block, thus frequent flush produce small members.
+ *
+ * User: Qingwei
+ * Date: 17/05/13
+ */
+public class ParallelGZIPOutputStream extends OutputStream {
+    /**
+     * Max uncompressed bytes of one BGZF block, make sure the compressed block less than 64K.
+     */
+    public final static int BGZF_BLOCK_SIZE = 0xff00;
+
+    private final static byte[] BGZF_EOF = {
+            0x1f, (byte) 0x8b, 0x08, 0x04, 0x00, 0x00, 0x00, 0x00, 0x00, (byte) 0xff, 0x06, 0x00, 0x42, 0x43,
+            0x02, 0x00, 0x1b, 0x00, 0x03, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00
+    };
+
+    private OutputStream out;
+    private int threads;
+    private int blockSize;
+    private boolean bgzf;
+    private int level = Deflater.DEFAULT_COMPRESSION;
+
+    private ExecutorService executor;
+    private LinkedList<Future<byte[]>> pendingList = new LinkedList<Future<byte[]>>();
+
+    private byte[] block;
+    private int count = 0;
+    private long members = 0;
+    private boolean closed = false;
+
+    /**
+     * Use mztab.gzip.threads, mztab.gzip.block_size and mztab.gzip.bgzf.
+     */
+    public ParallelGZIPOutputStream(OutputStream out) {
+        this(out, GZIP_THREADS, GZIP_BLOCK_SIZE, GZIP_BGZF);
+    }
+
+    /**
+     * @param threads the number of compress threads. If less than 1, use the number of available processors.
+     * @param blockSize uncompressed bytes of every member. In BGZF layout, not great than {@link #BGZF_BLOCK_SIZE}.
+     */
+    public ParallelGZIPOutputStream(OutputStream out, int threads, int blockSize, boolean bgzf) {
+        if (out == null) {
+            throw new NullPointerException("Output stream can not set null!");
+        }
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Block size should great than 0!");
+        }
+
+        this.out = out;
+        this.threads = threads < 1 ? Runtime.getRuntime().availableProcessors() : threads;
+        this.bgzf = bgzf;
+        this.blockSize = bgzf ? Math.min(blockSize, BGZF_BLOCK_SIZE) : blockSize;
+        this.block = new byte[this.blockSize];
+        this.executor = Executors.newFixedThreadPool(this.threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "mzTab gzip compressor");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * @param level deflate level, 0-9 or {@link Deflater#DEFAULT_COMPRESSION}.
+     */
+    public void setLevel(int level) {
+        if ((level < 0 || level > 9) && level != Deflater.DEFAULT_COMPRESSION) {
+            throw new IllegalArgumentException("Invalid compression level " + level);
+        }
+        this.level = level;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        checkClosed();
+        block[count++] = (byte) b;
+        if (count == blockSize) {
+            submitBlock();
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        checkClosed();
+
+        int size;
+        while (len > 0) {
+            size = Math.min(len, blockSize - count);
+            System.arraycopy(b, off, block, count, size);
+            count += size;
+            off += size;
+            len -= size;
+            if (count == blockSize) {
+                submitBlock();
+            }
+        }
+    }
+
+    private void checkClosed() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed!");
+        }
+    }
+
+    private void submitBlock() throws IOException {
+        if (count == 0) {
+            return;
+        }
+
+        final byte[] data = block;
+        final int length = count;
+        pendingList.add(executor.submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws Exception {
+                return compress(data, length);
+            }
+        }));
+        block = new byte[blockSize];
+        count = 0;
+        members++;
+
+        // limit the number of blocks kept in memory.
+        while (pendingList.size() >= threads * 2) {
+            writeMember(pendingList.removeFirst());
+        }
+    }
+
+    private void writeMember(Future<byte[]> future) throws IOException {
+        try {
+            out.write(future.get());
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("Compress block interrupted!");
+        } catch (ExecutionException e) {
+            throw new IOException("Compress block failed: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private void drain() throws IOException {
+        while (! pendingList.isEmpty()) {
+            writeMember(pendingList.removeFirst());
+        }
+    }
+
+    /**
+     * Compress data into a complete gzip member: header, raw deflate data, CRC32 and input size.
+     */
+    private byte[] compress(byte[] data, int length) {
+        ByteArrayOutputStream member = new ByteArrayOutputStream(length / 2 + 64);
+
+        // ID1, ID2, CM=deflate, FLG, MTIME(4), XFL, OS=unknown
+        member.write(0x1f);
+        member.write(0x8b);
+        member.write(Deflater.DEFLATED);
+        member.write(bgzf ? 0x04 : 0x00);
+        writeInt(member, 0);
+        member.write(0);
+        member.write(0xff);
+        if (bgzf) {
+            // XLEN=6, SI1='B', SI2='C', SLEN=2, BSIZE filled after compress.
+            writeShort(member, 6);
+            member.write('B');
+            member.write('C');
+            writeShort(member, 2);
+            writeShort(member, 0);
+        }
+
+        Deflater deflater = new Deflater(level, true);
+        try {
+            deflater.setInput(data, 0, length);
+            deflater.finish();
+            byte[] buffer = new byte[64 * 1024];
+            int size;
+            while (! deflater.finished()) {
+                size = deflater.deflate(buffer);
+                member.write(buffer, 0, size);
+            }
+        } finally {
+            deflater.end();
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, length);
+        writeInt(member, (int) crc.getValue());
+        writeInt(member, length);
+
+        byte[] bytes = member.toByteArray();
+        if (bgzf) {
+            int bsize = bytes.length - 1;
+            if (bsize > 0xffff) {
+                throw new IllegalStateException("BGZF block too large: " + bytes.length);
+            }
+            bytes[16] = (byte) bsize;
+            bytes[17] = (byte) (bsize >>> 8);
+        }
+        return bytes;
+    }
+
+    private void writeShort(ByteArrayOutputStream out, int value) {
+        out.write(value & 0xff);
+        out.write((value >>> 8) & 0xff);
+    }
+
+    private void writeInt(ByteArrayOutputStream out, int value) {
+        writeShort(out, value & 0xffff);
+        writeShort(out, (value >>> 16) & 0xffff);
+    }
+
+    /**
+     * Compress the current block, and write all pending members into output.
+     */
+    @Override
+    public void flush() throws IOException {
+        checkClosed();
+        submitBlock();
+        drain();
+        out.flush();
+    }
+
+    /**
+     * Write the remain members, the BGZF EOF marker, and close the underlying stream. If no data written,
+     * and not BGZF layout, write an empty member, thus the output is still a valid gzip file.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        try {
+            submitBlock();
+            drain();
+            if (bgzf) {
+                out.write(BGZF_EOF);
+            } else if (members == 0) {
+                out.write(compress(block, 0));
+            }
+            out.flush();
+        } finally {
+            closed = true;
+            executor.shutdownNow();
+            out.close();
+        }
+    }
+}
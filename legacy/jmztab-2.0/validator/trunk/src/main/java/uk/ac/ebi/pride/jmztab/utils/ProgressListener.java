@@ -0,0 +1,22 @@
+package uk.ac.ebi.pride.jmztab.utils;
+
+import uk.ac.ebi.pride.jmztab.model.Section;
+
+/**
+ * Receive progress of long-running parse, convert and merge. Listener is called on the working thread,
+ * every mztab.progress.interval lines/records and once at the end, GUI should pass the values to the
+ * event dispatch thread by itself.
+ *
+ * User: Qingwei
+ * Date: 19/05/13
+ */
+public interface ProgressListener {
+    /**
+     * @param consumed the amount of input consumed, bytes of source file for parser and converter (for gzip
+     *                 file, the compressed bytes), or the number of files merged for merger.
+     * @param total the total amount of input, -1 if not known.
+     * @param section the current section, null if not known.
+     * @param rows the number of protein/peptide/small_molecule rows processed.
+     */
+    public void progress(long consumed, long total, Section section, long rows);
+}
@@ -0,0 +1,405 @@
+package uk.ac.ebi.pride.jmztab.utils;
+
+import uk.ac.ebi.pride.jmztab.model.*;
+import uk.ac.ebi.pride.jmztab.utils.errors.FormatErrorType;
+import uk.ac.ebi.pride.jmztab.utils.errors.MZTabError;
+import uk.ac.ebi.pride.jmztab.utils.errors.MZTabException;
+import uk.ac.ebi.pride.jmztab.utils.parser.MTDLineParser;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+
+import static uk.ac.ebi.pride.jmztab.model.MZTabConstants.TAB;
+import static uk.ac.ebi.pride.jmztab.model.MZTabUtils.parseSpecRefList;
+import static uk.ac.ebi.pride.jmztab.model.MZTabUtils.parseString;
+import static uk.ac.ebi.pride.jmztab.utils.MZTabProperties.ENCODE;
+
+/**
+ * Group the spectra_ref of peptides and small molecules by {@link MsFile}, and sort the references of every
+ * file by native id. Thus the referenced spectra can be fetched file by file, and batch by batch in native id
+ * order, instead of random access across many MS files in row order. Every entry keep the section and line
+ * number of its row, which can be mapped back to the record by
+ * {@link MZTabFile#getPeptidesWithLineNumber()} or {@link MZTabFile#getSmallMoleculesWithLineNumber()}.
+ *
+ * The index can be built from the mzTab file by one streaming pass, only metadata, unit_id and spectra_ref
+ * cells are parsed, and records are not created. Each entry cost a reference string, a line number and a
+ * section slot. A row which reference N spectra produce N entries, and a spectrum referenced by N rows
+ * produce N adjacent entries after sort.
+ *
+ * Native ids are compared in natural order, digit sequences are compared by numeric value, for example:
+ * "scan=9" < "scan=10" < "scan=100".
+ *
+ * User: Qingwei
+ * Date: 22/05/13
+ */
+public class SpectraRefIndex {
+    /**
+     * One spectra_ref of a peptide/small_molecule row.
+     */
+    public static class Entry {
+        private MsFile msFile;
+        private String reference;
+        private Section section;
+        private int lineNumber;
+
+        private Entry(MsFile msFile, String reference, Section section, int lineNumber) {
+            this.msFile = msFile;
+            this.reference = reference;
+            this.section = section;
+            this.lineNumber = lineNumber;
+        }
+
+        public MsFile getMsFile() {
+            return msFile;
+        }
+
+        /**
+         * @return the native id of spectrum in ms file.
+         */
+        public String getReference() {
+            return reference;
+        }
+
+        /**
+         * @return Peptide or Small_Molecule.
+         */
+        public Section getSection() {
+            return section;
+        }
+
+        public int getLineNumber() {
+            return lineNumber;
+        }
+
+        @Override
+        public String toString() {
+            return msFile.getReference() + MZTabConstants.COLON + reference + TAB + section.getPrefix() + TAB + lineNumber;
+        }
+    }
+
+    /**
+     * The references of one ms file, kept in parallel arrays and sorted on first read.
+     */
+    private static class FileRefs {
+        private MsFile msFile;
+        private String[] references = new String[16];
+        private int[] lineNumbers = new int[16];
+        private Section[] sections = new Section[16];
+        private int size = 0;
+        private boolean sorted = true;
+
+        private FileRefs(MsFile msFile) {
+            this.msFile = msFile;
+        }
+
+        private void add(String reference, Section section, int lineNumber) {
+            if (size == references.length) {
+                int capacity = size * 2;
+                references = Arrays.copyOf(references, capacity);
+                lineNumbers = Arrays.copyOf(lineNumbers, capacity);
+                sections = Arrays.copyOf(sections, capacity);
+            }
+            if (sorted && size > 0 && compareNativeId(references[size - 1], reference) > 0) {
+                sorted = false;
+            }
+
+            references[size] = reference;
+            lineNumbers[size] = lineNumber;
+            sections[size] = section;
+            size++;
+        }
+
+        /**
+         * Stable sort by native id, entries of same reference keep the line order.
+         */
+        private synchronized void sort() {
+            if (sorted) {
+                return;
+            }
+
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer o1, Integer o2) {
+                    return compareNativeId(references[o1], references[o2]);
+                }
+            });
+
+            String[] sortedReferences = new String[size];
+            int[] sortedLineNumbers = new int[size];
+            Section[] sortedSections = new Section[size];
+            for (int i = 0; i < size; i++) {
+                sortedReferences[i] = references[order[i]];
+                sortedLineNumbers[i] = lineNumbers[order[i]];
+                sortedSections[i] = sections[order[i]];
+            }
+            references = sortedReferences;
+            lineNumbers = sortedLineNumbers;
+            sections = sortedSections;
+            sorted = true;
+        }
+
+        private Entry get(int index) {
+            return new Entry(msFile, references[index], sections[index], lineNumbers[index]);
+        }
+    }
+
+    private Metadata metadata;
+    private Map<MsFile, FileRefs> fileMap = new LinkedHashMap<MsFile, FileRefs>();
+    private long size = 0;
+
+    /**
+     * Build index by one streaming pass over the file, gzip compressed file is supported.
+     *
+     * @throws MZTabException metadata parse error.
+     */
+    public SpectraRefIndex(File tabFile) throws IOException, MZTabException {
+        InputStream in = new FileInputStream(tabFile);
+        if (tabFile.getName().endsWith(".gz")) {
+            in = new GZIPInputStream(in);
+        }
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, ENCODE));
+
+        try {
+            // metadata is filled by parser, and complete before the first data line.
+            MTDLineParser mtdParser = new MTDLineParser();
+            metadata = mtdParser.getMetadata();
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.length() < 3 || line.startsWith(Section.Comment.getPrefix())) {
+                    continue;
+                }
+
+                if (line.startsWith(Section.Metadata.getPrefix())) {
+                    mtdParser.check(lineNumber, line);
+                    continue;
+                }
+
+                if (line.startsWith(Section.Peptide.getPrefix())) {
+                    addRow(Section.Peptide, lineNumber, getField(line, PeptideColumn.UNIT_ID.getPosition()),
+                            getField(line, PeptideColumn.SPEC_REF.getPosition()));
+                } else if (line.startsWith(Section.Small_Molecule.getPrefix())) {
+                    addRow(Section.Small_Molecule, lineNumber, getField(line, SmallMoleculeColumn.UNIT_ID.getPosition()),
+                            getField(line, SmallMoleculeColumn.SPEC_REF.getPosition()));
+                } else if (! line.trim().isEmpty() && Section.findSection(line.substring(0, 3)) == null) {
+                    throw new MZTabException(new MZTabError(FormatErrorType.LinePrefix, lineNumber, line));
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Build index from the records of mzTab file.
+     */
+    public SpectraRefIndex(MZTabFile tabFile) {
+        this.metadata = tabFile.getMetadata();
+
+        for (Map.Entry<Integer, Peptide> entry : tabFile.getPeptidesWithLineNumber().entrySet()) {
+            addRefs(Section.Peptide, entry.getKey(), entry.getValue().getSpectraRef());
+        }
+        for (Map.Entry<Integer, SmallMolecule> entry : tabFile.getSmallMoleculesWithLineNumber().entrySet()) {
+            addRefs(Section.Small_Molecule, entry.getKey(), entry.getValue().getSpectraRef());
+        }
+    }
+
+    /**
+     * @return the trimmed field at position, or null if line has not enough fields.
+     */
+    private static String getField(String line, int position) {
+        int start = 0;
+        for (int i = 0; i < position; i++) {
+            start = line.indexOf(TAB, start);
+            if (start == -1) {
+                return null;
+            }
+            start++;
+        }
+
+        int end = line.indexOf(TAB, start);
+        return (end == -1 ? line.substring(start) : line.substring(start, end)).trim();
+    }
+
+    private void addRow(Section section, int lineNumber, String unitId, String spectraRef) {
+        spectraRef = parseString(spectraRef);
+        if (unitId == null || spectraRef == null) {
+            return;
+        }
+
+        Unit unit = metadata.getUnit(unitId);
+        if (unit == null) {
+            return;
+        }
+
+        addRefs(section, lineNumber, parseSpecRefList(unit, spectraRef));
+    }
+
+    private void addRefs(Section section, int lineNumber, List<SpecRef> refList) {
+        if (refList == null) {
+            return;
+        }
+
+        FileRefs fileRefs;
+        for (SpecRef ref : refList) {
+            fileRefs = fileMap.get(ref.getMsFile());
+            if (fileRefs == null) {
+                fileRefs = new FileRefs(ref.getMsFile());
+                fileMap.put(ref.getMsFile(), fileRefs);
+            }
+            fileRefs.add(ref.getReference(), section, lineNumber);
+            size++;
+        }
+    }
+
+    public Metadata getMetadata() {
+        return metadata;
+    }
+
+    /**
+     * @return the ms files which referenced by some rows, in the order of first reference.
+     */
+    public Set<MsFile> getMsFiles() {
+        return Collections.unmodifiableSet(fileMap.keySet());
+    }
+
+    /**
+     * @return the number of entries of all ms files.
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @return the number of entries of ms file.
+     */
+    public int size(MsFile msFile) {
+        FileRefs fileRefs = fileMap.get(msFile);
+        return fileRefs == null ? 0 : fileRefs.size;
+    }
+
+    /**
+     * @return the entries of ms file, sorted by native id. The list is a read only view, entries are created
+     * on demand. Return empty list if ms file not referenced.
+     */
+    public List<Entry> getEntries(MsFile msFile) {
+        final FileRefs fileRefs = fileMap.get(msFile);
+        if (fileRefs == null) {
+            return Collections.emptyList();
+        }
+
+        fileRefs.sort();
+        return new AbstractList<Entry>() {
+            @Override
+            public Entry get(int index) {
+                if (index < 0 || index >= fileRefs.size) {
+                    throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + fileRefs.size);
+                }
+                return fileRefs.get(index);
+            }
+
+            @Override
+            public int size() {
+                return fileRefs.size;
+            }
+        };
+    }
+
+    /**
+     * Cut the sorted entries of ms file into batches. Every batch contain at most batchSize distinct native
+     * ids, and all entries of the same native id are located in one batch.
+     *
+     * @return batches in native id order, every batch is a sub list view of {@link #getEntries(MsFile)}.
+     */
+    public List<List<Entry>> getBatches(MsFile msFile, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size should great than 0!");
+        }
+
+        List<Entry> entryList = getEntries(msFile);
+        FileRefs fileRefs = fileMap.get(msFile);
+        List<List<Entry>> batchList = new ArrayList<List<Entry>>();
+
+        int start = 0;
+        int distinct = 0;
+        for (int i = 0; i < entryList.size(); i++) {
+            if (i > 0 && fileRefs.references[i].equals(fileRefs.references[i - 1])) {
+                continue;
+            }
+            if (distinct == batchSize) {
+                batchList.add(entryList.subList(start, i));
+                start = i;
+                distinct = 0;
+            }
+            distinct++;
+        }
+        if (start < entryList.size()) {
+            batchList.add(entryList.subList(start, entryList.size()));
+        }
+
+        return batchList;
+    }
+
+    /**
+     * Compare native ids in natural order, digit sequences are compared by numeric value.
+     */
+    public static int compareNativeId(String id1, String id2) {
+        int i = 0;
+        int j = 0;
+        char c1;
+        char c2;
+        while (i < id1.length() && j < id2.length()) {
+            c1 = id1.charAt(i);
+            c2 = id2.charAt(j);
+            if (isDigit(c1) && isDigit(c2)) {
+                // skip leading zeros, and compare the digit sequences by length and then by digits.
+                int start1 = i;
+                int start2 = j;
+                while (start1 < id1.length() - 1 && id1.charAt(start1) == '0' && isDigit(id1.charAt(start1 + 1))) {
+                    start1++;
+                }
+                while (start2 < id2.length() - 1 && id2.charAt(start2) == '0' && isDigit(id2.charAt(start2 + 1))) {
+                    start2++;
+                }
+                int end1 = start1;
+                int end2 = start2;
+                while (end1 < id1.length() && isDigit(id1.charAt(end1))) {
+                    end1++;
+                }
+                while (end2 < id2.length() && isDigit(id2.charAt(end2))) {
+                    end2++;
+                }
+
+                int result = (end1 - start1) - (end2 - start2);
+                for (int k = 0; result == 0 && k < end1 - start1; k++) {
+                    result = id1.charAt(start1 + k) - id2.charAt(start2 + k);
+                }
+                if (result != 0) {
+                    return result;
+                }
+                i = end1;
+                j = end2;
+            } else {
+                if (c1 != c2) {
+                    return c1 - c2;
+                }
+                i++;
+                j++;
+            }
+        }
+
+        int result = (id1.length() - i) - (id2.length() - j);
+        // equal in natural order, but different in leading zeros.
+        return result != 0 ? result : id1.compareTo(id2);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
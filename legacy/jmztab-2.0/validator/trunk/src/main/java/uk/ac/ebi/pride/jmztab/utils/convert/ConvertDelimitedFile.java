@@ -0,0 +1,654 @@
+package uk.ac.ebi.pride.jmztab.utils.convert;
+
+import uk.ac.ebi.pride.jmztab.model.*;
+import uk.ac.ebi.pride.jmztab.utils.CountingInputStream;
+import uk.ac.ebi.pride.jmztab.utils.MZTabFileWriter;
+import uk.ac.ebi.pride.jmztab.utils.errors.MZTabErrorList;
+import uk.ac.ebi.pride.jmztab.utils.errors.MZTabErrorOverflowException;
+import uk.ac.ebi.pride.jmztab.utils.errors.MZTabErrorType;
+import uk.ac.ebi.pride.jmztab.utils.errors.MZTabException;
+import uk.ac.ebi.pride.jmztab.utils.parser.MZTabDataLineParser;
+import uk.ac.ebi.pride.jmztab.utils.parser.PEPLineParser;
+import uk.ac.ebi.pride.jmztab.utils.parser.PRTLineParser;
+import uk.ac.ebi.pride.jmztab.utils.parser.SMLLineParser;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.GZIPInputStream;
+
+import static uk.ac.ebi.pride.jmztab.model.MZTabConstants.NULL;
+import static uk.ac.ebi.pride.jmztab.model.MZTabConstants.TAB;
+import static uk.ac.ebi.pride.jmztab.model.MZTabUtils.isEmpty;
+import static uk.ac.ebi.pride.jmztab.model.MZTabUtils.parseUnitId;
+import static uk.ac.ebi.pride.jmztab.utils.MZTabProperties.*;
+
+/**
+ * Convert a delimited text (TSV/CSV) table into one mzTab protein, peptide or small molecule table.
+ * The conversion is driven by a mapping file, which is a java properties file:
+ *
+ * <pre>
+ * # protein, peptide or small_molecule
+ * section=peptide
+ * # tab, comma, or any single character
+ * separator=tab
+ * # first line is header line or not, default is true
+ * header=true
+ * # optional, fields wrapped by this character can contain separator
+ * quote="
+ * unit_id=PRIDE_1234
+ * title=...
+ * description=...
+ *
+ * # column.{mzTab stable column header}={source column name, or 1-based source column index}
+ * column.sequence=Peptide
+ * column.accession=Protein
+ * column.charge=3
+ *
+ * # opt.{name}={source column}, generate opt_{name} optional column.
+ * opt.mascot_score=Score
+ * </pre>
+ *
+ * The unit_id in mapping file is used to create metadata unit, and fill the unit_id column if it is
+ * not mapped to a source column.
+ * Not mapped columns are filled with "null". A quoted field can contain separator and line breaks, tab
+ * and line break characters in source values are replaced by blank.
+ *
+ * Source lines are read chunk by chunk (see {@link uk.ac.ebi.pride.jmztab.utils.MZTabProperties#CONVERT_CHUNK_SIZE}),
+ * and every chunk is converted on a fixed thread pool: lines are split by a character scanner (no regular
+ * expression), the fields are validated against the column types by the protein/peptide/small_molecule line
+ * parser directly, without join and split again, and the records are built by the same parser. Every chunk
+ * has its own parser and error list. The chunks are taken in source order, their errors are reported into
+ * {@link #getErrorList()} with source line number, and only a few chunks are kept in memory at any time.
+ * The records which have Error level errors are rejected, even if the error list has overflowed.
+ *
+ * User: Qingwei
+ * Date: 06/05/13
+ */
+public class ConvertDelimitedFile extends ConvertFile {
+    private final static String SECTION = "section";
+    private final static String SEPARATOR = "separator";
+    private final static String QUOTE = "quote";
+    private final static String HEADER = "header";
+    private final static String UNIT_ID = "unit_id";
+    private final static String TITLE = "title";
+    private final static String DESCRIPTION = "description";
+    private final static String COLUMN_PREFIX = "column.";
+    private final static String OPT_PREFIX = "opt.";
+
+    private Properties mapping = new Properties();
+
+    private Section section;
+    private char separator;
+    private char quote = 0;
+    private boolean hasHeader;
+    private String unitId;
+
+    /**
+     * source header line, null if source file not contain header.
+     */
+    private String[] sourceHeader;
+
+    /**
+     * sourceIndexes[i] is the source column index of (i+1)th mzTab column, -1 means not mapped.
+     */
+    private int[] sourceIndexes;
+    private int unitIdPosition;
+
+    private int chunkSize = CONVERT_CHUNK_SIZE;
+    private int threads = CONVERT_THREADS;
+
+    private boolean filled = false;
+
+    // source line number of the last line read.
+    private int lineNumber;
+
+    // bytes of the source file consumed by the current reader.
+    private CountingInputStream counter;
+
+    public ConvertDelimitedFile(File inFile, File mappingFile) {
+        super(inFile, DELIMITED);
+
+        if (mappingFile == null || mappingFile.isDirectory()) {
+            throw new IllegalArgumentException("Invalid mapping file " + mappingFile);
+        }
+
+        try {
+            loadMapping(mappingFile);
+            if (hasHeader) {
+                BufferedReader reader = readFile(inFile);
+                try {
+                    String line = reader.readLine();
+                    sourceHeader = line == null ? new String[0] : split(line);
+                } finally {
+                    reader.close();
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Can not read " + inFile + " or mapping file " + mappingFile, e);
+        }
+
+        createArchitecture();
+        resolveColumns();
+    }
+
+    /**
+     * @param chunkSize the number of source lines converted together.
+     */
+    public void setChunkSize(int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size should great than 0!");
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * @param threads the number of convert threads.
+     */
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Threads should great than 0!");
+        }
+        this.threads = threads;
+    }
+
+    private BufferedReader readFile(File file) throws IOException {
+        counter = new CountingInputStream(new FileInputStream(file));
+        InputStream in = counter;
+        if (file.getName().endsWith(".gz")) {
+            in = new GZIPInputStream(in);
+        }
+
+        return new BufferedReader(new InputStreamReader(in, ENCODE), 1024 * 1024);
+    }
+
+    private void loadMapping(File mappingFile) throws IOException {
+        InputStream in = new FileInputStream(mappingFile);
+        try {
+            mapping.load(in);
+        } finally {
+            in.close();
+        }
+
+        section = Section.findSection(mapping.getProperty(SECTION, "").trim());
+        if (section == null || ! section.isData()) {
+            throw new IllegalArgumentException("section in mapping file should be protein, peptide or small_molecule.");
+        }
+
+        String value = mapping.getProperty(SEPARATOR, "tab");
+        if (value.equalsIgnoreCase("tab")) {
+            separator = TAB;
+        } else if (value.equalsIgnoreCase("comma")) {
+            separator = ',';
+        } else if (value.length() == 1) {
+            separator = value.charAt(0);
+        } else {
+            throw new IllegalArgumentException("separator in mapping file should be tab, comma or a single character.");
+        }
+
+        value = mapping.getProperty(QUOTE);
+        if (! isEmpty(value)) {
+            quote = value.trim().charAt(0);
+        }
+
+        hasHeader = Boolean.parseBoolean(mapping.getProperty(HEADER, "true").trim());
+
+        unitId = mapping.getProperty(UNIT_ID);
+        if (unitId == null) {
+            throw new IllegalArgumentException("unit_id should be set in mapping file.");
+        }
+        unitId = unitId.trim();
+        if (parseUnitId(unitId) == null) {
+            throw new IllegalArgumentException("unit_id " + unitId + " only contain 'A'-'Z', 'a'-'z', '0'-'9', and '_'.");
+        }
+    }
+
+    /**
+     * Split a source line by separator. Not quoted fields are substring of the line, no extra
+     * character copy. Double quote character in quoted field means one quote character.
+     */
+    private String[] split(String line) {
+        List<String> fieldList = new ArrayList<String>();
+
+        int length = line.length();
+        int start = 0;
+        int end;
+        while (start <= length) {
+            if (quote != 0 && start < length && line.charAt(start) == quote) {
+                StringBuilder sb = new StringBuilder();
+                int i = start + 1;
+                while (i < length) {
+                    char c = line.charAt(i);
+                    if (c == quote) {
+                        if (i + 1 < length && line.charAt(i + 1) == quote) {
+                            sb.append(quote);
+                            i += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    sb.append(c);
+                    i++;
+                }
+                fieldList.add(sb.toString());
+
+                end = line.indexOf(separator, i);
+            } else {
+                end = line.indexOf(separator, start);
+                fieldList.add(line.substring(start, end == -1 ? length : end));
+            }
+
+            if (end == -1) {
+                break;
+            }
+            start = end + 1;
+        }
+
+        return fieldList.toArray(new String[fieldList.size()]);
+    }
+
+    private int findSourceIndex(String source) {
+        source = source.trim();
+
+        try {
+            int index = Integer.parseInt(source);
+            if (index < 1) {
+                throw new IllegalArgumentException("Source column index should be great than 0: " + source);
+            }
+            return index - 1;
+        } catch (NumberFormatException e) {
+            // source column name.
+        }
+
+        if (sourceHeader != null) {
+            for (int i = 0; i < sourceHeader.length; i++) {
+                if (sourceHeader[i].trim().equals(source)) {
+                    return i;
+                }
+            }
+        }
+
+        throw new IllegalArgumentException("Can not find source column " + source + " in " + inFile);
+    }
+
+    private MZTabColumnFactory getColumnFactory() {
+        switch (section) {
+            case Protein:
+                return proteinColumnFactory;
+            case Peptide:
+                return peptideColumnFactory;
+            default:
+                return smallMoleculeColumnFactory;
+        }
+    }
+
+    /**
+     * Calculate the source column index of every mzTab column.
+     */
+    private void resolveColumns() {
+        MZTabColumnFactory factory = getColumnFactory();
+        SortedMap<Integer, MZTabColumn> columnMapping = factory.getColumnMapping();
+
+        sourceIndexes = new int[columnMapping.lastKey()];
+        Arrays.fill(sourceIndexes, -1);
+
+        String key;
+        MZTabColumn column;
+        for (String name : mapping.stringPropertyNames()) {
+            if (name.startsWith(COLUMN_PREFIX)) {
+                key = name.substring(COLUMN_PREFIX.length()).trim();
+                column = factory.getColumn(key);
+                if (column == null || ! factory.getStableColumnMapping().containsKey(column.getPosition())) {
+                    throw new IllegalArgumentException("Can not find " + section.getName() + " column " + key);
+                }
+            } else if (name.startsWith(OPT_PREFIX)) {
+                key = OptionColumn.OPT + name.substring(OPT_PREFIX.length()).trim();
+                column = factory.getColumn(key);
+            } else {
+                continue;
+            }
+
+            sourceIndexes[column.getPosition() - 1] = findSourceIndex(mapping.getProperty(name));
+        }
+
+        unitIdPosition = factory.getColumn(UNIT_ID).getPosition();
+    }
+
+    @Override
+    protected Metadata convertMetadata() {
+        Metadata metadata = new Metadata();
+
+        Unit unit = new Unit(unitId);
+        if (! isEmpty(mapping.getProperty(TITLE))) {
+            unit.setTitle(mapping.getProperty(TITLE).trim());
+        }
+        if (! isEmpty(mapping.getProperty(DESCRIPTION))) {
+            unit.setDescription(mapping.getProperty(DESCRIPTION).trim());
+        }
+        metadata.addUnit(unit);
+
+        return metadata;
+    }
+
+    /**
+     * Create column factory for mapped section, and add opt_{name} columns order by name.
+     */
+    private MZTabColumnFactory createColumnFactory(Section target) {
+        if (section != target) {
+            return null;
+        }
+
+        MZTabColumnFactory factory = MZTabColumnFactory.getInstance(target);
+
+        SortedSet<String> optNames = new TreeSet<String>();
+        for (String name : mapping.stringPropertyNames()) {
+            if (name.startsWith(OPT_PREFIX)) {
+                optNames.add(name.substring(OPT_PREFIX.length()).trim());
+            }
+        }
+        for (String optName : optNames) {
+            factory.addOptionalColumn(optName, String.class);
+        }
+
+        return factory;
+    }
+
+    @Override
+    protected MZTabColumnFactory convertProteinColumnFactory() {
+        return createColumnFactory(Section.Protein);
+    }
+
+    @Override
+    protected MZTabColumnFactory convertPeptideColumnFactory() {
+        return createColumnFactory(Section.Peptide);
+    }
+
+    @Override
+    protected MZTabColumnFactory convertSmallMoleculeColumnFactory() {
+        return createColumnFactory(Section.Small_Molecule);
+    }
+
+    /**
+     * Tab and line break characters can not be kept in a mzTab cell, replace them by blank.
+     */
+    private String escape(String value) {
+        if (value.indexOf(TAB) == -1 && value.indexOf('\r') == -1 && value.indexOf('\n') == -1) {
+            return value;
+        }
+        return value.replace(TAB, ' ').replace('\r', ' ').replace('\n', ' ').trim();
+    }
+
+    /**
+     * Convert source line to mzTab record items: {prefix} value1 value2 ...
+     */
+    private String[] convertLine(String line) {
+        String[] fields = split(line);
+
+        String[] items = new String[sourceIndexes.length + 1];
+        items[0] = section.getPrefix();
+
+        int index;
+        String value;
+        for (int i = 0; i < sourceIndexes.length; i++) {
+            index = sourceIndexes[i];
+            if (index == -1) {
+                value = i == unitIdPosition - 1 ? unitId : null;
+            } else {
+                value = index < fields.length ? escape(fields[index].trim()) : null;
+            }
+
+            items[i + 1] = isEmpty(value) ? NULL : value;
+        }
+
+        return items;
+    }
+
+    private String join(String[] items) {
+        StringBuilder sb = new StringBuilder(items.length * 8);
+        sb.append(items[0]);
+        for (int i = 1; i < items.length; i++) {
+            sb.append(TAB).append(items[i]);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * A chunk of source lines, and their line numbers in source file.
+     */
+    private static class Chunk {
+        private List<String> lineList = new ArrayList<String>();
+        private List<Integer> lineNumberList = new ArrayList<Integer>();
+        private int lineCount;
+
+        // accepted records, as record lines if printed, otherwise as records.
+        private List<String> recordLineList;
+        private List<MZTabRecord> recordList;
+        private MZTabErrorList errorList;
+    }
+
+    /**
+     * Convert and validate a chunk of source lines, the records which have Error level errors are rejected.
+     */
+    private class ConvertTask implements Callable<Chunk> {
+        private Chunk chunk;
+        private boolean buffered;
+
+        private ConvertTask(Chunk chunk, boolean buffered) {
+            this.chunk = chunk;
+            this.buffered = buffered;
+        }
+
+        @Override
+        public Chunk call() throws Exception {
+            // never overflow, errors are reported in source order by the consumer.
+            chunk.errorList = new MZTabErrorList(0);
+            MZTabDataLineParser parser = createLineParser(chunk.errorList);
+            if (buffered) {
+                chunk.recordList = new ArrayList<MZTabRecord>(chunk.lineList.size());
+            } else {
+                chunk.recordLineList = new ArrayList<String>(chunk.lineList.size());
+            }
+
+            String[] items;
+            long errorCount;
+            for (int i = 0; i < chunk.lineList.size(); i++) {
+                items = convertLine(chunk.lineList.get(i));
+
+                errorCount = chunk.errorList.getCount(MZTabErrorType.Level.Error);
+                try {
+                    parser.check(chunk.lineNumberList.get(i), items);
+                } catch (MZTabException e) {
+                    chunk.errorList.add(e.getError());
+                    continue;
+                }
+                if (chunk.errorList.getCount(MZTabErrorType.Level.Error) > errorCount) {
+                    continue;
+                }
+
+                if (buffered) {
+                    chunk.recordList.add(parser.getRecord());
+                } else {
+                    chunk.recordLineList.add(join(items));
+                }
+            }
+
+            chunk.lineCount = chunk.lineList.size();
+            chunk.lineList = null;
+            chunk.lineNumberList = null;
+            return chunk;
+        }
+    }
+
+    /**
+     * Read source lines, a quoted field can contain line breaks, thus one source line maybe several physical
+     * lines. Line number is the number of the first physical line.
+     */
+    private Chunk readChunk(BufferedReader reader) throws IOException {
+        Chunk chunk = new Chunk();
+
+        String line;
+        String next;
+        int firstLineNumber;
+        while (chunk.lineList.size() < chunkSize && (line = reader.readLine()) != null) {
+            lineNumber++;
+            firstLineNumber = lineNumber;
+            if (quote != 0 && isQuoteOpen(line)) {
+                StringBuilder sb = new StringBuilder(line);
+                while ((next = reader.readLine()) != null) {
+                    lineNumber++;
+                    sb.append('\n').append(next);
+                    if (isQuoteOpen(sb)) {
+                        continue;
+                    }
+                    break;
+                }
+                line = sb.toString();
+            }
+
+            if (line.trim().length() > 0) {
+                chunk.lineList.add(line);
+                chunk.lineNumberList.add(firstLineNumber);
+            }
+        }
+
+        return chunk;
+    }
+
+    /**
+     * @return whether the last quoted field not closed. Double quote character in quoted field is counted
+     * twice, thus not change the state.
+     */
+    private boolean isQuoteOpen(CharSequence line) {
+        boolean open = false;
+        for (int i = 0; i < line.length(); i++) {
+            if (line.charAt(i) == quote) {
+                open = ! open;
+            }
+        }
+        return open;
+    }
+
+    private MZTabDataLineParser createLineParser(MZTabErrorList errorList) {
+        switch (section) {
+            case Protein:
+                return new PRTLineParser(proteinColumnFactory, metadata, errorList);
+            case Peptide:
+                return new PEPLineParser(peptideColumnFactory, metadata, errorList);
+            default:
+                return new SMLLineParser(smallMoleculeColumnFactory, metadata, errorList);
+        }
+    }
+
+    /**
+     * Report the errors of chunk, and add the accepted records into table, or print them directly if writer
+     * is not null.
+     */
+    private void output(Chunk chunk, MZTabFileWriter writer) throws IOException {
+        try {
+            errorList.addAll(chunk.errorList);
+        } catch (MZTabErrorOverflowException e) {
+            // the following errors are not reported, but the records have been rejected by chunk.
+        }
+
+        if (writer != null) {
+            for (String recordLine : chunk.recordLineList) {
+                writer.writeRecord(recordLine);
+            }
+        } else {
+            for (MZTabRecord record : chunk.recordList) {
+                switch (section) {
+                    case Protein:
+                        proteins.add((Protein) record);
+                        break;
+                    case Peptide:
+                        peptides.add((Peptide) record);
+                        break;
+                    case Small_Molecule:
+                        smallMolecules.add((SmallMolecule) record);
+                        break;
+                }
+            }
+        }
+        rowsConverted(section, chunk.lineCount, counter.getCount());
+    }
+
+    private Chunk take(Future<Chunk> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Converting " + inFile + " has been interrupted.");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Can not convert " + inFile, e.getCause());
+        }
+    }
+
+    private void convertData(MZTabFileWriter writer) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        LinkedList<Future<Chunk>> futureList = new LinkedList<Future<Chunk>>();
+
+        errorList.clear();
+        lineNumber = 0;
+
+        BufferedReader reader = readFile(inFile);
+        try {
+            if (hasHeader) {
+                reader.readLine();
+                lineNumber++;
+            }
+
+            Chunk chunk = readChunk(reader);
+            while (! chunk.lineList.isEmpty()) {
+                futureList.add(executor.submit(new ConvertTask(chunk, writer == null)));
+                if (futureList.size() > threads) {
+                    output(take(futureList.removeFirst()), writer);
+                }
+                chunk = readChunk(reader);
+            }
+
+            while (! futureList.isEmpty()) {
+                output(take(futureList.removeFirst()), writer);
+            }
+            reportProgress(section, counter.getCount());
+        } finally {
+            executor.shutdownNow();
+            reader.close();
+        }
+    }
+
+    @Override
+    protected void fillData() {
+        try {
+            convertData(null);
+        } catch (IOException e) {
+            throw new IllegalStateException("Can not read " + inFile, e);
+        }
+    }
+
+    @Override
+    public MZTabFile getMZTabFile() {
+        if (! filled) {
+            fillData();
+            filled = true;
+        }
+
+        return super.getMZTabFile();
+    }
+
+    /**
+     * Print records chunk by chunk, in the same order with source file.
+     */
+    @Override
+    public void printMZTab(OutputStream out) throws IOException {
+        if (filled) {
+            super.printMZTab(out);
+            return;
+        }
+
+        MZTabFileWriter writer = new MZTabFileWriter(out);
+        writer.writeMetadata(metadata);
+        writer.writeHeader(getColumnFactory());
+        convertData(writer);
+        writer.finish();
+    }
+}
@@ -1,11 +1,19 @@
 package uk.ac.ebi.pride.jmztab.utils.convert;
 
 import uk.ac.ebi.pride.jmztab.model.*;
+import uk.ac.ebi.pride.jmztab.utils.CancellationToken;
+import uk.ac.ebi.pride.jmztab.utils.ProgressListener;
+import uk.ac.ebi.pride.jmztab.utils.errors.MZTabErrorList;
+import uk.ac.ebi.pride.jmztab.utils.metrics.MZTabFlightRecorder;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 
+import static uk.ac.ebi.pride.jmztab.utils.MZTabProperties.PROGRESS_INTERVAL;
+
 /**
  * User: Qingwei
  * Date: 12/03/13
@@ -21,10 +29,22 @@ public abstract class ConvertFile {
     protected Collection<Peptide> peptides;
     protected Collection<SmallMolecule> smallMolecules;
 
+    protected MZTabErrorList errorList = new MZTabErrorList();
+
     private MZTabFile mzTabFile;
 
+    private ProgressListener progressListener;
+    private CancellationToken cancellationToken;
+    private long rowCount = 0;
+
+    // flight recorder event of the current batch, which end at the next progress report.
+    private Object batchEvent;
+    private long batchRowStart = 0;
+
     public final static String PRIDE = "PRIDE";
     public final static String mzIdentML = "mzIndenML";
+    public final static String mzQuantML = "mzQuantML";
+    public final static String DELIMITED = "delimited";
 
     public ConvertFile(File inFile, String format) {
         if (inFile == null || inFile.isDirectory()) {
@@ -35,6 +55,66 @@ public abstract class ConvertFile {
         this.inFile = inFile;
     }
 
+    /**
+     * @return the errors found in source values during convert. Only the converters which validate the
+     * converted records (delimited text) report errors.
+     */
+    public MZTabErrorList getErrorList() {
+        return errorList;
+    }
+
+    /**
+     * Receive the bytes of source file consumed and the records converted. Converters which convert data during
+     * construction (PRIDE XML) not report progress.
+     */
+    public void setProgressListener(ProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * Checked every mztab.progress.interval records, converting throw
+     * {@link java.util.concurrent.CancellationException} if cancelled.
+     */
+    public void setCancellationToken(CancellationToken cancellationToken) {
+        this.cancellationToken = cancellationToken;
+    }
+
+    /**
+     * Called after records converted. Every mztab.progress.interval records, check cancellation and
+     * report progress.
+     *
+     * @param consumed bytes of source file consumed, -1 if not known.
+     */
+    protected void rowsConverted(Section section, int count, long consumed) {
+        long lastCount = rowCount;
+        if (lastCount == 0) {
+            batchEvent = MZTabFlightRecorder.begin(MZTabFlightRecorder.Type.ConvertBatch);
+        }
+        rowCount += count;
+        if (rowCount / PROGRESS_INTERVAL != lastCount / PROGRESS_INTERVAL) {
+            reportProgress(section, consumed);
+        }
+    }
+
+    /**
+     * Check cancellation and report progress, converter should call it once at the end.
+     */
+    protected void reportProgress(Section section, long consumed) {
+        if (batchEvent != null) {
+            MZTabFlightRecorder.commit(batchEvent, section == null ? null : section.getName(),
+                    rowCount - batchRowStart, consumed);
+        }
+        batchEvent = MZTabFlightRecorder.begin(MZTabFlightRecorder.Type.ConvertBatch);
+        batchRowStart = rowCount;
+
+        if (cancellationToken != null) {
+            cancellationToken.check();
+        }
+        if (progressListener != null) {
+            progressListener.progress(consumed, inFile.length(), section, rowCount);
+        }
+    }
+
     /**
      * create basic mzTab file architecture, including:
      * metadata, protein/peptide/small_molecule header line
@@ -88,6 +168,15 @@ public abstract class ConvertFile {
         return mzTabFile;
     }
 
+    /**
+     * Print converted mzTab file into output stream. Default, this method build whole
+     * {@link MZTabFile} in memory first. Converter which can generate record one by one
+     * should overwrite it, and print records by using {@link uk.ac.ebi.pride.jmztab.utils.MZTabFileWriter}.
+     */
+    public void printMZTab(OutputStream out) throws IOException {
+        getMZTabFile().printMZTab(out);
+    }
+
     protected abstract Metadata convertMetadata();
     protected abstract MZTabColumnFactory convertProteinColumnFactory();
     protected abstract MZTabColumnFactory convertPeptideColumnFactory();
@@ -4,26 +4,76 @@ import uk.ac.ebi.jmzidml.MzIdentMLElement;
 import uk.ac.ebi.jmzidml.model.mzidml.*;
 import uk.ac.ebi.jmzidml.xml.io.MzIdentMLUnmarshaller;
 import uk.ac.ebi.pride.jmztab.model.*;
+import uk.ac.ebi.pride.jmztab.model.Modification;
+import uk.ac.ebi.pride.jmztab.model.Peptide;
 import uk.ac.ebi.pride.jmztab.model.UserParam;
+import uk.ac.ebi.pride.jmztab.utils.HashKeySet;
+import uk.ac.ebi.pride.jmztab.utils.LRUCache;
+import uk.ac.ebi.pride.jmztab.utils.MZTabFileWriter;
 
+import javax.xml.bind.JAXBException;
 import java.io.File;
-import java.util.Iterator;
-import java.util.List;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.*;
 
 import static uk.ac.ebi.pride.jmztab.model.MZTabUtils.isEmpty;
+import static uk.ac.ebi.pride.jmztab.utils.MZTabProperties.CONVERT_CACHE_SIZE;
 
 /**
-* User: Qingwei
-* Date: 12/03/13
-*/
+ * Convert mzIdentML file to mzTab file. Because mzIdentML file maybe very large (several GB),
+ * SpectrumIdentificationResult and ProteinDetectionHypothesis elements are pulled one by one
+ * through {@link MzIdentMLUnmarshaller#unmarshalCollectionFromXpath(MzIdentMLElement)} iterator,
+ * and Peptide, DBSequence, PeptideEvidence, SearchDatabase lookups go through bounded LRU caches.
+ *
+ * Decoy PeptideEvidence are skipped, and a ProteinDetectionHypothesis which only supported by decoy evidences
+ * is a decoy protein, which is skipped too. If several hypotheses reference the same DBSequence, only the
+ * first one generate a protein record, the accessions which have been converted are kept in a {@link HashKeySet}.
+ *
+ * Call {@link #printMZTab(OutputStream)} to stream PRT/PEP records into output directly.
+ * {@link #getMZTabFile()} still build whole mzTab file in memory.
+ *
+ * User: Qingwei
+ * Date: 12/03/13
+ */
 public class ConvertMzIndentMLFile extends ConvertFile {
     private MzIdentMLUnmarshaller reader;
+    private Unit unit;
+
+    /**
+     * the first analysis software, used as search engine of protein and peptide.
+     */
+    private CVParam searchEngineParam;
+
+    /**
+     * SpectraData id --> ms_file[id] in metadata.
+     */
+    private Map<String, MsFile> msFileMap = new HashMap<String, MsFile>();
+
+    private Map<String, uk.ac.ebi.jmzidml.model.mzidml.Peptide> peptideCache;
+    private Map<String, PeptideEvidence> peptideEvidenceCache;
+    private Map<String, DBSequence> dbSequenceCache;
+    private Map<String, SearchDatabase> searchDatabaseCache;
+
+    /**
+     * accessions of the protein records which have been converted.
+     */
+    private HashKeySet proteinKeys;
+
+    private boolean filled = false;
 
     public ConvertMzIndentMLFile(File inFile) {
         super(inFile, mzIdentML);
         reader = new MzIdentMLUnmarshaller(inFile);
+
+        peptideCache = new LRUCache<String, uk.ac.ebi.jmzidml.model.mzidml.Peptide>(CONVERT_CACHE_SIZE);
+        peptideEvidenceCache = new LRUCache<String, PeptideEvidence>(CONVERT_CACHE_SIZE);
+        dbSequenceCache = new LRUCache<String, DBSequence>(CONVERT_CACHE_SIZE);
+        searchDatabaseCache = new LRUCache<String, SearchDatabase>(CONVERT_CACHE_SIZE);
+
         createArchitecture();
-        fillData();
     }
 
     private String getCVParamValue(List<CvParam> params, String accession) {
@@ -35,6 +85,18 @@ public class ConvertMzIndentMLFile extends ConvertFile {
         return null;
     }
 
+    private CVParam convertParam(CvParam param) {
+        return new CVParam(param.getCvRef(), param.getAccession(), param.getName(), param.getValue());
+    }
+
+    private CVParam getFirstCvParam(List<CvParam> params) {
+        if (params == null || params.isEmpty()) {
+            return null;
+        }
+
+        return convertParam(params.get(0));
+    }
+
     private void loadSoftware(Unit unit) {
         Iterator<AnalysisSoftware> it = reader.unmarshalCollectionFromXpath(MzIdentMLElement.AnalysisSoftware);
         int id = 0;
@@ -49,6 +111,10 @@ public class ConvertMzIndentMLFile extends ConvertFile {
             name = software.getSoftwareName().getCvParam().getName();
             accession = software.getSoftwareName().getCvParam().getAccession();
             unit.addSoftwareParam(id, new CVParam("MS", accession, name, version));
+
+            if (searchEngineParam == null) {
+                searchEngineParam = new CVParam("MS", accession, name, null);
+            }
         }
     }
 
@@ -91,15 +157,54 @@ public class ConvertMzIndentMLFile extends ConvertFile {
         }
     }
 
+    /**
+     * Every SpectraData element map to a ms_file[id] in metadata.
+     */
+    private void loadMsFile(Unit unit) {
+        Iterator<SpectraData> it = reader.unmarshalCollectionFromXpath(MzIdentMLElement.SpectraData);
+        int id = 0;
+        SpectraData spectraData;
+        CVParam param;
+        while (it.hasNext()) {
+            id++;
+            spectraData = it.next();
+
+            if (spectraData.getFileFormat() != null) {
+                param = getFirstCvParam(Collections.singletonList(spectraData.getFileFormat().getCvParam()));
+                if (param != null) {
+                    unit.addMsFileFormat(id, param);
+                }
+            }
+            if (spectraData.getSpectrumIDFormat() != null) {
+                param = getFirstCvParam(Collections.singletonList(spectraData.getSpectrumIDFormat().getCvParam()));
+                if (param != null) {
+                    unit.addMsFileIdFormat(id, param);
+                }
+            }
+            try {
+                unit.addMsFileLocation(id, new URL(spectraData.getLocation()));
+            } catch (MalformedURLException e) {
+                try {
+                    unit.addMsFileLocation(id, new File(spectraData.getLocation()).toURI().toURL());
+                } catch (MalformedURLException e1) {
+                    // do nothing
+                }
+            }
+
+            msFileMap.put(spectraData.getId(), unit.getMsFileMap().get(id));
+        }
+    }
+
     @Override
     protected Metadata convertMetadata() {
         Metadata metadata = new Metadata();
 
-        Unit unit = new Unit(reader.getMzIdentMLId());
+        unit = new Unit(reader.getMzIdentMLId());
         unit.addCustom(new UserParam("mzIdentML version", reader.getMzIdentMLVersion()));
 
         loadSoftware(unit);
         loadContact(unit);
+        loadMsFile(unit);
 
         metadata.addUnit(unit);
         return metadata;
@@ -124,8 +229,277 @@ public class ConvertMzIndentMLFile extends ConvertFile {
         return null;
     }
 
+    /**
+     * Unmarshal the referenced object by id, and cache it.
+     */
+    private <T extends MzIdentMLObject> T lookup(Map<String, T> cache, Class<T> clazz, String id) {
+        if (id == null) {
+            return null;
+        }
+
+        T object = cache.get(id);
+        if (object == null) {
+            try {
+                object = reader.unmarshal(clazz, id);
+            } catch (JAXBException e) {
+                throw new IllegalStateException("Can not unmarshal " + clazz.getSimpleName() + " " + id, e);
+            }
+            if (object != null) {
+                cache.put(id, object);
+            }
+        }
+
+        return object;
+    }
+
+    private void setDatabase(MZTabRecord record, DBSequence dbSequence) {
+        SearchDatabase database = lookup(searchDatabaseCache, SearchDatabase.class, dbSequence.getSearchDatabaseRef());
+        if (database == null) {
+            return;
+        }
+
+        if (record instanceof Protein) {
+            ((Protein) record).setDatabase(database.getName());
+            ((Protein) record).setDatabaseVersion(database.getVersion());
+        } else if (record instanceof Peptide) {
+            ((Peptide) record).setDatabase(database.getName());
+            ((Peptide) record).setDatabaseVersion(database.getVersion());
+        }
+    }
+
+    /**
+     * Converts the passed ProteinDetectionHypothesis object into an MzTab protein.
+     * Return null if hypothesis not pass threshold, all of its peptide evidences are decoy, or its
+     * accession has been converted.
+     */
+    private Protein loadProtein(ProteinDetectionHypothesis hypothesis) {
+        if (! hypothesis.isPassThreshold()) {
+            return null;
+        }
+
+        // not decoy evidences, and their distinct peptides.
+        int evidences = 0;
+        Set<String> peptideRefs = new HashSet<String>();
+        PeptideEvidence evidence;
+        for (PeptideHypothesis peptideHypothesis : hypothesis.getPeptideHypothesis()) {
+            evidence = lookup(peptideEvidenceCache, PeptideEvidence.class, peptideHypothesis.getPeptideEvidenceRef());
+            if (evidence != null && ! evidence.isIsDecoy()) {
+                evidences++;
+                peptideRefs.add(evidence.getPeptideRef());
+            }
+        }
+        if (evidences == 0 && ! hypothesis.getPeptideHypothesis().isEmpty()) {
+            // decoy protein.
+            return null;
+        }
+
+        DBSequence dbSequence = lookup(dbSequenceCache, DBSequence.class, hypothesis.getDBSequenceRef());
+        if (dbSequence == null || ! proteinKeys.add(unit.getUnitId(), dbSequence.getAccession())) {
+            return null;
+        }
+
+        Protein protein = new Protein(proteinColumnFactory);
+        protein.setAccession(dbSequence.getAccession());
+        protein.setUnitId(unit.getUnitId());
+        protein.setDescription(getCVParamValue(dbSequence.getCvParam(), "MS:1001088"));
+        setDatabase(protein, dbSequence);
+        protein.addSearchEngineParam(searchEngineParam);
+        for (CvParam param : hypothesis.getCvParam()) {
+            if (! isEmpty(param.getValue())) {
+                protein.addSearchEngineSocreParam(convertParam(param));
+            }
+        }
+
+        protein.setNumPeptides(evidences);
+        protein.setNumPeptideDistinct(peptideRefs.size());
+
+        return protein;
+    }
+
+    private void addModifications(Peptide peptide, uk.ac.ebi.jmzidml.model.mzidml.Peptide mzidPeptide) {
+        Modification modification;
+        for (uk.ac.ebi.jmzidml.model.mzidml.Modification mod : mzidPeptide.getModification()) {
+            for (CvParam param : mod.getCvParam()) {
+                modification = MZTabUtils.parseModification(Section.Peptide, param.getAccession());
+                if (modification == null) {
+                    // ignore the modification which not reported by UNIMOD or PSI-MOD accession.
+                    continue;
+                }
+                if (mod.getLocation() != null) {
+                    modification.addPosition(mod.getLocation(), null);
+                }
+                peptide.addModification(modification);
+            }
+        }
+    }
+
+    /**
+     * Converts the rank 1 SpectrumIdentificationItem in the result into mzTab peptides. Every
+     * not decoy protein which contain the peptide generate a peptide record.
+     */
+    private List<Peptide> loadPeptides(SpectrumIdentificationResult result) {
+        List<Peptide> peptideList = new ArrayList<Peptide>();
+
+        MsFile msFile = msFileMap.get(result.getSpectraDataRef());
+        String rt = getCVParamValue(result.getCvParam(), "MS:1000894");
+        if (rt == null) {
+            // scan start time
+            rt = getCVParamValue(result.getCvParam(), "MS:1000016");
+        }
+
+        uk.ac.ebi.jmzidml.model.mzidml.Peptide mzidPeptide;
+        PeptideEvidence evidence;
+        DBSequence dbSequence;
+        List<DBSequence> dbSequences = new ArrayList<DBSequence>();
+        Peptide peptide;
+        for (SpectrumIdentificationItem item : result.getSpectrumIdentificationItem()) {
+            if (item.getRank() != 1 || ! item.isPassThreshold()) {
+                continue;
+            }
+
+            mzidPeptide = lookup(peptideCache, uk.ac.ebi.jmzidml.model.mzidml.Peptide.class, item.getPeptideRef());
+            if (mzidPeptide == null) {
+                continue;
+            }
+
+            dbSequences.clear();
+            for (PeptideEvidenceRef ref : item.getPeptideEvidenceRef()) {
+                evidence = lookup(peptideEvidenceCache, PeptideEvidence.class, ref.getPeptideEvidenceRef());
+                if (evidence == null || evidence.isIsDecoy()) {
+                    continue;
+                }
+                dbSequence = lookup(dbSequenceCache, DBSequence.class, evidence.getDBSequenceRef());
+                if (dbSequence != null && ! dbSequences.contains(dbSequence)) {
+                    dbSequences.add(dbSequence);
+                }
+            }
+
+            for (DBSequence sequence : dbSequences) {
+                peptide = new Peptide(peptideColumnFactory);
+                peptide.setSequence(mzidPeptide.getPeptideSequence());
+                peptide.setAccession(sequence.getAccession());
+                peptide.setUnitId(unit.getUnitId());
+                peptide.setUnique(dbSequences.size() == 1 ? MZBoolean.True : MZBoolean.False);
+                setDatabase(peptide, sequence);
+                peptide.addSearchEngineParam(searchEngineParam);
+                for (CvParam param : item.getCvParam()) {
+                    if (! isEmpty(param.getValue())) {
+                        peptide.addSearchEngineSocreParam(convertParam(param));
+                    }
+                }
+                addModifications(peptide, mzidPeptide);
+                peptide.addRetentionTime(rt);
+                peptide.setCharge(item.getChargeState());
+                peptide.setMassToCharge(item.getExperimentalMassToCharge());
+                if (msFile != null && result.getSpectrumID() != null) {
+                    peptide.addSpectraRef(new SpecRef(msFile, result.getSpectrumID()));
+                }
+
+                peptideList.add(peptide);
+            }
+        }
+
+        return peptideList;
+    }
+
+    /**
+     * The mzIdentML file is read by random access through the element index of {@link MzIdentMLUnmarshaller},
+     * thus the bytes consumed are estimated by the number of ProteinDetectionHypothesis and
+     * SpectrumIdentificationResult elements converted.
+     */
+    private long estimateConsumed(long elements, long totalElements) {
+        return totalElements <= 0 ? -1 : inFile.length() * Math.min(elements, totalElements) / totalElements;
+    }
+
+    /**
+     * If writer is null, add record into protein/peptide table, otherwise print it directly.
+     */
+    private void output(MZTabRecord record, MZTabFileWriter writer) throws IOException {
+        if (writer != null) {
+            writer.writeRecord(record);
+        } else if (record instanceof Protein) {
+            proteins.add((Protein) record);
+        } else if (record instanceof Peptide) {
+            peptides.add((Peptide) record);
+        }
+    }
+
+    /**
+     * Pull ProteinDetectionHypothesis and SpectrumIdentificationResult elements one by one, and output
+     * the converted protein and peptide records.
+     */
+    private void readData(MZTabFileWriter writer) throws IOException {
+        long totalElements = reader.getObjectCountForXpath(MzIdentMLElement.ProteinDetectionHypothesis.getXpath())
+                + reader.getObjectCountForXpath(MzIdentMLElement.SpectrumIdentificationResult.getXpath());
+        long elements = 0;
+
+        proteinKeys = new HashKeySet();
+        if (writer != null) {
+            writer.writeHeader(proteinColumnFactory);
+        }
+        Protein protein;
+        Iterator<ProteinDetectionHypothesis> proteinIterator = reader.unmarshalCollectionFromXpath(MzIdentMLElement.ProteinDetectionHypothesis);
+        while (proteinIterator.hasNext()) {
+            protein = loadProtein(proteinIterator.next());
+            elements++;
+            if (protein != null) {
+                output(protein, writer);
+                rowsConverted(Section.Protein, 1, estimateConsumed(elements, totalElements));
+            }
+        }
+
+        if (writer != null) {
+            writer.writeHeader(peptideColumnFactory);
+        }
+        Iterator<SpectrumIdentificationResult> peptideIterator = reader.unmarshalCollectionFromXpath(MzIdentMLElement.SpectrumIdentificationResult);
+        List<Peptide> peptideList;
+        while (peptideIterator.hasNext()) {
+            peptideList = loadPeptides(peptideIterator.next());
+            elements++;
+            for (Peptide peptide : peptideList) {
+                output(peptide, writer);
+            }
+            rowsConverted(Section.Peptide, peptideList.size(), estimateConsumed(elements, totalElements));
+        }
+        reportProgress(Section.Peptide, estimateConsumed(elements, totalElements));
+    }
+
+    /**
+     * Buffer all protein and peptide records into memory, used by {@link #getMZTabFile()}.
+     */
     @Override
     protected void fillData() {
+        try {
+            readData(null);
+        } catch (IOException e) {
+            throw new IllegalStateException("Can not convert mzIdentML file " + inFile, e);
+        }
+    }
+
+    @Override
+    public MZTabFile getMZTabFile() {
+        if (! filled) {
+            fillData();
+            filled = true;
+        }
+
+        return super.getMZTabFile();
+    }
+
+    /**
+     * Print records one by one, only the current SpectrumIdentificationResult/ProteinDetectionHypothesis
+     * and the bounded lookup caches are kept in memory.
+     */
+    @Override
+    public void printMZTab(OutputStream out) throws IOException {
+        if (filled) {
+            super.printMZTab(out);
+            return;
+        }
 
+        MZTabFileWriter writer = new MZTabFileWriter(out);
+        writer.writeMetadata(metadata);
+        readData(writer);
+        writer.finish();
     }
 }
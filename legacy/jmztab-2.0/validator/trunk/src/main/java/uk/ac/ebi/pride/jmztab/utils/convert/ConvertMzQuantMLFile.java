@@ -0,0 +1,438 @@
+package uk.ac.ebi.pride.jmztab.utils.convert;
+
+import uk.ac.ebi.pride.jmztab.model.*;
+import uk.ac.ebi.pride.jmztab.utils.CountingInputStream;
+import uk.ac.ebi.pride.jmztab.utils.MZTabFileWriter;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.*;
+import java.util.*;
+
+import static uk.ac.ebi.pride.jmztab.model.MZTabUtils.*;
+
+/**
+ * Convert mzQuantML file to mzTab file. mzQuantML file is read by StAX pull parser, no DOM is built.
+ *
+ * Every Assay is mapped to a {@link SubUnit} (sub[1], sub[2] ...), and the StudyVariables which
+ * reference the assay are added as custom parameters of the sub unit. Each sub unit get three
+ * {@link AbundanceColumn} in protein and peptide table.
+ *
+ * Protein and PeptideConsensus elements only keep their identification information until their
+ * row in the first AssayQuantLayer is reached. After that, the record will be printed (or added into
+ * table) and dropped, so the whole quant matrix never be hold in memory. The other quant layers are ignored.
+ *
+ * User: Qingwei
+ * Date: 03/05/13
+ */
+public class ConvertMzQuantMLFile extends ConvertFile {
+    private Unit unit;
+
+    /**
+     * Assay id --> sub unit, keep the order of AssayList.
+     */
+    private Map<String, SubUnit> assayMap = new LinkedHashMap<String, SubUnit>();
+
+    /**
+     * Assay id --> position of abundance column in protein/peptide table.
+     */
+    private Map<String, Integer> proteinAbundanceMap = new HashMap<String, Integer>();
+    private Map<String, Integer> peptideAbundanceMap = new HashMap<String, Integer>();
+
+    private boolean filled = false;
+
+    // bytes of the source file consumed by the current reader.
+    private CountingInputStream counter;
+
+    public ConvertMzQuantMLFile(File inFile) {
+        super(inFile, mzQuantML);
+        createArchitecture();
+    }
+
+    private XMLStreamReader createReader() throws IOException, XMLStreamException {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        counter = new CountingInputStream(new FileInputStream(inFile));
+        return factory.createXMLStreamReader(new BufferedInputStream(counter));
+    }
+
+    private void close(XMLStreamReader reader) {
+        if (reader == null) {
+            return;
+        }
+
+        try {
+            reader.close();
+        } catch (XMLStreamException e) {
+            // do nothing
+        }
+    }
+
+    private CVParam readCVParam(XMLStreamReader reader) {
+        return new CVParam(
+                reader.getAttributeValue(null, "cvRef"),
+                reader.getAttributeValue(null, "accession"),
+                reader.getAttributeValue(null, "name"),
+                reader.getAttributeValue(null, "value")
+        );
+    }
+
+    private String[] splitText(String text) {
+        text = text == null ? "" : text.trim();
+        if (text.length() == 0) {
+            return new String[0];
+        }
+
+        return text.split("\\s+");
+    }
+
+    /**
+     * UNIT_IDs MUST only contain the following characters: 'A'-'Z', 'a'-'z', '0'-'9', and '_'.
+     */
+    private String createUnitId(String id) {
+        if (isEmpty(id)) {
+            id = inFile.getName();
+        }
+
+        id = id.replaceAll("[^A-Za-z0-9_]", "_");
+        if (! Character.isLetter(id.charAt(0))) {
+            id = "_" + id;
+        }
+
+        return id;
+    }
+
+    /**
+     * Read the head part of mzQuantML file (before ProteinList), including software, assays and
+     * study variables.
+     */
+    private void loadHeader(Metadata metadata) throws IOException, XMLStreamException {
+        XMLStreamReader reader = createReader();
+
+        String name;
+        int softwareId = 0;
+        String softwareVersion = null;
+        boolean inSoftware = false;
+        boolean inAnalysisSummary = false;
+        SubUnit subUnit = null;
+        boolean inLabel = false;
+        String studyVariable = null;
+
+        try {
+            loop:
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    name = reader.getLocalName();
+                    if (name.equals("MzQuantML")) {
+                        unit = new Unit(createUnitId(reader.getAttributeValue(null, "id")));
+                        unit.addCustom(new UserParam("mzQuantML version", reader.getAttributeValue(null, "version")));
+                        metadata.addUnit(unit);
+                    } else if (name.equals("Software")) {
+                        inSoftware = true;
+                        softwareId++;
+                        softwareVersion = reader.getAttributeValue(null, "version");
+                    } else if (name.equals("AnalysisSummary")) {
+                        inAnalysisSummary = true;
+                    } else if (name.equals("Assay")) {
+                        String id = reader.getAttributeValue(null, "id");
+                        String description = reader.getAttributeValue(null, "name");
+                        subUnit = new SubUnit(unit.getUnitId(), assayMap.size() + 1);
+                        subUnit.setDescription(isEmpty(description) ? id : description);
+                        assayMap.put(id, subUnit);
+                        metadata.addUnit(subUnit);
+                    } else if (name.equals("Label")) {
+                        inLabel = true;
+                    } else if (name.equals("StudyVariable")) {
+                        studyVariable = reader.getAttributeValue(null, "name");
+                    } else if (name.equals("Assay_refs") && studyVariable != null) {
+                        for (String assayRef : splitText(reader.getElementText())) {
+                            SubUnit assay = assayMap.get(assayRef);
+                            if (assay != null) {
+                                assay.addCustom(new UserParam("study variable", studyVariable));
+                            }
+                        }
+                    } else if (name.equals("cvParam")) {
+                        if (inSoftware) {
+                            CVParam param = readCVParam(reader);
+                            unit.addSoftwareParam(softwareId, new CVParam(param.getCvLabel(), param.getAccession(), param.getName(), softwareVersion));
+                            inSoftware = false;
+                        } else if (inAnalysisSummary && unit.getQuantificationMethod() == null) {
+                            unit.setQuantificationMethod(readCVParam(reader));
+                        } else if (inLabel && subUnit != null && subUnit.getQuantificationReagent() == null) {
+                            subUnit.setQuantificationReagent(readCVParam(reader));
+                        }
+                    } else if (name.equals("ProteinList") || name.equals("PeptideConsensusList")
+                            || name.equals("SmallMoleculeList") || name.equals("FeatureList")) {
+                        break loop;
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    name = reader.getLocalName();
+                    if (name.equals("Software")) {
+                        inSoftware = false;
+                    } else if (name.equals("AnalysisSummary")) {
+                        inAnalysisSummary = false;
+                    } else if (name.equals("Assay")) {
+                        subUnit = null;
+                    } else if (name.equals("Label")) {
+                        inLabel = false;
+                    } else if (name.equals("StudyVariable")) {
+                        studyVariable = null;
+                    }
+                }
+            }
+        } finally {
+            close(reader);
+        }
+
+        if (unit == null) {
+            throw new IllegalArgumentException("Invalid mzQuantML file " + inFile + ", not found MzQuantML element.");
+        }
+    }
+
+    @Override
+    protected Metadata convertMetadata() {
+        Metadata metadata = new Metadata();
+
+        try {
+            loadHeader(metadata);
+        } catch (IOException e) {
+            throw new IllegalStateException("Can not read mzQuantML file " + inFile, e);
+        } catch (XMLStreamException e) {
+            throw new IllegalStateException("Can not parse mzQuantML file " + inFile, e);
+        }
+
+        return metadata;
+    }
+
+    /**
+     * Add abundance columns for every assay, and record the abundance column position of each assay.
+     */
+    private void addAbundanceColumns(MZTabColumnFactory factory, Map<String, Integer> abundanceMap) {
+        for (Map.Entry<String, SubUnit> entry : assayMap.entrySet()) {
+            factory.addAbundanceColumns(entry.getValue());
+            for (AbundanceColumn column : factory.getAbundanceColumnMapping().values()) {
+                if (column.getSubUnit() == entry.getValue() && column.getField() == AbundanceColumn.Field.ABUNDANCE) {
+                    abundanceMap.put(entry.getKey(), column.getPosition());
+                }
+            }
+        }
+    }
+
+    @Override
+    protected MZTabColumnFactory convertProteinColumnFactory() {
+        MZTabColumnFactory proteinColumnFactory = MZTabColumnFactory.getInstance(Section.Protein);
+        addAbundanceColumns(proteinColumnFactory, proteinAbundanceMap);
+
+        return proteinColumnFactory;
+    }
+
+    @Override
+    protected MZTabColumnFactory convertPeptideColumnFactory() {
+        MZTabColumnFactory peptideColumnFactory = MZTabColumnFactory.getInstance(Section.Peptide);
+        addAbundanceColumns(peptideColumnFactory, peptideAbundanceMap);
+
+        return peptideColumnFactory;
+    }
+
+    @Override
+    protected MZTabColumnFactory convertSmallMoleculeColumnFactory() {
+        return null;
+    }
+
+    /**
+     * If writer is null, add record into protein/peptide table, otherwise print it directly.
+     */
+    private void output(MZTabRecord record, MZTabFileWriter writer) throws IOException {
+        if (writer != null) {
+            writer.writeRecord(record);
+        } else if (record instanceof Protein) {
+            proteins.add((Protein) record);
+        } else if (record instanceof Peptide) {
+            peptides.add((Peptide) record);
+        }
+        rowsConverted(record instanceof Protein ? Section.Protein : Section.Peptide, 1, counter.getCount());
+    }
+
+    /**
+     * Output the records which not quantified in the AssayQuantLayer.
+     */
+    private void flush(Map<String, MZTabRecord> pendingMap, MZTabFileWriter writer) throws IOException {
+        for (MZTabRecord record : pendingMap.values()) {
+            output(record, writer);
+        }
+        pendingMap.clear();
+    }
+
+    /**
+     * Pull protein and peptide records from ProteinList and PeptideConsensusList.
+     */
+    private void readData(MZTabFileWriter writer) throws IOException, XMLStreamException {
+        XMLStreamReader reader = createReader();
+
+        // protein/peptide id --> record which wait for abundance values.
+        Map<String, MZTabRecord> pendingMap = new LinkedHashMap<String, MZTabRecord>();
+        // peptide consensus id --> accession of the first protein which contain it.
+        Map<String, String> peptideAccessionMap = new HashMap<String, String>();
+
+        String name;
+        Section section = null;
+        Map<String, Integer> abundanceMap = null;
+        Protein protein = null;
+        Peptide peptide = null;
+        Integer modLocation = null;
+        boolean inModification = false;
+        boolean inQuantLayer = false;
+        boolean quantLayerUsed = false;
+        List<Integer> positionList = new ArrayList<Integer>();
+
+        try {
+            loop:
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    name = reader.getLocalName();
+                    if (name.equals("ProteinList")) {
+                        section = Section.Protein;
+                        abundanceMap = proteinAbundanceMap;
+                        quantLayerUsed = false;
+                        if (writer != null) {
+                            writer.writeHeader(proteinColumnFactory);
+                        }
+                    } else if (name.equals("PeptideConsensusList")) {
+                        section = Section.Peptide;
+                        abundanceMap = peptideAbundanceMap;
+                        quantLayerUsed = false;
+                        if (writer != null) {
+                            writer.writeHeader(peptideColumnFactory);
+                        }
+                    } else if (name.equals("SmallMoleculeList") || name.equals("FeatureList")) {
+                        break loop;
+                    } else if (section == Section.Protein && name.equals("Protein")) {
+                        protein = new Protein(proteinColumnFactory);
+                        protein.setAccession(reader.getAttributeValue(null, "accession"));
+                        protein.setUnitId(unit.getUnitId());
+                        pendingMap.put(reader.getAttributeValue(null, "id"), protein);
+                    } else if (protein != null && name.equals("PeptideConsensus_refs")) {
+                        for (String peptideRef : splitText(reader.getElementText())) {
+                            if (! peptideAccessionMap.containsKey(peptideRef)) {
+                                peptideAccessionMap.put(peptideRef, protein.getAccession());
+                            }
+                        }
+                    } else if (section == Section.Peptide && name.equals("PeptideConsensus")) {
+                        String id = reader.getAttributeValue(null, "id");
+                        String[] charges = splitText(reader.getAttributeValue(null, "charge"));
+                        peptide = new Peptide(peptideColumnFactory);
+                        peptide.setAccession(peptideAccessionMap.remove(id));
+                        peptide.setUnitId(unit.getUnitId());
+                        if (charges.length > 0) {
+                            peptide.setCharge(parseInteger(charges[0]));
+                        }
+                        pendingMap.put(id, peptide);
+                    } else if (peptide != null && name.equals("PeptideSequence")) {
+                        peptide.setSequence(reader.getElementText().trim());
+                    } else if (peptide != null && name.equals("Modification")) {
+                        inModification = true;
+                        modLocation = parseInteger(reader.getAttributeValue(null, "location"));
+                    } else if (inModification && name.equals("cvParam")) {
+                        Modification modification = parseModification(Section.Peptide, reader.getAttributeValue(null, "accession"));
+                        if (modification != null) {
+                            if (modLocation != null) {
+                                modification.addPosition(modLocation, null);
+                            }
+                            peptide.addModification(modification);
+                        }
+                    } else if (section != null && name.equals("AssayQuantLayer") && ! quantLayerUsed) {
+                        inQuantLayer = true;
+                        positionList.clear();
+                    } else if (inQuantLayer && name.equals("ColumnIndex")) {
+                        for (String assayRef : splitText(reader.getElementText())) {
+                            positionList.add(abundanceMap.get(assayRef));
+                        }
+                    } else if (inQuantLayer && name.equals("Row")) {
+                        MZTabRecord record = pendingMap.remove(reader.getAttributeValue(null, "object_ref"));
+                        String[] values = splitText(reader.getElementText());
+                        if (record == null) {
+                            continue;
+                        }
+
+                        Integer position;
+                        for (int i = 0; i < values.length && i < positionList.size(); i++) {
+                            position = positionList.get(i);
+                            if (position != null) {
+                                record.addValue(position, parseDouble(values[i]));
+                            }
+                        }
+                        output(record, writer);
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    name = reader.getLocalName();
+                    if (name.equals("ProteinList") || name.equals("PeptideConsensusList")) {
+                        flush(pendingMap, writer);
+                        section = null;
+                    } else if (name.equals("Protein")) {
+                        protein = null;
+                    } else if (name.equals("PeptideConsensus")) {
+                        peptide = null;
+                    } else if (name.equals("Modification")) {
+                        inModification = false;
+                        modLocation = null;
+                    } else if (inQuantLayer && name.equals("AssayQuantLayer")) {
+                        inQuantLayer = false;
+                        quantLayerUsed = true;
+                    }
+                }
+            }
+
+            flush(pendingMap, writer);
+            reportProgress(section, counter.getCount());
+        } finally {
+            close(reader);
+        }
+    }
+
+    /**
+     * Buffer all protein and peptide records into memory, used by {@link #getMZTabFile()}.
+     */
+    @Override
+    protected void fillData() {
+        try {
+            readData(null);
+        } catch (IOException e) {
+            throw new IllegalStateException("Can not read mzQuantML file " + inFile, e);
+        } catch (XMLStreamException e) {
+            throw new IllegalStateException("Can not parse mzQuantML file " + inFile, e);
+        }
+    }
+
+    @Override
+    public MZTabFile getMZTabFile() {
+        if (! filled) {
+            fillData();
+            filled = true;
+        }
+
+        return super.getMZTabFile();
+    }
+
+    /**
+     * Print records one by one during pull parsing.
+     */
+    @Override
+    public void printMZTab(OutputStream out) throws IOException {
+        if (filled) {
+            super.printMZTab(out);
+            return;
+        }
+
+        MZTabFileWriter writer = new MZTabFileWriter(out);
+        writer.writeMetadata(metadata);
+        try {
+            readData(writer);
+        } catch (XMLStreamException e) {
+            throw new IllegalStateException("Can not parse mzQuantML file " + inFile, e);
+        }
+        writer.finish();
+    }
+}
@@ -0,0 +1,422 @@
+package uk.ac.ebi.pride.jmztab.utils.db;
+
+import uk.ac.ebi.pride.jmztab.model.*;
+import uk.ac.ebi.pride.jmztab.utils.MZTabFileWriter;
+
+import java.io.IOException;
+import java.sql.*;
+import java.util.*;
+
+import static uk.ac.ebi.pride.jmztab.model.MZTabUtils.parseDouble;
+import static uk.ac.ebi.pride.jmztab.model.MZTabUtils.parseInteger;
+import static uk.ac.ebi.pride.jmztab.utils.MZTabProperties.DB_FETCH_SIZE;
+
+/**
+ * Export the rows of a SQL query into protein/peptide/small_molecule records, and stream them into
+ * {@link MZTabFileWriter} one by one. The query run on a forward-only, read-only cursor with fetch size
+ * mztab.db.fetch_size, thus only the fetched rows and the current record are kept in memory. For example,
+ * export peptides with a constant unit_id and one optional column:
+ *
+ * MZTabColumnFactory factory = MZTabColumnFactory.getInstance(Section.Peptide);
+ * factory.addOptionalColumn("pride_peptide_score", Double.class);
+ * MZTabDBExporter exporter = new MZTabDBExporter(factory, metadata);
+ * exporter.map("sequence", "psms_sequence").map("charge", "psms_prec_z").map("opt_pride_peptide_score", "score");
+ * exporter.setConstant("unit_id", "PRIDE_1234");
+ *
+ * writer.writeMetadata(metadata);
+ * writer.writeHeader(factory);
+ * exporter.export(connection, "SELECT psms_sequence, psms_prec_z, score FROM psms", writer);
+ *
+ * Column values are read as string, and converted by the same setters which load mzTab data lines, thus
+ * the value should use mzTab format, for example: "0-UNIMOD:214,8-UNIMOD:35" for modifications. SQL null
+ * is exported as "null". The unmapped columns keep null too.
+ *
+ * Notice: some drivers only stream the rows under special settings, the MySQL driver need useCursorFetch=true
+ * in the connection url, and PostgreSQL need auto commit off (which is set during export).
+ *
+ * User: Qingwei
+ * Date: 22/05/13
+ */
+public class MZTabDBExporter {
+    private MZTabColumnFactory factory;
+    private Metadata metadata;
+    private Section section;
+
+    // mzTab column header --> SQL column label, or constant value.
+    private Map<String, String> labelMap = new LinkedHashMap<String, String>();
+    private Map<String, String> constantMap = new LinkedHashMap<String, String>();
+
+    private int fetchSize = DB_FETCH_SIZE;
+
+    /**
+     * Column value source, bind to column position and result set index before export.
+     */
+    private static class Binding implements Comparable<Binding> {
+        private MZTabColumn column;
+        private int index;
+        private String constant;
+
+        private Binding(MZTabColumn column, int index, String constant) {
+            this.column = column;
+            this.index = index;
+            this.constant = constant;
+        }
+
+        @Override
+        public int compareTo(Binding o) {
+            return column.getPosition() - o.column.getPosition();
+        }
+    }
+
+    /**
+     * @param factory protein, peptide or small_molecule column factory, which include the optional and
+     *                abundance columns.
+     * @param metadata used to resolve the unit of spectra_ref.
+     */
+    public MZTabDBExporter(MZTabColumnFactory factory, Metadata metadata) {
+        if (factory == null || metadata == null) {
+            throw new NullPointerException("Column factory and metadata can not set null!");
+        }
+
+        this.factory = factory;
+        this.metadata = metadata;
+        this.section = Section.toDataSection(factory.getSection());
+        if (section != Section.Protein && section != Section.Peptide && section != Section.Small_Molecule) {
+            throw new IllegalArgumentException("Only protein, peptide and small_molecule records can be exported!");
+        }
+    }
+
+    /**
+     * @param header mzTab column header, for example: charge, opt_my_value, peptide_abundance_sub[1]
+     * @param label SQL column label in select list.
+     */
+    public MZTabDBExporter map(String header, String label) {
+        if (header == null || label == null) {
+            throw new NullPointerException("Column header and label can not set null!");
+        }
+        labelMap.put(header, label);
+        constantMap.remove(header);
+        return this;
+    }
+
+    /**
+     * Map columns by configuration, every key is mzTab column header, and value is SQL column label.
+     */
+    public MZTabDBExporter map(Properties mapping) {
+        for (String header : mapping.stringPropertyNames()) {
+            map(header, mapping.getProperty(header).trim());
+        }
+        return this;
+    }
+
+    /**
+     * @param value mzTab format value which set to every record, for example unit_id.
+     */
+    public MZTabDBExporter setConstant(String header, String value) {
+        if (header == null || value == null) {
+            throw new NullPointerException("Column header and value can not set null!");
+        }
+        constantMap.put(header, value);
+        labelMap.remove(header);
+        return this;
+    }
+
+    /**
+     * @param fetchSize the number of rows fetched from database per round trip, default is mztab.db.fetch_size.
+     */
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    private MZTabColumn findColumn(String header) {
+        MZTabColumn column = factory.getColumn(header);
+        if (column == null) {
+            throw new IllegalArgumentException("Export column " + header + " not exists in " + factory);
+        }
+        return column;
+    }
+
+    /**
+     * Resolve column positions and result set indexes once, ordered by column position. Thus unit_id is set
+     * before spectra_ref, which need the unit.
+     */
+    private Binding[] bind(ResultSet rs) throws SQLException {
+        List<Binding> bindingList = new ArrayList<Binding>();
+        for (Map.Entry<String, String> entry : labelMap.entrySet()) {
+            bindingList.add(new Binding(findColumn(entry.getKey()), rs.findColumn(entry.getValue()), null));
+        }
+        for (Map.Entry<String, String> entry : constantMap.entrySet()) {
+            bindingList.add(new Binding(findColumn(entry.getKey()), 0, entry.getValue()));
+        }
+        Collections.sort(bindingList);
+
+        return bindingList.toArray(new Binding[bindingList.size()]);
+    }
+
+    /**
+     * Run the query, and write one record per row into writer. Caller should write metadata and the header
+     * line of factory before export, and finish the writer after export.
+     *
+     * @param parameters the values of query parameters, set by {@link PreparedStatement#setObject(int, Object)}.
+     * @return the number of records exported.
+     */
+    public long export(Connection connection, String sql, MZTabFileWriter writer, Object... parameters)
+            throws SQLException, IOException {
+        boolean autoCommit = connection.getAutoCommit();
+        if (autoCommit) {
+            connection.setAutoCommit(false);
+        }
+
+        long count = 0;
+        PreparedStatement statement = null;
+        try {
+            statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(fetchSize);
+            for (int i = 0; i < parameters.length; i++) {
+                statement.setObject(i + 1, parameters[i]);
+            }
+
+            ResultSet rs = statement.executeQuery();
+            try {
+                Binding[] bindings = bind(rs);
+                MZTabRecord record;
+                String value;
+                while (rs.next()) {
+                    record = createRecord();
+                    for (Binding binding : bindings) {
+                        value = binding.constant == null ? rs.getString(binding.index) : binding.constant;
+                        if (value != null) {
+                            setValue(record, binding.column, value);
+                        }
+                    }
+                    writer.writeRecord(record);
+                    count++;
+                }
+            } finally {
+                rs.close();
+            }
+        } finally {
+            if (statement != null) {
+                statement.close();
+            }
+            if (autoCommit) {
+                // read only transaction.
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+        }
+
+        return count;
+    }
+
+    private MZTabRecord createRecord() {
+        switch (section) {
+            case Protein:
+                return new Protein(factory);
+            case Peptide:
+                return new Peptide(factory);
+            default:
+                return new SmallMolecule(factory);
+        }
+    }
+
+    /**
+     * @return the unit of spectra_ref, unit_id should be exported and defined in metadata.
+     */
+    private Unit getUnit(String unitId) {
+        Unit unit = unitId == null ? null : metadata.getUnit(unitId);
+        if (unit == null) {
+            throw new IllegalArgumentException("Unit " + unitId + " not defined in metadata, can not export spectra_ref!");
+        }
+        return unit;
+    }
+
+    private void setValue(MZTabRecord record, MZTabColumn column, String value) {
+        if (column instanceof ProteinColumn) {
+            setProteinValue((Protein) record, (ProteinColumn) column, value);
+        } else if (column instanceof PeptideColumn) {
+            setPeptideValue((Peptide) record, (PeptideColumn) column, value);
+        } else if (column instanceof SmallMoleculeColumn) {
+            setSmallMoleculeValue((SmallMolecule) record, (SmallMoleculeColumn) column, value);
+        } else if (column.getColumnType() == Double.class) {
+            record.addValue(column.getPosition(), parseDouble(value));
+        } else if (column.getColumnType() == Integer.class) {
+            record.addValue(column.getPosition(), parseInteger(value));
+        } else if (column.getColumnType() == MZBoolean.class) {
+            record.addValue(column.getPosition(), MZBoolean.findBoolean(value));
+        } else {
+            record.addValue(column.getPosition(), value);
+        }
+    }
+
+    private void setProteinValue(Protein protein, ProteinColumn column, String value) {
+        switch (column) {
+            case ACCESSION:
+                protein.setAccession(value);
+                break;
+            case UNIT_ID:
+                protein.setUnitId(value);
+                break;
+            case DESCRIPTION:
+                protein.setDescription(value);
+                break;
+            case TAXID:
+                protein.setTaxid(value);
+                break;
+            case SPECIES:
+                protein.setSpecies(value);
+                break;
+            case DATABASE:
+                protein.setDatabase(value);
+                break;
+            case DATABASE_VERSION:
+                protein.setDatabaseVersion(value);
+                break;
+            case SEARCH_ENGINE:
+                protein.setSearchEngine(value);
+                break;
+            case SEARCH_ENGINE_SCORE:
+                protein.setSearchEngineScore(value);
+                break;
+            case RELIABILITY:
+                protein.setReliability(value);
+                break;
+            case NUM_PEPTIDES:
+                protein.setNumPeptides(value);
+                break;
+            case NUM_PEPTIDES_DISTINCT:
+                protein.setNumPeptideDistinct(value);
+                break;
+            case NUM_PEPTIDES_UNAMBIGUOUS:
+                protein.setNumPeptidesUnambiguous(value);
+                break;
+            case AMBIGUITY_MEMGERS:
+                protein.setAmbiguityMembers(value);
+                break;
+            case MODIFICATIONS:
+                protein.setModifications(value);
+                break;
+            case URI:
+                protein.setURI(value);
+                break;
+            case GO_TERMS:
+                protein.setGOTerms(value);
+                break;
+            case PROTEIN_COVERAGE:
+                protein.setProteinConverage(value);
+                break;
+        }
+    }
+
+    private void setPeptideValue(Peptide peptide, PeptideColumn column, String value) {
+        switch (column) {
+            case SEQUENCE:
+                peptide.setSequence(value);
+                break;
+            case ACCESSION:
+                peptide.setAccession(value);
+                break;
+            case UNIT_ID:
+                peptide.setUnitId(value);
+                break;
+            case UNIQUE:
+                peptide.setUnique(value);
+                break;
+            case DATABASE:
+                peptide.setDatabase(value);
+                break;
+            case DATABASE_VERSION:
+                peptide.setDatabaseVersion(value);
+                break;
+            case SEARCH_ENGINE:
+                peptide.setSearchEngine(value);
+                break;
+            case SEARCH_ENGINE_SCORE:
+                peptide.setSearchEngineScore(value);
+                break;
+            case RELIABILITY:
+                peptide.setReliability(value);
+                break;
+            case MODIFICATIONS:
+                peptide.setModifications(value);
+                break;
+            case RETENTION_TIME:
+                peptide.setRetentionTime(value);
+                break;
+            case CHARGE:
+                peptide.setCharge(value);
+                break;
+            case MASS_TO_CHARGE:
+                peptide.setMassToCharge(value);
+                break;
+            case URI:
+                peptide.setURI(value);
+                break;
+            case SPEC_REF:
+                peptide.setSpectraRef(getUnit(peptide.getUnitId()), value);
+                break;
+        }
+    }
+
+    private void setSmallMoleculeValue(SmallMolecule smallMolecule, SmallMoleculeColumn column, String value) {
+        switch (column) {
+            case IDENTIFIER:
+                smallMolecule.setIdentifier(value);
+                break;
+            case UNIT_ID:
+                smallMolecule.setUnitId(value);
+                break;
+            case CHEMICAL_FORMULA:
+                smallMolecule.setChemicalFormula(value);
+                break;
+            case SMILES:
+                smallMolecule.setSmiles(value);
+                break;
+            case INCHI_KEY:
+                smallMolecule.setInchiKey(value);
+                break;
+            case DESCRIPTION:
+                smallMolecule.setDescription(value);
+                break;
+            case MASS_TO_CHARGE:
+                smallMolecule.setMassToCharge(value);
+                break;
+            case CHARGE:
+                smallMolecule.setCharge(value);
+                break;
+            case RETENTION_TIME:
+                smallMolecule.setRetentionTime(value);
+                break;
+            case TAXID:
+                smallMolecule.setTaxid(value);
+                break;
+            case SPECIES:
+                smallMolecule.setSpecies(value);
+                break;
+            case DATABASE:
+                smallMolecule.setDatabase(value);
+                break;
+            case DATABASE_VERSION:
+                smallMolecule.setDatabaseVersion(value);
+                break;
+            case RELIABILITY:
+                smallMolecule.setReliability(value);
+                break;
+            case URI:
+                smallMolecule.setURI(value);
+                break;
+            case SPEC_REF:
+                smallMolecule.setSpectraRef(getUnit(smallMolecule.getUnitId()), value);
+                break;
+            case SEARCH_ENGINE:
+                smallMolecule.setSearchEngine(value);
+                break;
+            case SEARCH_ENGINE_SCORE:
+                smallMolecule.setSearchEngineScore(value);
+                break;
+            case MODIFICATIONS:
+                smallMolecule.setModifications(value);
+                break;
+        }
+    }
+}
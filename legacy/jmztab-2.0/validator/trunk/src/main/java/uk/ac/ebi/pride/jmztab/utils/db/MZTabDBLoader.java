@@ -0,0 +1,718 @@
+package uk.ac.ebi.pride.jmztab.utils.db;
+
+import org.apache.commons.dbcp.BasicDataSource;
+import uk.ac.ebi.pride.jmztab.model.*;
+import uk.ac.ebi.pride.jmztab.utils.errors.*;
+import uk.ac.ebi.pride.jmztab.utils.parser.*;
+
+import javax.sql.DataSource;
+import java.io.*;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.GZIPInputStream;
+
+import static uk.ac.ebi.pride.jmztab.model.MZTabConstants.TAB;
+import static uk.ac.ebi.pride.jmztab.utils.MZTabProperties.*;
+
+/**
+ * Bulk load mzTab files into a normalized relational schema:
+ * - mztab_file, mztab_unit and mztab_sub_unit keep the file id, units and sub-units of metadata.
+ * - mztab_protein, mztab_peptide and mztab_small_molecule keep one row per data line, which primary key is
+ * (file_id, line_number). The stable columns are stored, modifications and abundance columns are normalized
+ * into the following tables, and the optional columns are not loaded.
+ * - mztab_modification keep one row per modification of data line.
+ * - mztab_abundance keep one row per (data line, sub-unit), with abundance, stdev and std_error values.
+ *
+ * The file is read in one pass. Data lines are cut into batches of mztab.db.batch_size lines, every batch is
+ * parsed and inserted by {@link PreparedStatement#executeBatch()} on its own pooled connection, and committed
+ * once. Batches of the same, or different sections are written on mztab.db.threads threads at the same time.
+ * If some batch failed, all rows of the file are deleted.
+ *
+ * The loader not validate the file, the caller should validate it by {@link uk.ac.ebi.pride.jmztab.utils.MZTabFileParser}
+ * first. Data lines which report Error level errors fail the load. NaN and INF double values are stored as null.
+ *
+ * User: Qingwei
+ * Date: 22/05/13
+ */
+public class MZTabDBLoader {
+    private final static String FILE_TABLE = "mztab_file";
+    private final static String UNIT_TABLE = "mztab_unit";
+    private final static String SUB_UNIT_TABLE = "mztab_sub_unit";
+    private final static String MODIFICATION_TABLE = "mztab_modification";
+    private final static String ABUNDANCE_TABLE = "mztab_abundance";
+
+    private final static Map<Section, String> recordTableMap = new EnumMap<Section, String>(Section.class);
+    private final static Map<Section, MZTabColumn[]> recordColumnMap = new EnumMap<Section, MZTabColumn[]>(Section.class);
+    private final static Map<Section, Integer> modificationPositionMap = new EnumMap<Section, Integer>(Section.class);
+    static {
+        recordTableMap.put(Section.Protein, "mztab_protein");
+        recordTableMap.put(Section.Peptide, "mztab_peptide");
+        recordTableMap.put(Section.Small_Molecule, "mztab_small_molecule");
+
+        addColumns(Section.Protein, ProteinColumn.values(), ProteinColumn.MODIFICATIONS);
+        addColumns(Section.Peptide, PeptideColumn.values(), PeptideColumn.MODIFICATIONS);
+        addColumns(Section.Small_Molecule, SmallMoleculeColumn.values(), SmallMoleculeColumn.MODIFICATIONS);
+    }
+
+    private static void addColumns(Section section, MZTabColumn[] columns, MZTabColumn modifications) {
+        List<MZTabColumn> columnList = new ArrayList<MZTabColumn>();
+        for (MZTabColumn column : columns) {
+            if (column != modifications) {
+                columnList.add(column);
+            }
+        }
+        recordColumnMap.put(section, columnList.toArray(new MZTabColumn[columnList.size()]));
+        modificationPositionMap.put(section, modifications.getPosition());
+    }
+
+    /**
+     * Column header --> SQL column name, for the headers which are reserved words.
+     */
+    private static String getColumnName(MZTabColumn column) {
+        String header = column.getHeader();
+        if (header.equals("unique")) {
+            return "is_unique";
+        } else if (header.equals("database")) {
+            return "database_name";
+        } else {
+            return header;
+        }
+    }
+
+    private DataSource dataSource;
+    // the pool which created by this loader, closed in close().
+    private BasicDataSource pool;
+
+    private int batchSize;
+    private int threads;
+    private String textType = DB_TEXT_TYPE;
+
+    /**
+     * Use mztab.db.batch_size and mztab.db.threads.
+     */
+    public MZTabDBLoader(DataSource dataSource) {
+        this(dataSource, DB_BATCH_SIZE, DB_THREADS);
+    }
+
+    /**
+     * @param dataSource connection pool, which should provide at least threads + 1 connections.
+     * @param batchSize the number of data lines inserted and committed together.
+     * @param threads the number of batches written at the same time. If less than 1, use the number of
+     *                available processors.
+     */
+    public MZTabDBLoader(DataSource dataSource, int batchSize, int threads) {
+        if (dataSource == null) {
+            throw new NullPointerException("Data source can not set null!");
+        }
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size should great than 0!");
+        }
+
+        this.dataSource = dataSource;
+        this.batchSize = batchSize;
+        this.threads = threads < 1 ? Runtime.getRuntime().availableProcessors() : threads;
+    }
+
+    /**
+     * Create a DBCP pool which size match to the number of writer threads, and close it in {@link #close()}.
+     */
+    public MZTabDBLoader(String driverClassName, String url, String username, String password) {
+        this(new BasicDataSource(), DB_BATCH_SIZE, DB_THREADS);
+
+        pool = (BasicDataSource) dataSource;
+        pool.setDriverClassName(driverClassName);
+        pool.setUrl(url);
+        pool.setUsername(username);
+        pool.setPassword(password);
+        pool.setMaxActive(threads + 1);
+        pool.setMaxIdle(threads + 1);
+    }
+
+    /**
+     * @param textType SQL type of text columns, default is mztab.db.text_type.
+     */
+    public void setTextType(String textType) {
+        if (textType == null) {
+            throw new NullPointerException("Text type can not set null!");
+        }
+        this.textType = textType;
+    }
+
+    private String getSQLType(Class columnType) {
+        if (columnType == Integer.class) {
+            return "INTEGER";
+        } else if (columnType == Double.class) {
+            return "DOUBLE";
+        } else {
+            return textType;
+        }
+    }
+
+    /**
+     * @return CREATE TABLE statements of the schema.
+     */
+    public List<String> getSchema() {
+        List<String> ddlList = new ArrayList<String>();
+
+        ddlList.add("CREATE TABLE " + FILE_TABLE + " (file_id INTEGER NOT NULL, name " + textType +
+                ", PRIMARY KEY (file_id))");
+        ddlList.add("CREATE TABLE " + UNIT_TABLE + " (file_id INTEGER NOT NULL, unit_id " + textType +
+                " NOT NULL, title " + textType + ", description " + textType + ")");
+        ddlList.add("CREATE TABLE " + SUB_UNIT_TABLE + " (file_id INTEGER NOT NULL, unit_id " + textType +
+                " NOT NULL, sub_id INTEGER NOT NULL, description " + textType + ")");
+
+        StringBuilder sb;
+        for (Section section : recordTableMap.keySet()) {
+            sb = new StringBuilder();
+            sb.append("CREATE TABLE ").append(recordTableMap.get(section));
+            sb.append(" (file_id INTEGER NOT NULL, line_number INTEGER NOT NULL");
+            for (MZTabColumn column : recordColumnMap.get(section)) {
+                sb.append(", ").append(getColumnName(column)).append(" ").append(getSQLType(column.getColumnType()));
+            }
+            sb.append(", PRIMARY KEY (file_id, line_number))");
+            ddlList.add(sb.toString());
+        }
+
+        ddlList.add("CREATE TABLE " + MODIFICATION_TABLE + " (file_id INTEGER NOT NULL, section VARCHAR(32) NOT NULL, " +
+                "line_number INTEGER NOT NULL, mod_index INTEGER NOT NULL, mod_type VARCHAR(32), accession " + textType +
+                ", positions " + textType + ", neutral_loss " + textType +
+                ", PRIMARY KEY (file_id, section, line_number, mod_index))");
+        ddlList.add("CREATE TABLE " + ABUNDANCE_TABLE + " (file_id INTEGER NOT NULL, section VARCHAR(32) NOT NULL, " +
+                "line_number INTEGER NOT NULL, sub_id INTEGER NOT NULL, abundance DOUBLE, abundance_stdev DOUBLE, " +
+                "abundance_std_error DOUBLE, PRIMARY KEY (file_id, section, line_number, sub_id))");
+
+        return ddlList;
+    }
+
+    public void createSchema() throws SQLException {
+        Connection connection = dataSource.getConnection();
+        try {
+            Statement statement = connection.createStatement();
+            try {
+                for (String ddl : getSchema()) {
+                    statement.execute(ddl);
+                }
+            } finally {
+                statement.close();
+            }
+            if (! connection.getAutoCommit()) {
+                connection.commit();
+            }
+        } finally {
+            connection.close();
+        }
+    }
+
+    private static String getInsertSQL(String table, String... columns) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("INSERT INTO ").append(table).append(" (");
+        for (int i = 0; i < columns.length; i++) {
+            sb.append(i == 0 ? "" : ", ").append(columns[i]);
+        }
+        sb.append(") VALUES (");
+        for (int i = 0; i < columns.length; i++) {
+            sb.append(i == 0 ? "?" : ", ?");
+        }
+        sb.append(")");
+        return sb.toString();
+    }
+
+    private static String getRecordInsertSQL(Section section) {
+        MZTabColumn[] columns = recordColumnMap.get(section);
+        String[] names = new String[columns.length + 2];
+        names[0] = "file_id";
+        names[1] = "line_number";
+        for (int i = 0; i < columns.length; i++) {
+            names[i + 2] = getColumnName(columns[i]);
+        }
+        return getInsertSQL(recordTableMap.get(section), names);
+    }
+
+    /**
+     * Delete all rows of the file.
+     */
+    public void delete(int fileId) throws SQLException {
+        List<String> tableList = new ArrayList<String>();
+        tableList.add(ABUNDANCE_TABLE);
+        tableList.add(MODIFICATION_TABLE);
+        tableList.addAll(recordTableMap.values());
+        tableList.add(SUB_UNIT_TABLE);
+        tableList.add(UNIT_TABLE);
+        tableList.add(FILE_TABLE);
+
+        Connection connection = dataSource.getConnection();
+        try {
+            connection.setAutoCommit(false);
+            PreparedStatement statement;
+            for (String table : tableList) {
+                statement = connection.prepareStatement("DELETE FROM " + table + " WHERE file_id = ?");
+                try {
+                    statement.setInt(1, fileId);
+                    statement.executeUpdate();
+                } finally {
+                    statement.close();
+                }
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.close();
+        }
+    }
+
+    private BufferedReader readFile(File tabFile) throws IOException {
+        InputStream in = new FileInputStream(tabFile);
+        if (tabFile.getName().endsWith(".gz")) {
+            in = new GZIPInputStream(in);
+        }
+        return new BufferedReader(new InputStreamReader(in, ENCODE));
+    }
+
+    private Section getSection(String line) {
+        int index = line.indexOf(TAB);
+        return Section.findSection(index == -1 ? line.trim() : line.substring(0, index).trim());
+    }
+
+    /**
+     * Load the file with the given id. The id should not exist in the database.
+     *
+     * @throws MZTabException metadata, header line or data line parse error.
+     */
+    public void load(File tabFile, int fileId) throws IOException, MZTabException, SQLException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        LinkedList<Future<?>> pendingList = new LinkedList<Future<?>>();
+        BufferedReader reader = readFile(tabFile);
+        // only delete the rows after the file row inserted, the file id maybe exists before.
+        boolean metadataLoaded = false;
+        boolean success = false;
+        try {
+            MTDLineParser mtdParser = new MTDLineParser();
+            // data section --> column factory of its header line.
+            Map<Section, MZTabColumnFactory> factoryMap = new EnumMap<Section, MZTabColumnFactory>(Section.class);
+
+            List<String> lineList = new ArrayList<String>(batchSize);
+            int[] lineNumbers = new int[batchSize];
+            Section dataSection = null;
+
+            String line;
+            int lineNumber = 0;
+            Section section;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.trim().isEmpty() || line.startsWith(Section.Comment.getPrefix())) {
+                    continue;
+                }
+
+                section = getSection(line);
+                if (section == null) {
+                    throw new MZTabException(new MZTabError(FormatErrorType.LinePrefix, lineNumber, line));
+                }
+                if (section == Section.Metadata) {
+                    mtdParser.check(lineNumber, line);
+                    continue;
+                }
+
+                if (! metadataLoaded) {
+                    loadMetadata(fileId, tabFile.getName(), mtdParser.getMetadata());
+                    metadataLoaded = true;
+                }
+
+                if (section.isHeader()) {
+                    factoryMap.put(Section.toDataSection(section),
+                            parseHeader(section, mtdParser.getMetadata(), lineNumber, line));
+                    continue;
+                }
+
+                if (! factoryMap.containsKey(section)) {
+                    throw new MZTabException(new MZTabError(LogicalErrorType.NoHeaderLine, lineNumber, section.getName()));
+                }
+                if (section != dataSection || lineList.size() == batchSize) {
+                    if (! lineList.isEmpty()) {
+                        submit(executor, pendingList, new BatchWriter(fileId, dataSection, factoryMap.get(dataSection),
+                                mtdParser.getMetadata(), lineList, lineNumbers));
+                        lineList = new ArrayList<String>(batchSize);
+                        lineNumbers = new int[batchSize];
+                    }
+                    dataSection = section;
+                }
+                lineNumbers[lineList.size()] = lineNumber;
+                lineList.add(line);
+            }
+
+            if (! metadataLoaded) {
+                loadMetadata(fileId, tabFile.getName(), mtdParser.getMetadata());
+                metadataLoaded = true;
+            }
+            if (! lineList.isEmpty()) {
+                submit(executor, pendingList, new BatchWriter(fileId, dataSection, factoryMap.get(dataSection),
+                        mtdParser.getMetadata(), lineList, lineNumbers));
+            }
+            while (! pendingList.isEmpty()) {
+                waitBatch(pendingList.removeFirst());
+            }
+            success = true;
+        } finally {
+            reader.close();
+            executor.shutdownNow();
+            if (! success) {
+                for (Future<?> future : pendingList) {
+                    future.cancel(true);
+                }
+                try {
+                    executor.awaitTermination(1, TimeUnit.MINUTES);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                if (metadataLoaded) {
+                    delete(fileId);
+                }
+            }
+        }
+    }
+
+    private MZTabColumnFactory parseHeader(Section section, Metadata metadata, int lineNumber, String line)
+            throws MZTabException {
+        switch (section) {
+            case Protein_Header:
+                PRHLineParser prhParser = new PRHLineParser(metadata);
+                prhParser.check(lineNumber, line);
+                return prhParser.getFactory();
+            case Peptide_Header:
+                PEHLineParser pehParser = new PEHLineParser(metadata);
+                pehParser.check(lineNumber, line);
+                return pehParser.getFactory();
+            default:
+                SMHLineParser smhParser = new SMHLineParser(metadata);
+                smhParser.check(lineNumber, line);
+                return smhParser.getFactory();
+        }
+    }
+
+    private void submit(ExecutorService executor, LinkedList<Future<?>> pendingList, BatchWriter writer)
+            throws IOException, MZTabException, SQLException {
+        pendingList.add(executor.submit(writer));
+
+        // limit the number of batches kept in memory.
+        while (pendingList.size() >= threads * 2) {
+            waitBatch(pendingList.removeFirst());
+        }
+    }
+
+    private void waitBatch(Future<?> future) throws IOException, MZTabException, SQLException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("Load batch interrupted!");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            } else if (cause instanceof MZTabException) {
+                throw (MZTabException) cause;
+            } else {
+                throw new IllegalStateException("Load batch failed: " + cause.getMessage(), cause);
+            }
+        }
+    }
+
+    private void loadMetadata(int fileId, String name, Metadata metadata) throws SQLException {
+        Connection connection = dataSource.getConnection();
+        try {
+            connection.setAutoCommit(false);
+
+            PreparedStatement statement = connection.prepareStatement(getInsertSQL(FILE_TABLE, "file_id", "name"));
+            try {
+                statement.setInt(1, fileId);
+                statement.setString(2, name);
+                statement.executeUpdate();
+            } finally {
+                statement.close();
+            }
+
+            statement = connection.prepareStatement(getInsertSQL(UNIT_TABLE, "file_id", "unit_id", "title", "description"));
+            try {
+                Unit unit;
+                for (String unitId : metadata.getUnitIds()) {
+                    unit = metadata.getUnit(unitId);
+                    statement.setInt(1, fileId);
+                    statement.setString(2, unitId);
+                    statement.setString(3, unit == null ? null : unit.getTitle());
+                    statement.setString(4, unit == null ? null : unit.getDescription());
+                    statement.addBatch();
+                }
+                if (! metadata.getUnitIds().isEmpty()) {
+                    statement.executeBatch();
+                }
+            } finally {
+                statement.close();
+            }
+
+            statement = connection.prepareStatement(getInsertSQL(SUB_UNIT_TABLE, "file_id", "unit_id", "sub_id", "description"));
+            try {
+                for (SubUnit subUnit : metadata.getSubUnits().values()) {
+                    statement.setInt(1, fileId);
+                    statement.setString(2, subUnit.getUnitId());
+                    statement.setInt(3, subUnit.getSubId());
+                    statement.setString(4, subUnit.getDescription());
+                    statement.addBatch();
+                }
+                if (! metadata.getSubUnits().isEmpty()) {
+                    statement.executeBatch();
+                }
+            } finally {
+                statement.close();
+            }
+
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * Parse one batch of data lines, and insert records, modifications and abundance values in one transaction.
+     */
+    private class BatchWriter implements Callable<Object>, ErrorSink {
+        private int fileId;
+        private Section section;
+        private MZTabColumnFactory factory;
+        private Metadata metadata;
+        private List<String> lineList;
+        private int[] lineNumbers;
+
+        private MZTabError error;
+
+        private BatchWriter(int fileId, Section section, MZTabColumnFactory factory, Metadata metadata,
+                            List<String> lineList, int[] lineNumbers) {
+            this.fileId = fileId;
+            this.section = section;
+            this.factory = factory;
+            this.metadata = metadata;
+            this.lineList = lineList;
+            this.lineNumbers = lineNumbers;
+        }
+
+        @Override
+        public void accept(MZTabError error) {
+            if (this.error == null && error.getType().getLevel() == MZTabErrorType.Level.Error) {
+                this.error = error;
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        private MZTabDataLineParser createParser() {
+            MZTabErrorList errorList = new MZTabErrorList(this, 0);
+            switch (section) {
+                case Protein:
+                    return new PRTLineParser(factory, metadata, errorList);
+                case Peptide:
+                    return new PEPLineParser(factory, metadata, errorList);
+                default:
+                    return new SMLLineParser(factory, metadata, errorList);
+            }
+        }
+
+        private MZTabRecord getRecord(MZTabDataLineParser parser, String line) {
+            switch (section) {
+                case Protein:
+                    return ((PRTLineParser) parser).getRecord(line);
+                case Peptide:
+                    return ((PEPLineParser) parser).getRecord(line);
+                default:
+                    return ((SMLLineParser) parser).getRecord(line);
+            }
+        }
+
+        /**
+         * @return sub_id --> positions of abundance, stdev and std_error columns, 0 if column not exists.
+         */
+        private SortedMap<Integer, int[]> getAbundancePositions() {
+            SortedMap<Integer, int[]> positionMap = new TreeMap<Integer, int[]>();
+            int[] positions;
+            for (AbundanceColumn column : factory.getAbundanceColumnMapping().values()) {
+                positions = positionMap.get(column.getSubUnit().getSubId());
+                if (positions == null) {
+                    positions = new int[3];
+                    positionMap.put(column.getSubUnit().getSubId(), positions);
+                }
+                positions[column.getField().ordinal()] = column.getPosition();
+            }
+            return positionMap;
+        }
+
+        @Override
+        public Object call() throws Exception {
+            MZTabDataLineParser parser = createParser();
+            MZTabColumn[] columns = recordColumnMap.get(section);
+            int modificationPosition = modificationPositionMap.get(section);
+            SortedMap<Integer, int[]> abundancePositions = getAbundancePositions();
+
+            Connection connection = dataSource.getConnection();
+            PreparedStatement recordStatement = null;
+            PreparedStatement modificationStatement = null;
+            PreparedStatement abundanceStatement = null;
+            try {
+                connection.setAutoCommit(false);
+                recordStatement = connection.prepareStatement(getRecordInsertSQL(section));
+                modificationStatement = connection.prepareStatement(getInsertSQL(MODIFICATION_TABLE,
+                        "file_id", "section", "line_number", "mod_index", "mod_type", "accession", "positions", "neutral_loss"));
+                abundanceStatement = connection.prepareStatement(getInsertSQL(ABUNDANCE_TABLE,
+                        "file_id", "section", "line_number", "sub_id", "abundance", "abundance_stdev", "abundance_std_error"));
+
+                MZTabRecord record;
+                int lineNumber;
+                // some drivers reject to execute empty batch.
+                int modificationCount = 0;
+                int abundanceCount = 0;
+                for (int i = 0; i < lineList.size(); i++) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        throw new InterruptedException();
+                    }
+
+                    lineNumber = lineNumbers[i];
+                    parser.check(lineNumber, lineList.get(i));
+                    if (error != null) {
+                        throw new MZTabException(error);
+                    }
+                    record = getRecord(parser, lineList.get(i));
+
+                    recordStatement.setInt(1, fileId);
+                    recordStatement.setInt(2, lineNumber);
+                    for (int j = 0; j < columns.length; j++) {
+                        setValue(recordStatement, j + 3, columns[j].getColumnType(), record.getValue(columns[j].getPosition()));
+                    }
+                    recordStatement.addBatch();
+
+                    modificationCount += addModifications(modificationStatement, lineNumber, record.getValue(modificationPosition));
+                    abundanceCount += addAbundances(abundanceStatement, lineNumber, record, abundancePositions);
+                }
+
+                // release lines before the database round trip.
+                lineList = null;
+
+                recordStatement.executeBatch();
+                if (modificationCount > 0) {
+                    modificationStatement.executeBatch();
+                }
+                if (abundanceCount > 0) {
+                    abundanceStatement.executeBatch();
+                }
+                connection.commit();
+            } catch (Exception e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                if (recordStatement != null) {
+                    recordStatement.close();
+                }
+                if (modificationStatement != null) {
+                    modificationStatement.close();
+                }
+                if (abundanceStatement != null) {
+                    abundanceStatement.close();
+                }
+                connection.close();
+            }
+
+            return null;
+        }
+
+        /**
+         * @return the number of rows added into batch.
+         */
+        private int addModifications(PreparedStatement statement, int lineNumber, Object value) throws SQLException {
+            if (! (value instanceof List)) {
+                return 0;
+            }
+
+            int index = 0;
+            Modification modification;
+            StringBuilder positions;
+            for (Object item : (List) value) {
+                modification = (Modification) item;
+                positions = new StringBuilder();
+                for (Map.Entry<Integer, CVParam> entry : modification.getPositionMap().entrySet()) {
+                    if (positions.length() > 0) {
+                        positions.append(MZTabConstants.BAR);
+                    }
+                    positions.append(entry.getKey());
+                    if (entry.getValue() != null) {
+                        positions.append(entry.getValue());
+                    }
+                }
+
+                statement.setInt(1, fileId);
+                statement.setString(2, section.getName());
+                statement.setInt(3, lineNumber);
+                statement.setInt(4, ++index);
+                setValue(statement, 5, String.class, modification.getType());
+                statement.setString(6, modification.getAccession());
+                setValue(statement, 7, String.class, positions.length() == 0 ? null : positions);
+                setValue(statement, 8, String.class, modification.getNeutralLoss());
+                statement.addBatch();
+            }
+            return index;
+        }
+
+        private int addAbundances(PreparedStatement statement, int lineNumber, MZTabRecord record,
+                                   SortedMap<Integer, int[]> abundancePositions) throws SQLException {
+            int[] positions;
+            for (Map.Entry<Integer, int[]> entry : abundancePositions.entrySet()) {
+                positions = entry.getValue();
+                statement.setInt(1, fileId);
+                statement.setString(2, section.getName());
+                statement.setInt(3, lineNumber);
+                statement.setInt(4, entry.getKey());
+                for (int i = 0; i < positions.length; i++) {
+                    setValue(statement, i + 5, Double.class, positions[i] == 0 ? null : record.getValue(positions[i]));
+                }
+                statement.addBatch();
+            }
+            return abundancePositions.size();
+        }
+    }
+
+    private static void setValue(PreparedStatement statement, int index, Class columnType, Object value) throws SQLException {
+        if (value instanceof List && ((List) value).isEmpty()) {
+            value = null;
+        }
+
+        if (columnType == Integer.class) {
+            if (value instanceof Integer) {
+                statement.setInt(index, (Integer) value);
+            } else {
+                statement.setNull(index, Types.INTEGER);
+            }
+        } else if (columnType == Double.class) {
+            if (value instanceof Double && ! ((Double) value).isNaN() && ! ((Double) value).isInfinite()) {
+                statement.setDouble(index, (Double) value);
+            } else {
+                statement.setNull(index, Types.DOUBLE);
+            }
+        } else {
+            if (value == null) {
+                statement.setNull(index, Types.VARCHAR);
+            } else {
+                statement.setString(index, value.toString());
+            }
+        }
+    }
+
+    /**
+     * Close the connection pool, if it is created by this loader.
+     */
+    public void close() throws SQLException {
+        if (pool != null) {
+            pool.close();
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package uk.ac.ebi.pride.jmztab.utils.errors;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.*;
+
+import static uk.ac.ebi.pride.jmztab.model.MZTabConstants.NEW_LINE;
+import static uk.ac.ebi.pride.jmztab.model.MZTabConstants.TAB;
+import static uk.ac.ebi.pride.jmztab.utils.MZTabProperties.ERROR_EXEMPLAR_COUNT;
+
+/**
+ * Aggregate errors instead of keep them: the exact count of every {@link MZTabErrorType} code, the count
+ * of every column under that code (reference {@link MZTabError#getColumn()}), and the first N errors of
+ * every code as exemplars. The memory cost only depend on the number of error types and columns, not on
+ * the number of errors, thus used with {@link MZTabErrorList#MZTabErrorList(ErrorSink, int)} the validator
+ * can always finish the whole file.
+ *
+ * User: Qingwei
+ * Date: 09/05/13
+ */
+public class AggregateErrorSink implements ErrorSink {
+    /**
+     * Aggregated errors of one error type.
+     */
+    public static class Entry {
+        private MZTabErrorType type;
+        private long count = 0;
+        private SortedMap<String, Long> columnCounts = new TreeMap<String, Long>();
+        private List<MZTabError> exemplars = new ArrayList<MZTabError>();
+
+        private Entry(MZTabErrorType type) {
+            this.type = type;
+        }
+
+        public MZTabErrorType getType() {
+            return type;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return column header --> count. Empty if the error type not related to a column.
+         */
+        public SortedMap<String, Long> getColumnCounts() {
+            return Collections.unmodifiableSortedMap(columnCounts);
+        }
+
+        /**
+         * @return the first errors of this type, in reported order.
+         */
+        public List<MZTabError> getExemplars() {
+            return Collections.unmodifiableList(exemplars);
+        }
+    }
+
+    private int exemplarCount;
+    private MZTabErrorType.Level level;
+    private SortedMap<Integer, Entry> entryMap = new TreeMap<Integer, Entry>();
+
+    public AggregateErrorSink() {
+        this(ERROR_EXEMPLAR_COUNT, MZTabErrorType.Level.Warn);
+    }
+
+    /**
+     * @param exemplarCount the number of errors kept for every error code.
+     * @param level only aggregate the errors which level great or equal than it.
+     */
+    public AggregateErrorSink(int exemplarCount, MZTabErrorType.Level level) {
+        if (exemplarCount < 0) {
+            throw new IllegalArgumentException("Exemplar count can not less than 0!");
+        }
+
+        this.exemplarCount = exemplarCount;
+        this.level = level == null ? MZTabErrorType.Level.Warn : level;
+    }
+
+    @Override
+    public void accept(MZTabError error) {
+        MZTabErrorType type = error.getType();
+        if (type.getLevel().compareTo(level) < 0) {
+            return;
+        }
+
+        Entry entry = entryMap.get(type.getCode());
+        if (entry == null) {
+            entry = new Entry(type);
+            entryMap.put(type.getCode(), entry);
+        }
+
+        entry.count++;
+        String column = error.getColumn();
+        if (column != null) {
+            Long count = entry.columnCounts.get(column);
+            entry.columnCounts.put(column, count == null ? 1 : count + 1);
+        }
+        if (entry.exemplars.size() < exemplarCount) {
+            entry.exemplars.add(error);
+        }
+    }
+
+    @Override
+    public void flush() {
+        // nothing buffered.
+    }
+
+    /**
+     * @return error code --> aggregated errors, ordered by code.
+     */
+    public SortedMap<Integer, Entry> getEntries() {
+        return Collections.unmodifiableSortedMap(entryMap);
+    }
+
+    public long getCount(int code) {
+        Entry entry = entryMap.get(code);
+        return entry == null ? 0 : entry.count;
+    }
+
+    public long getTotalCount() {
+        long total = 0;
+        for (Entry entry : entryMap.values()) {
+            total += entry.count;
+        }
+        return total;
+    }
+
+    /**
+     * Print one block per error code: level, code, total count, count per column, and the exemplar errors.
+     */
+    public void print(OutputStream out) throws IOException {
+        StringBuilder sb;
+        for (Entry entry : entryMap.values()) {
+            sb = new StringBuilder();
+            sb.append("[").append(entry.type.getLevel()).append("-").append(entry.type.getCode()).append("] ");
+            sb.append(entry.count).append(" times").append(NEW_LINE);
+            for (Map.Entry<String, Long> columnEntry : entry.columnCounts.entrySet()) {
+                sb.append(TAB).append("column \"").append(columnEntry.getKey()).append("\": ")
+                        .append(columnEntry.getValue()).append(NEW_LINE);
+            }
+            for (MZTabError error : entry.exemplars) {
+                sb.append(TAB).append(error.toString());
+            }
+            out.write(sb.toString().getBytes());
+        }
+
+        out.write(("Total " + getTotalCount() + " errors of " + entryMap.size() + " types." + NEW_LINE).getBytes());
+        out.flush();
+    }
+}
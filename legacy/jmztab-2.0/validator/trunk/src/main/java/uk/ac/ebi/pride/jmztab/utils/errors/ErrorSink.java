@@ -0,0 +1,23 @@
+package uk.ac.ebi.pride.jmztab.utils.errors;
+
+/**
+ * Receive the {@link MZTabError} as soon as it is reported by validator. Implementations can stream
+ * errors into a file, console, or handle them by a callback, without buffer the whole error list in memory.
+ *
+ * @see StreamErrorSink
+ * @see MZTabErrorList#MZTabErrorList(ErrorSink)
+ *
+ * User: Qingwei
+ * Date: 08/05/13
+ */
+public interface ErrorSink {
+    /**
+     * Called once for every error which added into {@link MZTabErrorList}.
+     */
+    public void accept(MZTabError error);
+
+    /**
+     * Called after validate finished, flush the pending output.
+     */
+    public void flush();
+}
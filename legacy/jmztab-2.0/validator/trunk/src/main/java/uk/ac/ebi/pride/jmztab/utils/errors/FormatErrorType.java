@@ -13,7 +13,7 @@ public class FormatErrorType extends MZTabErrorType {
     public static MZTabErrorType Version = createError(Format, "Version");
 
     public static MZTabErrorType UnitID = createError(Format, "UnitID");
-    public static MZTabErrorType AbundanceColumn = createError(Format, "AbundanceColumn");
+    public static MZTabErrorType AbundanceColumn = createColumnError(Format, "AbundanceColumn");
     public static MZTabErrorType OptionalColumn = createError(Format, "OptionalColumn");
     public static MZTabErrorType OptionalCVParamColumn = createError(Format, "OptionalCVParamColumn");
     public static MZTabErrorType StableColumn = createError(Format, "StableColumn");
@@ -26,17 +26,17 @@ public class FormatErrorType extends MZTabErrorType {
     public static MZTabErrorType URI = createWarn(Format, "URI");
     public static MZTabErrorType URL = createWarn(Format, "URL");
     public static MZTabErrorType Email = createWarn(Format, "Email");
-    public static MZTabErrorType Integer = createError(Format, "Integer");
-    public static MZTabErrorType Double = createError(Format, "Double");
-    public static MZTabErrorType Reliability = createError(Format, "Reliability");
-    public static MZTabErrorType StringList = createError(Format, "StringList");
-    public static MZTabErrorType DoubleList = createError(Format, "DoubleList");
-    public static MZTabErrorType ModificationList = createError(Format, "ModificationList");
-    public static MZTabErrorType GOTermList = createError(Format, "GOTermList");
-    public static MZTabErrorType MZBoolean = createError(Format, "MZBoolean");
-    public static MZTabErrorType SpectraRef = createError(Format, "SpectraRef");
-    public static MZTabErrorType CHEMMODSAccession = createError(Format, "CHEMMODSAccession");
-    public static MZTabErrorType SearchEngineScore = createWarn(Format, "SearchEngineScore");
+    public static MZTabErrorType Integer = createColumnError(Format, "Integer");
+    public static MZTabErrorType Double = createColumnError(Format, "Double");
+    public static MZTabErrorType Reliability = createColumnError(Format, "Reliability");
+    public static MZTabErrorType StringList = createColumnError(Format, "StringList");
+    public static MZTabErrorType DoubleList = createColumnError(Format, "DoubleList");
+    public static MZTabErrorType ModificationList = createColumnError(Format, "ModificationList");
+    public static MZTabErrorType GOTermList = createColumnError(Format, "GOTermList");
+    public static MZTabErrorType MZBoolean = createColumnError(Format, "MZBoolean");
+    public static MZTabErrorType SpectraRef = createColumnError(Format, "SpectraRef");
+    public static MZTabErrorType CHEMMODSAccession = createColumnError(Format, "CHEMMODSAccession");
+    public static MZTabErrorType SearchEngineScore = createColumnWarn(Format, "SearchEngineScore");
 
     public static MZTabErrorType ColUnit = createError(Format, "ColUnit");
 }
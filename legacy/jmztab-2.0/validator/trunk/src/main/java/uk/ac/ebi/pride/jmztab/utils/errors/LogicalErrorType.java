@@ -5,8 +5,8 @@ package uk.ac.ebi.pride.jmztab.utils.errors;
  * Date: 29/01/13
  */
 public class LogicalErrorType extends MZTabErrorType {
-    public static MZTabErrorType NULL = createError(Category.Logical, "NULL");
-    public static MZTabErrorType NotNULL = createError(Category.Logical, "NotNULL");
+    public static MZTabErrorType NULL = createColumnError(Category.Logical, "NULL");
+    public static MZTabErrorType NotNULL = createColumnError(Category.Logical, "NotNULL");
     public static MZTabErrorType LineOrder = createError(Category.Logical, "LineOrder");
     public static MZTabErrorType HeaderLine = createError(Category.Logical, "HeaderLine");
     public static MZTabErrorType NoHeaderLine = createError(Category.Logical, "NoHeaderLine");
@@ -15,20 +15,20 @@ public class LogicalErrorType extends MZTabErrorType {
     public static MZTabErrorType UnitID = createError(Category.Logical, "UnitID");
     public static MZTabErrorType ColUnit = createWarn(Category.Logical, "ColUnit");
 
-    public static MZTabErrorType DuplicationAccession = createError(Category.Logical, "DuplicationAccession");
-    public static MZTabErrorType PeptideAccession = createWarn(Category.Logical, "PeptideAccession");
+    public static MZTabErrorType DuplicationAccession = createColumnError(Category.Logical, "DuplicationAccession");
+    public static MZTabErrorType PeptideAccession = createColumnWarn(Category.Logical, "PeptideAccession");
 
-    public static MZTabErrorType ProteinCoverage = createError(Category.Logical, "ProteinCoverage");
+    public static MZTabErrorType ProteinCoverage = createColumnError(Category.Logical, "ProteinCoverage");
     public static MZTabErrorType IdNumber = createError(Category.Logical, "IdNumber");
-    public static MZTabErrorType ModificationPosition = createError(Category.Logical, "ModificationPosition");
-    public static MZTabErrorType CHEMMODS = createError(Category.Logical, "CHEMMODS");
-    public static MZTabErrorType SubstituteIdentifier = createError(Category.Logical, "SubstituteIdentifier");
-    public static MZTabErrorType CVParamOptionalColumn = createError(Category.Logical, "CVParamOptionalColumn");
+    public static MZTabErrorType ModificationPosition = createColumnError(Category.Logical, "ModificationPosition");
+    public static MZTabErrorType CHEMMODS = createColumnError(Category.Logical, "CHEMMODS");
+    public static MZTabErrorType SubstituteIdentifier = createColumnError(Category.Logical, "SubstituteIdentifier");
+    public static MZTabErrorType CVParamOptionalColumn = createColumnError(Category.Logical, "CVParamOptionalColumn");
     public static MZTabErrorType Software = createWarn(Category.Logical, "Software");
 
     public static MZTabErrorType AbundanceColumnId = createError(Category.Logical, "AbundanceColumnId");
     public static MZTabErrorType AbundanceColumnSameId = createError(Category.Logical, "AbundanceColumnSameId");
 
-    public static MZTabErrorType SpectraRef = createError(Category.Logical, "SpectraRef");
+    public static MZTabErrorType SpectraRef = createColumnError(Category.Logical, "SpectraRef");
 
 }
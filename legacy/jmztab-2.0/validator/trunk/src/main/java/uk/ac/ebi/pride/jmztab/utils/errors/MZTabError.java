@@ -1,55 +1,83 @@
 package uk.ac.ebi.pride.jmztab.utils.errors;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
 import static uk.ac.ebi.pride.jmztab.model.MZTabConstants.NEW_LINE;
 
 /**
+ * MZTabError only keep the error type, line number and raw argument values. The message is rendered
+ * when it is first required (by {@link #getMessage()} or {@link #toString()}), thus the errors which
+ * only be counted or filtered never cost the string formatting.
+ *
  * User: Qingwei
  * Date: 06/02/13
  */
 public class MZTabError {
     private int lineNumber;
     private MZTabErrorType type;
+    private String[] values;
     private String message;
 
     public MZTabError(MZTabErrorType type, int lineNumber, String... values) {
         this.type = type;
         this.lineNumber = lineNumber;
-
-        List<String> valueList = new ArrayList<String>();
-        Collections.addAll(valueList, values);
-
-        this.message = fill(0, valueList, type.getOriginal());
+        this.values = values;
     }
 
     /**
      * fill "{id}" parameter list one by one.
      */
-    private String fill(int count, List<String> values, String message) {
-        String regexp = "\\{\\w\\}";
-        Pattern pattern = Pattern.compile(regexp);
-        Matcher matcher = pattern.matcher(message);
-
-        String value;
-        if (matcher.find()) {
-            value = values.get(count);
-            message = matcher.replaceFirst(value);
-            return fill(count + 1, values, message);
-        } else {
-            return message;
+    private String fill(String original) {
+        StringBuilder sb = new StringBuilder(original.length() + 32);
+
+        int count = 0;
+        int length = original.length();
+        char c;
+        for (int i = 0; i < length; i++) {
+            c = original.charAt(i);
+            if (c == '{' && i + 2 < length && original.charAt(i + 2) == '}'
+                    && isWordChar(original.charAt(i + 1)) && count < values.length) {
+                sb.append(values[count++]);
+                i += 2;
+            } else {
+                sb.append(c);
+            }
         }
+
+        return sb.toString();
+    }
+
+    private boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
     }
 
     public MZTabErrorType getType() {
         return type;
     }
 
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * @return the raw argument values, which used to fill the message template.
+     */
+    public String[] getValues() {
+        return values;
+    }
+
+    /**
+     * @return the column header which this error refer to, or null if the error not related to
+     * a table column.
+     * @see MZTabErrorType#isColumnError()
+     */
+    public String getColumn() {
+        return type.isColumnError() && values.length > 0 ? values[0] : null;
+    }
+
     public String getMessage() {
+        if (message == null) {
+            message = fill(type.getOriginal());
+        }
+
         return message;
     }
 
@@ -59,7 +87,7 @@ public class MZTabError {
 
         sb.append("[").append(type.getLevel()).append("-").append(type.getCode()).append("] ");
         sb.append("line ").append(lineNumber).append(": ");
-        sb.append(message).append(NEW_LINE);
+        sb.append(getMessage()).append(NEW_LINE);
 
         return sb.toString();
     }
@@ -1,6 +1,7 @@
 package uk.ac.ebi.pride.jmztab.utils.errors;
 
 import uk.ac.ebi.pride.jmztab.utils.MZTabProperties;
+import uk.ac.ebi.pride.jmztab.utils.metrics.MZTabMetrics;
 
 import java.io.IOException;
 import java.io.OutputStream;
@@ -11,22 +12,133 @@ import static uk.ac.ebi.pride.jmztab.utils.MZTabProperties.LEVEL;
 import static uk.ac.ebi.pride.jmztab.utils.MZTabProperties.MAX_ERROR_COUNT;
 
 /**
+ * By default, all errors are kept in memory. If create list with a {@link ErrorSink}, errors are forwarded
+ * into sink immediately and not kept in list; in this case, only the counts of errors are available, and
+ * {@link #getError(int)} and {@link #print(OutputStream)} not supported.
+ *
  * User: Qingwei
  * Date: 29/01/13
  */
 public class MZTabErrorList {
-    private List<MZTabError> errorList = new ArrayList<MZTabError>(MAX_ERROR_COUNT);
+    private List<MZTabError> errorList;
+    private ErrorSink sink;
+    private int maxErrorCount = MAX_ERROR_COUNT;
+
+    private long size = 0;
+    private long errorCount = 0;
+
+    public MZTabErrorList() {
+        this.errorList = new ArrayList<MZTabError>(MAX_ERROR_COUNT);
+    }
+
+    /**
+     * Errors are kept in memory.
+     *
+     * @param maxErrorCount if the number of errors great than it, {@link #add(MZTabError)} throw
+     *                      {@link MZTabErrorOverflowException}. If less than 1, the list never overflow.
+     */
+    public MZTabErrorList(int maxErrorCount) {
+        this.errorList = new ArrayList<MZTabError>();
+        this.maxErrorCount = maxErrorCount;
+    }
+
+    public MZTabErrorList(ErrorSink sink) {
+        if (sink == null) {
+            throw new NullPointerException("Error sink can not set null!");
+        }
+
+        this.sink = sink;
+    }
+
+    /**
+     * @param maxErrorCount if the number of errors great than it, {@link #add(MZTabError)} throw
+     *                      {@link MZTabErrorOverflowException}. If less than 1, the list never overflow,
+     *                      this used with {@link AggregateErrorSink} to validate the whole file.
+     */
+    public MZTabErrorList(ErrorSink sink, int maxErrorCount) {
+        this(sink);
+        this.maxErrorCount = maxErrorCount;
+    }
+
+    public ErrorSink getSink() {
+        return sink;
+    }
+
+    /**
+     * @return max number of errors kept in list, less than 1 means the list never overflow.
+     */
+    public int getMaxErrorCount() {
+        return maxErrorCount;
+    }
 
     public boolean add(MZTabError o) throws MZTabErrorOverflowException {
-        if (errorList.size() >= MAX_ERROR_COUNT) {
+        return add(o, true);
+    }
+
+    /**
+     * Add the errors of list in order, for example the errors found chunk by chunk on several threads. These
+     * errors have been published to metrics by the given list, thus not published again.
+     */
+    public void addAll(MZTabErrorList list) throws MZTabErrorOverflowException {
+        for (int i = 0; i < list.size(); i++) {
+            add(list.getError(i), false);
+        }
+    }
+
+    private boolean add(MZTabError o, boolean publish) throws MZTabErrorOverflowException {
+        if (maxErrorCount > 0 && size >= maxErrorCount) {
             throw new MZTabErrorOverflowException();
         }
 
-        return errorList.add(o);
+        size++;
+        if (o.getType().getLevel().equals(MZTabErrorType.Level.Error)) {
+            errorCount++;
+        }
+        if (publish && MZTabMetrics.isEnabled()) {
+            MZTabMetrics.errorReported(o);
+        }
+
+        if (sink != null) {
+            sink.accept(o);
+            return true;
+        } else {
+            return errorList.add(o);
+        }
     }
 
     public void clear() {
-        errorList.clear();
+        if (errorList != null) {
+            errorList.clear();
+        }
+        size = 0;
+        errorCount = 0;
+    }
+
+    public int size() {
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @return the number of errors which have been added, the value maybe great than Integer.MAX_VALUE
+     * if the list never overflow.
+     */
+    public long getCount() {
+        return size;
+    }
+
+    /**
+     * @return the number of errors which level great or equal than the given level.
+     */
+    public long getCount(MZTabErrorType.Level level) {
+        return level.equals(MZTabErrorType.Level.Warn) ? size : errorCount;
+    }
+
+    public MZTabError getError(int index) {
+        if (errorList == null) {
+            throw new UnsupportedOperationException("Errors have been forwarded into sink, not kept in list.");
+        }
+
+        return errorList.get(index);
     }
 
     public boolean isEmpty() {
@@ -35,19 +147,18 @@ public class MZTabErrorList {
 
     public boolean isEmpty(MZTabErrorType.Level level) {
         if (level.equals(MZTabErrorType.Level.Warn)) {
-            return errorList.isEmpty();
+            return size == 0;
         } else {
-            for (MZTabError error : errorList) {
-                if (error.getType().getLevel().equals(MZTabErrorType.Level.Error)) {
-                    return false;
-                }
-            }
             // all errors' level are Warn.
-            return true;
+            return errorCount == 0;
         }
     }
 
     public void print(OutputStream out, MZTabErrorType.Level level) throws IOException {
+        if (errorList == null) {
+            throw new UnsupportedOperationException("Errors have been forwarded into sink, not kept in list.");
+        }
+
         for (MZTabError e : errorList) {
             if (e.getType().getLevel().compareTo(level) >= 0) {
                 out.write(e.toString().getBytes());
@@ -24,10 +24,11 @@ public class MZTabErrorType {
     private Level level;
     private String original;
     private String cause;
+    private boolean columnError;
 
     protected MZTabErrorType() {}
 
-    private MZTabErrorType(Integer code, Category category, Level level, String original, String cause) {
+    private MZTabErrorType(Integer code, Category category, Level level, String original, String cause, boolean columnError) {
         this.code = code;
 
         if (category == null) {
@@ -42,21 +43,38 @@ public class MZTabErrorType {
         }
         this.original = original.trim();
         this.cause = cause;
+        this.columnError = columnError;
     }
 
     protected static MZTabErrorType createError(MZTabErrorType.Category category, String keyword) {
-        return MZTabErrorType.createMZTabError(category, MZTabErrorType.Level.Error, keyword);
+        return MZTabErrorType.createMZTabError(category, MZTabErrorType.Level.Error, keyword, false);
     }
 
     protected static MZTabErrorType createWarn(MZTabErrorType.Category category, String keyword) {
-        return MZTabErrorType.createMZTabError(category, MZTabErrorType.Level.Warn, keyword);
+        return MZTabErrorType.createMZTabError(category, MZTabErrorType.Level.Warn, keyword, false);
+    }
+
+    /**
+     * Create a error which first parameter is always the header of table column.
+     * @see #isColumnError()
+     */
+    protected static MZTabErrorType createColumnError(MZTabErrorType.Category category, String keyword) {
+        return MZTabErrorType.createMZTabError(category, MZTabErrorType.Level.Error, keyword, true);
+    }
+
+    /**
+     * Create a warn which first parameter is always the header of table column.
+     * @see #isColumnError()
+     */
+    protected static MZTabErrorType createColumnWarn(MZTabErrorType.Category category, String keyword) {
+        return MZTabErrorType.createMZTabError(category, MZTabErrorType.Level.Warn, keyword, true);
     }
 
     /**
      *  In *_error.properties file, code_{keyword}, original_{keyword}, cause+{keyword} have
      *  stable format. Thus, this method used to load these properties and create a error.
      */
-    private static MZTabErrorType createMZTabError(Category category, Level level, String keyword) {
+    private static MZTabErrorType createMZTabError(Category category, Level level, String keyword, boolean columnError) {
         if (MZTabUtils.isEmpty(keyword)) {
             throw new NullPointerException(keyword + " can not empty!");
         }
@@ -78,7 +96,7 @@ public class MZTabErrorType {
         String original = MZTabProperties.getProperty(prefix + "original_" + keyword);
         String cause = MZTabProperties.getProperty(prefix + "cause_" + keyword);
 
-        return new MZTabErrorType(code, category, level, original, cause);
+        return new MZTabErrorType(code, category, level, original, cause, columnError);
     }
 
     public Integer getCode() {
@@ -101,6 +119,16 @@ public class MZTabErrorType {
         return cause;
     }
 
+    /**
+     * @return true if the type is created by {@link #createColumnError(Category, String)} or
+     * {@link #createColumnWarn(Category, String)}, that is the first parameter of original message is
+     * always a column header, for example: Column "{0}" ... The types which also used by metadata line,
+     * for example {@link FormatErrorType#ParamList}, are not column errors.
+     */
+    public boolean isColumnError() {
+        return columnError;
+    }
+
     public String toString() {
         return  "    Code:\t" + code + "\r\n" +
                 "Category:\t" + category + "\r\n" +
@@ -0,0 +1,63 @@
+package uk.ac.ebi.pride.jmztab.utils.errors;
+
+import java.io.*;
+
+import static uk.ac.ebi.pride.jmztab.utils.MZTabProperties.LEVEL;
+
+/**
+ * Print the error message into output stream immediately, only the errors which level great or equal than
+ * the given level will be printed. Use System.out to print errors on the console.
+ *
+ * User: Qingwei
+ * Date: 08/05/13
+ */
+public class StreamErrorSink implements ErrorSink {
+    private OutputStream out;
+    private MZTabErrorType.Level level;
+
+    public StreamErrorSink(OutputStream out, MZTabErrorType.Level level) {
+        if (out == null) {
+            throw new NullPointerException("Output stream can not set null!");
+        }
+
+        this.out = out;
+        this.level = level == null ? LEVEL : level;
+    }
+
+    public StreamErrorSink(OutputStream out) {
+        this(out, LEVEL);
+    }
+
+    /**
+     * Print errors into file, caller should call {@link #close()} after validate finished.
+     */
+    public StreamErrorSink(File outFile, MZTabErrorType.Level level) throws FileNotFoundException {
+        this(new BufferedOutputStream(new FileOutputStream(outFile)), level);
+    }
+
+    @Override
+    public void accept(MZTabError error) {
+        if (error.getType().getLevel().compareTo(level) < 0) {
+            return;
+        }
+
+        try {
+            out.write(error.toString().getBytes());
+        } catch (IOException e) {
+            throw new IllegalStateException("Can not write error into output stream: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void flush() {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new IllegalStateException("Can not flush output stream: " + e.getMessage(), e);
+        }
+    }
+
+    public void close() throws IOException {
+        out.close();
+    }
+}
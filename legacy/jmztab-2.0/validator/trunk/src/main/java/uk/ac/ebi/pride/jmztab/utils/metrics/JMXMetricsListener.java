@@ -0,0 +1,222 @@
+package uk.ac.ebi.pride.jmztab.utils.metrics;
+
+import uk.ac.ebi.pride.jmztab.model.Section;
+import uk.ac.ebi.pride.jmztab.utils.errors.MZTabError;
+import uk.ac.ebi.pride.jmztab.utils.errors.MZTabErrorType;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Default {@link MetricsListener}, which keep the metrics in memory and expose them as JMX MBeans:
+ *
+ * uk.ac.ebi.pride.jmztab:type=Metrics                      summary, reference {@link JMXMetricsListenerMBean}
+ * uk.ac.ebi.pride.jmztab:type=Metrics,section=protein      one per section, reference {@link SectionMetricsMBean}
+ *
+ * Usage:
+ * JMXMetricsListener listener = new JMXMetricsListener();
+ * listener.register();
+ * MZTabMetrics.addListener(listener);
+ *
+ * User: Qingwei
+ * Date: 18/05/13
+ */
+public class JMXMetricsListener implements MetricsListener, JMXMetricsListenerMBean {
+    public final static String DOMAIN = "uk.ac.ebi.pride.jmztab";
+
+    private Map<Section, SectionMetrics> sectionMap = new EnumMap<Section, SectionMetrics>(Section.class);
+
+    private AtomicLong errorCount = new AtomicLong();
+    private AtomicLong warnCount = new AtomicLong();
+    private ConcurrentMap<Integer, AtomicLong> codeCountMap = new ConcurrentHashMap<Integer, AtomicLong>();
+
+    private AtomicLong peakRecordsHeld = new AtomicLong();
+    private AtomicLong mergeCount = new AtomicLong();
+    private AtomicLong mergedFileCount = new AtomicLong();
+    private AtomicLong mergeNanos = new AtomicLong();
+
+    private List<ObjectName> nameList = new ArrayList<ObjectName>();
+
+    public JMXMetricsListener() {
+        for (Section section : Section.values()) {
+            sectionMap.put(section, new SectionMetrics(section));
+        }
+    }
+
+    public SectionMetrics getSectionMetrics(Section section) {
+        return sectionMap.get(section);
+    }
+
+    /**
+     * Register summary and section MBeans into platform MBean server.
+     */
+    public synchronized void register() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+        ObjectName name = new ObjectName(DOMAIN + ":type=Metrics");
+        server.registerMBean(this, name);
+        nameList.add(name);
+        for (SectionMetrics metrics : sectionMap.values()) {
+            name = new ObjectName(DOMAIN + ":type=Metrics,section=" + metrics.getSection());
+            server.registerMBean(metrics, name);
+            nameList.add(name);
+        }
+    }
+
+    public synchronized void unregister() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName name : nameList) {
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        }
+        nameList.clear();
+    }
+
+    @Override
+    public void lineParsed(Section section, long bytes, long nanos) {
+        sectionMap.get(section).lineParsed(bytes, nanos);
+    }
+
+    @Override
+    public void errorReported(MZTabError error) {
+        if (error.getType().getLevel() == MZTabErrorType.Level.Error) {
+            errorCount.incrementAndGet();
+        } else {
+            warnCount.incrementAndGet();
+        }
+
+        Integer code = error.getType().getCode();
+        AtomicLong count = codeCountMap.get(code);
+        if (count == null) {
+            AtomicLong newCount = new AtomicLong();
+            count = codeCountMap.putIfAbsent(code, newCount);
+            if (count == null) {
+                count = newCount;
+            }
+        }
+        count.incrementAndGet();
+    }
+
+    @Override
+    public void recordsHeld(long count) {
+        long peak;
+        do {
+            peak = peakRecordsHeld.get();
+        } while (count > peak && ! peakRecordsHeld.compareAndSet(peak, count));
+    }
+
+    @Override
+    public void recordsWritten(Section section, long count, long bytes, long nanos) {
+        sectionMap.get(section).recordsWritten(count, bytes, nanos);
+    }
+
+    @Override
+    public void filesMerged(int fileCount, long nanos) {
+        mergeCount.incrementAndGet();
+        mergedFileCount.addAndGet(fileCount);
+        mergeNanos.addAndGet(nanos);
+    }
+
+    @Override
+    public long getLineCount() {
+        long count = 0;
+        for (SectionMetrics metrics : sectionMap.values()) {
+            count += metrics.getLineCount();
+        }
+        return count;
+    }
+
+    @Override
+    public long getByteCount() {
+        long count = 0;
+        for (SectionMetrics metrics : sectionMap.values()) {
+            count += metrics.getByteCount();
+        }
+        return count;
+    }
+
+    @Override
+    public long getParseTimeMillis() {
+        long time = 0;
+        for (SectionMetrics metrics : sectionMap.values()) {
+            time += metrics.getParseTimeMillis();
+        }
+        return time;
+    }
+
+    @Override
+    public double getLinesPerSecond() {
+        long time = getParseTimeMillis();
+        return time == 0 ? 0 : getLineCount() * 1000.0 / time;
+    }
+
+    @Override
+    public long getErrorCount() {
+        return errorCount.get();
+    }
+
+    @Override
+    public long getWarnCount() {
+        return warnCount.get();
+    }
+
+    @Override
+    public String[] getErrorCodeCounts() {
+        SortedMap<Integer, AtomicLong> sortedMap = new TreeMap<Integer, AtomicLong>(codeCountMap);
+        String[] counts = new String[sortedMap.size()];
+        int i = 0;
+        for (Map.Entry<Integer, AtomicLong> entry : sortedMap.entrySet()) {
+            counts[i++] = entry.getKey() + "=" + entry.getValue().get();
+        }
+        return counts;
+    }
+
+    /**
+     * @return the number of errors reported with the code.
+     */
+    public long getErrorCount(int code) {
+        AtomicLong count = codeCountMap.get(code);
+        return count == null ? 0 : count.get();
+    }
+
+    @Override
+    public long getPeakRecordsHeld() {
+        return peakRecordsHeld.get();
+    }
+
+    @Override
+    public long getMergeCount() {
+        return mergeCount.get();
+    }
+
+    @Override
+    public long getMergedFileCount() {
+        return mergedFileCount.get();
+    }
+
+    @Override
+    public long getMergeTimeMillis() {
+        return mergeNanos.get() / 1000000;
+    }
+
+    @Override
+    public void reset() {
+        for (SectionMetrics metrics : sectionMap.values()) {
+            metrics.reset();
+        }
+        errorCount.set(0);
+        warnCount.set(0);
+        codeCountMap.clear();
+        peakRecordsHeld.set(0);
+        mergeCount.set(0);
+        mergedFileCount.set(0);
+        mergeNanos.set(0);
+    }
+}
@@ -0,0 +1,36 @@
+package uk.ac.ebi.pride.jmztab.utils.metrics;
+
+/**
+ * Summary metrics of all parse/write/merge jobs, reference {@link JMXMetricsListener}.
+ *
+ * User: Qingwei
+ * Date: 18/05/13
+ */
+public interface JMXMetricsListenerMBean {
+    public long getLineCount();
+
+    public long getByteCount();
+
+    public long getParseTimeMillis();
+
+    public double getLinesPerSecond();
+
+    public long getErrorCount();
+
+    public long getWarnCount();
+
+    /**
+     * @return the count of every error code, like "2106=3", ordered by code.
+     */
+    public String[] getErrorCodeCounts();
+
+    public long getPeakRecordsHeld();
+
+    public long getMergeCount();
+
+    public long getMergedFileCount();
+
+    public long getMergeTimeMillis();
+
+    public void reset();
+}
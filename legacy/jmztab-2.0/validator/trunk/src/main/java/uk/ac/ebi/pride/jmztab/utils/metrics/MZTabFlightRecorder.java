@@ -0,0 +1,210 @@
+package uk.ac.ebi.pride.jmztab.utils.metrics;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Emit mzTab custom events into Java Flight Recorder, thus recordings show section, slow line, merge,
+ * convert and write activities alongside GC and I/O events.
+ *
+ * The project is compiled for java 6, which not provide jdk.jfr API. Thus event types are defined at runtime
+ * by jdk.jfr.EventFactory (since java 9) through reflection. On older JVMs, or if the definition failed,
+ * {@link #isEnabled(Type)} always return false and {@link #begin(Type)} return null, every call is a no-op.
+ * If no recording enable the event type, {@link #begin(Type)} return null too, callers should check
+ * {@link #isEnabled(Type)} once per section or batch, not per line.
+ *
+ * Usage:
+ * Object event = MZTabFlightRecorder.begin(Type.MergeStep);
+ * ... merge ...
+ * MZTabFlightRecorder.commit(event, fileIndex, records);
+ *
+ * Field values are passed in the order of {@link Type} fields.
+ *
+ * User: Qingwei
+ * Date: 20/05/13
+ */
+public final class MZTabFlightRecorder {
+    private static final String CATEGORY = "mzTab";
+
+    public enum Type {
+        Section("Section", "Section parsed",
+                new Field("section", String.class, "Section", null),
+                new Field("lines", long.class, "Lines", null),
+                new Field("rows", long.class, "Rows", null)),
+        SlowLine("SlowLine", "Slow line parsed",
+                new Field("section", String.class, "Section", null),
+                new Field("lineNumber", int.class, "Line Number", null),
+                new Field("length", int.class, "Length", null),
+                new Field("parseTime", long.class, "Parse Time", "jdk.jfr.Timespan:NANOSECONDS")),
+        MergeStep("MergeStep", "Merge step",
+                new Field("fileIndex", int.class, "File Index", null),
+                new Field("records", long.class, "Records", null)),
+        ConvertBatch("ConvertBatch", "Convert batch",
+                new Field("section", String.class, "Section", null),
+                new Field("rows", long.class, "Rows", null),
+                new Field("consumed", long.class, "Consumed", "jdk.jfr.DataAmount:BYTES")),
+        WriteRecords("WriteRecords", "Records written",
+                new Field("section", String.class, "Section", null),
+                new Field("rows", long.class, "Rows", null),
+                new Field("bytes", long.class, "Bytes", "jdk.jfr.DataAmount:BYTES"));
+
+        private String name;
+        private String label;
+        private Field[] fields;
+
+        // jdk.jfr.EventFactory, null if not available.
+        private Object factory;
+        private Object eventType;
+
+        private Type(String name, String label, Field... fields) {
+            this.name = "uk.ac.ebi.pride.jmztab." + name;
+            this.label = label;
+            this.fields = fields;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    private static class Field {
+        private String name;
+        private Class type;
+        private String label;
+        // annotation class name and its string value, for example: jdk.jfr.Timespan:NANOSECONDS
+        private String annotation;
+
+        private Field(String name, Class type, String label, String annotation) {
+            this.name = name;
+            this.type = type;
+            this.label = label;
+            this.annotation = annotation;
+        }
+    }
+
+    private static Method newEventMethod;
+    private static Method isEnabledMethod;
+    private static Method beginMethod;
+    private static Method commitMethod;
+    private static Method setMethod;
+    private static volatile boolean available = false;
+
+    static {
+        try {
+            Class<?> factoryClass = Class.forName("jdk.jfr.EventFactory");
+            Class<?> eventClass = Class.forName("jdk.jfr.Event");
+            Class<?> eventTypeClass = Class.forName("jdk.jfr.EventType");
+            Class<?> annotationElementClass = Class.forName("jdk.jfr.AnnotationElement");
+            Class<?> valueDescriptorClass = Class.forName("jdk.jfr.ValueDescriptor");
+
+            Constructor<?> annotationConstructor = annotationElementClass.getConstructor(Class.class, Object.class);
+            Constructor<?> descriptorConstructor = valueDescriptorClass.getConstructor(Class.class, String.class, List.class);
+            Method createMethod = factoryClass.getMethod("create", List.class, List.class);
+            Method getEventTypeMethod = factoryClass.getMethod("getEventType");
+
+            for (Type type : Type.values()) {
+                List<Object> annotations = new ArrayList<Object>();
+                annotations.add(annotationConstructor.newInstance(Class.forName("jdk.jfr.Name"), type.name));
+                annotations.add(annotationConstructor.newInstance(Class.forName("jdk.jfr.Label"), type.label));
+                annotations.add(annotationConstructor.newInstance(Class.forName("jdk.jfr.Category"), new String[] {CATEGORY}));
+
+                List<Object> descriptors = new ArrayList<Object>();
+                for (Field field : type.fields) {
+                    List<Object> fieldAnnotations = new ArrayList<Object>();
+                    fieldAnnotations.add(annotationConstructor.newInstance(Class.forName("jdk.jfr.Label"), field.label));
+                    if (field.annotation != null) {
+                        int index = field.annotation.indexOf(':');
+                        fieldAnnotations.add(annotationConstructor.newInstance(
+                                Class.forName(field.annotation.substring(0, index)), field.annotation.substring(index + 1)));
+                    }
+                    descriptors.add(descriptorConstructor.newInstance(field.type, field.name, fieldAnnotations));
+                }
+
+                type.factory = createMethod.invoke(null, annotations, descriptors);
+                type.eventType = getEventTypeMethod.invoke(type.factory);
+            }
+
+            newEventMethod = factoryClass.getMethod("newEvent");
+            isEnabledMethod = eventTypeClass.getMethod("isEnabled");
+            beginMethod = eventClass.getMethod("begin");
+            commitMethod = eventClass.getMethod("commit");
+            setMethod = eventClass.getMethod("set", int.class, Object.class);
+            available = true;
+        } catch (Throwable e) {
+            // java 8 or before, or jdk.jfr module not present.
+            available = false;
+        }
+    }
+
+    private MZTabFlightRecorder() {}
+
+    /**
+     * @return true if flight recorder is available on this JVM.
+     */
+    public static boolean isAvailable() {
+        return available;
+    }
+
+    /**
+     * @return true if some running recording enable this event type.
+     */
+    public static boolean isEnabled(Type type) {
+        if (! available) {
+            return false;
+        }
+
+        try {
+            return (Boolean) isEnabledMethod.invoke(type.eventType);
+        } catch (Exception e) {
+            available = false;
+            return false;
+        }
+    }
+
+    /**
+     * Create event and begin timing.
+     *
+     * @return the event, or null if the event type not enabled.
+     */
+    public static Object begin(Type type) {
+        if (! isEnabled(type)) {
+            return null;
+        }
+
+        try {
+            Object event = newEventMethod.invoke(type.factory);
+            beginMethod.invoke(event);
+            return event;
+        } catch (Exception e) {
+            available = false;
+            return null;
+        }
+    }
+
+    /**
+     * Set fields and commit event, the duration end at this time. Do nothing if event is null.
+     */
+    public static void commit(Object event, Object... values) {
+        if (event == null || ! available) {
+            return;
+        }
+
+        try {
+            for (int i = 0; i < values.length; i++) {
+                setMethod.invoke(event, i, values[i]);
+            }
+            commitMethod.invoke(event);
+        } catch (Exception e) {
+            available = false;
+        }
+    }
+
+    /**
+     * Commit an event without duration.
+     */
+    public static void emit(Type type, Object... values) {
+        commit(begin(type), values);
+    }
+}
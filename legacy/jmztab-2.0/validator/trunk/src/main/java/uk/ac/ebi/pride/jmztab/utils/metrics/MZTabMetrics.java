@@ -0,0 +1,69 @@
+package uk.ac.ebi.pride.jmztab.utils.metrics;
+
+import uk.ac.ebi.pride.jmztab.model.Section;
+import uk.ac.ebi.pride.jmztab.utils.errors.MZTabError;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Global registry of {@link MetricsListener}, parser, writer and merger publish metrics through here.
+ * If no listener registered, {@link #isEnabled()} return false, and callers skip the timing code.
+ *
+ * User: Qingwei
+ * Date: 18/05/13
+ */
+public final class MZTabMetrics {
+    private static final List<MetricsListener> listeners = new CopyOnWriteArrayList<MetricsListener>();
+    private static volatile boolean enabled = false;
+
+    private MZTabMetrics() {}
+
+    public static void addListener(MetricsListener listener) {
+        if (listener == null) {
+            throw new NullPointerException("Metrics listener can not set null!");
+        }
+
+        listeners.add(listener);
+        enabled = true;
+    }
+
+    public static void removeListener(MetricsListener listener) {
+        listeners.remove(listener);
+        enabled = ! listeners.isEmpty();
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void lineParsed(Section section, long bytes, long nanos) {
+        for (MetricsListener listener : listeners) {
+            listener.lineParsed(section, bytes, nanos);
+        }
+    }
+
+    public static void errorReported(MZTabError error) {
+        for (MetricsListener listener : listeners) {
+            listener.errorReported(error);
+        }
+    }
+
+    public static void recordsHeld(long count) {
+        for (MetricsListener listener : listeners) {
+            listener.recordsHeld(count);
+        }
+    }
+
+    public static void recordsWritten(Section section, long count, long bytes, long nanos) {
+        for (MetricsListener listener : listeners) {
+            listener.recordsWritten(section, count, bytes, nanos);
+        }
+    }
+
+    public static void filesMerged(int fileCount, long nanos) {
+        for (MetricsListener listener : listeners) {
+            listener.filesMerged(fileCount, nanos);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package uk.ac.ebi.pride.jmztab.utils.metrics;
+
+import uk.ac.ebi.pride.jmztab.model.Section;
+import uk.ac.ebi.pride.jmztab.utils.errors.MZTabError;
+
+/**
+ * Receive the counters and timers published by parser, writer and merger. Register listener by
+ * {@link MZTabMetrics#addListener(MetricsListener)}. Methods are called on the parse/write/merge threads,
+ * thus implementation should be thread safe and cheap.
+ *
+ * User: Qingwei
+ * Date: 18/05/13
+ */
+public interface MetricsListener {
+    /**
+     * One line has been parsed and validated.
+     *
+     * @param section the section of line, every section has its own line parser.
+     * @param bytes the number of bytes read from file since the previous line parsed. The reader buffers ahead,
+     *              thus only the sum over lines is exact, which is the file size (compressed size for .gz file).
+     * @param nanos time used to parse the line.
+     */
+    public void lineParsed(Section section, long bytes, long nanos);
+
+    public void errorReported(MZTabError error);
+
+    /**
+     * @param count the number of records held in memory by parser or merger.
+     */
+    public void recordsHeld(long count);
+
+    /**
+     * Records of a data section have been written.
+     *
+     * @param section protein/peptide/small_molecule section.
+     * @param bytes the number of bytes written.
+     */
+    public void recordsWritten(Section section, long count, long bytes, long nanos);
+
+    /**
+     * @param fileCount the number of mzTab files merged into one.
+     */
+    public void filesMerged(int fileCount, long nanos);
+}
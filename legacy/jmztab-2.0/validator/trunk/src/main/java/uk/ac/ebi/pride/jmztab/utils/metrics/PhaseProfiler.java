@@ -0,0 +1,233 @@
+package uk.ac.ebi.pride.jmztab.utils.metrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.*;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static uk.ac.ebi.pride.jmztab.model.MZTabConstants.NEW_LINE;
+
+/**
+ * Per-phase wall time, CPU time and allocated bytes of the working thread, for example: metadata, every
+ * header, every data section, cross check and output. Parser, checker, merger and writer switch phase by
+ * {@link #phase(String)}, the current phase is ended when the next one begin on the same thread, or by
+ * {@link #end()}. Phases with same name are accumulated, thus multiple files and threads are summed.
+ *
+ * Allocated bytes need the HotSpot com.sun.management.ThreadMXBean, otherwise report -1. Only the phase
+ * thread is measured, the work of helper threads (eg. parallel record formatting) is counted as wall time.
+ * Peak heap and GC time are process wide, measured from {@link #enable()}.
+ *
+ * If not enabled, {@link #phase(String)} return immediately.
+ *
+ * User: Qingwei
+ * Date: 20/05/13
+ */
+public final class PhaseProfiler {
+    private static class Phase {
+        private long count;
+        private long wallNanos;
+        private long cpuNanos;
+        private long allocatedBytes;
+        private long gcMillis;
+    }
+
+    // the phase which is running on the thread, and its start point.
+    private static class Mark {
+        private String name;
+        private long wall;
+        private long cpu;
+        private long allocated;
+        private long gc;
+    }
+
+    private static volatile boolean enabled = false;
+    private static final Map<String, Phase> phaseMap = new LinkedHashMap<String, Phase>();
+    private static final ThreadLocal<Mark> currentMark = new ThreadLocal<Mark>();
+
+    private static long enableGCMillis;
+    private static long enableGCCount;
+
+    private PhaseProfiler() {}
+
+    /**
+     * Reset phases and heap peak usage, and start profiling.
+     */
+    public static synchronized void enable() {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        if (threadBean.isThreadCpuTimeSupported()) {
+            threadBean.setThreadCpuTimeEnabled(true);
+        }
+        if (threadBean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threadBean;
+            if (bean.isThreadAllocatedMemorySupported()) {
+                bean.setThreadAllocatedMemoryEnabled(true);
+            }
+        }
+
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+
+        phaseMap.clear();
+        enableGCMillis = getGCMillis();
+        enableGCCount = getGCCount();
+        enabled = true;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * End the current phase of this thread, and begin a new one.
+     */
+    public static void phase(String name) {
+        if (! enabled) {
+            return;
+        }
+
+        Mark mark = currentMark.get();
+        if (mark == null) {
+            mark = new Mark();
+            currentMark.set(mark);
+        } else if (mark.name != null) {
+            if (mark.name.equals(name)) {
+                return;
+            }
+            record(mark);
+        }
+
+        mark.name = name;
+        mark.wall = System.nanoTime();
+        mark.cpu = getCpuNanos();
+        mark.allocated = getAllocatedBytes();
+        mark.gc = getGCMillis();
+    }
+
+    /**
+     * End the current phase of this thread.
+     */
+    public static void end() {
+        if (! enabled) {
+            return;
+        }
+
+        Mark mark = currentMark.get();
+        if (mark != null && mark.name != null) {
+            record(mark);
+            mark.name = null;
+        }
+    }
+
+    private static void record(Mark mark) {
+        long wall = System.nanoTime() - mark.wall;
+        long cpu = mark.cpu < 0 ? -1 : getCpuNanos() - mark.cpu;
+        long allocated = mark.allocated < 0 ? -1 : getAllocatedBytes() - mark.allocated;
+        long gc = getGCMillis() - mark.gc;
+
+        synchronized (PhaseProfiler.class) {
+            Phase phase = phaseMap.get(mark.name);
+            if (phase == null) {
+                phase = new Phase();
+                phaseMap.put(mark.name, phase);
+            }
+            phase.count++;
+            phase.wallNanos += wall;
+            phase.cpuNanos = cpu < 0 || phase.cpuNanos < 0 ? -1 : phase.cpuNanos + cpu;
+            phase.allocatedBytes = allocated < 0 || phase.allocatedBytes < 0 ? -1 : phase.allocatedBytes + allocated;
+            phase.gcMillis += gc;
+        }
+    }
+
+    private static long getCpuNanos() {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        return threadBean.isCurrentThreadCpuTimeSupported() ? threadBean.getCurrentThreadCpuTime() : -1;
+    }
+
+    private static long getAllocatedBytes() {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        if (threadBean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threadBean;
+            if (bean.isThreadAllocatedMemoryEnabled()) {
+                return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    private static long getGCMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean gcBean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, gcBean.getCollectionTime());
+        }
+        return millis;
+    }
+
+    private static long getGCCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gcBean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gcBean.getCollectionCount());
+        }
+        return count;
+    }
+
+    /**
+     * Sum of the peak usage of all heap pools. Pools reach their peaks at different time, thus this is
+     * an upper bound of the real peak heap.
+     */
+    private static long getPeakHeapBytes() {
+        long bytes = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+                bytes += pool.getPeakUsage().getUsed();
+            }
+        }
+        return bytes;
+    }
+
+    private static String format(long nanos) {
+        return nanos < 0 ? "-" : String.format("%.1f", nanos / 1000000.0);
+    }
+
+    private static String formatBytes(long bytes) {
+        return bytes < 0 ? "-" : String.format("%.1f", bytes / 1048576.0);
+    }
+
+    /**
+     * Print the phase table and the process wide heap and GC summary.
+     */
+    public static synchronized void print(OutputStream out) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        String lineFormat = "%-24s%8s%12s%12s%14s%10s" + NEW_LINE;
+        sb.append(String.format(lineFormat, "phase", "count", "wall(ms)", "cpu(ms)", "alloc(MB)", "gc(ms)"));
+
+        long wall = 0;
+        long cpu = 0;
+        long allocated = 0;
+        long gc = 0;
+        Phase phase;
+        for (Map.Entry<String, Phase> entry : phaseMap.entrySet()) {
+            phase = entry.getValue();
+            sb.append(String.format(lineFormat, entry.getKey(), phase.count, format(phase.wallNanos),
+                    format(phase.cpuNanos), formatBytes(phase.allocatedBytes), phase.gcMillis));
+            wall += phase.wallNanos;
+            cpu = cpu < 0 || phase.cpuNanos < 0 ? -1 : cpu + phase.cpuNanos;
+            allocated = allocated < 0 || phase.allocatedBytes < 0 ? -1 : allocated + phase.allocatedBytes;
+            gc += phase.gcMillis;
+        }
+        sb.append(String.format(lineFormat, "total", "", format(wall), format(cpu), formatBytes(allocated), gc));
+        sb.append(NEW_LINE);
+
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        sb.append("peak heap(MB)=").append(formatBytes(getPeakHeapBytes()));
+        sb.append(", max heap(MB)=").append(formatBytes(heap.getMax())).append(NEW_LINE);
+        sb.append("gc time(ms)=").append(getGCMillis() - enableGCMillis);
+        sb.append(", gc count=").append(getGCCount() - enableGCCount).append(NEW_LINE);
+
+        out.write(sb.toString().getBytes());
+        out.flush();
+    }
+}
@@ -0,0 +1,90 @@
+package uk.ac.ebi.pride.jmztab.utils.metrics;
+
+import uk.ac.ebi.pride.jmztab.model.Section;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread safe counters of one section.
+ *
+ * User: Qingwei
+ * Date: 18/05/13
+ */
+public class SectionMetrics implements SectionMetricsMBean {
+    private Section section;
+
+    private AtomicLong lineCount = new AtomicLong();
+    private AtomicLong byteCount = new AtomicLong();
+    private AtomicLong parseNanos = new AtomicLong();
+
+    private AtomicLong writtenRecordCount = new AtomicLong();
+    private AtomicLong writtenByteCount = new AtomicLong();
+    private AtomicLong writeNanos = new AtomicLong();
+
+    public SectionMetrics(Section section) {
+        this.section = section;
+    }
+
+    void lineParsed(long bytes, long nanos) {
+        lineCount.incrementAndGet();
+        byteCount.addAndGet(bytes);
+        parseNanos.addAndGet(nanos);
+    }
+
+    void recordsWritten(long count, long bytes, long nanos) {
+        writtenRecordCount.addAndGet(count);
+        writtenByteCount.addAndGet(bytes);
+        writeNanos.addAndGet(nanos);
+    }
+
+    @Override
+    public String getSection() {
+        return section.getName();
+    }
+
+    @Override
+    public long getLineCount() {
+        return lineCount.get();
+    }
+
+    @Override
+    public long getByteCount() {
+        return byteCount.get();
+    }
+
+    @Override
+    public long getParseTimeMillis() {
+        return parseNanos.get() / 1000000;
+    }
+
+    @Override
+    public double getLinesPerSecond() {
+        long nanos = parseNanos.get();
+        return nanos == 0 ? 0 : lineCount.get() * 1e9 / nanos;
+    }
+
+    @Override
+    public long getWrittenRecordCount() {
+        return writtenRecordCount.get();
+    }
+
+    @Override
+    public long getWrittenByteCount() {
+        return writtenByteCount.get();
+    }
+
+    @Override
+    public long getWriteTimeMillis() {
+        return writeNanos.get() / 1000000;
+    }
+
+    @Override
+    public void reset() {
+        lineCount.set(0);
+        byteCount.set(0);
+        parseNanos.set(0);
+        writtenRecordCount.set(0);
+        writtenByteCount.set(0);
+        writeNanos.set(0);
+    }
+}
@@ -0,0 +1,30 @@
+package uk.ac.ebi.pride.jmztab.utils.metrics;
+
+/**
+ * Parse and write metrics of one section, reference {@link SectionMetrics}.
+ *
+ * User: Qingwei
+ * Date: 18/05/13
+ */
+public interface SectionMetricsMBean {
+    public String getSection();
+
+    public long getLineCount();
+
+    public long getByteCount();
+
+    public long getParseTimeMillis();
+
+    /**
+     * @return the number of lines parsed per second, only count the parse time.
+     */
+    public double getLinesPerSecond();
+
+    public long getWrittenRecordCount();
+
+    public long getWrittenByteCount();
+
+    public long getWriteTimeMillis();
+
+    public void reset();
+}
@@ -0,0 +1,138 @@
+package uk.ac.ebi.pride.jmztab.utils.parser;
+
+import uk.ac.ebi.pride.jmztab.model.MZTabColumn;
+import uk.ac.ebi.pride.jmztab.model.MZTabColumnFactory;
+import uk.ac.ebi.pride.jmztab.model.Section;
+
+import java.util.*;
+
+/**
+ * Column projection of protein/peptide/small_molecule data lines. Only the projected columns are loaded
+ * into {@link uk.ac.ebi.pride.jmztab.model.MZTabRecord}, the other cells keep null value, and print as "null".
+ * For example, only load the sequence, charge and one abundance column of peptides:
+ *
+ * ColumnProjection projection = new ColumnProjection();
+ * projection.add(Section.Peptide, "sequence", "charge", "peptide_abundance_sub[1]");
+ *
+ * By default, the columns which not projected are still validated. If the input is trusted, these columns
+ * are skipped completely, neither parsed nor validated.
+ *
+ * The key columns, accession/identifier, unit_id and peptide sequence, are always loaded, because cross check,
+ * spectra_ref and record lookup depend on them. Sections without projection load all columns.
+ *
+ * User: Qingwei
+ * Date: 16/05/13
+ */
+public class ColumnProjection {
+    private static final Map<Section, int[]> keyColumnMap = new EnumMap<Section, int[]>(Section.class);
+    static {
+        // protein: accession, unit_id
+        keyColumnMap.put(Section.Protein, new int[] {1, 2});
+        // peptide: sequence, accession, unit_id
+        keyColumnMap.put(Section.Peptide, new int[] {1, 2, 3});
+        // small molecule: identifier, unit_id
+        keyColumnMap.put(Section.Small_Molecule, new int[] {1, 2});
+    }
+
+    private boolean trusted;
+
+    private Map<Section, Set<String>> headerMap = new EnumMap<Section, Set<String>>(Section.class);
+    private Map<Section, Set<Integer>> positionMap = new EnumMap<Section, Set<Integer>>(Section.class);
+
+    public ColumnProjection() {
+        this(false);
+    }
+
+    /**
+     * @param trusted if true, the columns which not projected are not validated.
+     */
+    public ColumnProjection(boolean trusted) {
+        this.trusted = trusted;
+    }
+
+    public boolean isTrusted() {
+        return trusted;
+    }
+
+    private void checkSection(Section section) {
+        if (! keyColumnMap.containsKey(section)) {
+            throw new IllegalArgumentException("Only protein, peptide and small_molecule data line can be projected!");
+        }
+    }
+
+    /**
+     * @param headers column headers, for example: charge, opt_my_value
+     */
+    public ColumnProjection add(Section section, String... headers) {
+        checkSection(section);
+
+        Set<String> headerSet = headerMap.get(section);
+        if (headerSet == null) {
+            headerSet = new HashSet<String>();
+            headerMap.put(section, headerSet);
+        }
+        headerSet.addAll(Arrays.asList(headers));
+        return this;
+    }
+
+    /**
+     * @param positions column positions, reference {@link MZTabColumn#getPosition()}
+     */
+    public ColumnProjection add(Section section, int... positions) {
+        checkSection(section);
+
+        Set<Integer> positionSet = positionMap.get(section);
+        if (positionSet == null) {
+            positionSet = new HashSet<Integer>();
+            positionMap.put(section, positionSet);
+        }
+        for (int position : positions) {
+            positionSet.add(position);
+        }
+        return this;
+    }
+
+    public boolean isProjected(Section section) {
+        return headerMap.containsKey(section) || positionMap.containsKey(section);
+    }
+
+    /**
+     * Locate the projected columns, called after the header line of section parsed.
+     *
+     * @return loaded flags indexed by column position, or null if all columns are loaded.
+     */
+    public boolean[] bind(Section section, MZTabColumnFactory factory) {
+        if (! isProjected(section)) {
+            return null;
+        }
+
+        boolean[] loaded = new boolean[factory.getColumnMapping().lastKey() + 1];
+        for (int position : keyColumnMap.get(section)) {
+            loaded[position] = true;
+        }
+
+        Set<String> headerSet = headerMap.get(section);
+        if (headerSet != null) {
+            MZTabColumn column;
+            for (String header : headerSet) {
+                column = factory.getColumn(header);
+                if (column == null) {
+                    throw new IllegalArgumentException("Projection column " + header + " not exists in " + factory);
+                }
+                loaded[column.getPosition()] = true;
+            }
+        }
+
+        Set<Integer> positionSet = positionMap.get(section);
+        if (positionSet != null) {
+            for (Integer position : positionSet) {
+                if (factory.getColumn(position) == null) {
+                    throw new IllegalArgumentException("Projection column position " + position + " not exists in " + factory);
+                }
+                loaded[position] = true;
+            }
+        }
+
+        return loaded;
+    }
+}
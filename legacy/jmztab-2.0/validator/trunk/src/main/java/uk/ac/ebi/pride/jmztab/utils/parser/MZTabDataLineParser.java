@@ -25,6 +25,10 @@ public abstract class MZTabDataLineParser extends MZTabLineParser {
     protected SortedMap<Integer, MZTabColumn> mapping;
     protected Metadata metadata;
 
+    // column projection, null means load all columns.
+    private boolean[] loaded;
+    private boolean trusted = false;
+
     protected MZTabDataLineParser(MZTabColumnFactory factory, Metadata metadata, MZTabErrorList errorList) {
         this.factory = factory;
         this.mapping = factory.getColumnMapping();
@@ -36,8 +40,45 @@ public abstract class MZTabDataLineParser extends MZTabLineParser {
         this.errorList = errorList;
     }
 
+    /**
+     * @param loaded loaded flags indexed by column position, reference {@link ColumnProjection#bind}.
+     *               If null, all columns are loaded.
+     * @param trusted if true, the columns which not loaded are not validated too.
+     */
+    public void setProjection(boolean[] loaded, boolean trusted) {
+        this.loaded = loaded;
+        this.trusted = trusted;
+    }
+
+    /**
+     * @return whether the column value is loaded into record.
+     */
+    protected boolean isLoaded(int position) {
+        return loaded == null || (position < loaded.length && loaded[position]);
+    }
+
+    /**
+     * @return whether the column value is validated, only trusted projection skip the validation.
+     */
+    protected boolean isChecked(int position) {
+        return ! trusted || isLoaded(position);
+    }
+
     public void check(int lineNumber, String line) throws MZTabException {
         super.check(lineNumber, line);
+        checkItems();
+    }
+
+    /**
+     * Check a data line which has been split into items, for example by converter. Values should have been
+     * trimmed, and empty value should be "null".
+     */
+    public void check(int lineNumber, String[] items) throws MZTabException {
+        setItems(lineNumber, items);
+        checkItems();
+    }
+
+    private void checkItems() {
         checkCount();
 
         int offset = checkStableData();
@@ -50,6 +91,13 @@ public abstract class MZTabDataLineParser extends MZTabLineParser {
         checkOptionalData(offset);
     }
 
+    /**
+     * @return the record of the line which has been checked.
+     */
+    public MZTabRecord getRecord() {
+        return getRecord(section, null);
+    }
+
     protected MZTabRecord getRecord(Section section, String line) {
         MZTabRecord record = null;
 
@@ -90,6 +138,8 @@ public abstract class MZTabDataLineParser extends MZTabLineParser {
         column = mapping.get(offset);
         if (column.getHeader().contains("abundance")) {
             offset = checkAbundanceColumns(offset);
+        } else if (! isChecked(offset)) {
+            // skip the optional column.
         } else if (column.getHeader().startsWith("opt_cv")) {
             checkCVParamOptData(offset);
         } else if (column.getHeader().startsWith("opt_")) {
@@ -108,6 +158,8 @@ public abstract class MZTabDataLineParser extends MZTabLineParser {
         column = mapping.get(offset);
         if (column.getHeader().contains("abundance")) {
             offset = loadAbundanceData(record, offset);
+        } else if (! isLoaded(offset)) {
+            // keep null value.
         } else if (column.getHeader().startsWith("opt_cv")) {
             loadCVParamOptData(record, offset);
         } else if (column.getHeader().startsWith("opt_")) {
@@ -136,11 +188,13 @@ public abstract class MZTabDataLineParser extends MZTabLineParser {
     }
 
     private int loadAbundanceData(MZTabRecord record, int offset) {
-        record.addValue(offset, parseDouble(items[offset++]));
-        record.addValue(offset, parseDouble(items[offset++]));
-        record.addValue(offset, parseDouble(items[offset]));
+        for (int i = 0; i < 3; i++) {
+            if (isLoaded(offset + i)) {
+                record.addValue(offset + i, parseDouble(items[offset + i]));
+            }
+        }
 
-        return offset;
+        return offset + 2;
     }
 
     private void checkCVParamOptData(int offset) {
@@ -196,6 +250,11 @@ public abstract class MZTabDataLineParser extends MZTabLineParser {
      * Some field not allow "null" value, for example unit_id, accession and so on.
      */
     protected String checkData(MZTabColumn column, String target, boolean allowNull) {
+        if (! isChecked(column.getPosition())) {
+            // trusted column, treat as "null" value, thus the typed checks return directly.
+            return NULL;
+        }
+
         if (target == null) {
             this.errorList.add(new MZTabError(LogicalErrorType.NULL, lineNumber, column.getHeader()));
             return null;
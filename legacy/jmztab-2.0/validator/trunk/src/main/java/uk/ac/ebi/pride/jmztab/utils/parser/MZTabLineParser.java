@@ -26,9 +26,16 @@ public class MZTabLineParser {
      * is not empty line and start with section prefix.
      */
     protected void check(int lineNumber, String line) throws MZTabException {
+        setItems(lineNumber, line.split("\\s*" + TAB + "\\s*"));
+    }
+
+    /**
+     * Same with {@link #check(int, String)}, but the line has been split into items by caller.
+     */
+    protected void setItems(int lineNumber, String[] items) throws MZTabException {
         this.lineNumber = lineNumber;
 
-        this.items = line.split("\\s*" + TAB + "\\s*");
+        this.items = items;
         items[0] = items[0].trim();
         items[items.length - 1] = items[items.length - 1].trim();
 
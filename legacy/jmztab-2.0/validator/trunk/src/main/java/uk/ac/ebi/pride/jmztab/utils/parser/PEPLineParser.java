@@ -48,19 +48,43 @@ public class PEPLineParser extends MZTabDataLineParser {
         peptide.setSequence(items[1]);
         peptide.setAccession(items[2]);
         peptide.setUnitId(items[3]);
-        peptide.setUnique(items[4]);
-        peptide.setDatabase(items[5]);
-        peptide.setDatabaseVersion(items[6]);
-        peptide.setSearchEngine(items[7]);
-        peptide.setSearchEngineScore(items[8]);
-        peptide.setReliability(items[9]);
-        peptide.setModifications(items[10]);
-        peptide.setRetentionTime(items[11]);
-        peptide.setCharge(items[12]);
-        peptide.setMassToCharge(items[13]);
-        peptide.setURI(items[14]);
+        if (isLoaded(4)) {
+            peptide.setUnique(items[4]);
+        }
+        if (isLoaded(5)) {
+            peptide.setDatabase(items[5]);
+        }
+        if (isLoaded(6)) {
+            peptide.setDatabaseVersion(items[6]);
+        }
+        if (isLoaded(7)) {
+            peptide.setSearchEngine(items[7]);
+        }
+        if (isLoaded(8)) {
+            peptide.setSearchEngineScore(items[8]);
+        }
+        if (isLoaded(9)) {
+            peptide.setReliability(items[9]);
+        }
+        if (isLoaded(10)) {
+            peptide.setModifications(items[10]);
+        }
+        if (isLoaded(11)) {
+            peptide.setRetentionTime(items[11]);
+        }
+        if (isLoaded(12)) {
+            peptide.setCharge(items[12]);
+        }
+        if (isLoaded(13)) {
+            peptide.setMassToCharge(items[13]);
+        }
+        if (isLoaded(14)) {
+            peptide.setURI(items[14]);
+        }
         Unit unit = metadata.getUnit(peptide.getUnitId());
-        peptide.setSpectraRef(unit, items[15]);
+        if (isLoaded(15)) {
+            peptide.setSpectraRef(unit, items[15]);
+        }
 
         return 15;
     }
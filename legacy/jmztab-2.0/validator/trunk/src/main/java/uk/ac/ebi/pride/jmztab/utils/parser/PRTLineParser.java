@@ -53,22 +53,54 @@ public class PRTLineParser extends MZTabDataLineParser {
         Protein protein = (Protein) record;
         protein.setAccession(items[1]);
         protein.setUnitId(items[2]);
-        protein.setDescription(items[3]);
-        protein.setTaxid(items[4]);
-        protein.setSpecies(items[5]);
-        protein.setDatabase(items[6]);
-        protein.setDatabaseVersion(items[7]);
-        protein.setSearchEngine(items[8]);
-        protein.setSearchEngineScore(items[9]);
-        protein.setReliability(items[10]);
-        protein.setNumPeptides(items[11]);
-        protein.setNumPeptideDistinct(items[12]);
-        protein.setNumPeptidesUnambiguous(items[13]);
-        protein.setAmbiguityMembers(items[14]);
-        protein.setModifications(items[15]);
-        protein.setURI(items[16]);
-        protein.setGOTerms(items[17]);
-        protein.setProteinConverage(items[18]);
+        if (isLoaded(3)) {
+            protein.setDescription(items[3]);
+        }
+        if (isLoaded(4)) {
+            protein.setTaxid(items[4]);
+        }
+        if (isLoaded(5)) {
+            protein.setSpecies(items[5]);
+        }
+        if (isLoaded(6)) {
+            protein.setDatabase(items[6]);
+        }
+        if (isLoaded(7)) {
+            protein.setDatabaseVersion(items[7]);
+        }
+        if (isLoaded(8)) {
+            protein.setSearchEngine(items[8]);
+        }
+        if (isLoaded(9)) {
+            protein.setSearchEngineScore(items[9]);
+        }
+        if (isLoaded(10)) {
+            protein.setReliability(items[10]);
+        }
+        if (isLoaded(11)) {
+            protein.setNumPeptides(items[11]);
+        }
+        if (isLoaded(12)) {
+            protein.setNumPeptideDistinct(items[12]);
+        }
+        if (isLoaded(13)) {
+            protein.setNumPeptidesUnambiguous(items[13]);
+        }
+        if (isLoaded(14)) {
+            protein.setAmbiguityMembers(items[14]);
+        }
+        if (isLoaded(15)) {
+            protein.setModifications(items[15]);
+        }
+        if (isLoaded(16)) {
+            protein.setURI(items[16]);
+        }
+        if (isLoaded(17)) {
+            protein.setGOTerms(items[17]);
+        }
+        if (isLoaded(18)) {
+            protein.setProteinConverage(items[18]);
+        }
 
         return 18;
     }
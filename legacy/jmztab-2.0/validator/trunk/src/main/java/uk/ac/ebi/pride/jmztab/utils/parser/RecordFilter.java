@@ -0,0 +1,203 @@
+package uk.ac.ebi.pride.jmztab.utils.parser;
+
+import uk.ac.ebi.pride.jmztab.model.MZTabColumn;
+import uk.ac.ebi.pride.jmztab.model.MZTabColumnFactory;
+import uk.ac.ebi.pride.jmztab.model.Section;
+
+import java.util.*;
+
+import static uk.ac.ebi.pride.jmztab.model.MZTabConstants.TAB;
+
+/**
+ * Row filter which evaluated on the raw tokenized fields of protein/peptide/small_molecule data lines,
+ * before the line is validated and loaded into {@link uk.ac.ebi.pride.jmztab.model.MZTabRecord}. For example,
+ * only load the peptides which reliability is 1, charge between 2 and 3, and unit_id is PRIDE_1234:
+ *
+ * RecordFilter filter = new RecordFilter();
+ * filter.add(Section.Peptide, "reliability", RecordFilter.equalTo("1"));
+ * filter.add(Section.Peptide, "charge", RecordFilter.intRange(2, 3));
+ * filter.add(Section.Peptide, "unit_id", RecordFilter.equalTo("PRIDE_1234"));
+ *
+ * A row is accepted if all predicates of its section are true. Sections without predicates are not filtered.
+ *
+ * User: Qingwei
+ * Date: 15/05/13
+ */
+public class RecordFilter {
+    /**
+     * Predicate on the raw field value, which has been trimmed.
+     */
+    public interface FieldPredicate {
+        public boolean accept(String value);
+    }
+
+    private Map<Section, Map<String, FieldPredicate>> predicateMap = new EnumMap<Section, Map<String, FieldPredicate>>(Section.class);
+
+    // predicates bind to column positions, after header line parsed.
+    private Map<Section, int[]> positionMap = new EnumMap<Section, int[]>(Section.class);
+    private Map<Section, FieldPredicate[]> boundMap = new EnumMap<Section, FieldPredicate[]>(Section.class);
+
+    /**
+     * @param section Protein, Peptide or Small_Molecule.
+     * @param header column header, for example: unit_id, opt_my_value
+     */
+    public RecordFilter add(Section section, String header, FieldPredicate predicate) {
+        if (section != Section.Protein && section != Section.Peptide && section != Section.Small_Molecule) {
+            throw new IllegalArgumentException("Only protein, peptide and small_molecule data line can be filtered!");
+        }
+        if (header == null || predicate == null) {
+            throw new NullPointerException("Column header and predicate can not set null!");
+        }
+
+        Map<String, FieldPredicate> headerMap = predicateMap.get(section);
+        if (headerMap == null) {
+            headerMap = new LinkedHashMap<String, FieldPredicate>();
+            predicateMap.put(section, headerMap);
+        }
+        headerMap.put(header, predicate);
+        return this;
+    }
+
+    public boolean isFiltered(Section section) {
+        return predicateMap.containsKey(section);
+    }
+
+    /**
+     * Locate the column positions of predicates, called after the header line of section parsed.
+     */
+    public void bind(Section section, MZTabColumnFactory factory) {
+        Map<String, FieldPredicate> headerMap = predicateMap.get(section);
+        if (headerMap == null) {
+            return;
+        }
+
+        int[] positions = new int[headerMap.size()];
+        FieldPredicate[] predicates = new FieldPredicate[headerMap.size()];
+        int i = 0;
+        for (Map.Entry<String, FieldPredicate> entry : headerMap.entrySet()) {
+            positions[i] = findPosition(factory, entry.getKey());
+            predicates[i] = entry.getValue();
+            i++;
+        }
+        positionMap.put(section, positions);
+        boundMap.put(section, predicates);
+    }
+
+    private int findPosition(MZTabColumnFactory factory, String header) {
+        for (MZTabColumn column : factory.getColumnMapping().values()) {
+            if (column.getHeader().equals(header)) {
+                return column.getPosition();
+            }
+        }
+
+        throw new IllegalArgumentException("Filter column " + header + " not exists in " + factory);
+    }
+
+    /**
+     * @param items the tokenized line, reference {@link #split(String)}
+     * @return true if all predicates of section accept the fields. A missing field is treated as null value.
+     */
+    public boolean accept(Section section, String[] items) {
+        int[] positions = positionMap.get(section);
+        if (positions == null) {
+            return true;
+        }
+
+        FieldPredicate[] predicates = boundMap.get(section);
+        for (int i = 0; i < positions.length; i++) {
+            if (! predicates[i].accept(positions[i] < items.length ? items[positions[i]] : null)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Split line by TAB, and trim every field. Same with the data line parser, but not use regular expression.
+     */
+    public static String[] split(String line) {
+        List<String> fieldList = new ArrayList<String>();
+        int start = 0;
+        int end;
+        while ((end = line.indexOf(TAB, start)) != -1) {
+            fieldList.add(line.substring(start, end).trim());
+            start = end + 1;
+        }
+        fieldList.add(line.substring(start).trim());
+
+        return fieldList.toArray(new String[fieldList.size()]);
+    }
+
+    /**
+     * @return predicate which accept the field equal to one of values.
+     */
+    public static FieldPredicate equalTo(String... values) {
+        final Set<String> valueSet = new HashSet<String>(Arrays.asList(values));
+        return new FieldPredicate() {
+            @Override
+            public boolean accept(String value) {
+                return valueSet.contains(value);
+            }
+        };
+    }
+
+    /**
+     * @return predicate which accept the integer field between min and max (both inclusive). The field which
+     * is not an integer, for example "null", is rejected.
+     */
+    public static FieldPredicate intRange(final int min, final int max) {
+        return new FieldPredicate() {
+            @Override
+            public boolean accept(String value) {
+                if (value == null || value.length() == 0 || value.length() > 10) {
+                    return false;
+                }
+
+                long number = 0;
+                int i = 0;
+                boolean negative = value.charAt(0) == '-';
+                if (negative || value.charAt(0) == '+') {
+                    if (value.length() == 1) {
+                        return false;
+                    }
+                    i = 1;
+                }
+                char c;
+                for (; i < value.length(); i++) {
+                    c = value.charAt(i);
+                    if (c < '0' || c > '9') {
+                        return false;
+                    }
+                    number = number * 10 + (c - '0');
+                }
+                if (negative) {
+                    number = -number;
+                }
+                return number >= min && number <= max;
+            }
+        };
+    }
+
+    /**
+     * @return predicate which accept the double field between min and max (both inclusive). The field which
+     * is not a number is rejected.
+     */
+    public static FieldPredicate doubleRange(final double min, final double max) {
+        return new FieldPredicate() {
+            @Override
+            public boolean accept(String value) {
+                if (value == null || value.length() == 0) {
+                    return false;
+                }
+
+                double number;
+                try {
+                    number = Double.parseDouble(value);
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+                return number >= min && number <= max;
+            }
+        };
+    }
+}
@@ -56,24 +56,58 @@ public class SMLLineParser extends MZTabDataLineParser {
         SmallMolecule smallMolecule = (SmallMolecule) record;
         smallMolecule.setIdentifier(items[1]);
         smallMolecule.setUnitId(items[2]);
-        smallMolecule.setChemicalFormula(items[3]);
-        smallMolecule.setSmiles(items[4]);
-        smallMolecule.setInchiKey(items[5]);
-        smallMolecule.setDescription(items[6]);
-        smallMolecule.setMassToCharge(items[7]);
-        smallMolecule.setCharge(items[8]);
-        smallMolecule.setRetentionTime(items[9]);
-        smallMolecule.setTaxid(items[10]);
-        smallMolecule.setSpecies(items[11]);
-        smallMolecule.setDatabase(items[12]);
-        smallMolecule.setDatabaseVersion(items[13]);
-        smallMolecule.setReliability(items[14]);
-        smallMolecule.setURI(items[15]);
+        if (isLoaded(3)) {
+            smallMolecule.setChemicalFormula(items[3]);
+        }
+        if (isLoaded(4)) {
+            smallMolecule.setSmiles(items[4]);
+        }
+        if (isLoaded(5)) {
+            smallMolecule.setInchiKey(items[5]);
+        }
+        if (isLoaded(6)) {
+            smallMolecule.setDescription(items[6]);
+        }
+        if (isLoaded(7)) {
+            smallMolecule.setMassToCharge(items[7]);
+        }
+        if (isLoaded(8)) {
+            smallMolecule.setCharge(items[8]);
+        }
+        if (isLoaded(9)) {
+            smallMolecule.setRetentionTime(items[9]);
+        }
+        if (isLoaded(10)) {
+            smallMolecule.setTaxid(items[10]);
+        }
+        if (isLoaded(11)) {
+            smallMolecule.setSpecies(items[11]);
+        }
+        if (isLoaded(12)) {
+            smallMolecule.setDatabase(items[12]);
+        }
+        if (isLoaded(13)) {
+            smallMolecule.setDatabaseVersion(items[13]);
+        }
+        if (isLoaded(14)) {
+            smallMolecule.setReliability(items[14]);
+        }
+        if (isLoaded(15)) {
+            smallMolecule.setURI(items[15]);
+        }
         Unit unit = metadata.getUnit(smallMolecule.getUnitId());
-        smallMolecule.setSpectraRef(unit, items[16]);
-        smallMolecule.setSearchEngine(items[17]);
-        smallMolecule.setSearchEngineScore(items[18]);
-        smallMolecule.setModifications(items[19]);
+        if (isLoaded(16)) {
+            smallMolecule.setSpectraRef(unit, items[16]);
+        }
+        if (isLoaded(17)) {
+            smallMolecule.setSearchEngine(items[17]);
+        }
+        if (isLoaded(18)) {
+            smallMolecule.setSearchEngineScore(items[18]);
+        }
+        if (isLoaded(19)) {
+            smallMolecule.setModifications(items[19]);
+        }
 
         return 19;
     }
@@ -53,6 +53,65 @@ public class MZTabFileTest {
         }
     }
 
+    @Test
+    public void testLookup() throws Exception {
+        Protein protein = tabFile.getProteins().iterator().next();
+        String unitId = protein.getUnitId();
+
+        assertTrue(tabFile.getProtein(protein.getAccession()).contains(protein));
+        assertEquals(protein, tabFile.getProtein(protein.getAccession(), unitId));
+        assertEquals(tabFile.getProteins().size(), tabFile.getProteins(unitId).size());
+
+        int count = 0;
+        for (Peptide peptide : tabFile.getPeptides()) {
+            if (peptide.getAccession().equals(protein.getAccession()) && peptide.getUnitId().equals(unitId)) {
+                count++;
+            }
+        }
+        assertEquals(count, tabFile.getProteinPeptides(protein.getAccession(), unitId).size());
+
+        // indexes follow unit_id modification.
+        tabFile.modifyUnitId(unitId, "Test_1234");
+        assertEquals(0, tabFile.getProteins(unitId).size());
+        assertEquals(tabFile.getProteins().size(), tabFile.getProteins("Test_1234").size());
+        assertEquals(protein, tabFile.getProtein(protein.getAccession(), "Test_1234"));
+    }
+
+    @Test
+    public void testKeyChange() throws Exception {
+        Protein protein = tabFile.getProteins().iterator().next();
+        String accession = protein.getAccession();
+        String unitId = protein.getUnitId();
+        Peptide peptide = tabFile.getPeptides().iterator().next();
+        String sequence = peptide.getSequence();
+        String peptideAccession = peptide.getAccession();
+        String peptideUnitId = peptide.getUnitId();
+
+        // build indexes.
+        assertEquals(protein, tabFile.getProtein(accession, unitId));
+        assertTrue(tabFile.getPeptidesBySequence(sequence).contains(peptide));
+        int peptideCount = tabFile.getProteinPeptides(peptideAccession, peptideUnitId).size();
+
+        // key setters of added records drop the indexes.
+        protein.setAccession("KEY_CHANGED");
+        assertEquals(null, tabFile.getProtein(accession, unitId));
+        assertEquals(protein, tabFile.getProtein("KEY_CHANGED", unitId));
+        assertTrue(tabFile.getProtein("KEY_CHANGED").contains(protein));
+
+        protein.setUnitId("Test_1234");
+        assertEquals(null, tabFile.getProtein("KEY_CHANGED", unitId));
+        assertEquals(protein, tabFile.getProtein("KEY_CHANGED", "Test_1234"));
+        assertTrue(tabFile.getProteins("Test_1234").contains(protein));
+
+        peptide.setSequence("KEYCHANGED");
+        assertTrue(! tabFile.getPeptidesBySequence(sequence).contains(peptide));
+        assertTrue(tabFile.getPeptidesBySequence("KEYCHANGED").contains(peptide));
+
+        peptide.setAccession("KEY_CHANGED");
+        assertEquals(peptideCount - 1, tabFile.getProteinPeptides(peptideAccession, peptideUnitId).size());
+        assertTrue(tabFile.getProteinPeptides("KEY_CHANGED", peptideUnitId).contains(peptide));
+    }
+
     @Test
     public void testAbundanceColumn() throws Exception {
         SortedMap<Integer, SubUnit> subUnitMap = tabFile.getMetadata().getSubUnits();
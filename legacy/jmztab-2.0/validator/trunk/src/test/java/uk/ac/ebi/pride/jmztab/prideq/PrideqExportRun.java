@@ -100,7 +100,8 @@ public class PrideqExportRun {
         ResultSet result = statement.executeQuery();
 
         Peptide peptide;
-        int lastStablePosition;
+        // optional columns follow the stable columns, position not changed during export.
+        int firstOptionalPosition = peptideColumnFactory.getStableColumnMapping().lastKey() + 1;
         String mascotScore;
         String xtandemHyperScore;
         String xtandemExpScore;
@@ -111,16 +112,15 @@ public class PrideqExportRun {
         String omssaEScore;
         String omssaPScore;
         while (result.next()) {
-            lastStablePosition = peptideColumnFactory.getStableColumnMapping().lastKey();
             peptide = new Peptide(peptideColumnFactory);
             peptide.setUnitId(unit.getUnitId());
             peptide.setSequence(result.getString(1));
             peptide.setModifications(result.getString(2));
             peptide.setMassToCharge(result.getDouble(3));
             peptide.setCharge(result.getInt(4));
-            peptide.addValue(++lastStablePosition, result.getDouble(5));
-            peptide.addValue(++lastStablePosition, result.getInt(6));
-            peptide.addValue(++lastStablePosition, result.getString(7));
+            peptide.addValue(firstOptionalPosition, result.getDouble(5));
+            peptide.addValue(firstOptionalPosition + 1, result.getInt(6));
+            peptide.addValue(firstOptionalPosition + 2, result.getString(7));
             peptide.setReliability(result.getString(8));
 
             mascotScore = result.getString(9);
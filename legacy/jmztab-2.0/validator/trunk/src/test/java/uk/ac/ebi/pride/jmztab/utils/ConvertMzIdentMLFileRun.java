@@ -1,6 +1,5 @@
 package uk.ac.ebi.pride.jmztab.utils;
 
-import uk.ac.ebi.pride.jmztab.model.MZTabFile;
 import uk.ac.ebi.pride.jmztab.utils.convert.ConvertFile;
 
 import java.io.File;
@@ -14,7 +13,6 @@ public class ConvertMzIdentMLFileRun {
         File inFile = new File("testset/Mascot_MSMS_example.mzid");
         MZTabFileConverter converter = new MZTabFileConverter(inFile, ConvertFile.mzIdentML);
 
-        MZTabFile tabFile = converter.getMZTabFile();
-        tabFile.printMZTab(System.out);
+        converter.printMZTab(System.out);
     }
 }
@@ -0,0 +1,47 @@
+package uk.ac.ebi.pride.jmztab.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * User: Qingwei
+ * Date: 10/05/13
+ */
+public class HashKeySetTest {
+    @Test
+    public void testAdd() throws Exception {
+        HashKeySet set = new HashKeySet(4);
+
+        assertTrue(set.add("file_1", "IPI00218319"));
+        assertFalse(set.add("file_1", "IPI00218319"));
+        assertTrue(set.add("file_2", "IPI00218319"));
+        // parts are separated.
+        assertTrue(set.add("file_1I", "PI00218319"));
+        assertEquals(3, set.size());
+
+        for (int i = 0; i < 100000; i++) {
+            assertTrue(set.add("file_1", "P" + i));
+        }
+        assertEquals(100003, set.size());
+        for (int i = 0; i < 100000; i++) {
+            assertTrue(set.contains("file_1", "P" + i));
+        }
+        assertFalse(set.contains("file_1", "P100000"));
+        assertFalse(set.contains("P1"));
+    }
+
+    @Test
+    public void testPrimaryCollision() throws Exception {
+        HashKeySet set = new HashKeySet();
+
+        // same primary hash, different secondary hash.
+        assertTrue(set.add(42L, 1L));
+        assertTrue(set.add(42L, 2L));
+        assertFalse(set.add(42L, 2L));
+        assertTrue(set.contains(42L, 1L));
+        assertFalse(set.contains(42L, 3L));
+        assertTrue(set.add(0L, 0L));
+        assertTrue(set.contains(0L, 0L));
+    }
+}
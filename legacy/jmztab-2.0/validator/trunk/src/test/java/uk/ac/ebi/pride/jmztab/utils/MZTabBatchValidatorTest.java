@@ -0,0 +1,157 @@
+package uk.ac.ebi.pride.jmztab.utils;
+
+import org.junit.Test;
+import uk.ac.ebi.pride.jmztab.utils.errors.MZTabErrorType;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static uk.ac.ebi.pride.jmztab.utils.MZTabProperties.MAX_ERROR_COUNT;
+
+/**
+ * User: Qingwei
+ * Date: 22/05/13
+ */
+public class MZTabBatchValidatorTest {
+    private final static File TEST_DIR = new File("testset");
+    private final static File PASS_FILE = new File(TEST_DIR, "mztab_itraq_example.txt");
+    private final static File WARN_FILE = new File(TEST_DIR, "mztab_SILAC_example.txt");
+
+    private List<String> readLines(File file) throws IOException {
+        List<String> lineList = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineList.add(line);
+            }
+        } finally {
+            reader.close();
+        }
+        return lineList;
+    }
+
+    /**
+     * Copy the pass file, and insert count protein records which reliability is invalid after the first one.
+     */
+    private File writeInvalid(int count) throws IOException {
+        File file = File.createTempFile("batch", ".mztab");
+        file.deleteOnExit();
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            boolean inserted = false;
+            for (String line : readLines(PASS_FILE)) {
+                writer.write(line + "\n");
+                if (! inserted && line.startsWith("PRT")) {
+                    String[] items = line.split("\t", -1);
+                    items[10] = "x";
+                    StringBuilder sb = new StringBuilder(items[0]);
+                    for (int i = 1; i < items.length; i++) {
+                        sb.append("\t").append(items[i]);
+                    }
+                    for (int i = 0; i < count; i++) {
+                        writer.write(sb + "\n");
+                    }
+                    inserted = true;
+                }
+            }
+        } finally {
+            writer.close();
+        }
+        return file;
+    }
+
+    private List<String> names(List<File> fileList) {
+        List<String> nameList = new ArrayList<String>();
+        for (File file : fileList) {
+            nameList.add(file.getName());
+        }
+        return nameList;
+    }
+
+    @Test
+    public void testListFiles() throws Exception {
+        assertEquals(Arrays.asList("mztab_SILAC_example.txt", "mztab_itraq_example.txt",
+                "mztab_lipidomics_example.txt", "mztab_merged_example.txt"),
+                names(MZTabBatchValidator.listFiles(TEST_DIR, "mztab_*_example.txt")));
+        assertEquals(Arrays.asList("OpenMS_PQ_example.mzTab"), names(MZTabBatchValidator.listFiles(TEST_DIR, "*.mzTab")));
+        assertEquals(Arrays.asList("PXD000002_mztab.txt.gz"), names(MZTabBatchValidator.listFiles(TEST_DIR, "?XD*")));
+
+        // regex characters are matched literally.
+        assertTrue(MZTabBatchValidator.listFiles(TEST_DIR, "mztab.*").isEmpty());
+        assertTrue(MZTabBatchValidator.listFiles(TEST_DIR, "mtdFile").isEmpty());
+
+        // null filter return all files, directories are skipped.
+        List<File> fileList = MZTabBatchValidator.listFiles(TEST_DIR, null);
+        assertEquals(TEST_DIR.listFiles().length, fileList.size());
+        for (File file : fileList) {
+            assertTrue(file.isFile());
+        }
+
+        try {
+            MZTabBatchValidator.listFiles(PASS_FILE, "*");
+            fail("Input is not directory.");
+        } catch (IllegalArgumentException e) {
+            // expected.
+        }
+    }
+
+    @Test
+    public void testFullErrorList() throws Exception {
+        // every invalid record report two errors, the error list is just full but not overflow.
+        File fullFile = writeInvalid(MAX_ERROR_COUNT / 2);
+
+        MZTabBatchValidator validator = new MZTabBatchValidator(1, MZTabErrorType.Level.Warn);
+        MZTabBatchValidator.Result result = validator.validate(Arrays.asList(fullFile)).get(0);
+        assertEquals(MAX_ERROR_COUNT, result.getErrorList().size());
+        assertEquals(MZTabBatchValidator.Status.Error, result.getStatus());
+    }
+
+    @Test
+    public void testStatus() throws Exception {
+        File errorFile = writeInvalid(1);
+        File overflowFile = writeInvalid(MAX_ERROR_COUNT + 10);
+        File notExistsFile = new File(errorFile.getPath() + ".not_exists");
+
+        MZTabBatchValidator validator = new MZTabBatchValidator(2, MZTabErrorType.Level.Warn);
+        List<MZTabBatchValidator.Result> resultList = validator.validate(
+                Arrays.asList(PASS_FILE, WARN_FILE, errorFile, overflowFile, notExistsFile));
+        assertEquals(5, resultList.size());
+
+        assertEquals(PASS_FILE, resultList.get(0).getFile());
+        assertEquals(MZTabBatchValidator.Status.Pass, resultList.get(0).getStatus());
+        assertTrue(resultList.get(0).getErrorList().isEmpty());
+
+        assertEquals(MZTabBatchValidator.Status.Warn, resultList.get(1).getStatus());
+        assertTrue(resultList.get(1).getErrorList().isEmpty(MZTabErrorType.Level.Error));
+        assertFalse(resultList.get(1).getErrorList().isEmpty(MZTabErrorType.Level.Warn));
+
+        MZTabBatchValidator.Result result = resultList.get(2);
+        assertEquals(MZTabBatchValidator.Status.Error, result.getStatus());
+        // invalid reliability, and the accession duplicate in the unit.
+        assertEquals(2, result.getErrorList().size());
+        assertEquals(2, result.getCodeCounts().size());
+        for (Integer count : result.getCodeCounts().values()) {
+            assertEquals(Integer.valueOf(1), count);
+        }
+
+        assertEquals(MZTabBatchValidator.Status.Overflow, resultList.get(3).getStatus());
+        assertEquals(MAX_ERROR_COUNT, resultList.get(3).getErrorList().size());
+
+        assertEquals(MZTabBatchValidator.Status.Failed, resultList.get(4).getStatus());
+        assertNull(resultList.get(4).getErrorList());
+        assertNotNull(resultList.get(4).getMessage());
+
+        // report list every file, and the status summary.
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        validator.printReport(resultList, 0, false, out);
+        String report = out.toString();
+        for (MZTabBatchValidator.Result r : resultList) {
+            assertTrue(report.contains(r.getFile().getPath() + "\t" + r.getStatus() + "\t"));
+        }
+        assertTrue(report.contains("Validated 5 files with 2 threads"));
+    }
+}
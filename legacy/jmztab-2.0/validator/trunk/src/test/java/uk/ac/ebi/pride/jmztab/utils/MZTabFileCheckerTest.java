@@ -0,0 +1,174 @@
+package uk.ac.ebi.pride.jmztab.utils;
+
+import org.junit.Test;
+import uk.ac.ebi.pride.jmztab.utils.errors.*;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+import static uk.ac.ebi.pride.jmztab.utils.MZTabProperties.MAX_ERROR_COUNT;
+
+/**
+ * User: Qingwei
+ * Date: 11/05/13
+ */
+public class MZTabFileCheckerTest {
+    /**
+     * @return line number --> error code.
+     */
+    private SortedMap<Integer, Integer> check(long memoryBudget) throws Exception {
+        MZTabErrorList errorList = new MZTabErrorList();
+        MZTabFileChecker checker = new MZTabFileChecker(errorList, MZTabErrorType.Level.Warn);
+        checker.setMemoryBudget(memoryBudget);
+        checker.setRunSize(7);
+
+        int lineNumber = 0;
+        for (int i = 0; i < 50; i++) {
+            checker.checkProtein(++lineNumber, "accession", "file_1", "P" + i);
+        }
+        // duplicate with the keys before spill, and after spill.
+        checker.checkProtein(++lineNumber, "accession", "file_1", "P3");
+        checker.checkProtein(++lineNumber, "accession", "file_2", "P3");
+        checker.checkProtein(++lineNumber, "accession", "file_2", "P3");
+        checker.checkProtein(++lineNumber, "accession", "file_1", "P49");
+
+        for (int i = 45; i < 55; i++) {
+            checker.checkPeptide(++lineNumber, "accession", "P" + i);
+        }
+        checker.finish();
+
+        SortedMap<Integer, Integer> errorMap = new TreeMap<Integer, Integer>();
+        MZTabError error;
+        for (int i = 0; i < errorList.size(); i++) {
+            error = errorList.getError(i);
+            errorMap.put(error.getLineNumber(), error.getType().getCode());
+        }
+        return errorMap;
+    }
+
+    @Test
+    public void testSpill() throws Exception {
+        SortedMap<Integer, Integer> memoryErrors = check(0);
+        // spill after the first protein.
+        SortedMap<Integer, Integer> spillErrors = check(1);
+
+        assertEquals(8, memoryErrors.size());
+        assertEquals(LogicalErrorType.DuplicationAccession.getCode(), memoryErrors.get(51));
+        assertEquals(LogicalErrorType.DuplicationAccession.getCode(), memoryErrors.get(53));
+        assertEquals(LogicalErrorType.DuplicationAccession.getCode(), memoryErrors.get(54));
+        assertEquals(LogicalErrorType.PeptideAccession.getCode(), memoryErrors.get(60));
+        assertEquals(memoryErrors, spillErrors);
+    }
+
+    private int countRunFiles() {
+        String[] names = new File(System.getProperty("java.io.tmpdir")).list(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith("mztab") && name.endsWith(".run");
+            }
+        });
+        return names == null ? 0 : names.length;
+    }
+
+    @Test
+    public void testAbortAfterSpill() throws Exception {
+        int runFileCount = countRunFiles();
+
+        // aborted before finish, for example by header error or cancellation.
+        MZTabFileChecker checker = new MZTabFileChecker(new MZTabErrorList(), MZTabErrorType.Level.Warn);
+        checker.setMemoryBudget(1);
+        checker.setRunSize(3);
+        for (int i = 0; i < 20; i++) {
+            checker.checkProtein(i + 1, "accession", "file_1", "P" + i);
+        }
+        assertTrue(checker.isSpilled());
+        assertTrue(countRunFiles() > runFileCount);
+        checker.close();
+        assertFalse(checker.isSpilled());
+        assertEquals(runFileCount, countRunFiles());
+
+        // error list overflow during merge runs.
+        checker = new MZTabFileChecker(new MZTabErrorList(), MZTabErrorType.Level.Warn);
+        checker.setMemoryBudget(1);
+        checker.setRunSize(7);
+        for (int i = 0; i < MAX_ERROR_COUNT + 10; i++) {
+            checker.checkProtein(i + 1, "accession", "file_1", "P1");
+        }
+        assertTrue(countRunFiles() > runFileCount);
+        try {
+            checker.finish();
+            fail("Error list should overflow.");
+        } catch (MZTabErrorOverflowException e) {
+            // expected.
+        }
+        assertEquals(runFileCount, countRunFiles());
+    }
+
+    @Test
+    public void testErrorBudget() throws Exception {
+        // cross check errors are kept by checker during scan.
+        MZTabErrorList errorList = new MZTabErrorList();
+        MZTabFileChecker checker = new MZTabFileChecker(errorList, MZTabErrorType.Level.Warn);
+        for (int i = 0; i < MAX_ERROR_COUNT + 10; i++) {
+            checker.checkProtein(i + 1, "accession", "file_1", "P1");
+        }
+        assertTrue(errorList.isEmpty());
+        errorList.add(new MZTabError(FormatErrorType.Integer, 300, "charge", "x"));
+        try {
+            checker.finish();
+            fail("Error list should overflow.");
+        } catch (MZTabErrorOverflowException e) {
+            // expected.
+        }
+        assertEquals(FormatErrorType.Integer, errorList.getError(0).getType());
+        assertEquals(MAX_ERROR_COUNT, errorList.size());
+
+        // the last invalid peptide line is still validated, after too many duplicate proteins.
+        List<String> lineList = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new FileReader("testset/mztab_itraq_example.txt"));
+        String line;
+        String protein = null;
+        int lastPeptide = -1;
+        while ((line = reader.readLine()) != null) {
+            lineList.add(line);
+            if (protein == null && line.startsWith("PRT")) {
+                protein = line;
+                for (int i = 0; i < MAX_ERROR_COUNT + 10; i++) {
+                    lineList.add(protein);
+                }
+            }
+            if (line.startsWith("PEP")) {
+                lastPeptide = lineList.size() - 1;
+            }
+        }
+        reader.close();
+        String[] items = lineList.get(lastPeptide).split("\t", -1);
+        items[12] = "x";
+        StringBuilder sb = new StringBuilder(items[0]);
+        for (int i = 1; i < items.length; i++) {
+            sb.append("\t").append(items[i]);
+        }
+        lineList.set(lastPeptide, sb.toString());
+
+        File tabFile = File.createTempFile("checker", ".mztab");
+        tabFile.deleteOnExit();
+        Writer writer = new FileWriter(tabFile);
+        for (String l : lineList) {
+            writer.write(l + "\n");
+        }
+        writer.close();
+
+        errorList = new MZTabErrorList();
+        new MZTabFileParser(tabFile, new MZTabFileParser.Options().setErrorList(errorList)
+                .setLevel(MZTabErrorType.Level.Warn).setBuffered(false));
+        assertEquals(MAX_ERROR_COUNT, errorList.size());
+        MZTabError error = errorList.getError(0);
+        assertEquals(FormatErrorType.Integer, error.getType());
+        assertEquals(lastPeptide + 1, error.getLineNumber());
+        assertEquals(LogicalErrorType.DuplicationAccession, errorList.getError(1).getType());
+    }
+}
@@ -0,0 +1,155 @@
+package uk.ac.ebi.pride.jmztab.utils;
+
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.ebi.pride.jmztab.model.MZTabFile;
+import uk.ac.ebi.pride.jmztab.model.Peptide;
+import uk.ac.ebi.pride.jmztab.model.Protein;
+import uk.ac.ebi.pride.jmztab.utils.errors.MZTabErrorList;
+import uk.ac.ebi.pride.jmztab.utils.errors.MZTabErrorType;
+
+import java.io.*;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * User: Qingwei
+ * Date: 22/05/13
+ */
+public class MZTabFileJoinerTest {
+    private MZTabFile tabFile;
+
+    private String join(String[] items) {
+        StringBuilder sb = new StringBuilder(items[0]);
+        for (int i = 1; i < items.length; i++) {
+            sb.append("\t").append(items[i]);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Load merged example, which has two units. Add a duplicate protein IPI00218319 into file_1, and a
+     * PRIDE_1234 peptide which accession only exists in file_1.
+     */
+    @Before
+    public void setUp() throws Exception {
+        File file = File.createTempFile("joiner", ".mztab");
+        file.deleteOnExit();
+
+        BufferedReader reader = new BufferedReader(new FileReader("testset/mztab_merged_example.txt"));
+        Writer writer = new FileWriter(file);
+        try {
+            boolean peptideAdded = false;
+            String line;
+            String[] items;
+            while ((line = reader.readLine()) != null) {
+                writer.write(line + "\n");
+                items = line.split("\t", -1);
+                if (items[0].equals("PRT") && items[1].equals("IPI00218319")) {
+                    items[3] = "duplicate";
+                    writer.write(join(items) + "\n");
+                } else if (! peptideAdded && items[0].equals("PEP") && items[3].equals("PRIDE_1234")) {
+                    items[2] = "IPI00000980";
+                    writer.write(join(items) + "\n");
+                    peptideAdded = true;
+                }
+            }
+        } finally {
+            reader.close();
+            writer.close();
+        }
+
+        MZTabErrorList errorList = new MZTabErrorList();
+        tabFile = new MZTabFileParser(file, new MZTabFileParser.Options().setErrorList(errorList)
+                .setLevel(MZTabErrorType.Level.Error).setBuffered(true)).getMZTabFile();
+        assertNotNull(tabFile);
+    }
+
+    private Protein getProtein(Map<Protein, List<Peptide>> proteinPeptides, String accession, boolean duplicate) {
+        for (Protein protein : proteinPeptides.keySet()) {
+            if (protein.getAccession().equals(accession) && duplicate == "duplicate".equals(protein.getDescription())) {
+                return protein;
+            }
+        }
+        throw new IllegalArgumentException("Not found protein " + accession);
+    }
+
+    private void assertUnits(Map<String, MZTabFileJoiner.UnitJoin> unitMap) {
+        assertEquals(new HashSet<String>(Arrays.asList("file_1", "PRIDE_1234")), unitMap.keySet());
+
+        MZTabFileJoiner.UnitJoin unitJoin = unitMap.get("file_1");
+        Map<Protein, List<Peptide>> proteinPeptides = unitJoin.getProteinPeptides();
+        assertEquals(6, proteinPeptides.size());
+        // peptides are joined to the first protein of duplicate accessions.
+        assertEquals(7, proteinPeptides.get(getProtein(proteinPeptides, "IPI00218319", false)).size());
+        assertTrue(proteinPeptides.get(getProtein(proteinPeptides, "IPI00218319", true)).isEmpty());
+        assertEquals(1, proteinPeptides.get(getProtein(proteinPeptides, "IPI00000980", false)).size());
+        assertEquals(3, unitJoin.getUnmatchedPeptides().size());
+        for (Peptide peptide : unitJoin.getUnmatchedPeptides()) {
+            assertTrue(peptide.getAccession().equals("IPI00010779") || peptide.getAccession().equals("IPI00513698"));
+        }
+        assertEquals(1, unitJoin.getSmallMolecules().size());
+
+        // accession of other unit is not matched.
+        unitJoin = unitMap.get("PRIDE_1234");
+        proteinPeptides = unitJoin.getProteinPeptides();
+        assertEquals(2, proteinPeptides.size());
+        assertEquals(4, proteinPeptides.get(getProtein(proteinPeptides, "gi|10181184", false)).size());
+        assertEquals(2, proteinPeptides.get(getProtein(proteinPeptides, "gi|1050551", false)).size());
+        assertEquals(1, unitJoin.getUnmatchedPeptides().size());
+        assertEquals("IPI00000980", unitJoin.getUnmatchedPeptides().get(0).getAccession());
+        assertTrue(unitJoin.getSmallMolecules().isEmpty());
+    }
+
+    @Test
+    public void testJoin() throws Exception {
+        Map<String, MZTabFileJoiner.UnitJoin> unitMap = new MZTabFileJoiner(tabFile, 1).join();
+        assertUnits(unitMap);
+
+        // units joined on thread pool get the same result.
+        Map<String, MZTabFileJoiner.UnitJoin> parallelUnitMap = new MZTabFileJoiner(tabFile, 3).join();
+        assertUnits(parallelUnitMap);
+        assertEquals(new ArrayList<String>(unitMap.keySet()), new ArrayList<String>(parallelUnitMap.keySet()));
+        for (String unitId : unitMap.keySet()) {
+            assertEquals(unitMap.get(unitId).getProteinPeptides(), parallelUnitMap.get(unitId).getProteinPeptides());
+            assertEquals(unitMap.get(unitId).getUnmatchedPeptides(), parallelUnitMap.get(unitId).getUnmatchedPeptides());
+        }
+    }
+
+    @Test
+    public void testJoinHandler() throws Exception {
+        final List<Protein> proteinList = new ArrayList<Protein>();
+        final List<Peptide> peptideList = new ArrayList<Peptide>();
+        MZTabFileJoiner.JoinHandler handler = new MZTabFileJoiner.JoinHandler() {
+            @Override
+            public void join(Protein protein, Peptide peptide) {
+                proteinList.add(protein);
+                peptideList.add(peptide);
+            }
+        };
+
+        MZTabFileJoiner joiner = new MZTabFileJoiner(tabFile);
+        joiner.join(handler);
+        assertEquals(17, peptideList.size());
+        assertFalse(proteinList.contains(null));
+        for (int i = 0; i < peptideList.size(); i++) {
+            assertEquals(peptideList.get(i).getAccession(), proteinList.get(i).getAccession());
+            assertEquals(peptideList.get(i).getUnitId(), proteinList.get(i).getUnitId());
+            assertFalse("duplicate".equals(proteinList.get(i).getDescription()));
+        }
+
+        // unmatched peptides are passed with null protein, in peptide line order.
+        proteinList.clear();
+        peptideList.clear();
+        joiner.join(handler, true);
+        assertEquals(new ArrayList<Peptide>(tabFile.getPeptides()), peptideList);
+        int unmatched = 0;
+        for (int i = 0; i < peptideList.size(); i++) {
+            if (proteinList.get(i) == null) {
+                unmatched++;
+            }
+        }
+        assertEquals(4, unmatched);
+    }
+}
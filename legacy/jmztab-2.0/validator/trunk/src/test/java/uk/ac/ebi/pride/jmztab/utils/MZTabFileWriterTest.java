@@ -0,0 +1,51 @@
+package uk.ac.ebi.pride.jmztab.utils;
+
+import org.junit.Test;
+import uk.ac.ebi.pride.jmztab.model.MZTabFile;
+import uk.ac.ebi.pride.jmztab.utils.errors.MZTabErrorType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+/**
+ * User: Qingwei
+ * Date: 22/05/13
+ */
+public class MZTabFileWriterTest {
+    private MZTabFile parse(String fileName) throws Exception {
+        MZTabFile tabFile = new MZTabFileParser(new File(fileName), new MZTabFileParser.Options()
+                .setLevel(MZTabErrorType.Level.Error).setBuffered(true)).getMZTabFile();
+        assertNotNull(tabFile);
+        return tabFile;
+    }
+
+    private void assertSameOutput(MZTabFile tabFile, int threads, int batchSize) throws Exception {
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        tabFile.printMZTab(expected);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MZTabFileWriter writer = new MZTabFileWriter(out, threads, batchSize);
+        writer.write(tabFile);
+
+        assertArrayEquals("threads=" + threads + ", batch_size=" + batchSize, expected.toByteArray(), out.toByteArray());
+        assertEquals(tabFile.getProteins().size() + tabFile.getPeptides().size() + tabFile.getSmallMolecules().size(),
+                writer.getRecordCount());
+    }
+
+    @Test
+    public void testParallelWrite() throws Exception {
+        // protein, peptide and small molecule sections, batch size not divide the number of records.
+        MZTabFile tabFile = parse("testset/mztab_merged_example.txt");
+        assertSameOutput(tabFile, 1, 2);
+        assertSameOutput(tabFile, 3, 2);
+        assertSameOutput(tabFile, 4, 3);
+
+        // thousands of records, more batches than the pending window of threads * 2.
+        tabFile = parse("testset/PRIDE_Exp_Complete_Ac_16649.xml-mztab.txt");
+        assertSameOutput(tabFile, 3, 7);
+        assertSameOutput(tabFile, 2, 1000);
+        assertSameOutput(tabFile, 4, 100000);
+    }
+}
@@ -0,0 +1,122 @@
+package uk.ac.ebi.pride.jmztab.utils;
+
+import org.junit.Test;
+import uk.ac.ebi.pride.jmztab.model.Section;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * User: Qingwei
+ * Date: 22/05/13
+ */
+public class MZTabLineIndexTest {
+    private final static int PROTEIN_COUNT = MZTabLineIndex.BLOCK_SIZE * 2 + 22;
+    private final static String[] TERMINATORS = {"\n", "\r\n", "\r"};
+
+    private List<String> proteinList = new ArrayList<String>();
+    private List<String> peptideList = new ArrayList<String>();
+
+    /**
+     * Proteins span three blocks, line terminators rotate between "\n", "\r\n" and "\r". Comment and empty
+     * lines are put between rows, also just before the first row of second block. The last peptide line has
+     * no line terminator.
+     */
+    private File createTabFile() throws IOException {
+        File file = File.createTempFile("index", ".mztab");
+        file.deleteOnExit();
+
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), MZTabProperties.ENCODE);
+        try {
+            writer.write("MTD\tPRIDE-title\tindex test\n");
+            writer.write("COM\tproteins\r\n");
+            writer.write("PRH\taccession\tunit_id\tdescription\r\n");
+            String line;
+            for (int i = 0; i < PROTEIN_COUNT; i++) {
+                if (i % 10 == 3 || i == MZTabLineIndex.BLOCK_SIZE) {
+                    writer.write("COM\tbetween rows" + TERMINATORS[i % 3]);
+                }
+                if (i % 17 == 5) {
+                    writer.write(TERMINATORS[i % 3]);
+                }
+                // multi-byte characters shift byte offsets from char offsets.
+                line = "PRT\tP" + i + "\tPRIDE_1234\tprotéine " + i;
+                proteinList.add(line);
+                writer.write(line + TERMINATORS[i % 3]);
+            }
+
+            writer.write("\r\nPEH\tsequence\taccession\tunit_id\n");
+            for (int i = 0; i < 3; i++) {
+                line = "PEP\tPEPTIDE" + i + "\tP" + i + "\tPRIDE_1234";
+                peptideList.add(line);
+                writer.write(line);
+                if (i < 2) {
+                    writer.write("\r\nCOM\tPEP in comment\r");
+                }
+            }
+        } finally {
+            writer.close();
+        }
+
+        return file;
+    }
+
+    @Test
+    public void testReadBlock() throws Exception {
+        MZTabLineIndex index = new MZTabLineIndex(createTabFile());
+        try {
+            assertEquals("PRH\taccession\tunit_id\tdescription", index.getHeader(Section.Protein));
+            assertEquals("PEH\tsequence\taccession\tunit_id", index.getHeader(Section.Peptide));
+            assertNull(index.getHeader(Section.Small_Molecule));
+
+            assertEquals(PROTEIN_COUNT, index.getRowCount(Section.Protein));
+            assertEquals(3, index.getBlockCount(Section.Protein));
+            assertEquals(3, index.getRowCount(Section.Peptide));
+            assertEquals(1, index.getBlockCount(Section.Peptide));
+            assertEquals(0, index.getRowCount(Section.Small_Molecule));
+            assertEquals(0, index.getBlockCount(Section.Small_Molecule));
+
+            // every block start from its offset, comment and empty lines are skipped.
+            List<String> lineList = new ArrayList<String>();
+            for (int block = 0; block < 3; block++) {
+                List<String> blockLines = index.readBlock(Section.Protein, block);
+                assertEquals(block < 2 ? MZTabLineIndex.BLOCK_SIZE : 22, blockLines.size());
+                lineList.addAll(blockLines);
+            }
+            assertEquals(proteinList, lineList);
+            // random access, not depend on the previous read.
+            assertEquals(proteinList.subList(MZTabLineIndex.BLOCK_SIZE, MZTabLineIndex.BLOCK_SIZE * 2),
+                    index.readBlock(Section.Protein, 1));
+
+            assertEquals(peptideList, index.readBlock(Section.Peptide, 0));
+
+            try {
+                index.readBlock(Section.Protein, 3);
+                fail("Block 3 not exists.");
+            } catch (IndexOutOfBoundsException e) {
+                // expected.
+            }
+            try {
+                index.readBlock(Section.Small_Molecule, 0);
+                fail("Small molecule section not exists.");
+            } catch (IndexOutOfBoundsException e) {
+                // expected.
+            }
+        } finally {
+            index.close();
+        }
+    }
+
+    @Test
+    public void testCompressedFile() throws Exception {
+        try {
+            new MZTabLineIndex(new File("example.mztab.gz"));
+            fail("Compressed file can not be indexed.");
+        } catch (IllegalArgumentException e) {
+            // expected.
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package uk.ac.ebi.pride.jmztab.utils;
+
+import org.junit.Test;
+import uk.ac.ebi.pride.jmztab.model.MsFile;
+import uk.ac.ebi.pride.jmztab.model.Unit;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * User: Qingwei
+ * Date: 22/05/13
+ */
+public class MZTabSpectrumFetcherTest {
+    private final static File TAB_FILE = new File("testset/PRIDE_Exp_Complete_Ac_16649.xml-mztab.txt");
+
+    private File write(String suffix, String content) throws IOException {
+        File file = File.createTempFile("spectrum", suffix);
+        file.deleteOnExit();
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write(content);
+        } finally {
+            writer.close();
+        }
+        return file;
+    }
+
+    @Test
+    public void testGetSpectrum() throws Exception {
+        File mzML = write(".mzML", "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                "<mzML>\n<run id=\"run\">\n<spectrumList count=\"2\">\n" +
+                "<spectrum index=\"0\" id=\"controllerType=0 controllerNumber=1 scan=12\"><binary/></spectrum>\n" +
+                "<spectrum index=\"1\" id=\"controllerType=0 controllerNumber=1 scan=9\"><binary/></spectrum>\n" +
+                "</spectrumList>\n</run>\n</mzML>\n");
+        MsFile msFile = new MsFile(1, new Unit("TEST"));
+        msFile.setLocation(mzML.toURI().toURL());
+
+        MZTabSpectrumFetcher fetcher = new MZTabSpectrumFetcher(1, 10);
+        try {
+            String spectrum = fetcher.getSpectrum(msFile, "controllerType=0 controllerNumber=1 scan=9");
+            assertTrue(spectrum.startsWith("<spectrum index=\"1\""));
+            assertTrue(spectrum.endsWith("</spectrum>"));
+            assertEquals(spectrum, fetcher.getSpectrum(msFile, "index=1"));
+            assertNull(fetcher.getSpectrum(msFile, "controllerType=0 controllerNumber=1 scan=10"));
+            assertNull(fetcher.getSpectrum(msFile, "index=2"));
+        } finally {
+            fetcher.close();
+        }
+    }
+
+    @Test
+    public void testFetch() throws Exception {
+        SpectraRefIndex index = new SpectraRefIndex(TAB_FILE);
+        MsFile msFile = index.getMsFiles().iterator().next();
+
+        // write the referenced spectra in reverse order, and leave out the first one.
+        List<String> idList = new ArrayList<String>();
+        for (SpectraRefIndex.Entry entry : index.getEntries(msFile)) {
+            String id = entry.getReference().substring("spectrum=".length());
+            if (idList.isEmpty() || ! idList.get(idList.size() - 1).equals(id)) {
+                idList.add(id);
+            }
+        }
+        StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<mzData>\n<spectrumList>\n");
+        for (int i = idList.size() - 1; i > 0; i--) {
+            sb.append("<spectrum id=\"").append(idList.get(i)).append("\"><data/></spectrum>\n");
+        }
+        sb.append("</spectrumList>\n</mzData>\n");
+        msFile.setLocation(write(".xml", sb.toString()).toURI().toURL());
+
+        final List<String> fetchedList = new ArrayList<String>();
+        final int[] entryCount = {0};
+        MZTabSpectrumFetcher fetcher = new MZTabSpectrumFetcher(1, 100);
+        try {
+            long count = fetcher.fetch(index, new MZTabSpectrumFetcher.Handler() {
+                @Override
+                public void fetched(MsFile msFile, String reference, String spectrum, List<SpectraRefIndex.Entry> entries) {
+                    for (SpectraRefIndex.Entry entry : entries) {
+                        assertEquals(reference, entry.getReference());
+                    }
+                    entryCount[0] += entries.size();
+                    if (spectrum != null) {
+                        assertTrue(spectrum.startsWith("<spectrum id=\"" + reference.substring("spectrum=".length()) + "\""));
+                    }
+                    fetchedList.add(spectrum == null ? null : reference);
+                }
+            });
+            assertEquals(idList.size() - 1, count);
+            assertEquals(idList.size(), fetchedList.size());
+            assertEquals(index.size(msFile), entryCount[0]);
+            assertTrue(fetchedList.contains(null));
+        } finally {
+            fetcher.close();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package uk.ac.ebi.pride.jmztab.utils;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * User: Qingwei
+ * Date: 22/05/13
+ */
+public class ParallelGZIPOutputStreamTest {
+    private final static int BLOCK_SIZE = 1000;
+
+    private byte[] createData(int size) {
+        // text like data, compressible.
+        byte[] data = new byte[size];
+        Random random = new Random(size);
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) ('A' + random.nextInt(8));
+        }
+        return data;
+    }
+
+    private byte[] compress(byte[] data, int threads, boolean bgzf) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ParallelGZIPOutputStream gzipOut = new ParallelGZIPOutputStream(out, threads, BLOCK_SIZE, bgzf);
+        // mix single byte and array writes, which cross block boundaries.
+        int i = 0;
+        while (i < data.length) {
+            if (i % 3 == 0) {
+                gzipOut.write(data[i++]);
+            } else {
+                int len = Math.min(data.length - i, 377);
+                gzipOut.write(data, i, len);
+                i += len;
+            }
+        }
+        gzipOut.close();
+        return out.toByteArray();
+    }
+
+    private byte[] decompress(byte[] bytes) throws IOException {
+        InputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int len;
+        while ((len = in.read(buffer)) != -1) {
+            out.write(buffer, 0, len);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+
+    /**
+     * @return the number of BGZF members, every member size is read from its BSIZE field.
+     */
+    private int countBGZFMembers(byte[] bytes) {
+        int members = 0;
+        int offset = 0;
+        while (offset < bytes.length) {
+            assertEquals(0x1f, bytes[offset] & 0xff);
+            assertEquals(0x8b, bytes[offset + 1] & 0xff);
+            assertEquals('B', bytes[offset + 12]);
+            assertEquals('C', bytes[offset + 13]);
+            offset += ((bytes[offset + 16] & 0xff) | (bytes[offset + 17] & 0xff) << 8) + 1;
+            members++;
+        }
+        assertEquals(bytes.length, offset);
+        return members;
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        int[] sizes = {1, BLOCK_SIZE - 1, BLOCK_SIZE, BLOCK_SIZE + 1, BLOCK_SIZE * 20 + 3};
+        for (int size : sizes) {
+            byte[] data = createData(size);
+            for (int threads : new int[] {1, 3}) {
+                assertArrayEquals("plain size=" + size, data, decompress(compress(data, threads, false)));
+
+                byte[] bytes = compress(data, threads, true);
+                assertArrayEquals("bgzf size=" + size, data, decompress(bytes));
+                // data blocks, and the EOF member.
+                assertEquals((size + BLOCK_SIZE - 1) / BLOCK_SIZE + 1, countBGZFMembers(bytes));
+            }
+        }
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        byte[] bytes = compress(new byte[0], 2, false);
+        assertTrue(bytes.length > 0);
+        assertEquals(0, decompress(bytes).length);
+
+        bytes = compress(new byte[0], 2, true);
+        assertEquals(1, countBGZFMembers(bytes));
+        assertEquals(0, decompress(bytes).length);
+    }
+
+    @Test
+    public void testFlush() throws Exception {
+        byte[] data = createData(BLOCK_SIZE * 2);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ParallelGZIPOutputStream gzipOut = new ParallelGZIPOutputStream(out, 2, BLOCK_SIZE, true);
+        gzipOut.write(data, 0, 10);
+        gzipOut.flush();
+        // flush close the current block.
+        assertEquals(1, countBGZFMembers(out.toByteArray()));
+        gzipOut.write(data, 10, data.length - 10);
+        gzipOut.close();
+
+        byte[] bytes = out.toByteArray();
+        assertEquals(4, countBGZFMembers(bytes));
+        assertArrayEquals(data, decompress(bytes));
+
+        try {
+            gzipOut.write(1);
+            fail("Stream closed.");
+        } catch (IOException e) {
+            // expected.
+        }
+    }
+
+    @Test
+    public void testDaemonThreads() throws Exception {
+        // stream not closed, for example aborted by error, its compress threads should not block JVM exit.
+        ParallelGZIPOutputStream gzipOut = new ParallelGZIPOutputStream(new ByteArrayOutputStream(), 2, BLOCK_SIZE, false);
+        gzipOut.write(createData(BLOCK_SIZE * 3));
+        int count = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().equals("mzTab gzip compressor")) {
+                assertTrue(thread.isDaemon());
+                count++;
+            }
+        }
+        assertTrue(count > 0);
+        gzipOut.close();
+    }
+}
@@ -0,0 +1,93 @@
+package uk.ac.ebi.pride.jmztab.utils;
+
+import org.junit.Test;
+import uk.ac.ebi.pride.jmztab.model.MZTabFile;
+import uk.ac.ebi.pride.jmztab.model.MsFile;
+import uk.ac.ebi.pride.jmztab.model.Peptide;
+import uk.ac.ebi.pride.jmztab.model.Section;
+import uk.ac.ebi.pride.jmztab.model.SpecRef;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * User: Qingwei
+ * Date: 22/05/13
+ */
+public class SpectraRefIndexTest {
+    private final static File TAB_FILE = new File("testset/PRIDE_Exp_Complete_Ac_16649.xml-mztab.txt");
+
+    @Test
+    public void testCompareNativeId() throws Exception {
+        assertTrue(SpectraRefIndex.compareNativeId("scan=9", "scan=10") < 0);
+        assertTrue(SpectraRefIndex.compareNativeId("scan=100", "scan=10") > 0);
+        assertTrue(SpectraRefIndex.compareNativeId("index=2", "scan=1") < 0);
+        assertTrue(SpectraRefIndex.compareNativeId("controllerType=0 controllerNumber=1 scan=12",
+                "controllerType=0 controllerNumber=1 scan=102") < 0);
+        assertTrue(SpectraRefIndex.compareNativeId("scan=007", "scan=8") < 0);
+        assertEquals(0, SpectraRefIndex.compareNativeId("scan=7", "scan=7"));
+    }
+
+    @Test
+    public void testIndex() throws Exception {
+        SpectraRefIndex index = new SpectraRefIndex(TAB_FILE);
+        assertEquals(1, index.getMsFiles().size());
+        MsFile msFile = index.getMsFiles().iterator().next();
+
+        List<SpectraRefIndex.Entry> entryList = index.getEntries(msFile);
+        assertEquals(index.size(), entryList.size());
+        for (int i = 1; i < entryList.size(); i++) {
+            assertTrue(SpectraRefIndex.compareNativeId(entryList.get(i - 1).getReference(), entryList.get(i).getReference()) <= 0);
+        }
+
+        // same entries with the index which built from records.
+        MZTabFile tabFile = new MZTabFileParser(TAB_FILE, new ByteArrayOutputStream()).getMZTabFile();
+        SpectraRefIndex recordIndex = new SpectraRefIndex(tabFile);
+        MsFile recordMsFile = recordIndex.getMsFiles().iterator().next();
+        List<SpectraRefIndex.Entry> recordEntryList = recordIndex.getEntries(recordMsFile);
+        assertEquals(entryList.size(), recordEntryList.size());
+
+        SpectraRefIndex.Entry entry;
+        Peptide peptide;
+        for (int i = 0; i < recordEntryList.size(); i++) {
+            entry = recordEntryList.get(i);
+            assertEquals(entryList.get(i).toString(), entry.toString());
+
+            // map back to record.
+            assertEquals(Section.Peptide, entry.getSection());
+            peptide = tabFile.getPeptidesWithLineNumber().get(entry.getLineNumber());
+            boolean found = false;
+            for (SpecRef ref : peptide.getSpectraRef()) {
+                found = found || ref.getReference().equals(entry.getReference());
+            }
+            assertTrue(found);
+        }
+    }
+
+    @Test
+    public void testBatches() throws Exception {
+        SpectraRefIndex index = new SpectraRefIndex(TAB_FILE);
+        MsFile msFile = index.getMsFiles().iterator().next();
+
+        List<List<SpectraRefIndex.Entry>> batchList = index.getBatches(msFile, 100);
+        int count = 0;
+        String last = null;
+        for (List<SpectraRefIndex.Entry> batch : batchList) {
+            // native id not split across batches.
+            assertFalse(batch.get(0).getReference().equals(last));
+            int distinct = 0;
+            for (int i = 0; i < batch.size(); i++) {
+                if (i == 0 || ! batch.get(i).getReference().equals(batch.get(i - 1).getReference())) {
+                    distinct++;
+                }
+            }
+            assertTrue(distinct <= 100);
+            last = batch.get(batch.size() - 1).getReference();
+            count += batch.size();
+        }
+        assertEquals(index.size(msFile), count);
+    }
+}
@@ -0,0 +1,215 @@
+package uk.ac.ebi.pride.jmztab.utils.convert;
+
+import org.junit.Test;
+import uk.ac.ebi.pride.jmztab.model.MZTabFile;
+import uk.ac.ebi.pride.jmztab.model.Protein;
+import uk.ac.ebi.pride.jmztab.utils.errors.MZTabErrorList;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * User: Qingwei
+ * Date: 22/05/13
+ */
+public class ConvertDelimitedFileTest {
+    private final static String MAPPING = "section=protein\n" +
+            "separator=comma\n" +
+            "quote=\"\n" +
+            "unit_id=DELIMITED_1\n" +
+            "title=delimited test\n" +
+            "column.accession=Accession\n" +
+            "column.description=2\n" +
+            "column.num_peptides=Peptides\n" +
+            "opt.score=Score\n";
+
+    private File write(String suffix, String content) throws IOException {
+        File file = File.createTempFile("delimited", suffix);
+        file.deleteOnExit();
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write(content);
+        } finally {
+            writer.close();
+        }
+        return file;
+    }
+
+    @Test
+    public void testConvert() throws Exception {
+        File inFile = write(".csv", "Accession,Description,Peptides,Score\n" +
+                "P1,\"alpha, beta\",3,10.5\n" +
+                "\n" +
+                "P2,\"say \"\"hi\"\"\",,\n" +
+                "P3,\"tab\tinside\",two,1\n" +
+                "P4,short\n");
+        ConvertDelimitedFile converter = new ConvertDelimitedFile(inFile, write(".properties", MAPPING));
+        MZTabFile tabFile = converter.getMZTabFile();
+
+        // the record which num_peptides is not integer is rejected.
+        List<Protein> proteinList = new ArrayList<Protein>(tabFile.getProteins());
+        assertEquals(3, proteinList.size());
+        Protein protein = proteinList.get(0);
+        assertEquals("P1", protein.getAccession());
+        assertEquals("DELIMITED_1", protein.getUnitId());
+        assertEquals("alpha, beta", protein.getDescription());
+        assertEquals(Integer.valueOf(3), protein.getNumPeptides());
+        assertEquals("10.5", protein.getValue(tabFile.getProteinColumnFactory().getColumn("opt_score").getPosition()));
+        assertEquals("say \"hi\"", proteinList.get(1).getDescription());
+        assertNull(proteinList.get(1).getNumPeptides());
+        assertEquals("P4", proteinList.get(2).getAccession());
+        assertEquals("short", proteinList.get(2).getDescription());
+        assertNull(proteinList.get(2).getNumPeptides());
+
+        // errors report the source line number.
+        MZTabErrorList errorList = converter.getErrorList();
+        assertEquals(1, errorList.size());
+        assertEquals(5, errorList.getError(0).getLineNumber());
+        assertTrue(errorList.getError(0).getMessage().contains("num_peptides"));
+    }
+
+    @Test
+    public void testEscapeTab() throws Exception {
+        File inFile = write(".csv", "Accession,Description,Peptides,Score\n" +
+                "P1,\"tab\tinside\",1,1\n");
+        ConvertDelimitedFile converter = new ConvertDelimitedFile(inFile, write(".properties", MAPPING));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        converter.printMZTab(out);
+
+        String record = null;
+        for (String line : out.toString().split("\n")) {
+            if (line.startsWith("PRT")) {
+                record = line;
+            }
+        }
+        assertNotNull(record);
+        String[] items = record.split("\t");
+        assertEquals(tabFileColumnCount(converter), items.length);
+        assertEquals("tab inside", items[3]);
+        assertTrue(converter.getErrorList().isEmpty());
+    }
+
+    private int tabFileColumnCount(ConvertDelimitedFile converter) {
+        return converter.getMZTabFile().getProteinColumnFactory().getColumnMapping().lastKey() + 1;
+    }
+
+    @Test
+    public void testChunkOrder() throws Exception {
+        StringBuilder sb = new StringBuilder("Accession,Description,Peptides,Score\n");
+        int count = 1000;
+        for (int i = 0; i < count; i++) {
+            sb.append("P").append(i).append(",protein ").append(i).append(",").append(i % 7).append(",").append(i).append("\n");
+        }
+        File inFile = write(".csv", sb.toString());
+        File mappingFile = write(".properties", MAPPING);
+
+        ConvertDelimitedFile converter = new ConvertDelimitedFile(inFile, mappingFile);
+        converter.setChunkSize(7);
+        converter.setThreads(3);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        converter.printMZTab(out);
+
+        int i = 0;
+        for (String line : out.toString().split("\n")) {
+            if (line.startsWith("PRT")) {
+                assertTrue(line, line.startsWith("PRT\tP" + i + "\t"));
+                i++;
+            }
+        }
+        assertEquals(count, i);
+
+        // buffered records keep the source order too.
+        converter = new ConvertDelimitedFile(inFile, mappingFile);
+        converter.setChunkSize(13);
+        converter.setThreads(2);
+        i = 0;
+        for (Protein protein : converter.getMZTabFile().getProteins()) {
+            assertEquals("P" + i++, protein.getAccession());
+        }
+        assertEquals(count, i);
+    }
+
+    @Test
+    public void testQuotedLineBreak() throws Exception {
+        File inFile = write(".csv", "Accession,Description,Peptides,Score\n" +
+                "P1,\"first\nsecond, \"\"third\"\"\r\nfourth\",1,1\n" +
+                "P2,two,x,2\n");
+        ConvertDelimitedFile converter = new ConvertDelimitedFile(inFile, write(".properties", MAPPING));
+        List<Protein> proteinList = new ArrayList<Protein>(converter.getMZTabFile().getProteins());
+        assertEquals(1, proteinList.size());
+        assertEquals("first second, \"third\" fourth", proteinList.get(0).getDescription());
+
+        // the line number of the following record count the physical lines.
+        MZTabErrorList errorList = converter.getErrorList();
+        assertEquals(1, errorList.size());
+        assertEquals(5, errorList.getError(0).getLineNumber());
+    }
+
+    @Test
+    public void testChunkErrorOrder() throws Exception {
+        StringBuilder sb = new StringBuilder("Accession,Description,Peptides,Score\n");
+        int count = 100;
+        for (int i = 0; i < count; i++) {
+            sb.append("P").append(i).append(",protein ").append(i).append(",").append(i % 3 == 0 ? "x" : "1").append(",1\n");
+        }
+        File inFile = write(".csv", sb.toString());
+
+        ConvertDelimitedFile converter = new ConvertDelimitedFile(inFile, write(".properties", MAPPING));
+        converter.setChunkSize(4);
+        converter.setThreads(3);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        converter.printMZTab(out);
+
+        // errors of chunks validated on several threads are reported in source order.
+        MZTabErrorList errorList = converter.getErrorList();
+        assertEquals(34, errorList.size());
+        for (int i = 0; i < errorList.size(); i++) {
+            assertEquals(i * 3 + 2, errorList.getError(i).getLineNumber());
+        }
+
+        int records = 0;
+        for (String line : out.toString().split("\n")) {
+            if (line.startsWith("PRT")) {
+                records++;
+            }
+        }
+        assertEquals(count - 34, records);
+    }
+
+    @Test
+    public void testMapping() throws Exception {
+        File inFile = write(".tsv", "Accession\tDescription\nP1\tone\n");
+
+        ConvertDelimitedFile converter = new ConvertDelimitedFile(inFile, write(".properties",
+                "section=protein\nunit_id=TSV_1\ncolumn.accession=1\ncolumn.description=Description\n"));
+        Protein protein = converter.getMZTabFile().getProteins().iterator().next();
+        assertEquals("P1", protein.getAccession());
+        assertEquals("one", protein.getDescription());
+
+        String[] invalidMappings = {
+                // not data section
+                "section=metadata\nunit_id=TSV_1\n",
+                // unit_id not set
+                "section=protein\n",
+                // invalid unit_id
+                "section=protein\nunit_id=TSV-1\n",
+                // unknown mzTab column
+                "section=protein\nunit_id=TSV_1\ncolumn.unknown=Accession\n",
+                // unknown source column
+                "section=protein\nunit_id=TSV_1\ncolumn.accession=Unknown\n",
+                // invalid separator
+                "section=protein\nunit_id=TSV_1\nseparator=semicolon\n"
+        };
+        for (String mapping : invalidMappings) {
+            try {
+                new ConvertDelimitedFile(inFile, write(".properties", mapping));
+                fail("Invalid mapping: " + mapping);
+            } catch (IllegalArgumentException e) {
+                // expected.
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package uk.ac.ebi.pride.jmztab.utils.convert;
+
+import org.junit.Test;
+import uk.ac.ebi.pride.jmztab.model.*;
+import uk.ac.ebi.pride.jmztab.utils.MZTabFileParser;
+import uk.ac.ebi.pride.jmztab.utils.errors.MZTabErrorList;
+import uk.ac.ebi.pride.jmztab.utils.errors.MZTabErrorType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+
+import static org.junit.Assert.*;
+
+/**
+ * User: Qingwei
+ * Date: 22/05/13
+ */
+public class ConvertMzQuantMLFileTest {
+    private final static File MZQ_FILE = new File("testset/mzq_label_free_example.mzq");
+
+    private Double getAbundance(MZTabRecord record, MZTabColumnFactory factory, int subId) {
+        for (AbundanceColumn column : factory.getAbundanceColumnMapping().values()) {
+            if (column.getSubUnit().getSubId() == subId && column.getField() == AbundanceColumn.Field.ABUNDANCE) {
+                return (Double) record.getValue(column.getPosition());
+            }
+        }
+        throw new IllegalArgumentException("Not found abundance column of sub[" + subId + "]");
+    }
+
+    @Test
+    public void testSubUnits() throws Exception {
+        MZTabFile tabFile = new ConvertMzQuantMLFile(MZQ_FILE).getMZTabFile();
+        Metadata metadata = tabFile.getMetadata();
+
+        Unit unit = metadata.getUnit("mzq_label_free");
+        assertNotNull(unit);
+        assertEquals("MS:1001834", ((CVParam) unit.getQuantificationMethod()).getAccession());
+
+        // every assay map to a sub unit in AssayList order.
+        SortedMap<Integer, SubUnit> subUnits = metadata.getSubUnits();
+        assertEquals(2, subUnits.size());
+        SubUnit control = subUnits.get(1);
+        SubUnit treated = subUnits.get(2);
+        assertEquals("control 1", control.getDescription());
+        assertEquals("ass_treated", treated.getDescription());
+        assertEquals("MS:1002038", ((CVParam) control.getQuantificationReagent()).getAccession());
+        assertEquals("control", control.getCustomList().get(0).getValue());
+        assertEquals("treated", treated.getCustomList().get(0).getValue());
+
+        // three abundance columns per sub unit.
+        assertEquals(6, tabFile.getProteinColumnFactory().getAbundanceColumnMapping().size());
+        assertEquals(6, tabFile.getPeptideColumnFactory().getAbundanceColumnMapping().size());
+    }
+
+    @Test
+    public void testAbundance() throws Exception {
+        MZTabFile tabFile = new ConvertMzQuantMLFile(MZQ_FILE).getMZTabFile();
+        MZTabColumnFactory proteinFactory = tabFile.getProteinColumnFactory();
+        MZTabColumnFactory peptideFactory = tabFile.getPeptideColumnFactory();
+
+        // proteins are output in quant layer row order, the not quantified one at the end of list.
+        List<Protein> proteinList = new ArrayList<Protein>(tabFile.getProteins());
+        assertEquals(3, proteinList.size());
+        assertEquals("P01009", proteinList.get(0).getAccession());
+        assertEquals("P02768", proteinList.get(1).getAccession());
+        assertEquals("P00738", proteinList.get(2).getAccession());
+
+        // values follow the ColumnIndex order, only the first quant layer is used.
+        assertEquals(10.25, getAbundance(proteinList.get(0), proteinFactory, 1), 0.0);
+        assertEquals(20.5, getAbundance(proteinList.get(0), proteinFactory, 2), 0.0);
+        assertEquals(100.25, getAbundance(proteinList.get(1), proteinFactory, 1), 0.0);
+        assertEquals(200.5, getAbundance(proteinList.get(1), proteinFactory, 2), 0.0);
+        assertNull(getAbundance(proteinList.get(2), proteinFactory, 1));
+
+        List<Peptide> peptideList = new ArrayList<Peptide>(tabFile.getPeptides());
+        assertEquals(3, peptideList.size());
+        Peptide peptide = peptideList.get(0);
+        assertEquals("LVNEVTEFAK", peptide.getSequence());
+        assertEquals("P02768", peptide.getAccession());
+        assertEquals(Integer.valueOf(2), peptide.getCharge());
+        assertEquals(11.0, getAbundance(peptide, peptideFactory, 1), 0.0);
+        assertEquals(12.0, getAbundance(peptide, peptideFactory, 2), 0.0);
+
+        peptide = peptideList.get(1);
+        assertEquals("LSITGTYDLK", peptide.getSequence());
+        assertEquals("P01009", peptide.getAccession());
+        assertEquals(1, peptide.getModifications().size());
+        assertEquals(31.0, getAbundance(peptide, peptideFactory, 1), 0.0);
+
+        peptide = peptideList.get(2);
+        assertEquals("AEFAEVSKLVTDLTK", peptide.getSequence());
+        assertNull(getAbundance(peptide, peptideFactory, 2));
+    }
+
+    @Test
+    public void testPrintMZTab() throws Exception {
+        // streaming output is same with the buffered mzTab file.
+        ByteArrayOutputStream streamOut = new ByteArrayOutputStream();
+        new ConvertMzQuantMLFile(MZQ_FILE).printMZTab(streamOut);
+        ByteArrayOutputStream bufferedOut = new ByteArrayOutputStream();
+        new ConvertMzQuantMLFile(MZQ_FILE).getMZTabFile().printMZTab(bufferedOut);
+        assertEquals(bufferedOut.toString(), streamOut.toString());
+
+        File tabFile = File.createTempFile("mzq", ".mztab");
+        tabFile.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(tabFile);
+        try {
+            out.write(streamOut.toByteArray());
+        } finally {
+            out.close();
+        }
+        MZTabErrorList errorList = new MZTabErrorList();
+        new MZTabFileParser(tabFile, new MZTabFileParser.Options().setErrorList(errorList)
+                .setLevel(MZTabErrorType.Level.Error).setBuffered(false));
+        assertTrue(errorList.isEmpty(MZTabErrorType.Level.Error));
+    }
+}
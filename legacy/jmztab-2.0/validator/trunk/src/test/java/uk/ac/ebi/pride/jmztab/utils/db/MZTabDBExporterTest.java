@@ -0,0 +1,144 @@
+package uk.ac.ebi.pride.jmztab.utils.db;
+
+import org.apache.commons.dbcp.BasicDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.ebi.pride.jmztab.model.*;
+import uk.ac.ebi.pride.jmztab.utils.MZTabFileParser;
+import uk.ac.ebi.pride.jmztab.utils.MZTabFileWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.Assert.*;
+
+/**
+ * Load example file into in memory HSQLDB, and export the peptide table back.
+ *
+ * User: Qingwei
+ * Date: 22/05/13
+ */
+public class MZTabDBExporterTest {
+    private BasicDataSource dataSource;
+
+    @Before
+    public void setUp() throws Exception {
+        dataSource = new BasicDataSource();
+        dataSource.setDriverClassName("org.hsqldb.jdbc.JDBCDriver");
+        dataSource.setUrl("jdbc:hsqldb:mem:mztab_exporter");
+        dataSource.setUsername("SA");
+        dataSource.setPassword("");
+
+        // text columns use the default mztab.db.text_type.
+        MZTabDBLoader loader = new MZTabDBLoader(dataSource, 2, 2);
+        loader.createSchema();
+        loader.load(new File("testset/mztab_itraq_example.txt"), 1);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Connection connection = dataSource.getConnection();
+        try {
+            connection.createStatement().execute("DROP SCHEMA PUBLIC CASCADE");
+        } finally {
+            connection.close();
+        }
+        dataSource.close();
+    }
+
+    private List<String> getLines(ByteArrayOutputStream out, String prefix) {
+        List<String> lineList = new ArrayList<String>();
+        for (String line : out.toString().split(MZTabConstants.NEW_LINE)) {
+            if (line.startsWith(prefix)) {
+                lineList.add(line);
+            }
+        }
+        return lineList;
+    }
+
+    @Test
+    public void testExport() throws Exception {
+        MZTabFile tabFile = new MZTabFileParser(new File("testset/mztab_itraq_example.txt"), System.out).getMZTabFile();
+        MZTabColumnFactory factory = MZTabColumnFactory.getInstance(Section.Peptide);
+
+        Properties mapping = new Properties();
+        for (PeptideColumn column : PeptideColumn.values()) {
+            mapping.setProperty(column.getHeader(), column.getHeader());
+        }
+        mapping.setProperty("unique", "is_unique");
+        mapping.setProperty("database", "database_name");
+        // modifications are kept in mztab_modification.
+        mapping.remove("modifications");
+
+        MZTabDBExporter exporter = new MZTabDBExporter(factory, tabFile.getMetadata());
+        exporter.map(mapping);
+        exporter.setFetchSize(2);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MZTabFileWriter writer = new MZTabFileWriter(out);
+        writer.writeHeader(factory);
+        Connection connection = dataSource.getConnection();
+        try {
+            assertEquals(6, exporter.export(connection, "SELECT * FROM mztab_peptide WHERE file_id = ? ORDER BY line_number",
+                    writer, 1));
+        } finally {
+            connection.close();
+        }
+        writer.finish();
+
+        List<String> lineList = getLines(out, "PEP");
+        assertEquals(6, lineList.size());
+        int i = 0;
+        String[] expected;
+        String[] actual;
+        for (Peptide peptide : tabFile.getPeptides()) {
+            expected = peptide.toString().split(MZTabConstants.TAB + "");
+            actual = lineList.get(i++).split(MZTabConstants.TAB + "");
+            assertEquals(factory.getColumnMapping().size() + 1, actual.length);
+            for (PeptideColumn column : PeptideColumn.values()) {
+                if (column == PeptideColumn.SEARCH_ENGINE || column == PeptideColumn.SEARCH_ENGINE_SCORE) {
+                    // param label is not trimmed when parsed, thus the printed param keep extra blanks.
+                    assertEquals(expected[column.getPosition()].replace(" ", ""), actual[column.getPosition()].replace(" ", ""));
+                } else if (column != PeptideColumn.MODIFICATIONS) {
+                    assertEquals(column.getHeader(), expected[column.getPosition()], actual[column.getPosition()]);
+                }
+            }
+            assertEquals("null", actual[PeptideColumn.MODIFICATIONS.getPosition()]);
+        }
+    }
+
+    @Test
+    public void testConstant() throws Exception {
+        MZTabColumnFactory factory = MZTabColumnFactory.getInstance(Section.Protein);
+        factory.addOptionalColumn("line_number", Integer.class);
+
+        MZTabDBExporter exporter = new MZTabDBExporter(factory, new Metadata());
+        exporter.map("accession", "accession").map("opt_line_number", "line_number");
+        exporter.setConstant("unit_id", "EXPORT_1");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MZTabFileWriter writer = new MZTabFileWriter(out);
+        writer.writeHeader(factory);
+        Connection connection = dataSource.getConnection();
+        try {
+            exporter.export(connection, "SELECT accession, line_number FROM mztab_protein ORDER BY line_number", writer);
+            // auto commit is restored after export.
+            assertTrue(connection.getAutoCommit());
+        } finally {
+            connection.close();
+        }
+        writer.finish();
+
+        List<String> lineList = getLines(out, "PRT");
+        assertEquals(2, lineList.size());
+        String[] items = lineList.get(0).split(MZTabConstants.TAB + "");
+        assertEquals("EXPORT_1", items[ProteinColumn.UNIT_ID.getPosition()]);
+        assertEquals("null", items[ProteinColumn.DESCRIPTION.getPosition()]);
+        assertTrue(Integer.parseInt(items[items.length - 1]) > 0);
+    }
+}
@@ -0,0 +1,119 @@
+package uk.ac.ebi.pride.jmztab.utils.db;
+
+import org.apache.commons.dbcp.BasicDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.Assert.*;
+
+/**
+ * Load example file into in memory HSQLDB.
+ *
+ * User: Qingwei
+ * Date: 22/05/13
+ */
+public class MZTabDBLoaderTest {
+    private BasicDataSource dataSource;
+    private MZTabDBLoader loader;
+
+    @Before
+    public void setUp() throws Exception {
+        dataSource = new BasicDataSource();
+        dataSource.setDriverClassName("org.hsqldb.jdbc.JDBCDriver");
+        dataSource.setUrl("jdbc:hsqldb:mem:mztab_loader");
+        dataSource.setUsername("SA");
+        dataSource.setPassword("");
+
+        // small batches, make sure every section is written by several batches. Text columns use the default
+        // mztab.db.text_type.
+        loader = new MZTabDBLoader(dataSource, 2, 2);
+        loader.createSchema();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Connection connection = dataSource.getConnection();
+        try {
+            connection.createStatement().execute("DROP SCHEMA PUBLIC CASCADE");
+        } finally {
+            connection.close();
+        }
+        dataSource.close();
+    }
+
+    private int count(String sql) throws SQLException {
+        Connection connection = dataSource.getConnection();
+        try {
+            Statement statement = connection.createStatement();
+            ResultSet rs = statement.executeQuery(sql);
+            assertTrue(rs.next());
+            return rs.getInt(1);
+        } finally {
+            connection.close();
+        }
+    }
+
+    @Test
+    public void testLoad() throws Exception {
+        loader.load(new File("testset/mztab_itraq_example.txt"), 1);
+        loader.load(new File("testset/mztab_itraq_example.txt"), 2);
+
+        assertEquals(2, count("SELECT COUNT(*) FROM mztab_file"));
+        assertEquals(2, count("SELECT COUNT(*) FROM mztab_protein WHERE file_id = 1"));
+        assertEquals(6, count("SELECT COUNT(*) FROM mztab_peptide WHERE file_id = 1"));
+        assertEquals(4, count("SELECT COUNT(*) FROM mztab_sub_unit WHERE file_id = 1"));
+
+        // every peptide line has 4 sub-units, the first peptide has 2 modifications.
+        assertEquals(24, count("SELECT COUNT(*) FROM mztab_abundance WHERE file_id = 1 AND section = 'peptide'"));
+        assertEquals(2, count("SELECT COUNT(*) FROM mztab_modification m JOIN mztab_peptide p " +
+                "ON m.file_id = p.file_id AND m.line_number = p.line_number AND m.section = 'peptide' " +
+                "WHERE p.file_id = 1 AND p.charge = 2 AND p.mass_to_charge = 500"));
+        assertEquals(9, count("SELECT COUNT(*) FROM mztab_modification WHERE file_id = 1 AND section = 'peptide'"));
+        assertEquals(1, count("SELECT COUNT(*) FROM mztab_modification WHERE file_id = 1 AND positions = '8' " +
+                "AND accession = '35'"));
+
+        loader.delete(1);
+        assertEquals(0, count("SELECT COUNT(*) FROM mztab_peptide WHERE file_id = 1"));
+        assertEquals(0, count("SELECT COUNT(*) FROM mztab_abundance WHERE file_id = 1"));
+        assertEquals(6, count("SELECT COUNT(*) FROM mztab_peptide WHERE file_id = 2"));
+    }
+
+    @Test
+    public void testTextType() throws Exception {
+        assertTrue(loader.getSchema().get(0).contains("name VARCHAR(4000)"));
+
+        Connection connection = dataSource.getConnection();
+        try {
+            connection.createStatement().execute("DROP SCHEMA PUBLIC CASCADE");
+        } finally {
+            connection.close();
+        }
+
+        // large object type, for the values longer than VARCHAR.
+        loader.setTextType("CLOB");
+        assertTrue(loader.getSchema().get(0).contains("name CLOB"));
+        loader.createSchema();
+        loader.load(new File("testset/mztab_itraq_example.txt"), 1);
+        assertEquals(6, count("SELECT COUNT(*) FROM mztab_peptide WHERE file_id = 1"));
+        assertEquals(9, count("SELECT COUNT(*) FROM mztab_modification WHERE file_id = 1 AND section = 'peptide'"));
+    }
+
+    @Test
+    public void testDuplicateFile() throws Exception {
+        loader.load(new File("testset/mztab_itraq_example.txt"), 1);
+        try {
+            loader.load(new File("testset/mztab_itraq_example.txt"), 1);
+            fail("File id 1 has been loaded.");
+        } catch (SQLException e) {
+            // the failed load should not delete the rows of first load.
+            assertEquals(6, count("SELECT COUNT(*) FROM mztab_peptide WHERE file_id = 1"));
+        }
+    }
+}
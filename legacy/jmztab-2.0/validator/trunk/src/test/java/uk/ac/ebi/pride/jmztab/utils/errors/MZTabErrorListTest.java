@@ -0,0 +1,82 @@
+package uk.ac.ebi.pride.jmztab.utils.errors;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * User: Qingwei
+ * Date: 08/05/13
+ */
+public class MZTabErrorListTest {
+    @Test
+    public void testMessage() throws Exception {
+        MZTabError error = new MZTabError(FormatErrorType.Integer, 10, "charge", "$1");
+        assertEquals("charge", error.getColumn());
+        assertEquals(10, error.getLineNumber());
+        assertEquals("Column \"charge\" value \"$1\" is not a validate Integer format.", error.getMessage());
+
+        error = new MZTabError(FormatErrorType.LinePrefix, 1, "ABC");
+        assertNull(error.getColumn());
+        assertEquals("\"ABC\" not start with [MTD, PRH, PRT, PEH, PEP, SMH, SML, COM]", error.getMessage());
+    }
+
+    @Test
+    public void testColumnError() throws Exception {
+        // column errors are declared by type, not depend on the message text.
+        assertTrue(FormatErrorType.Integer.isColumnError());
+        assertTrue(LogicalErrorType.NULL.isColumnError());
+        assertTrue(LogicalErrorType.PeptideAccession.isColumnError());
+        assertEquals("accession", new MZTabError(LogicalErrorType.PeptideAccession, 5, "accession", "P1").getColumn());
+        assertEquals("charge", new MZTabError(LogicalErrorType.NULL, 5, "charge").getColumn());
+
+        // metadata and header line errors are not related to a column.
+        assertFalse(FormatErrorType.Email.isColumnError());
+        assertNull(new MZTabError(FormatErrorType.Email, 2, "PRIDE_1234-contact[1]-email", "a@").getColumn());
+        assertFalse(FormatErrorType.ParamList.isColumnError());
+        assertFalse(LogicalErrorType.AbundanceColumnId.isColumnError());
+        assertFalse(LogicalErrorType.Duplication.isColumnError());
+    }
+
+    @Test
+    public void testSink() throws Exception {
+        final List<MZTabError> received = new ArrayList<MZTabError>();
+        MZTabErrorList errorList = new MZTabErrorList(new ErrorSink() {
+            @Override
+            public void accept(MZTabError error) {
+                received.add(error);
+            }
+
+            @Override
+            public void flush() {
+            }
+        });
+
+        assertTrue(errorList.isEmpty(MZTabErrorType.Level.Warn));
+        errorList.add(new MZTabError(FormatErrorType.Integer, 10, "charge", "$1"));
+        assertEquals(1, errorList.size());
+        assertEquals(1, received.size());
+        assertFalse(errorList.isEmpty(MZTabErrorType.Level.Error));
+    }
+
+    @Test
+    public void testAggregate() throws Exception {
+        AggregateErrorSink sink = new AggregateErrorSink(2, MZTabErrorType.Level.Warn);
+        MZTabErrorList errorList = new MZTabErrorList(sink, 0);
+        for (int i = 0; i < 1000; i++) {
+            errorList.add(new MZTabError(FormatErrorType.Integer, i, i % 2 == 0 ? "charge" : "start", "$1"));
+        }
+        errorList.add(new MZTabError(FormatErrorType.LinePrefix, 1001, "ABC"));
+
+        assertEquals(1001, errorList.size());
+        assertEquals(1000, sink.getCount(FormatErrorType.Integer.getCode()));
+        AggregateErrorSink.Entry entry = sink.getEntries().get(FormatErrorType.Integer.getCode());
+        assertEquals(Long.valueOf(500), entry.getColumnCounts().get("charge"));
+        assertEquals(2, entry.getExemplars().size());
+        assertEquals(1, entry.getExemplars().get(1).getLineNumber());
+        assertEquals(1001, sink.getTotalCount());
+    }
+}
@@ -0,0 +1,66 @@
+package uk.ac.ebi.pride.jmztab.utils.metrics;
+
+import org.junit.Test;
+import uk.ac.ebi.pride.jmztab.model.Section;
+import uk.ac.ebi.pride.jmztab.utils.MZTabFileParser;
+import uk.ac.ebi.pride.jmztab.utils.errors.MZTabErrorType;
+
+import java.io.*;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * User: Qingwei
+ * Date: 22/05/13
+ */
+public class JMXMetricsListenerTest {
+    private final static File TAB_FILE = new File("testset/mztab_itraq_example.txt");
+
+    private JMXMetricsListener parse(File file) throws IOException {
+        JMXMetricsListener listener = new JMXMetricsListener();
+        MZTabMetrics.addListener(listener);
+        try {
+            new MZTabFileParser(file, new MZTabFileParser.Options().setLevel(MZTabErrorType.Level.Warn)
+                    .setBuffered(false));
+        } finally {
+            MZTabMetrics.removeListener(listener);
+        }
+        return listener;
+    }
+
+    private File createGZIPFile() throws IOException {
+        File file = File.createTempFile("metrics", ".mztab.gz");
+        file.deleteOnExit();
+
+        InputStream in = new FileInputStream(TAB_FILE);
+        OutputStream out = new GZIPOutputStream(new FileOutputStream(file));
+        try {
+            byte[] buffer = new byte[4096];
+            int len;
+            while ((len = in.read(buffer)) != -1) {
+                out.write(buffer, 0, len);
+            }
+        } finally {
+            in.close();
+            out.close();
+        }
+
+        return file;
+    }
+
+    @Test
+    public void testByteCount() throws Exception {
+        // byte count is the number of bytes read from file, not characters of lines.
+        JMXMetricsListener listener = parse(TAB_FILE);
+        assertEquals(TAB_FILE.length(), listener.getByteCount());
+        assertTrue(listener.getSectionMetrics(Section.Metadata).getLineCount() > 0);
+        assertTrue(listener.getSectionMetrics(Section.Peptide).getLineCount() > 0);
+
+        // compressed file report the compressed size.
+        File file = createGZIPFile();
+        listener = parse(file);
+        assertEquals(file.length(), listener.getByteCount());
+        assertFalse(MZTabMetrics.isEnabled());
+    }
+}
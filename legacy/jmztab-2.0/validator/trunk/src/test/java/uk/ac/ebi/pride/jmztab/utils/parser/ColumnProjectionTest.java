@@ -0,0 +1,150 @@
+package uk.ac.ebi.pride.jmztab.utils.parser;
+
+import org.junit.Test;
+import uk.ac.ebi.pride.jmztab.model.*;
+import uk.ac.ebi.pride.jmztab.utils.MZTabFileParser;
+import uk.ac.ebi.pride.jmztab.utils.errors.FormatErrorType;
+import uk.ac.ebi.pride.jmztab.utils.errors.MZTabErrorList;
+import uk.ac.ebi.pride.jmztab.utils.errors.MZTabErrorType;
+
+import java.io.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * User: Qingwei
+ * Date: 22/05/13
+ */
+public class ColumnProjectionTest {
+    private final static File TAB_FILE = new File("testset/mztab_itraq_example.txt");
+
+    private MZTabFile parse(File file, ColumnProjection projection, MZTabErrorList errorList) throws IOException {
+        return new MZTabFileParser(file, new MZTabFileParser.Options().setErrorList(errorList)
+                .setLevel(MZTabErrorType.Level.Warn).setBuffered(true).setProjection(projection)).getMZTabFile();
+    }
+
+    /**
+     * Copy itraq example, and set the reliability of first peptide to "x".
+     */
+    private File createInvalidFile() throws IOException {
+        File file = File.createTempFile("projection", ".mztab");
+        file.deleteOnExit();
+
+        BufferedReader reader = new BufferedReader(new FileReader(TAB_FILE));
+        Writer writer = new FileWriter(file);
+        try {
+            boolean changed = false;
+            String line;
+            String[] items;
+            while ((line = reader.readLine()) != null) {
+                items = line.split("\t", -1);
+                if (! changed && items[0].equals("PEP")) {
+                    items[9] = "x";
+                    StringBuilder sb = new StringBuilder(items[0]);
+                    for (int i = 1; i < items.length; i++) {
+                        sb.append("\t").append(items[i]);
+                    }
+                    line = sb.toString();
+                    changed = true;
+                }
+                writer.write(line + "\n");
+            }
+        } finally {
+            reader.close();
+            writer.close();
+        }
+
+        return file;
+    }
+
+    @Test
+    public void testProjection() throws Exception {
+        ColumnProjection projection = new ColumnProjection();
+        projection.add(Section.Peptide, "charge");
+        MZTabFile tabFile = parse(TAB_FILE, projection, new MZTabErrorList());
+        MZTabFile fullFile = parse(TAB_FILE, null, new MZTabErrorList());
+
+        Peptide peptide = tabFile.getPeptides().iterator().next();
+        Peptide fullPeptide = fullFile.getPeptides().iterator().next();
+        assertEquals(fullPeptide.getCharge(), peptide.getCharge());
+        // key columns are always loaded.
+        assertEquals(fullPeptide.getSequence(), peptide.getSequence());
+        assertEquals(fullPeptide.getAccession(), peptide.getAccession());
+        assertEquals(fullPeptide.getUnitId(), peptide.getUnitId());
+        // not projected cells keep null, and print as "null".
+        assertNotNull(fullPeptide.getReliability());
+        assertNull(peptide.getReliability());
+        assertNull(peptide.getRetentionTime());
+        String[] items = peptide.toString().split("\t");
+        assertEquals("null", items[9]);
+        assertEquals("null", items[11]);
+
+        // section without projection load all columns.
+        assertEquals(fullFile.getProteins().iterator().next().toString(), tabFile.getProteins().iterator().next().toString());
+
+        // projection by position.
+        projection = new ColumnProjection();
+        projection.add(Section.Peptide, 9);
+        peptide = parse(TAB_FILE, projection, new MZTabErrorList()).getPeptides().iterator().next();
+        assertEquals(fullPeptide.getReliability(), peptide.getReliability());
+        assertNull(peptide.getCharge());
+    }
+
+    @Test
+    public void testValidation() throws Exception {
+        File file = createInvalidFile();
+
+        // by default, the not projected columns are still validated.
+        ColumnProjection projection = new ColumnProjection();
+        projection.add(Section.Peptide, "charge");
+        MZTabErrorList errorList = new MZTabErrorList();
+        parse(file, projection, errorList);
+        assertEquals(1, errorList.size());
+        assertEquals(FormatErrorType.Reliability, errorList.getError(0).getType());
+
+        // trusted input skip them.
+        projection = new ColumnProjection(true);
+        projection.add(Section.Peptide, "charge");
+        errorList = new MZTabErrorList();
+        MZTabFile tabFile = parse(file, projection, errorList);
+        assertTrue(errorList.isEmpty());
+        assertNull(tabFile.getPeptides().iterator().next().getReliability());
+
+        // the projected column is validated, even if trusted.
+        projection = new ColumnProjection(true);
+        projection.add(Section.Peptide, "reliability");
+        errorList = new MZTabErrorList();
+        parse(file, projection, errorList);
+        assertEquals(1, errorList.size());
+    }
+
+    @Test
+    public void testBind() throws Exception {
+        MZTabColumnFactory factory = MZTabColumnFactory.getInstance(Section.Peptide_Header);
+        assertNull(new ColumnProjection().bind(Section.Peptide, factory));
+
+        boolean[] loaded = new ColumnProjection().add(Section.Peptide, "charge").bind(Section.Peptide, factory);
+        assertTrue(loaded[1] && loaded[2] && loaded[3]);
+        assertTrue(loaded[factory.getColumn("charge").getPosition()]);
+        assertFalse(loaded[factory.getColumn("reliability").getPosition()]);
+
+        try {
+            new ColumnProjection().add(Section.Peptide, "opt_unknown").bind(Section.Peptide, factory);
+            fail("Column opt_unknown not exists.");
+        } catch (IllegalArgumentException e) {
+            // expected.
+        }
+        try {
+            new ColumnProjection().add(Section.Peptide, 1000).bind(Section.Peptide, factory);
+            fail("Column position 1000 not exists.");
+        } catch (IllegalArgumentException e) {
+            // expected.
+        }
+        try {
+            new ColumnProjection().add(Section.Metadata, "title");
+            fail("Metadata can not be projected.");
+        } catch (IllegalArgumentException e) {
+            // expected.
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package uk.ac.ebi.pride.jmztab.utils.parser;
+
+import org.junit.Test;
+import uk.ac.ebi.pride.jmztab.model.*;
+import uk.ac.ebi.pride.jmztab.utils.MZTabFileParser;
+import uk.ac.ebi.pride.jmztab.utils.errors.LogicalErrorType;
+import uk.ac.ebi.pride.jmztab.utils.errors.MZTabError;
+import uk.ac.ebi.pride.jmztab.utils.errors.MZTabErrorList;
+import uk.ac.ebi.pride.jmztab.utils.errors.MZTabErrorType;
+
+import java.io.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * User: Qingwei
+ * Date: 22/05/13
+ */
+public class RecordFilterTest {
+    @Test
+    public void testIntRange() throws Exception {
+        RecordFilter.FieldPredicate predicate = RecordFilter.intRange(-2, 3);
+        assertTrue(predicate.accept("2"));
+        assertTrue(predicate.accept("+3"));
+        assertTrue(predicate.accept("-2"));
+        assertTrue(predicate.accept("0"));
+        assertFalse(predicate.accept("4"));
+        assertFalse(predicate.accept("-3"));
+        assertFalse(predicate.accept("null"));
+        assertFalse(predicate.accept("2.0"));
+        assertFalse(predicate.accept("-"));
+        assertFalse(predicate.accept(""));
+        assertFalse(predicate.accept(null));
+        // not overflow.
+        assertFalse(predicate.accept("4294967298"));
+        assertFalse(predicate.accept("12345678901234567890"));
+    }
+
+    @Test
+    public void testDoubleRange() throws Exception {
+        RecordFilter.FieldPredicate predicate = RecordFilter.doubleRange(0, 1);
+        assertTrue(predicate.accept("0.5"));
+        assertTrue(predicate.accept("1"));
+        assertTrue(predicate.accept("1e-3"));
+        assertFalse(predicate.accept("1.5"));
+        assertFalse(predicate.accept("-0.1"));
+        assertFalse(predicate.accept("null"));
+        assertFalse(predicate.accept("NaN"));
+        assertFalse(predicate.accept("abc"));
+        assertFalse(predicate.accept(""));
+        assertFalse(predicate.accept(null));
+    }
+
+    @Test
+    public void testBind() throws Exception {
+        RecordFilter filter = new RecordFilter();
+        filter.add(Section.Peptide, "charge", RecordFilter.intRange(2, 3));
+        filter.add(Section.Peptide, "opt_unknown", RecordFilter.equalTo("1"));
+        assertTrue(filter.isFiltered(Section.Peptide));
+        assertFalse(filter.isFiltered(Section.Protein));
+        try {
+            filter.bind(Section.Peptide, MZTabColumnFactory.getInstance(Section.Peptide_Header));
+            fail("Column opt_unknown not exists.");
+        } catch (IllegalArgumentException e) {
+            // expected.
+        }
+
+        // not filtered section accept all rows.
+        filter.bind(Section.Protein, MZTabColumnFactory.getInstance(Section.Protein_Header));
+        assertTrue(filter.accept(Section.Protein, RecordFilter.split("PRT\tP1")));
+
+        try {
+            filter.add(Section.Metadata, "title", RecordFilter.equalTo("1"));
+            fail("Metadata can not be filtered.");
+        } catch (IllegalArgumentException e) {
+            // expected.
+        }
+    }
+
+    private String join(String[] items) {
+        StringBuilder sb = new StringBuilder(items[0]);
+        for (int i = 1; i < items.length; i++) {
+            sb.append("\t").append(items[i]);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Copy itraq example, insert a duplicate protein which description is "rejected", and a peptide which
+     * accession not in protein table and charge is not an integer.
+     */
+    private File createTabFile() throws IOException {
+        File file = File.createTempFile("filter", ".mztab");
+        file.deleteOnExit();
+
+        BufferedReader reader = new BufferedReader(new FileReader("testset/mztab_itraq_example.txt"));
+        Writer writer = new FileWriter(file);
+        try {
+            boolean proteinAdded = false;
+            boolean peptideAdded = false;
+            String line;
+            String[] items;
+            while ((line = reader.readLine()) != null) {
+                writer.write(line + "\n");
+                items = line.split("\t", -1);
+                if (! proteinAdded && items[0].equals("PRT")) {
+                    items[3] = "rejected";
+                    writer.write(join(items) + "\n");
+                    proteinAdded = true;
+                } else if (! peptideAdded && items[0].equals("PEP")) {
+                    items[2] = "gi|999";
+                    items[12] = "x";
+                    writer.write(join(items) + "\n");
+                    peptideAdded = true;
+                }
+            }
+        } finally {
+            reader.close();
+            writer.close();
+        }
+
+        return file;
+    }
+
+    @Test
+    public void testReject() throws Exception {
+        RecordFilter filter = new RecordFilter();
+        filter.add(Section.Protein, "description", RecordFilter.equalTo("Albumin", "Thyroxin"));
+        filter.add(Section.Peptide, "charge", RecordFilter.intRange(2, 3));
+
+        MZTabErrorList errorList = new MZTabErrorList();
+        MZTabFile tabFile = new MZTabFileParser(createTabFile(), new MZTabFileParser.Options().setErrorList(errorList)
+                .setLevel(MZTabErrorType.Level.Warn).setBuffered(true).setFilter(filter)).getMZTabFile();
+        assertNotNull(tabFile);
+
+        // rejected rows are not loaded.
+        assertEquals(2, tabFile.getProteins().size());
+        for (Protein protein : tabFile.getProteins()) {
+            assertFalse("rejected".equals(protein.getDescription()));
+        }
+        assertEquals(4, tabFile.getPeptides().size());
+        for (Peptide peptide : tabFile.getPeptides()) {
+            assertTrue(peptide.getCharge() == 2 || peptide.getCharge() == 3);
+        }
+
+        // rejected rows are not validated, but still cross checked by their raw accession and unit_id.
+        assertEquals(2, errorList.size());
+        MZTabError error = errorList.getError(0);
+        assertEquals(LogicalErrorType.DuplicationAccession, error.getType());
+        assertEquals("gi|10181184", error.getValues()[1]);
+        assertEquals("PRIDE_1234", error.getValues()[2]);
+        error = errorList.getError(1);
+        assertEquals(LogicalErrorType.PeptideAccession, error.getType());
+        assertEquals("gi|999", error.getValues()[1]);
+    }
+}